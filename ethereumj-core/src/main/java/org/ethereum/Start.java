@@ -5,6 +5,7 @@ import org.ethereum.config.SystemProperties;
 import org.ethereum.facade.Ethereum;
 import org.ethereum.facade.EthereumFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 
@@ -17,15 +18,23 @@ public class Start {
     public static void main(String args[]) throws IOException, URISyntaxException {
         CLIInterface.call(args);
 
-        if (!SystemProperties.getDefault().blocksLoader().equals("")) {
-            SystemProperties.getDefault().setSyncEnabled(false);
-            SystemProperties.getDefault().setDiscoveryEnabled(false);
+        SystemProperties config = SystemProperties.getDefault();
+        if (!config.blocksLoader().equals("") || !config.snapshotExportFile().equals("") ||
+                !config.snapshotImportFile().equals("")) {
+            config.setSyncEnabled(false);
+            config.setDiscoveryEnabled(false);
         }
 
         Ethereum ethereum = EthereumFactory.createEthereum();
 
-        if (!SystemProperties.getDefault().blocksLoader().equals(""))
+        if (!config.snapshotImportFile().equals(""))
+            ethereum.getStateSnapshot().importState(new File(config.snapshotImportFile()));
+
+        if (!config.blocksLoader().equals(""))
             ethereum.getBlockLoader().loadBlocks();
+
+        if (!config.snapshotExportFile().equals(""))
+            ethereum.getStateSnapshot().exportState(config.snapshotExportBlock(), new File(config.snapshotExportFile()));
     }
 
 }
@@ -63,6 +63,24 @@ public class CLIInterface {
                     cliOptions.put(SystemProperties.PROPERTY_PEER_DISCOVERY_ENABLED, false);
                 }
 
+                if (args[i].equals("-exportState") && i + 1 < args.length) {
+                    String file = args[i + 1];
+                    logger.info("State snapshot export file set to [{}]", file);
+                    cliOptions.put("snapshot.export.file", file);
+                }
+
+                if (args[i].equals("-exportBlock") && i + 1 < args.length) {
+                    String block = args[i + 1];
+                    logger.info("State snapshot export block set to [{}]", block);
+                    cliOptions.put("snapshot.export.block", block);
+                }
+
+                if (args[i].equals("-importState") && i + 1 < args.length) {
+                    String file = args[i + 1];
+                    logger.info("State snapshot import file set to [{}]", file);
+                    cliOptions.put("snapshot.import.file", file);
+                }
+
                 // override the listen port directory
                 if (args[i].equals("-reset") && i + 1 < args.length) {
                     Boolean resetStr = interpret(args[i + 1]);
@@ -98,6 +116,9 @@ public class CLIInterface {
         System.out.println("-listen  <port>       -- port to listen on for incoming connections ");
         System.out.println("-connect <enode://pubKey@host:port>  -- address actively connect to  ");
         System.out.println("-connectOnly <enode://pubKey@host:port>  -- like 'connect', but will not attempt to connect to other peers  ");
+        System.out.println("-exportState <file>   -- export the state snapshot to the file ");
+        System.out.println("-exportBlock <number> -- block to export the state at (the best block by default) ");
+        System.out.println("-importState <file>   -- import the state snapshot from the file ");
         System.out.println("");
         System.out.println("e.g: cli -reset no -db db-1 -listen 20202 -connect enode://0be5b4@poc-7.ethdev.com:30300 ");
         System.out.println("");
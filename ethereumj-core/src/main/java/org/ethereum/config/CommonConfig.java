@@ -10,6 +10,7 @@ import org.ethereum.db.DbFlushManager;
 import org.ethereum.db.RepositoryRoot;
 import org.ethereum.db.BlockStore;
 import org.ethereum.db.StateSource;
+import org.ethereum.util.FileUtil;
 import org.ethereum.listener.EthereumListener;
 import org.ethereum.validator.*;
 import org.ethereum.vm.VM;
@@ -22,6 +23,7 @@ import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.*;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -36,6 +38,9 @@ public class CommonConfig {
     private static final Logger logger = LoggerFactory.getLogger("general");
 
     public static final byte[] FASTSYNC_DB_KEY = HashUtil.sha3("Key in state DB indicating fastsync in progress".getBytes());
+    // keys in the fastsync DB of the pivot block header and of the outstanding state node requests
+    public static final byte[] FASTSYNC_PIVOT_KEY = "pivot".getBytes();
+    public static final byte[] FASTSYNC_STATE_FRONTIER_KEY = "stateFrontier".getBytes();
 
     private static CommonConfig defaultInstance;
 
@@ -115,7 +120,14 @@ public class CommonConfig {
         DbSource<byte[]> state = stateDS();
 
         if (state.get(FASTSYNC_DB_KEY) != null) {
+            DbSource<byte[]> fastSync = fastSyncDS();
+            if (fastSync.get(FASTSYNC_STATE_FRONTIER_KEY) != null) {
+                logger.warn("Last fastsync was interrupted while downloading the state. It will be resumed");
+                return;
+            }
+
             logger.warn("Last fastsync was interrupted. Removing old data...");
+            fastSync.delete(FASTSYNC_PIVOT_KEY);
 
             logger.warn("Removing block data...");
             DbSource blockSource = keyValueDataSource();
@@ -131,6 +143,9 @@ public class CommonConfig {
             resetDataSource(indexSource);
             indexSource.close();
 
+            logger.warn("Removing ancient data...");
+            FileUtil.recursiveDelete(new File(systemProperties().databaseDir(), "ancient").getAbsolutePath());
+
             logger.warn("Removing state data...");
             resetDataSource(state);
         }
@@ -168,6 +183,15 @@ public class CommonConfig {
         return ret;
     }
 
+    @Bean
+    public DbSource<byte[]> fastSyncDS() {
+        DbSource<byte[]> ret = keyValueDataSource();
+        ret.setName("fastsync");
+        ret.init();
+
+        return ret;
+    }
+
     @Bean
     public DbFlushManager dbFlushManager() {
         return new DbFlushManager(systemProperties());
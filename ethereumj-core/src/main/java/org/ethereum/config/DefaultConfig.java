@@ -1,10 +1,12 @@
 package org.ethereum.config;
 
 import org.ethereum.datasource.*;
+import org.ethereum.db.BlockFreezer;
 import org.ethereum.db.BlockStore;
 import org.ethereum.db.IndexedBlockStore;
 import org.ethereum.db.PruneManager;
 import org.ethereum.db.TransactionStore;
+import org.ethereum.db.freezer.Freezer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -13,6 +15,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 
+import java.io.File;
+
 /**
  *
  * @author Roman Mandeleil
@@ -45,14 +49,33 @@ public class DefaultConfig {
     public BlockStore blockStore(){
         commonConfig.fastSyncCleanUp();
         IndexedBlockStore indexedBlockStore = new IndexedBlockStore();
+        indexedBlockStore.setCacheSize(config.blockCacheSize() * 1024L * 1024, config.headerCacheSize() * 1024L * 1024);
         indexedBlockStore.init(commonConfig.cachedDbSource("index"), commonConfig.cachedDbSource("block"));
+        if (config.databaseFreezerDepth() >= 0) {
+            indexedBlockStore.setFreezer(new Freezer(new File(config.databaseDir(), "ancient"),
+                    config.databaseFreezerSegmentSize() * 1024L * 1024));
+        }
 
         return indexedBlockStore;
     }
 
     @Bean
     public TransactionStore transactionStore() {
-        return new TransactionStore(commonConfig.cachedDbSource("transactions"));
+        TransactionStore transactionStore = new TransactionStore(commonConfig.cachedDbSource("transactions"));
+        // the block store is created first to clean up the data of interrupted fast sync
+        transactionStore.setFreezer(((IndexedBlockStore) blockStore()).getFreezer());
+        return transactionStore;
+    }
+
+    @Bean
+    public BlockFreezer blockFreezer() {
+        if (config.databaseFreezerDepth() >= 0) {
+            IndexedBlockStore blockStore = (IndexedBlockStore) blockStore();
+            return new BlockFreezer(blockStore.getFreezer(), blockStore, transactionStore(),
+                    config.databaseFreezerDepth());
+        } else {
+            return new BlockFreezer(); // disabled
+        }
     }
 
     @Bean
@@ -383,6 +383,16 @@ public class SystemProperties {
         return config.getBoolean("database.prune.enabled") ? config.getInt("database.prune.maxDepth") : -1;
     }
 
+    @ValidateMe
+    public int databaseFreezerDepth() {
+        return config.getBoolean("database.freezer.enabled") ? config.getInt("database.freezer.depth") : -1;
+    }
+
+    @ValidateMe
+    public int databaseFreezerSegmentSize() {
+        return config.getInt("database.freezer.segmentSize");
+    }
+
     @ValidateMe
     public List<Node> peerActive() {
         if (!config.hasPath("peer.active")) {
@@ -592,6 +602,21 @@ public class SystemProperties {
         return config.getInt("cache.flush.blocks");
     }
 
+    @ValidateMe
+    public int statePrefetchThreads() {
+        return config.getInt("cache.statePrefetchThreads");
+    }
+
+    @ValidateMe
+    public int blockCacheSize() {
+        return config.getInt("cache.blockCacheSize");
+    }
+
+    @ValidateMe
+    public int headerCacheSize() {
+        return config.getInt("cache.headerCacheSize");
+    }
+
     @ValidateMe
     public String vmTraceDir() {
         return config.getString("vm.structured.dir");
@@ -846,4 +871,16 @@ public class SystemProperties {
         return config.hasPath("blocks.loader") ?
                 config.getString("blocks.loader") : DEFAULT_BLOCKS_LOADER;
     }
+
+    public String snapshotExportFile() {
+        return config.hasPath("snapshot.export.file") ? config.getString("snapshot.export.file") : "";
+    }
+
+    public long snapshotExportBlock() {
+        return config.hasPath("snapshot.export.block") ? config.getLong("snapshot.export.block") : -1;
+    }
+
+    public String snapshotImportFile() {
+        return config.hasPath("snapshot.import.file") ? config.getString("snapshot.import.file") : "";
+    }
 }
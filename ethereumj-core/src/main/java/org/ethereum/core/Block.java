@@ -10,7 +10,6 @@ import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
@@ -123,24 +122,18 @@ public class Block {
     private synchronized void parseRLP() {
         if (parsed) return;
 
-        RLPList params = RLP.decode2(rlpEncoded);
-        RLPList block = (RLPList) params.get(0);
+        RLPView block = RLPView.wrap(rlpEncoded);
 
         // Parse Header
-        RLPList header = (RLPList) block.get(0);
-        this.header = new BlockHeader(header);
+        this.header = new BlockHeader(block.get(0));
 
         // Parse Transactions
-        RLPList txTransactions = (RLPList) block.get(1);
-        this.parseTxs(this.header.getTxTrieRoot(), txTransactions);
+        this.parseTxs(this.header.getTxTrieRoot(), block.get(1));
 
         // Parse Uncles
-        RLPList uncleBlocks = (RLPList) block.get(2);
-        for (RLPElement rawUncle : uncleBlocks) {
-
-            RLPList uncleHeader = (RLPList) rawUncle;
-            BlockHeader blockData = new BlockHeader(uncleHeader);
-            this.uncleList.add(blockData);
+        RLPView uncleBlocks = block.get(2);
+        for (int i = 0; i < uncleBlocks.size(); i++) {
+            this.uncleList.add(new BlockHeader(uncleBlocks.get(i)));
         }
         this.parsed = true;
     }
@@ -335,18 +328,18 @@ public class Block {
         return toStringBuff.toString();
     }
 
-    private void parseTxs(RLPList txTransactions) {
+    private void parseTxs(RLPView txTransactions) {
 
         this.txsState = new TrieImpl();
         for (int i = 0; i < txTransactions.size(); i++) {
-            RLPElement transactionRaw = txTransactions.get(i);
-            this.transactionsList.add(new Transaction(transactionRaw.getRLPData()));
-            this.txsState.put(RLP.encodeInt(i), transactionRaw.getRLPData());
+            byte[] transactionRaw = txTransactions.get(i).getEncoded();
+            this.transactionsList.add(new Transaction(transactionRaw));
+            this.txsState.put(RLP.encodeInt(i), transactionRaw);
         }
     }
 
 
-    private boolean parseTxs(byte[] expectedRoot, RLPList txTransactions) {
+    private boolean parseTxs(byte[] expectedRoot, RLPView txTransactions) {
 
         parseTxs(txTransactions);
         String calculatedRoot = Hex.toHexString(txsState.getRootHash());
@@ -376,26 +369,26 @@ public class Block {
         return Arrays.areEqual(this.getHash(), block.getHash());
     }
 
-    private byte[] getTransactionsEncoded() {
-
-        byte[][] transactionsEncoded = new byte[transactionsList.size()][];
-        int i = 0;
+    private void writeTransactions(RLPWriter writer) {
+        writer.startList();
         for (Transaction tx : transactionsList) {
-            transactionsEncoded[i] = tx.getEncoded();
-            ++i;
+            writer.writeEncoded(tx.getEncoded());
         }
-        return RLP.encodeList(transactionsEncoded);
+        writer.endList();
     }
 
-    private byte[] getUnclesEncoded() {
-
-        byte[][] unclesEncoded = new byte[uncleList.size()][];
-        int i = 0;
+    private void writeUncles(RLPWriter writer) {
+        writer.startList();
         for (BlockHeader uncle : uncleList) {
-            unclesEncoded[i] = uncle.getEncoded();
-            ++i;
+            uncle.writeEncoded(writer, true);
         }
-        return RLP.encodeList(unclesEncoded);
+        writer.endList();
+    }
+
+    private byte[] getUnclesEncoded() {
+        RLPWriter writer = new RLPWriter();
+        writeUncles(writer);
+        return writer.toByteArray();
     }
 
     public void addUncle(BlockHeader uncle) {
@@ -406,13 +399,12 @@ public class Block {
 
     public byte[] getEncoded() {
         if (rlpEncoded == null) {
-            byte[] header = this.header.getEncoded();
-
-            List<byte[]> block = getBodyElements();
-            block.add(0, header);
-            byte[][] elements = block.toArray(new byte[block.size()][]);
-
-            this.rlpEncoded = RLP.encodeList(elements);
+            parseRLP();
+            RLPWriter writer = new RLPWriter(estimateEncodedSize());
+            writer.startList();
+            this.header.writeEncoded(writer, true);
+            writeBody(writer);
+            this.rlpEncoded = writer.endList().toByteArray();
         }
         return rlpEncoded;
     }
@@ -423,22 +415,27 @@ public class Block {
     }
 
     public byte[] getEncodedBody() {
-        List<byte[]> body = getBodyElements();
-        byte[][] elements = body.toArray(new byte[body.size()][]);
-        return RLP.encodeList(elements);
-    }
-
-    private List<byte[]> getBodyElements() {
         parseRLP();
+        RLPWriter writer = new RLPWriter(estimateEncodedSize());
+        writer.startList();
+        writeBody(writer);
+        return writer.endList().toByteArray();
+    }
 
-        byte[] transactions = getTransactionsEncoded();
-        byte[] uncles = getUnclesEncoded();
-
-        List<byte[]> body = new ArrayList<>();
-        body.add(transactions);
-        body.add(uncles);
+    /**
+     * Writes the block body elements (transactions and uncles lists) without enclosing list
+     */
+    private void writeBody(RLPWriter writer) {
+        writeTransactions(writer);
+        writeUncles(writer);
+    }
 
-        return body;
+    private int estimateEncodedSize() {
+        int size = 544 * (1 + uncleList.size()) + 16;
+        for (Transaction tx : transactionsList) {
+            size += tx.getEncoded().length;
+        }
+        return size;
     }
 
     public String getShortHash() {
@@ -476,25 +473,22 @@ public class Block {
             block.header = header;
             block.parsed = true;
 
-            RLPList items = (RLPList) RLP.decode2(body).get(0);
+            RLPView items = RLPView.wrap(body);
 
-            RLPList transactions = (RLPList) items.get(0);
-            RLPList uncles = (RLPList) items.get(1);
+            RLPView transactions = items.get(0);
+            RLPView uncles = items.get(1);
 
             if (!block.parseTxs(header.getTxTrieRoot(), transactions)) {
                 return null;
             }
 
-            byte[] unclesHash = HashUtil.sha3(uncles.getRLPData());
+            byte[] unclesHash = HashUtil.sha3(uncles.getEncoded());
             if (!java.util.Arrays.equals(header.getUnclesHash(), unclesHash)) {
                 return null;
             }
 
-            for (RLPElement rawUncle : uncles) {
-
-                RLPList uncleHeader = (RLPList) rawUncle;
-                BlockHeader blockData = new BlockHeader(uncleHeader);
-                block.uncleList.add(blockData);
+            for (int i = 0; i < uncles.size(); i++) {
+                block.uncleList.add(new BlockHeader(uncles.get(i)));
             }
 
             return block;
@@ -5,6 +5,8 @@ import org.ethereum.config.SystemProperties;
 import org.ethereum.crypto.HashUtil;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPView;
+import org.ethereum.util.RLPWriter;
 import org.ethereum.util.Utils;
 import org.spongycastle.util.Arrays;
 import org.spongycastle.util.BigIntegers;
@@ -75,41 +77,39 @@ public class BlockHeader {
     private byte[] nonce;
 
     public BlockHeader(byte[] encoded) {
-        this((RLPList) RLP.decode2(encoded).get(0));
+        this(RLPView.wrap(encoded));
     }
 
-    public BlockHeader(RLPList rlpHeader) {
+    public BlockHeader(RLPView rlpHeader) {
 
-        this.parentHash = rlpHeader.get(0).getRLPData();
-        this.unclesHash = rlpHeader.get(1).getRLPData();
-        this.coinbase = rlpHeader.get(2).getRLPData();
-        this.stateRoot = rlpHeader.get(3).getRLPData();
+        this.parentHash = rlpHeader.get(0).copyBytes();
+        this.unclesHash = rlpHeader.get(1).copyBytes();
+        this.coinbase = rlpHeader.get(2).copyBytes();
+        this.stateRoot = rlpHeader.get(3).copyBytes();
 
-        this.txTrieRoot = rlpHeader.get(4).getRLPData();
+        this.txTrieRoot = rlpHeader.get(4).copyBytes();
         if (this.txTrieRoot == null)
             this.txTrieRoot = EMPTY_TRIE_HASH;
 
-        this.receiptTrieRoot = rlpHeader.get(5).getRLPData();
+        this.receiptTrieRoot = rlpHeader.get(5).copyBytes();
         if (this.receiptTrieRoot == null)
             this.receiptTrieRoot = EMPTY_TRIE_HASH;
 
-        this.logsBloom = rlpHeader.get(6).getRLPData();
-        this.difficulty = rlpHeader.get(7).getRLPData();
-
-        byte[] nrBytes = rlpHeader.get(8).getRLPData();
-        byte[] glBytes = rlpHeader.get(9).getRLPData();
-        byte[] guBytes = rlpHeader.get(10).getRLPData();
-        byte[] tsBytes = rlpHeader.get(11).getRLPData();
+        this.logsBloom = rlpHeader.get(6).copyBytes();
+        this.difficulty = rlpHeader.get(7).copyBytes();
 
-        this.number = nrBytes == null ? 0 : (new BigInteger(1, nrBytes)).longValue();
+        this.number = rlpHeader.get(8).getBigInteger().longValue();
+        this.gasLimit = rlpHeader.get(9).copyBytes();
+        this.gasUsed = rlpHeader.get(10).getBigInteger().longValue();
+        this.timestamp = rlpHeader.get(11).getBigInteger().longValue();
 
-        this.gasLimit = glBytes;
-        this.gasUsed = guBytes == null ? 0 : (new BigInteger(1, guBytes)).longValue();
-        this.timestamp = tsBytes == null ? 0 : (new BigInteger(1, tsBytes)).longValue();
+        this.extraData = rlpHeader.get(12).copyBytes();
+        this.mixHash = rlpHeader.get(13).copyBytes();
+        this.nonce = rlpHeader.get(14).copyBytes();
+    }
 
-        this.extraData = rlpHeader.get(12).getRLPData();
-        this.mixHash = rlpHeader.get(13).getRLPData();
-        this.nonce = rlpHeader.get(14).getRLPData();
+    public BlockHeader(RLPList rlpHeader) {
+        this(RLPView.wrap(rlpHeader.getRLPData()));
     }
 
     public BlockHeader(byte[] parentHash, byte[] unclesHash, byte[] coinbase,
@@ -270,49 +270,46 @@ public class BlockHeader {
     }
 
     public byte[] getEncoded(boolean withNonce) {
-        byte[] parentHash = RLP.encodeElement(this.parentHash);
-
-        byte[] unclesHash = RLP.encodeElement(this.unclesHash);
-        byte[] coinbase = RLP.encodeElement(this.coinbase);
-
-        byte[] stateRoot = RLP.encodeElement(this.stateRoot);
+        RLPWriter writer = new RLPWriter(withNonce ? 544 : 512);
+        writeEncoded(writer, withNonce);
+        return writer.toByteArray();
+    }
 
+    /**
+     * Writes the header RLP directly to the writer (e.g. as a part of an enclosing block or message)
+     */
+    public void writeEncoded(RLPWriter writer, boolean withNonce) {
         if (txTrieRoot == null) this.txTrieRoot = EMPTY_TRIE_HASH;
-        byte[] txTrieRoot = RLP.encodeElement(this.txTrieRoot);
-
         if (receiptTrieRoot == null) this.receiptTrieRoot = EMPTY_TRIE_HASH;
-        byte[] receiptTrieRoot = RLP.encodeElement(this.receiptTrieRoot);
 
-        byte[] logsBloom = RLP.encodeElement(this.logsBloom);
-        byte[] difficulty = RLP.encodeBigInteger(new BigInteger(1, this.difficulty));
-        byte[] number = RLP.encodeBigInteger(BigInteger.valueOf(this.number));
-        byte[] gasLimit = RLP.encodeElement(this.gasLimit);
-        byte[] gasUsed = RLP.encodeBigInteger(BigInteger.valueOf(this.gasUsed));
-        byte[] timestamp = RLP.encodeBigInteger(BigInteger.valueOf(this.timestamp));
-
-        byte[] extraData = RLP.encodeElement(this.extraData);
+        writer.startList()
+                .writeElement(this.parentHash)
+                .writeElement(this.unclesHash)
+                .writeElement(this.coinbase)
+                .writeElement(this.stateRoot)
+                .writeElement(this.txTrieRoot)
+                .writeElement(this.receiptTrieRoot)
+                .writeElement(this.logsBloom)
+                .writeBigInteger(new BigInteger(1, this.difficulty))
+                .writeLong(this.number)
+                .writeElement(this.gasLimit)
+                .writeLong(this.gasUsed)
+                .writeLong(this.timestamp)
+                .writeElement(this.extraData);
         if (withNonce) {
-            byte[] mixHash = RLP.encodeElement(this.mixHash);
-            byte[] nonce = RLP.encodeElement(this.nonce);
-            return RLP.encodeList(parentHash, unclesHash, coinbase,
-                    stateRoot, txTrieRoot, receiptTrieRoot, logsBloom, difficulty, number,
-                    gasLimit, gasUsed, timestamp, extraData, mixHash, nonce);
-        } else {
-            return RLP.encodeList(parentHash, unclesHash, coinbase,
-                    stateRoot, txTrieRoot, receiptTrieRoot, logsBloom, difficulty, number,
-                    gasLimit, gasUsed, timestamp, extraData);
+            writer.writeElement(this.mixHash)
+                    .writeElement(this.nonce);
         }
+        writer.endList();
     }
 
     public byte[] getUnclesEncoded(List<BlockHeader> uncleList) {
-
-        byte[][] unclesEncoded = new byte[uncleList.size()][];
-        int i = 0;
+        RLPWriter writer = new RLPWriter(uncleList.size() * 544 + 8);
+        writer.startList();
         for (BlockHeader uncle : uncleList) {
-            unclesEncoded[i] = uncle.getEncoded();
-            ++i;
+            uncle.writeEncoded(writer, true);
         }
-        return RLP.encodeList(unclesEncoded);
+        return writer.endList().toByteArray();
     }
 
     public byte[] getPowBoundary() {
@@ -11,6 +11,8 @@ public interface Blockchain {
 
     ImportResult tryToConnect(Block block);
 
+    List<ImportResult> tryToConnectBatch(List<Block> blocks);
+
     void storeBlock(Block block, List<TransactionReceipt> receipts);
 
     Block getBlockByNumber(long blockNr);
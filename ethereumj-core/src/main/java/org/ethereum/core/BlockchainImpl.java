@@ -1,12 +1,12 @@
 package org.ethereum.core;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.ethereum.config.CommonConfig;
 import org.ethereum.config.SystemProperties;
 import org.ethereum.crypto.HashUtil;
 import org.ethereum.datasource.inmem.HashMapDB;
 import org.ethereum.db.*;
-import org.ethereum.trie.Trie;
-import org.ethereum.trie.TrieImpl;
+import org.ethereum.trie.IndexedTrieBuilder;
 import org.ethereum.listener.EthereumListener;
 import org.ethereum.listener.EthereumListenerAdapter;
 import org.ethereum.manager.AdminInfo;
@@ -31,6 +31,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,6 +39,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.lang.Math.max;
 import static java.lang.Runtime.getRuntime;
@@ -94,6 +100,10 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     private static final int MAGIC_REWARD_OFFSET = 8;
     public static final byte[] EMPTY_LIST_HASH = sha3(RLP.encodeList(new byte[0]));
 
+    // calculates intermediate state roots while the next transaction of the block is executed
+    private final ExecutorService postTxStateExecutor = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("post-tx-state-%d").build());
+
     @Autowired
     private Repository repository;
 
@@ -134,12 +144,18 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     @Autowired
     PruneManager pruneManager;
 
+    @Autowired
+    BlockFreezer blockFreezer;
+
     @Autowired
     StateSource stateDataSource;
 
     @Autowired
     DbFlushManager dbFlushManager;
 
+    @Autowired(required = false)
+    StatePrefetcher statePrefetcher;
+
     SystemProperties config = SystemProperties.getDefault();
 
     private List<Chain> altChains = new ArrayList<>();
@@ -150,6 +166,11 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     public boolean byTest = false;
     private boolean fork = false;
 
+    // set while a block of the batch is imported, see tryToConnectBatch()
+    private boolean batchImport = false;
+    // number of the batch blocks imported since the last batch commit
+    private int batchImported = 0;
+
     private byte[] minerCoinbase;
     private byte[] minerExtraData;
     private BigInteger BLOCK_REWARD;
@@ -198,6 +219,11 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         return this;
     }
 
+    public BlockchainImpl withStatePrefetcher(StatePrefetcher statePrefetcher) {
+        this.statePrefetcher = statePrefetcher;
+        return this;
+    }
+
     public BlockchainImpl withSyncManager(SyncManager syncManager) {
         this.syncManager = syncManager;
         return this;
@@ -246,9 +272,9 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         } else {
             // pick up the receipt from the block on the main chain
             for (TransactionInfo info : infos) {
-                Block block = blockStore.getBlockByHash(info.blockHash);
-                Block mainBlock = blockStore.getChainBlockByNumber(block.getNumber());
-                if (FastByteComparisons.equal(info.blockHash, mainBlock.getHash())) {
+                BlockHeader header = blockStore.getHeaderByHash(info.blockHash);
+                byte[] mainHash = blockStore.getBlockHashByNumber(header.getNumber());
+                if (FastByteComparisons.equal(info.blockHash, mainHash)) {
                     txInfo = info;
                     break;
                 }
@@ -301,13 +327,12 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
 
     public static byte[] calcTxTrie(List<Transaction> transactions) {
 
-        Trie txsState = new TrieImpl();
-
         if (transactions == null || transactions.isEmpty())
             return HashUtil.EMPTY_TRIE_HASH;
 
-        for (int i = 0; i < transactions.size(); i++) {
-            txsState.put(RLP.encodeInt(i), transactions.get(i).getEncoded());
+        IndexedTrieBuilder txsState = new IndexedTrieBuilder();
+        for (Transaction tx : transactions) {
+            txsState.add(tx.getEncoded());
         }
         return txsState.getRootHash();
     }
@@ -453,6 +478,53 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         return ret;
     }
 
+    /**
+     * Imports the blocks the same way as {@link #tryToConnect(Block)} does
+     * but the consecutive blocks on top of the best block are imported as a batch:
+     * they are executed against the same repository instance which keeps its caches warm,
+     * the db flush and the freezing are done once per batch.
+     * Listeners are notified on each block as usual
+     *
+     * @return import results in the order of the blocks
+     */
+    public synchronized List<ImportResult> tryToConnectBatch(List<Block> blocks) {
+        List<ImportResult> ret = new ArrayList<>(blocks.size());
+        try {
+            for (Block block : blocks) {
+                boolean batch = blocks.size() > 1 && bestBlock.isParentOf(block);
+                if (!batch) {
+                    // forks and other cases are imported the regular way
+                    commitBatch();
+                }
+                batchImport = batch;
+                try {
+                    ImportResult result = tryToConnect(block);
+                    if (batch && result == IMPORTED_BEST) batchImported++;
+                    ret.add(result);
+                } finally {
+                    batchImport = false;
+                }
+            }
+        } finally {
+            commitBatch();
+        }
+        return ret;
+    }
+
+    private void commitBatch() {
+        if (batchImported == 0) return;
+
+        repository = repository.getSnapshotTo(bestBlock.getStateRoot());
+        if (blockFreezer != null) {
+            blockFreezer.blockCommitted(bestBlock.getHeader());
+        }
+        if (!byTest) {
+            dbFlushManager.commit(batchImported);
+        }
+        logger.debug("Batch of {} blocks committed", batchImported);
+        batchImported = 0;
+    }
+
     public synchronized Block createNewBlock(Block parent, List<Transaction> txs, List<BlockHeader> uncles) {
         long time = System.currentTimeMillis() / 1000 + 10;
         // adjust time to parent block this may happen due to system clocks difference
@@ -488,7 +560,8 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
                 calcDifficulty(config.getBlockchainConfig(), parent.getHeader())));
 
         Repository track = repository.getSnapshotTo(parent.getStateRoot());
-        BlockSummary summary = applyBlock(track, block);
+        IndexedTrieBuilder receiptsTrie = new IndexedTrieBuilder();
+        BlockSummary summary = applyBlock(track, block, receiptsTrie);
         List<TransactionReceipt> receipts = summary.getReceipts();
         block.setStateRoot(track.getRoot());
 
@@ -498,7 +571,7 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         }
         block.getHeader().setLogsBloom(logBloom.getData());
         block.getHeader().setGasUsed(receipts.size() > 0 ? receipts.get(receipts.size() - 1).getCumulativeGasLong() : 0);
-        block.getHeader().setReceiptsRoot(calcReceiptsTrie(receipts));
+        block.getHeader().setReceiptsRoot(receiptsTrie.getRootHash());
 
         return block;
     }
@@ -537,12 +610,13 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
             AdvancedDeviceUtils.adjustDetailedTracing(config, block.getNumber());
         }
 
-        BlockSummary summary = processBlock(repo, block);
+        IndexedTrieBuilder receiptsTrie = new IndexedTrieBuilder();
+        BlockSummary summary = processBlock(repo, block, receiptsTrie);
         List<TransactionReceipt> receipts = summary.getReceipts();
 
         // Sanity checks
         String receiptHash = Hex.toHexString(block.getReceiptsRoot());
-        String receiptListHash = Hex.toHexString(calcReceiptsTrie(receipts));
+        String receiptListHash = Hex.toHexString(receiptsTrie.getRootHash());
 
         if (!receiptHash.equals(receiptListHash)) {
             logger.warn("Block's given Receipt Hash doesn't match: {} != {}", receiptHash, receiptListHash);
@@ -596,7 +670,9 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
 
         if (!byTest) {
             repository.commit();
-            dbFlushManager.commit();
+            if (!batchImport) {
+                dbFlushManager.commit();
+            }
         }
 
         return summary;
@@ -621,13 +697,13 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     }
 
     public static byte[] calcReceiptsTrie(List<TransactionReceipt> receipts) {
-        Trie receiptsTrie = new TrieImpl();
 
         if (receipts == null || receipts.isEmpty())
             return HashUtil.EMPTY_TRIE_HASH;
 
-        for (int i = 0; i < receipts.size(); i++) {
-            receiptsTrie.put(RLP.encodeInt(i), receipts.get(i).getReceiptTrieEncoded());
+        IndexedTrieBuilder receiptsTrie = new IndexedTrieBuilder();
+        for (TransactionReceipt receipt : receipts) {
+            receiptsTrie.add(receipt.getReceiptTrieEncoded());
         }
         return receiptsTrie.getRootHash();
     }
@@ -703,6 +779,7 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
 
                 Map<ByteArrayWrapper, BigInteger> curNonce = new HashMap<>();
 
+                Transaction.recoverSenders(txs);
                 for (Transaction tx : txs) {
                     byte[] txSender = tx.getSender();
                     ByteArrayWrapper key = new ByteArrayWrapper(txSender);
@@ -766,8 +843,7 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
                 return false;
             }
 
-            Block uncleParent = blockStore.getBlockByHash(uncle.getParentHash());
-            if (!ancestors.contains(new ByteArrayWrapper(uncleParent.getHash()))) {
+            if (!ancestors.contains(new ByteArrayWrapper(uncle.getParentHash()))) {
                 logger.warn("Uncle has no common parent: " + Hex.toHexString(uncle.getHash()));
                 return false;
             }
@@ -780,13 +856,16 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     public static Set<ByteArrayWrapper> getAncestors(BlockStore blockStore, Block testedBlock, int limitNum, boolean isParentBlock) {
         Set<ByteArrayWrapper> ret = new HashSet<>();
         limitNum = (int) max(0, testedBlock.getNumber() - limitNum);
-        Block it = testedBlock;
+        byte[] hash = testedBlock.getHash();
+        BlockHeader it = testedBlock.getHeader();
         if (!isParentBlock) {
-            it = blockStore.getBlockByHash(it.getParentHash());
+            hash = it.getParentHash();
+            it = blockStore.getHeaderByHash(hash);
         }
         while(it != null && it.getNumber() >= limitNum) {
-            ret.add(new ByteArrayWrapper(it.getHash()));
-            it = blockStore.getBlockByHash(it.getParentHash());
+            ret.add(new ByteArrayWrapper(hash));
+            hash = it.getParentHash();
+            it = blockStore.getHeaderByHash(hash);
         }
         return ret;
     }
@@ -807,20 +886,37 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         return ret;
     }
 
-    private BlockSummary processBlock(Repository track, Block block) {
+    private BlockSummary processBlock(Repository track, Block block, IndexedTrieBuilder receiptsTrie) {
 
         if (!block.isGenesis() && !config.blockChainOnly()) {
-            return applyBlock(track, block);
+            return applyBlock(track, block, receiptsTrie);
         }
         else {
             return new BlockSummary(block, new HashMap<byte[], BigInteger>(), new ArrayList<TransactionReceipt>(), new ArrayList<TransactionExecutionSummary>());
         }
     }
 
-    private BlockSummary applyBlock(Repository track, Block block) {
+    /**
+     * Executes the block transactions on top of the track.
+     *
+     * Each receipt has to carry the state root after its transaction, which requires
+     * hashing of all the tries modified by the transaction. That hashing is done in the background
+     * while the next transaction is executed: the next transaction only reads the track
+     * (the track caches are thread-safe) until it's committed, so the previous root
+     * computation is awaited right before the commit.
+     * Completed receipts are appended to the receiptsTrie as they become available
+     */
+    private BlockSummary applyBlock(final Repository track, Block block, IndexedTrieBuilder receiptsTrie) {
 
         logger.debug("applyBlock: block: [{}] tx.list: [{}]", block.getNumber(), block.getTransactionsList().size());
 
+        // the prefetcher learns from the state accessed by transactions which is recorded by the RepositoryRoot
+        RepositoryRoot accessRecorder = statePrefetcher != null && track instanceof RepositoryRoot ?
+                (RepositoryRoot) track : null;
+        if (accessRecorder != null) {
+            statePrefetcher.prefetch(block, track.getRoot());
+        }
+
         config.getBlockchainConfig().getConfigForBlock(block.getNumber()).hardForkTransfers(block, track);
 
         long saveTime = System.nanoTime();
@@ -828,6 +924,7 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         long totalGasUsed = 0;
         List<TransactionReceipt> receipts = new ArrayList<>();
         List<TransactionExecutionSummary> summaries = new ArrayList<>();
+        Future<byte[]> postTxState = null;
 
         for (Transaction tx : block.getTransactionsList()) {
             stateLogger.debug("apply block: [{}] tx: [{}] ", block.getNumber(), i);
@@ -836,34 +933,40 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
             TransactionExecutor executor = commonConfig.transactionExecutor(tx, block.getCoinbase(),
                     txTrack, blockStore, programInvokeFactory, block, listener, totalGasUsed);
 
+            if (accessRecorder != null) accessRecorder.startAccessRecording();
             executor.init();
             executor.execute();
             executor.go();
             TransactionExecutionSummary summary = executor.finalization();
+            if (accessRecorder != null) {
+                statePrefetcher.learn(tx.getReceiveAddress(), accessRecorder.stopAccessRecording());
+            }
 
             totalGasUsed += executor.getGasUsed();
 
+            if (postTxState != null) {
+                completeReceipt(block, receipts, postTxState, receiptsTrie);
+            }
             txTrack.commit();
-            TransactionReceipt receipt = executor.getReceipt();
-            receipt.setPostTxState(track.getRoot());
-
-            stateLogger.info("block: [{}] executed tx: [{}] \n  state: [{}]", block.getNumber(), i,
-                    Hex.toHexString(track.getRoot()));
-
-            stateLogger.info("[{}] ", receipt.toString());
-
-            if (stateLogger.isInfoEnabled())
-                stateLogger.info("tx[{}].receipt: [{}] ", i, Hex.toHexString(receipt.getEncoded()));
+            postTxState = postTxStateExecutor.submit(new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return track.getRoot();
+                }
+            });
 
             // TODO
 //            if (block.getNumber() >= config.traceStartBlock())
 //                repository.dumpState(block, totalGasUsed, i++, tx.getHash());
 
-            receipts.add(receipt);
+            receipts.add(executor.getReceipt());
             if (summary != null) {
                 summaries.add(summary);
             }
         }
+        if (postTxState != null) {
+            completeReceipt(block, receipts, postTxState, receiptsTrie);
+        }
 
         Map<byte[], BigInteger> rewards = addReward(track, block, summaries);
 
@@ -885,6 +988,31 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         return new BlockSummary(block, rewards, receipts, summaries);
     }
 
+    private void completeReceipt(Block block, List<TransactionReceipt> receipts, Future<byte[]> postTxState,
+                                 IndexedTrieBuilder receiptsTrie) {
+        byte[] stateRoot;
+        try {
+            stateRoot = postTxState.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error calculating post tx state", e.getCause());
+        }
+
+        TransactionReceipt receipt = receipts.get(receipts.size() - 1);
+        receipt.setPostTxState(stateRoot);
+        receiptsTrie.add(receipt.getReceiptTrieEncoded());
+
+        stateLogger.info("block: [{}] executed tx: [{}] \n  state: [{}]", block.getNumber(), receipts.size(),
+                Hex.toHexString(stateRoot));
+
+        stateLogger.info("[{}] ", receipt.toString());
+
+        if (stateLogger.isInfoEnabled())
+            stateLogger.info("tx[{}].receipt: [{}] ", receipts.size(), Hex.toHexString(receipt.getEncoded()));
+    }
+
     /**
      * Add reward to block- and every uncle coinbase
      * assuming the entire block is valid.
@@ -940,6 +1068,10 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
             pruneManager.blockCommitted(block.getHeader());
         }
 
+        if (blockFreezer != null && !batchImport) {
+            blockFreezer.blockCommitted(block.getHeader());
+        }
+
         logger.debug("Block saved: number: {}, hash: {}, TD: {}",
                 block.getNumber(), block.getShortHash(), totalDifficulty);
 
@@ -974,6 +1106,8 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     @Override
     public void setBestBlock(Block block) {
         bestBlock = block;
+        // the batch block is imported on top of the repository which is already at its state
+        if (batchImport) return;
         repository = repository.getSnapshotTo(block.getStateRoot());
     }
 
@@ -986,7 +1120,11 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
 
     @Override
     public synchronized void close() {
+        postTxStateExecutor.shutdown();
         blockStore.close();
+        if (blockFreezer != null) {
+            blockFreezer.close();
+        }
     }
 
     @Override
@@ -1111,28 +1249,28 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
     public List<BlockHeader> getListOfHeadersStartFrom(BlockIdentifier identifier, int skip, int limit, boolean reverse) {
 
         // Identifying block we'll move from
-        Block startBlock;
+        BlockHeader startHeader;
         if (identifier.getHash() != null) {
-            startBlock = blockStore.getBlockByHash(identifier.getHash());
+            startHeader = blockStore.getHeaderByHash(identifier.getHash());
         } else {
-            startBlock = blockStore.getChainBlockByNumber(identifier.getNumber());
+            startHeader = blockStore.getChainHeaderByNumber(identifier.getNumber());
         }
 
         // If nothing found or provided hash is not on main chain, return empty array
-        if (startBlock == null) {
+        if (startHeader == null) {
             return emptyList();
         }
         if (identifier.getHash() != null) {
-            Block mainChainBlock = blockStore.getChainBlockByNumber(startBlock.getNumber());
-            if (!startBlock.equals(mainChainBlock)) return emptyList();
+            byte[] mainChainHash = blockStore.getBlockHashByNumber(startHeader.getNumber());
+            if (!Arrays.equals(identifier.getHash(), mainChainHash)) return emptyList();
         }
 
         List<BlockHeader> headers;
         if (skip == 0) {
             long bestNumber = blockStore.getBestBlock().getNumber();
-            headers = getContinuousHeaders(bestNumber, startBlock.getNumber(), limit, reverse);
+            headers = getContinuousHeaders(bestNumber, startHeader.getNumber(), limit, reverse);
         } else {
-            headers = getGapedHeaders(startBlock, skip, limit, reverse);
+            headers = getGapedHeaders(startHeader, skip, limit, reverse);
         }
 
         return headers;
@@ -1167,27 +1305,27 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
 
     /**
      * Gets blocks from main chain with gaps between
-     * @param startBlock        Block to start from (included in return)
+     * @param startHeader       Header of the block to start from (included in return)
      * @param skip              Number of blocks skipped between every header in return
      * @param limit             Maximum number of headers in return
      * @param reverse           Order of search
      * @return  headers found by query or empty list if none
      */
-    private List<BlockHeader> getGapedHeaders(Block startBlock, int skip, int limit, boolean reverse) {
+    private List<BlockHeader> getGapedHeaders(BlockHeader startHeader, int skip, int limit, boolean reverse) {
         List<BlockHeader> headers = new ArrayList<>();
-        headers.add(startBlock.getHeader());
+        headers.add(startHeader);
         int offset = skip + 1;
         if (reverse) offset = -offset;
-        long currentNumber = startBlock.getNumber();
+        long currentNumber = startHeader.getNumber();
         boolean finished = false;
 
         while(!finished && headers.size() < limit) {
             currentNumber += offset;
-            Block nextBlock = blockStore.getChainBlockByNumber(currentNumber);
-            if (nextBlock == null) {
+            BlockHeader nextHeader = blockStore.getChainHeaderByNumber(currentNumber);
+            if (nextHeader == null) {
                 finished = true;
             } else {
-                headers.add(nextBlock.getHeader());
+                headers.add(nextHeader);
             }
         }
 
@@ -1216,13 +1354,7 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
             startNumber = blockNumber + qty - 1;
         }
 
-        Block block = blockStore.getChainBlockByNumber(startNumber);
-
-        if (block == null) {
-            return null;
-        }
-
-        return block.getHash();
+        return blockStore.getBlockHashByNumber(startNumber);
     }
 
     /**
@@ -1236,9 +1368,9 @@ public class BlockchainImpl implements Blockchain, org.ethereum.facade.Blockchai
         List<byte[]> bodies = new ArrayList<>(hashes.size());
 
         for (byte[] hash : hashes) {
-            Block block = blockStore.getBlockByHash(hash);
-            if (block == null) break;
-            bodies.add(block.getEncodedBody());
+            byte[] body = blockStore.getBlockBodyEncoded(hash);
+            if (body == null) break;
+            bodies.add(body);
         }
 
         return bodies;
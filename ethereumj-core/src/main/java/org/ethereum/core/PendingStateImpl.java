@@ -140,19 +140,23 @@ public class PendingStateImpl implements PendingState {
 
     @Override
     public synchronized List<Transaction> addPendingTransactions(List<Transaction> transactions) {
-        int unknownTx = 0;
-        List<Transaction> newPending = new ArrayList<>();
+        List<Transaction> unknownTxs = new ArrayList<>();
         for (Transaction tx : transactions) {
             if (addNewTxIfNotExist(tx)) {
-                unknownTx++;
-                if (addPendingTransactionImpl(tx)) {
-                    newPending.add(tx);
-                }
+                unknownTxs.add(tx);
+            }
+        }
+
+        Transaction.recoverSenders(unknownTxs);
+        List<Transaction> newPending = new ArrayList<>();
+        for (Transaction tx : unknownTxs) {
+            if (addPendingTransactionImpl(tx)) {
+                newPending.add(tx);
             }
         }
 
         logger.debug("Wire transaction list added: total: {}, new: {}, valid (added to pending): {} (current #of known txs: {})",
-                transactions.size(), unknownTx, newPending, receivedTxs.size());
+                transactions.size(), unknownTxs.size(), newPending, receivedTxs.size());
 
         if (!newPending.isEmpty()) {
             listener.onPendingTransactionsReceived(newPending);
@@ -88,6 +88,7 @@ public class PendingTransaction {
 
     /**
      *  Two pending transaction are equal if equal their sender + nonce
+     *  (nonces are compared by value since zero nonce may be either empty or 0x00 after decoding)
      */
     @Override
     public boolean equals(Object o) {
@@ -97,7 +98,8 @@ public class PendingTransaction {
         PendingTransaction that = (PendingTransaction) o;
 
         return Arrays.equals(getSender(), that.getSender()) &&
-                Arrays.equals(transaction.getNonce(), that.getTransaction().getNonce());
+                ByteUtil.bytesToBigInteger(transaction.getNonce())
+                        .equals(ByteUtil.bytesToBigInteger(that.getTransaction().getNonce()));
     }
 
     @Override
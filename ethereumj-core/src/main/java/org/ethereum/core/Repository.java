@@ -7,6 +7,7 @@ import org.ethereum.vm.DataWord;
 import java.math.BigInteger;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -216,4 +217,21 @@ public interface Repository {
      * Adds raw Node data in state DS
      */
     void addRawNode(byte[] key, byte[] value);
+
+    /**
+     * Collects the Merkle proof of the account in the state trie
+     *
+     * @param addr account address
+     * @return RLP encoded trie nodes starting from the state root
+     */
+    List<byte[]> getAccountProof(byte[] addr);
+
+    /**
+     * Collects the Merkle proof of the storage entry in the account storage trie
+     *
+     * @param addr contract address
+     * @param key storage key
+     * @return RLP encoded trie nodes starting from the account storage root
+     */
+    List<byte[]> getStorageProof(byte[] addr, DataWord key);
 }
@@ -5,12 +5,13 @@ import org.ethereum.crypto.ECKey;
 import org.ethereum.crypto.ECKey.ECDSASignature;
 import org.ethereum.crypto.ECKey.MissingPrivateKeyException;
 import org.ethereum.crypto.HashUtil;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.util.ByteUtil;
 import org.ethereum.util.RLP;
-import org.ethereum.util.RLPElement;
-import org.ethereum.util.RLPItem;
-import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPView;
+import org.ethereum.util.RLPWriter;
 
+import org.apache.commons.collections4.map.LRUMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.BigIntegers;
@@ -18,7 +19,12 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
 import java.security.SignatureException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import static org.apache.commons.lang3.ArrayUtils.isEmpty;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
@@ -41,6 +47,16 @@ public class Transaction {
     public static final int HASH_LENGTH = 32;
     public static final int ADDRESS_LENGTH = 20;
 
+    private static final int SENDERS_CACHE_SIZE = 32768;
+
+    /**
+     * Recovered senders by the tx hash (which covers the signature), shared by all instances
+     * since the same transaction is decoded several times: when received from different peers,
+     * when returned to the pending state on reorg, when loaded from the DB
+     */
+    private static final Map<ByteArrayWrapper, byte[]> sendersCache =
+            Collections.synchronizedMap(new LRUMap<ByteArrayWrapper, byte[]>(SENDERS_CACHE_SIZE));
+
     /* SHA3 hash of the RLP encoded transaction */
     private byte[] hash;
 
@@ -164,30 +180,29 @@ public class Transaction {
 
     public void rlpParse() {
         try {
-            RLPList decodedTxList = RLP.decode2(rlpEncoded);
-            RLPList transaction = (RLPList) decodedTxList.get(0);
+            RLPView transaction = RLPView.wrap(rlpEncoded);
 
             // Basic verification
             if (transaction.size() > 9 ) throw new RuntimeException("Too many RLP elements");
-            for (RLPElement rlpElement : transaction) {
-                if (!(rlpElement instanceof RLPItem))
+            for (int i = 0; i < transaction.size(); i++) {
+                if (transaction.get(i).isList())
                     throw new RuntimeException("Transaction RLP elements shouldn't be lists");
             }
 
-            this.nonce = transaction.get(0).getRLPData();
-            this.gasPrice = transaction.get(1).getRLPData();
-            this.gasLimit = transaction.get(2).getRLPData();
-            this.receiveAddress = transaction.get(3).getRLPData();
-            this.value = transaction.get(4).getRLPData();
-            this.data = transaction.get(5).getRLPData();
+            this.nonce = transaction.get(0).copyBytes();
+            this.gasPrice = transaction.get(1).copyBytes();
+            this.gasLimit = transaction.get(2).copyBytes();
+            this.receiveAddress = transaction.get(3).copyBytes();
+            this.value = transaction.get(4).copyBytes();
+            this.data = transaction.get(5).copyBytes();
             // only parse signature in case tx is signed
-            if (transaction.get(6).getRLPData() != null) {
-                byte[] vData =  transaction.get(6).getRLPData();
+            if (!transaction.get(6).isEmpty()) {
+                byte[] vData =  transaction.get(6).copyBytes();
                 if (vData.length != 1 ) throw new RuntimeException("Signature V is invalid");
                 byte v = vData[0];
                 this.chainId = extractChainIdFromV(v);
-                byte[] r = transaction.get(7).getRLPData();
-                byte[] s = transaction.get(8).getRLPData();
+                byte[] r = transaction.get(7).copyBytes();
+                byte[] s = transaction.get(8).copyBytes();
                 this.signature = ECDSASignature.fromComponents(r, s, getRealV(v));
             } else {
                 logger.debug("RLP encoded tx is not signed!");
@@ -321,7 +336,14 @@ public class Transaction {
     public synchronized byte[] getSender() {
         try {
             if (sendAddress == null) {
-                sendAddress = ECKey.signatureToAddress(getRawHash(), getSignature());
+                ByteArrayWrapper key = new ByteArrayWrapper(getHash());
+                byte[] cached = sendersCache.get(key);
+                if (cached != null) {
+                    sendAddress = cached;
+                } else {
+                    sendAddress = ECKey.signatureToAddress(getRawHash(), getSignature());
+                    sendersCache.put(key, sendAddress);
+                }
             }
             return sendAddress;
         } catch (SignatureException e) {
@@ -330,6 +352,49 @@ public class Transaction {
         return null;
     }
 
+    /**
+     * Recovers the senders of the transactions in one batch which is cheaper
+     * than calling {@link #getSender()} for each of them.
+     * Transactions which senders are already known or can't be recovered are left as is,
+     * the latter fail in the {@link #getSender()} as usual
+     */
+    public static void recoverSenders(Collection<? extends Transaction> txs) {
+        List<Transaction> toRecover = new ArrayList<>();
+        List<byte[]> rawHashes = new ArrayList<>();
+        List<ECDSASignature> signatures = new ArrayList<>();
+        for (Transaction tx : txs) {
+            try {
+                synchronized (tx) {
+                    if (tx.sendAddress != null || tx.getSignature() == null) continue;
+                    byte[] cached = sendersCache.get(new ByteArrayWrapper(tx.getHash()));
+                    if (cached != null) {
+                        tx.sendAddress = cached;
+                        continue;
+                    }
+                }
+                rawHashes.add(tx.getRawHash());
+                signatures.add(tx.getSignature());
+                toRecover.add(tx);
+            } catch (RuntimeException e) {
+                logger.debug("Can't recover sender of malformed transaction", e);
+            }
+        }
+        if (toRecover.isEmpty()) return;
+
+        byte[][] senders = ECKey.signaturesToAddresses(rawHashes.toArray(new byte[rawHashes.size()][]),
+                signatures.toArray(new ECDSASignature[signatures.size()]));
+        for (int i = 0; i < senders.length; i++) {
+            if (senders[i] == null) continue;
+            Transaction tx = toRecover.get(i);
+            synchronized (tx) {
+                if (tx.sendAddress == null) {
+                    tx.sendAddress = senders[i];
+                }
+            }
+            sendersCache.put(new ByteArrayWrapper(tx.getHash()), senders[i]);
+        }
+    }
+
     public Integer getChainId() {
         if (!parsed) rlpParse();
         return chainId == null ? null : (int) chainId;
@@ -345,6 +410,9 @@ public class Transaction {
     public void sign(ECKey key) throws MissingPrivateKeyException {
         this.signature = key.sign(this.getRawHash());
         this.rlpEncoded = null;
+        // the hash covers the signature, the cached senders are looked up by it
+        this.hash = null;
+        this.sendAddress = null;
     }
 
     @Override
@@ -386,31 +454,16 @@ public class Transaction {
         if (!parsed) rlpParse();
         if (rlpRaw != null) return rlpRaw;
 
-        // parse null as 0 for nonce
-        byte[] nonce = null;
-        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
-            nonce = RLP.encodeElement(null);
-        } else {
-            nonce = RLP.encodeElement(this.nonce);
-        }
-        byte[] gasPrice = RLP.encodeElement(this.gasPrice);
-        byte[] gasLimit = RLP.encodeElement(this.gasLimit);
-        byte[] receiveAddress = RLP.encodeElement(this.receiveAddress);
-        byte[] value = RLP.encodeElement(this.value);
-        byte[] data = RLP.encodeElement(this.data);
-
+        RLPWriter writer = new RLPWriter(estimateEncodedSize());
+        writer.startList();
+        writeFields(writer);
         // Since EIP-155 use chainId for v
-        if (chainId == null) {
-            rlpRaw = RLP.encodeList(nonce, gasPrice, gasLimit, receiveAddress,
-                    value, data);
-        } else {
-            byte[] v, r, s;
-            v = RLP.encodeByte(chainId);
-            r = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            s = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            rlpRaw = RLP.encodeList(nonce, gasPrice, gasLimit, receiveAddress,
-                    value, data, v, r, s);
+        if (chainId != null) {
+            writer.writeByte(chainId)
+                    .writeElement(EMPTY_BYTE_ARRAY)
+                    .writeElement(EMPTY_BYTE_ARRAY);
         }
+        rlpRaw = writer.endList().toByteArray();
         return rlpRaw;
     }
 
@@ -418,20 +471,9 @@ public class Transaction {
 
         if (rlpEncoded != null) return rlpEncoded;
 
-        // parse null as 0 for nonce
-        byte[] nonce = null;
-        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
-            nonce = RLP.encodeElement(null);
-        } else {
-            nonce = RLP.encodeElement(this.nonce);
-        }
-        byte[] gasPrice = RLP.encodeElement(this.gasPrice);
-        byte[] gasLimit = RLP.encodeElement(this.gasLimit);
-        byte[] receiveAddress = RLP.encodeElement(this.receiveAddress);
-        byte[] value = RLP.encodeElement(this.value);
-        byte[] data = RLP.encodeElement(this.data);
-
-        byte[] v, r, s;
+        RLPWriter writer = new RLPWriter(estimateEncodedSize());
+        writer.startList();
+        writeFields(writer);
 
         if (signature != null) {
             int encodeV;
@@ -441,24 +483,46 @@ public class Transaction {
                 encodeV = signature.v - LOWER_REAL_V;
                 encodeV += chainId * 2 + CHAIN_ID_INC;
             }
-            v = RLP.encodeByte((byte) encodeV);
-            r = RLP.encodeElement(BigIntegers.asUnsignedByteArray(signature.r));
-            s = RLP.encodeElement(BigIntegers.asUnsignedByteArray(signature.s));
+            writer.writeByte((byte) encodeV)
+                    .writeElement(BigIntegers.asUnsignedByteArray(signature.r))
+                    .writeElement(BigIntegers.asUnsignedByteArray(signature.s));
         } else {
             // Since EIP-155 use chainId for v
-            v = chainId == null ? RLP.encodeElement(EMPTY_BYTE_ARRAY) : RLP.encodeByte(chainId);
-            r = RLP.encodeElement(EMPTY_BYTE_ARRAY);
-            s = RLP.encodeElement(EMPTY_BYTE_ARRAY);
+            if (chainId == null) {
+                writer.writeElement(EMPTY_BYTE_ARRAY);
+            } else {
+                writer.writeByte(chainId);
+            }
+            writer.writeElement(EMPTY_BYTE_ARRAY)
+                    .writeElement(EMPTY_BYTE_ARRAY);
         }
 
-        this.rlpEncoded = RLP.encodeList(nonce, gasPrice, gasLimit,
-                receiveAddress, value, data, v, r, s);
+        this.rlpEncoded = writer.endList().toByteArray();
 
         this.hash = this.getHash();
 
         return rlpEncoded;
     }
 
+    private void writeFields(RLPWriter writer) {
+        // parse null as 0 for nonce
+        if (this.nonce == null || this.nonce.length == 1 && this.nonce[0] == 0) {
+            writer.writeElement(null);
+        } else {
+            writer.writeElement(this.nonce);
+        }
+        writer.writeElement(this.gasPrice)
+                .writeElement(this.gasLimit)
+                .writeElement(this.receiveAddress)
+                .writeElement(this.value)
+                .writeElement(this.data);
+    }
+
+    private int estimateEncodedSize() {
+        // fixed size fields and signature take less than 160 bytes
+        return 160 + (data == null ? 0 : data.length);
+    }
+
     @Override
     public int hashCode() {
 
@@ -40,29 +40,23 @@ public class TransactionReceipt {
 
     public TransactionReceipt(byte[] rlp) {
 
-        RLPList params = RLP.decode2(rlp);
-        RLPList receipt = (RLPList) params.get(0);
-
-        RLPItem postTxStateRLP = (RLPItem) receipt.get(0);
-        RLPItem cumulativeGasRLP = (RLPItem) receipt.get(1);
-        RLPItem bloomRLP = (RLPItem) receipt.get(2);
-        RLPList logs = (RLPList) receipt.get(3);
-        RLPItem gasUsedRLP = (RLPItem) receipt.get(4);
-        RLPItem result = (RLPItem) receipt.get(5);
-
-        postTxState = nullToEmpty(postTxStateRLP.getRLPData());
-        cumulativeGas = cumulativeGasRLP.getRLPData();
-        bloomFilter = new Bloom(bloomRLP.getRLPData());
-        gasUsed = gasUsedRLP.getRLPData();
-        executionResult = (executionResult = result.getRLPData()) == null ? EMPTY_BYTE_ARRAY : executionResult;
+        RLPView receipt = RLPView.wrap(rlp);
+
+        RLPView logs = receipt.get(3);
+
+        postTxState = nullToEmpty(receipt.get(0).copyBytes());
+        cumulativeGas = receipt.get(1).copyBytes();
+        bloomFilter = new Bloom(receipt.get(2).copyBytes());
+        gasUsed = receipt.get(4).copyBytes();
+        executionResult = (executionResult = receipt.get(5).copyBytes()) == null ? EMPTY_BYTE_ARRAY : executionResult;
 
         if (receipt.size() > 6) {
-            byte[] errBytes = receipt.get(6).getRLPData();
+            byte[] errBytes = receipt.get(6).copyBytes();
             error = errBytes != null ? new String(errBytes, StandardCharsets.UTF_8) : "";
         }
 
-        for (RLPElement log : logs) {
-            LogInfo logInfo = new LogInfo(log.getRLPData());
+        for (int i = 0; i < logs.size(); i++) {
+            LogInfo logInfo = new LogInfo(logs.get(i));
             logInfoList.add(logInfo);
         }
 
@@ -155,31 +149,30 @@ public class TransactionReceipt {
     }
 
     public byte[] getEncoded(boolean receiptTrie) {
+        RLPWriter writer = new RLPWriter(512);
+        return writeEncoded(writer, receiptTrie).toByteArray();
+    }
 
-        byte[] postTxStateRLP = RLP.encodeElement(this.postTxState);
-        byte[] cumulativeGasRLP = RLP.encodeElement(this.cumulativeGas);
-        byte[] bloomRLP = RLP.encodeElement(this.bloomFilter.data);
+    public RLPWriter writeEncoded(RLPWriter writer, boolean receiptTrie) {
 
-        final byte[] logInfoListRLP;
+        writer.startList()
+                .writeElement(this.postTxState)
+                .writeElement(this.cumulativeGas)
+                .writeElement(this.bloomFilter.data)
+                .startList();
         if (logInfoList != null) {
-            byte[][] logInfoListE = new byte[logInfoList.size()][];
-
-            int i = 0;
             for (LogInfo logInfo : logInfoList) {
-                logInfoListE[i] = logInfo.getEncoded();
-                ++i;
+                logInfo.writeEncoded(writer);
             }
-            logInfoListRLP = RLP.encodeList(logInfoListE);
-        } else {
-            logInfoListRLP = RLP.encodeList();
         }
+        writer.endList();
 
-        return receiptTrie ?
-                RLP.encodeList(postTxStateRLP, cumulativeGasRLP, bloomRLP, logInfoListRLP):
-                RLP.encodeList(postTxStateRLP, cumulativeGasRLP, bloomRLP, logInfoListRLP,
-                        RLP.encodeElement(gasUsed), RLP.encodeElement(executionResult),
-                        RLP.encodeElement(error.getBytes(StandardCharsets.UTF_8)));
-
+        if (!receiptTrie) {
+            writer.writeElement(gasUsed)
+                    .writeElement(executionResult)
+                    .writeElement(error.getBytes(StandardCharsets.UTF_8));
+        }
+        return writer.endList();
     }
 
     public void setPostTxState(byte[] postTxState) {
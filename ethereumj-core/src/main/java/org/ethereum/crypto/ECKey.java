@@ -38,6 +38,7 @@ import org.spongycastle.asn1.sec.SECNamedCurves;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.asn1.x9.X9IntegerConverter;
 import org.spongycastle.crypto.agreement.ECDHBasicAgreement;
+import org.spongycastle.crypto.ec.CustomNamedCurves;
 import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.engines.AESFastEngine;
 import org.spongycastle.crypto.modes.SICBlockCipher;
@@ -45,7 +46,6 @@ import org.spongycastle.crypto.params.*;
 import org.spongycastle.crypto.signers.ECDSASigner;
 import org.spongycastle.crypto.signers.HMacDSAKCalculator;
 import org.spongycastle.math.ec.ECAlgorithms;
-import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECPoint;
 import org.spongycastle.util.BigIntegers;
 import org.spongycastle.util.encoders.Base64;
@@ -108,6 +108,14 @@ public class ECKey implements Serializable {
      */
     public static final BigInteger HALF_CURVE_ORDER;
 
+    /**
+     * The same secp256k1 curve implemented with the fixed width field arithmetic instead of
+     * the generic BigInteger based one, several times faster on point operations.
+     * Used internally for the public key recovery only since its points can't be mixed
+     * with the {@link #CURVE} points
+     */
+    private static final ECDomainParameters RECOVERY_CURVE;
+
     private static final SecureRandom secureRandom;
     private static final long serialVersionUID = -728224901792295832L;
 
@@ -117,6 +125,8 @@ public class ECKey implements Serializable {
         CURVE = new ECDomainParameters(params.getCurve(), params.getG(), params.getN(), params.getH());
         CURVE_SPEC = new ECParameterSpec(params.getCurve(), params.getG(), params.getN(), params.getH());
         HALF_CURVE_ORDER = params.getN().shiftRight(1);
+        X9ECParameters customParams = CustomNamedCurves.getByName("secp256k1");
+        RECOVERY_CURVE = new ECDomainParameters(customParams.getCurve(), customParams.getG(), customParams.getN(), customParams.getH());
         secureRandom = new SecureRandom();
     }
 
@@ -800,6 +810,13 @@ public class ECKey implements Serializable {
 
     public static byte[] signatureToKeyBytes(byte[] messageHash, ECDSASignature sig) throws SignatureException {
         check(messageHash.length == 32, "messageHash argument has length " + messageHash.length);
+        byte[] key = ECKey.recoverPubBytesFromSignature(recId(sig), sig, messageHash);
+        if (key == null)
+            throw new SignatureException("Could not recover public key from signature");
+        return key;
+    }
+
+    private static int recId(ECDSASignature sig) throws SignatureException {
         int header = sig.v;
         // The header byte: 0x1B = first key with even y, 0x1C = first key with odd y,
         //                  0x1D = second key with even y, 0x1E = second key with odd y
@@ -808,11 +825,7 @@ public class ECKey implements Serializable {
         if (header >= 31) {
             header -= 4;
         }
-        int recId = header - 27;
-        byte[] key = ECKey.recoverPubBytesFromSignature(recId, sig, messageHash);
-        if (key == null)
-            throw new SignatureException("Could not recover public key from signature");
-        return key;
+        return header - 27;
     }
 
     /**
@@ -837,6 +850,43 @@ public class ECKey implements Serializable {
         return computeAddress(signatureToKeyBytes(messageHash, sig));
     }
 
+    /**
+     * Batch version of {@link #signatureToAddress(byte[], ECDSASignature)}.
+     * Recovered points are converted to the affine coordinates all at once which takes
+     * a single field inversion for the whole batch instead of one per signature
+     *
+     * @param messageHashes 32-byte hashes of messages
+     * @param sigs signatures of the corresponding messages
+     * @return 20-byte addresses, an element is null if the key can't be recovered from the corresponding signature
+     */
+    public static byte[][] signaturesToAddresses(byte[][] messageHashes, ECDSASignature[] sigs) {
+        check(messageHashes.length == sigs.length, "messageHashes and sigs lengths differ");
+        ECPoint[] points = new ECPoint[sigs.length];
+        int[] indexes = new int[sigs.length];
+        int recovered = 0;
+        for (int i = 0; i < sigs.length; i++) {
+            try {
+                check(messageHashes[i].length == 32, "messageHash argument has length " + messageHashes[i].length);
+                ECPoint q = recoverPubPoint(recId(sigs[i]), sigs[i], messageHashes[i]);
+                if (q != null && !q.isInfinity()) {
+                    points[recovered] = q;
+                    indexes[recovered++] = i;
+                }
+            } catch (SignatureException | IllegalArgumentException e) {
+                logger.debug("Could not recover public key from signature", e);
+            }
+        }
+
+        points = Arrays.copyOf(points, recovered);
+        RECOVERY_CURVE.getCurve().normalizeAll(points);
+
+        byte[][] ret = new byte[sigs.length][];
+        for (int i = 0; i < recovered; i++) {
+            ret[indexes[i]] = computeAddress(points[i].getEncoded(/* compressed */ false));
+        }
+        return ret;
+    }
+
     /**
      * Compute the key that signed the given signature.
      *
@@ -1044,6 +1094,15 @@ public class ECKey implements Serializable {
      */
     @Nullable
     public static byte[] recoverPubBytesFromSignature(int recId, ECDSASignature sig, byte[] messageHash) {
+        ECPoint q = recoverPubPoint(recId, sig, messageHash);
+        return q == null ? null : q.getEncoded(/* compressed */ false);
+    }
+
+    /**
+     * @return not normalized public key point on the {@link #RECOVERY_CURVE} or null if recovery is not possible
+     */
+    @Nullable
+    private static ECPoint recoverPubPoint(int recId, ECDSASignature sig, byte[] messageHash) {
         check(recId >= 0, "recId must be positive");
         check(sig.r.signum() >= 0, "r must be positive");
         check(sig.s.signum() >= 0, "s must be positive");
@@ -1060,15 +1119,14 @@ public class ECKey implements Serializable {
         //        do another iteration of Step 1.
         //
         // More concisely, what these points mean is to use X as a compressed public key.
-        ECCurve.Fp curve = (ECCurve.Fp) CURVE.getCurve();
-        BigInteger prime = curve.getQ();  // Bouncy Castle is not consistent about the letter it uses for the prime.
+        BigInteger prime = RECOVERY_CURVE.getCurve().getField().getCharacteristic();
         if (x.compareTo(prime) >= 0) {
             // Cannot have point co-ordinates larger than this as everything takes place modulo Q.
             return null;
         }
         // Compressed keys require you to know an extra bit of data about the y-coord as there are two possibilities.
         // So it's encoded in the recId.
-        ECPoint R = decompressKey(x, (recId & 1) == 1);
+        ECPoint R = decompressRecoveryKey(x, (recId & 1) == 1);
         //   1.4. If nR != point at infinity, then do another iteration of Step 1 (callers responsibility).
         if (!R.multiply(n).isInfinity())
             return null;
@@ -1089,8 +1147,8 @@ public class ECKey implements Serializable {
         BigInteger rInv = sig.r.modInverse(n);
         BigInteger srInv = rInv.multiply(sig.s).mod(n);
         BigInteger eInvrInv = rInv.multiply(eInv).mod(n);
-        ECPoint.Fp q = (ECPoint.Fp) ECAlgorithms.sumOfTwoMultiplies(CURVE.getG(), eInvrInv, R, srInv);
-        return q.getEncoded(/* compressed */ false);
+        // the precomputed multiples of G are cached by the curve and reused across the calls
+        return ECAlgorithms.sumOfTwoMultiplies(RECOVERY_CURVE.getG(), eInvrInv, R, srInv);
     }
 
     /**
@@ -1129,17 +1187,19 @@ public class ECKey implements Serializable {
 
 
     /**
-     * Decompress a compressed public key (x co-ord and low-bit of y-coord).
+     * Decompresses the signature R point (x co-ord and low-bit of y-coord) on the {@link #RECOVERY_CURVE}.
+     * The point is multiplied together with that curve's generator during the recovery so it can't
+     * belong to the {@link #CURVE}, and the fixed width field arithmetic makes the recovery faster
      *
      * @param xBN -
      * @param yBit -
      * @return -
      */
-    private static ECPoint decompressKey(BigInteger xBN, boolean yBit) {
+    private static ECPoint decompressRecoveryKey(BigInteger xBN, boolean yBit) {
         X9IntegerConverter x9 = new X9IntegerConverter();
-        byte[] compEnc = x9.integerToBytes(xBN, 1 + x9.getByteLength(CURVE.getCurve()));
+        byte[] compEnc = x9.integerToBytes(xBN, 1 + x9.getByteLength(RECOVERY_CURVE.getCurve()));
         compEnc[0] = (byte) (yBit ? 0x03 : 0x02);
-        return CURVE.getCurve().decodePoint(compEnc);
+        return RECOVERY_CURVE.getCurve().decodePoint(compEnc);
     }
 
     /**
@@ -9,6 +9,7 @@ import org.spongycastle.crypto.digests.RIPEMD160Digest;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Random;
@@ -18,6 +19,25 @@ import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 
 public class HashUtil {
 
+    /**
+     * Keccak digest instances are reused by the thread to not allocate
+     * the internal state and buffers (~500 bytes) on each hash calculation.
+     * The digest is reset after each {@code digest()} call
+     */
+    private static final ThreadLocal<Keccak256> keccak256 = new ThreadLocal<Keccak256>() {
+        @Override
+        protected Keccak256 initialValue() {
+            return new Keccak256();
+        }
+    };
+
+    private static final ThreadLocal<Keccak512> keccak512 = new ThreadLocal<Keccak512>() {
+        @Override
+        protected Keccak512 initialValue() {
+            return new Keccak512();
+        }
+    };
+
     public static final byte[] EMPTY_DATA_HASH = sha3(EMPTY_BYTE_ARRAY);
     public static final byte[] EMPTY_LIST_HASH = sha3(RLP.encodeList());
     public static final byte[] EMPTY_TRIE_HASH = sha3(RLP.encodeElement(EMPTY_BYTE_ARRAY));
@@ -40,14 +60,20 @@ public class HashUtil {
         return sha256digest.digest(input);
     }
 
+    private static Keccak256 keccak256() {
+        Keccak256 digest = keccak256.get();
+        digest.reset(); // in case the previous hashing was interrupted by an exception
+        return digest;
+    }
+
     public static byte[] sha3(byte[] input) {
-        Keccak256 digest =  new Keccak256();
+        Keccak256 digest = keccak256();
         digest.update(input);
         return digest.digest();
     }
 
     public static byte[] sha3(byte[] input1, byte[] input2) {
-        Keccak256 digest =  new Keccak256();
+        Keccak256 digest = keccak256();
         digest.update(input1, 0, input1.length);
         digest.update(input2, 0, input2.length);
         return digest.digest();
@@ -61,13 +87,43 @@ public class HashUtil {
      * @return - keccak hash of the chunk
      */
     public static byte[] sha3(byte[] input, int start, int length) {
-        Keccak256 digest =  new Keccak256();
+        Keccak256 digest = keccak256();
+        digest.update(input, start, length);
+        return digest.digest();
+    }
+
+    /**
+     * hashing chunk of the data without allocations
+     * @param input - data for hash
+     * @param start - start of hashing chunk
+     * @param length - length of hashing chunk
+     * @param output - array to write the 32 bytes keccak hash to
+     * @param outOffset - offset of the hash in the output array
+     */
+    public static void sha3(byte[] input, int start, int length, byte[] output, int outOffset) {
+        if (output.length - outOffset < 32) {
+            throw new IllegalArgumentException("No space for the hash in the output: " + (output.length - outOffset));
+        }
+        Keccak256 digest = keccak256();
         digest.update(input, start, length);
+        digest.digest(output, outOffset, 32);
+    }
+
+    /**
+     * hashing the remaining bytes of the buffer (either heap or direct one) without copying,
+     * the buffer position is advanced to its limit
+     * @param input - data for hash
+     * @return - keccak hash of the data
+     */
+    public static byte[] sha3(ByteBuffer input) {
+        Keccak256 digest = keccak256();
+        digest.update(input);
         return digest.digest();
     }
 
     public static byte[] sha512(byte[] input) {
-        Keccak512 digest =  new Keccak512();
+        Keccak512 digest = keccak512.get();
+        digest.reset();
         digest.update(input);
         return digest.digest();
     }
@@ -2,6 +2,8 @@
 
 package org.ethereum.crypto.cryptohash;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>This interface documents the API for a hash function. This
  * interface somewhat mimics the standard {@code
@@ -80,6 +82,14 @@ public interface Digest {
 	 */
 	void update(byte[] inbuf, int off, int len);
 
+	/**
+	 * Insert the remaining bytes of the buffer. The buffer position
+	 * is advanced to its limit.
+	 *
+	 * @param inbuf   the data buffer (heap or direct)
+	 */
+	void update(ByteBuffer inbuf);
+
 	/**
 	 * Finalize the current hash computation and return the hash value
 	 * in a newly-allocated array. The object is resetted.
@@ -2,6 +2,8 @@
 
 package org.ethereum.crypto.cryptohash;
 
+import java.nio.ByteBuffer;
+
 /**
  * <p>This class is a template which can be used to implement hash
  * functions. It takes care of some of the API, and also provides an
@@ -184,6 +186,29 @@ public abstract class DigestEngine implements Digest {
 		}
 	}
 
+	/** @see org.ethereum.crypto.cryptohash.Digest */
+	public void update(ByteBuffer input)
+	{
+		if (input.hasArray()) {
+			update(input.array(), input.arrayOffset() + input.position(),
+				input.remaining());
+			input.position(input.limit());
+			return;
+		}
+		while (input.hasRemaining()) {
+			int copyLen = blockLen - inputLen;
+			if (copyLen > input.remaining())
+				copyLen = input.remaining();
+			input.get(inputBuf, inputLen, copyLen);
+			inputLen += copyLen;
+			if (inputLen == blockLen) {
+				processBlock(inputBuf);
+				blockCount ++;
+				inputLen = 0;
+			}
+		}
+	}
+
 	/**
 	 * Get the internal block length. This is the length (in
 	 * bytes) of the array which will be passed as parameter to
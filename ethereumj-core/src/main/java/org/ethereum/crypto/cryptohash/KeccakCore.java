@@ -111,411 +111,144 @@ abstract class KeccakCore extends DigestEngine {
 	/** @see org.ethereum.crypto.cryptohash.DigestEngine */
 	protected void processBlock(byte[] data)
 	{
-		/* Input block */
-		for (int i = 0; i < data.length; i += 8)
-			A[i >>> 3] ^= decodeLELong(data, i);
-
-		long t0, t1, t2, t3, t4;
-		long tt0, tt1, tt2, tt3, tt4;
-		long t, kt;
-		long c0, c1, c2, c3, c4, bnn;
-
 		/*
-		 * Unrolling four rounds kills performance big time
-		 * on Intel x86 Core2, in both 32-bit and 64-bit modes
-		 * (less than 1 MB/s instead of 55 MB/s on x86-64).
-		 * Unrolling two rounds appears to be fine.
+		 * The state is kept in local variables for the whole permutation
+		 * so the JIT can hold the lanes in registers instead of reading and
+		 * writing the array on every step. The round body is unrolled over
+		 * the lanes; the 24 rounds are not unrolled as the method would
+		 * exceed the size the JIT is willing to compile.
 		 */
-		for (int j = 0; j < 24; j += 2) {
-
-			tt0 = A[ 1] ^ A[ 6];
-			tt1 = A[11] ^ A[16];
-			tt0 ^= A[21] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 4] ^ A[ 9];
-			tt3 = A[14] ^ A[19];
-			tt0 ^= A[24];
-			tt2 ^= tt3;
-			t0 = tt0 ^ tt2;
-
-			tt0 = A[ 2] ^ A[ 7];
-			tt1 = A[12] ^ A[17];
-			tt0 ^= A[22] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 0] ^ A[ 5];
-			tt3 = A[10] ^ A[15];
-			tt0 ^= A[20];
-			tt2 ^= tt3;
-			t1 = tt0 ^ tt2;
-
-			tt0 = A[ 3] ^ A[ 8];
-			tt1 = A[13] ^ A[18];
-			tt0 ^= A[23] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 1] ^ A[ 6];
-			tt3 = A[11] ^ A[16];
-			tt0 ^= A[21];
-			tt2 ^= tt3;
-			t2 = tt0 ^ tt2;
-
-			tt0 = A[ 4] ^ A[ 9];
-			tt1 = A[14] ^ A[19];
-			tt0 ^= A[24] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 2] ^ A[ 7];
-			tt3 = A[12] ^ A[17];
-			tt0 ^= A[22];
-			tt2 ^= tt3;
-			t3 = tt0 ^ tt2;
+		int lanes = data.length >>> 3;
+		for (int i = 0; i < lanes; i ++)
+			A[i] ^= decodeLELong(data, i << 3);
 
-			tt0 = A[ 0] ^ A[ 5];
-			tt1 = A[10] ^ A[15];
-			tt0 ^= A[20] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 3] ^ A[ 8];
-			tt3 = A[13] ^ A[18];
-			tt0 ^= A[23];
-			tt2 ^= tt3;
-			t4 = tt0 ^ tt2;
+		long a0 = A[0];
+		long a1 = A[1];
+		long a2 = A[2];
+		long a3 = A[3];
+		long a4 = A[4];
+		long a5 = A[5];
+		long a6 = A[6];
+		long a7 = A[7];
+		long a8 = A[8];
+		long a9 = A[9];
+		long a10 = A[10];
+		long a11 = A[11];
+		long a12 = A[12];
+		long a13 = A[13];
+		long a14 = A[14];
+		long a15 = A[15];
+		long a16 = A[16];
+		long a17 = A[17];
+		long a18 = A[18];
+		long a19 = A[19];
+		long a20 = A[20];
+		long a21 = A[21];
+		long a22 = A[22];
+		long a23 = A[23];
+		long a24 = A[24];
+		long c0, c1, c2, c3, c4, d0, d1, d2, d3, d4;
+		long b0, b1, b2, b3, b4, b5, b6, b7, b8, b9, b10, b11, b12,
+			b13, b14, b15, b16, b17, b18, b19, b20, b21, b22, b23, b24;
 
-			A[ 0] = A[ 0] ^ t0;
-			A[ 5] = A[ 5] ^ t0;
-			A[10] = A[10] ^ t0;
-			A[15] = A[15] ^ t0;
-			A[20] = A[20] ^ t0;
-			A[ 1] = A[ 1] ^ t1;
-			A[ 6] = A[ 6] ^ t1;
-			A[11] = A[11] ^ t1;
-			A[16] = A[16] ^ t1;
-			A[21] = A[21] ^ t1;
-			A[ 2] = A[ 2] ^ t2;
-			A[ 7] = A[ 7] ^ t2;
-			A[12] = A[12] ^ t2;
-			A[17] = A[17] ^ t2;
-			A[22] = A[22] ^ t2;
-			A[ 3] = A[ 3] ^ t3;
-			A[ 8] = A[ 8] ^ t3;
-			A[13] = A[13] ^ t3;
-			A[18] = A[18] ^ t3;
-			A[23] = A[23] ^ t3;
-			A[ 4] = A[ 4] ^ t4;
-			A[ 9] = A[ 9] ^ t4;
-			A[14] = A[14] ^ t4;
-			A[19] = A[19] ^ t4;
-			A[24] = A[24] ^ t4;
-			A[ 5] = (A[ 5] << 36) | (A[ 5] >>> (64 - 36));
-			A[10] = (A[10] << 3) | (A[10] >>> (64 - 3));
-			A[15] = (A[15] << 41) | (A[15] >>> (64 - 41));
-			A[20] = (A[20] << 18) | (A[20] >>> (64 - 18));
-			A[ 1] = (A[ 1] << 1) | (A[ 1] >>> (64 - 1));
-			A[ 6] = (A[ 6] << 44) | (A[ 6] >>> (64 - 44));
-			A[11] = (A[11] << 10) | (A[11] >>> (64 - 10));
-			A[16] = (A[16] << 45) | (A[16] >>> (64 - 45));
-			A[21] = (A[21] << 2) | (A[21] >>> (64 - 2));
-			A[ 2] = (A[ 2] << 62) | (A[ 2] >>> (64 - 62));
-			A[ 7] = (A[ 7] << 6) | (A[ 7] >>> (64 - 6));
-			A[12] = (A[12] << 43) | (A[12] >>> (64 - 43));
-			A[17] = (A[17] << 15) | (A[17] >>> (64 - 15));
-			A[22] = (A[22] << 61) | (A[22] >>> (64 - 61));
-			A[ 3] = (A[ 3] << 28) | (A[ 3] >>> (64 - 28));
-			A[ 8] = (A[ 8] << 55) | (A[ 8] >>> (64 - 55));
-			A[13] = (A[13] << 25) | (A[13] >>> (64 - 25));
-			A[18] = (A[18] << 21) | (A[18] >>> (64 - 21));
-			A[23] = (A[23] << 56) | (A[23] >>> (64 - 56));
-			A[ 4] = (A[ 4] << 27) | (A[ 4] >>> (64 - 27));
-			A[ 9] = (A[ 9] << 20) | (A[ 9] >>> (64 - 20));
-			A[14] = (A[14] << 39) | (A[14] >>> (64 - 39));
-			A[19] = (A[19] << 8) | (A[19] >>> (64 - 8));
-			A[24] = (A[24] << 14) | (A[24] >>> (64 - 14));
-			bnn = ~A[12];
-			kt = A[ 6] | A[12];
-			c0 = A[ 0] ^ kt;
-			kt = bnn | A[18];
-			c1 = A[ 6] ^ kt;
-			kt = A[18] & A[24];
-			c2 = A[12] ^ kt;
-			kt = A[24] | A[ 0];
-			c3 = A[18] ^ kt;
-			kt = A[ 0] & A[ 6];
-			c4 = A[24] ^ kt;
-			A[ 0] = c0;
-			A[ 6] = c1;
-			A[12] = c2;
-			A[18] = c3;
-			A[24] = c4;
-			bnn = ~A[22];
-			kt = A[ 9] | A[10];
-			c0 = A[ 3] ^ kt;
-			kt = A[10] & A[16];
-			c1 = A[ 9] ^ kt;
-			kt = A[16] | bnn;
-			c2 = A[10] ^ kt;
-			kt = A[22] | A[ 3];
-			c3 = A[16] ^ kt;
-			kt = A[ 3] & A[ 9];
-			c4 = A[22] ^ kt;
-			A[ 3] = c0;
-			A[ 9] = c1;
-			A[10] = c2;
-			A[16] = c3;
-			A[22] = c4;
-			bnn = ~A[19];
-			kt = A[ 7] | A[13];
-			c0 = A[ 1] ^ kt;
-			kt = A[13] & A[19];
-			c1 = A[ 7] ^ kt;
-			kt = bnn & A[20];
-			c2 = A[13] ^ kt;
-			kt = A[20] | A[ 1];
-			c3 = bnn ^ kt;
-			kt = A[ 1] & A[ 7];
-			c4 = A[20] ^ kt;
-			A[ 1] = c0;
-			A[ 7] = c1;
-			A[13] = c2;
-			A[19] = c3;
-			A[20] = c4;
-			bnn = ~A[17];
-			kt = A[ 5] & A[11];
-			c0 = A[ 4] ^ kt;
-			kt = A[11] | A[17];
-			c1 = A[ 5] ^ kt;
-			kt = bnn | A[23];
-			c2 = A[11] ^ kt;
-			kt = A[23] & A[ 4];
-			c3 = bnn ^ kt;
-			kt = A[ 4] | A[ 5];
-			c4 = A[23] ^ kt;
-			A[ 4] = c0;
-			A[ 5] = c1;
-			A[11] = c2;
-			A[17] = c3;
-			A[23] = c4;
-			bnn = ~A[ 8];
-			kt = bnn & A[14];
-			c0 = A[ 2] ^ kt;
-			kt = A[14] | A[15];
-			c1 = bnn ^ kt;
-			kt = A[15] & A[21];
-			c2 = A[14] ^ kt;
-			kt = A[21] | A[ 2];
-			c3 = A[15] ^ kt;
-			kt = A[ 2] & A[ 8];
-			c4 = A[21] ^ kt;
-			A[ 2] = c0;
-			A[ 8] = c1;
-			A[14] = c2;
-			A[15] = c3;
-			A[21] = c4;
-			A[ 0] = A[ 0] ^ RC[j + 0];
+		for (int r = 0; r < 24; r ++) {
+			/* theta */
+			c0 = a0 ^ a5 ^ a10 ^ a15 ^ a20;
+			c1 = a1 ^ a6 ^ a11 ^ a16 ^ a21;
+			c2 = a2 ^ a7 ^ a12 ^ a17 ^ a22;
+			c3 = a3 ^ a8 ^ a13 ^ a18 ^ a23;
+			c4 = a4 ^ a9 ^ a14 ^ a19 ^ a24;
+			d0 = c4 ^ Long.rotateLeft(c1, 1);
+			d1 = c0 ^ Long.rotateLeft(c2, 1);
+			d2 = c1 ^ Long.rotateLeft(c3, 1);
+			d3 = c2 ^ Long.rotateLeft(c4, 1);
+			d4 = c3 ^ Long.rotateLeft(c0, 1);
+			a0 ^= d0; a1 ^= d1; a2 ^= d2; a3 ^= d3; a4 ^= d4;
+			a5 ^= d0; a6 ^= d1; a7 ^= d2; a8 ^= d3; a9 ^= d4;
+			a10 ^= d0; a11 ^= d1; a12 ^= d2; a13 ^= d3; a14 ^= d4;
+			a15 ^= d0; a16 ^= d1; a17 ^= d2; a18 ^= d3; a19 ^= d4;
+			a20 ^= d0; a21 ^= d1; a22 ^= d2; a23 ^= d3; a24 ^= d4;
 
-			tt0 = A[ 6] ^ A[ 9];
-			tt1 = A[ 7] ^ A[ 5];
-			tt0 ^= A[ 8] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[24] ^ A[22];
-			tt3 = A[20] ^ A[23];
-			tt0 ^= A[21];
-			tt2 ^= tt3;
-			t0 = tt0 ^ tt2;
+			/* rho and pi */
+			b0 = a0;
+			b1 = Long.rotateLeft(a6, 44);
+			b2 = Long.rotateLeft(a12, 43);
+			b3 = Long.rotateLeft(a18, 21);
+			b4 = Long.rotateLeft(a24, 14);
+			b5 = Long.rotateLeft(a3, 28);
+			b6 = Long.rotateLeft(a9, 20);
+			b7 = Long.rotateLeft(a10, 3);
+			b8 = Long.rotateLeft(a16, 45);
+			b9 = Long.rotateLeft(a22, 61);
+			b10 = Long.rotateLeft(a1, 1);
+			b11 = Long.rotateLeft(a7, 6);
+			b12 = Long.rotateLeft(a13, 25);
+			b13 = Long.rotateLeft(a19, 8);
+			b14 = Long.rotateLeft(a20, 18);
+			b15 = Long.rotateLeft(a4, 27);
+			b16 = Long.rotateLeft(a5, 36);
+			b17 = Long.rotateLeft(a11, 10);
+			b18 = Long.rotateLeft(a17, 15);
+			b19 = Long.rotateLeft(a23, 56);
+			b20 = Long.rotateLeft(a2, 62);
+			b21 = Long.rotateLeft(a8, 55);
+			b22 = Long.rotateLeft(a14, 39);
+			b23 = Long.rotateLeft(a15, 41);
+			b24 = Long.rotateLeft(a21, 2);
 
-			tt0 = A[12] ^ A[10];
-			tt1 = A[13] ^ A[11];
-			tt0 ^= A[14] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 0] ^ A[ 3];
-			tt3 = A[ 1] ^ A[ 4];
-			tt0 ^= A[ 2];
-			tt2 ^= tt3;
-			t1 = tt0 ^ tt2;
-
-			tt0 = A[18] ^ A[16];
-			tt1 = A[19] ^ A[17];
-			tt0 ^= A[15] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[ 6] ^ A[ 9];
-			tt3 = A[ 7] ^ A[ 5];
-			tt0 ^= A[ 8];
-			tt2 ^= tt3;
-			t2 = tt0 ^ tt2;
-
-			tt0 = A[24] ^ A[22];
-			tt1 = A[20] ^ A[23];
-			tt0 ^= A[21] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[12] ^ A[10];
-			tt3 = A[13] ^ A[11];
-			tt0 ^= A[14];
-			tt2 ^= tt3;
-			t3 = tt0 ^ tt2;
-
-			tt0 = A[ 0] ^ A[ 3];
-			tt1 = A[ 1] ^ A[ 4];
-			tt0 ^= A[ 2] ^ tt1;
-			tt0 = (tt0 << 1) | (tt0 >>> 63);
-			tt2 = A[18] ^ A[16];
-			tt3 = A[19] ^ A[17];
-			tt0 ^= A[15];
-			tt2 ^= tt3;
-			t4 = tt0 ^ tt2;
-
-			A[ 0] = A[ 0] ^ t0;
-			A[ 3] = A[ 3] ^ t0;
-			A[ 1] = A[ 1] ^ t0;
-			A[ 4] = A[ 4] ^ t0;
-			A[ 2] = A[ 2] ^ t0;
-			A[ 6] = A[ 6] ^ t1;
-			A[ 9] = A[ 9] ^ t1;
-			A[ 7] = A[ 7] ^ t1;
-			A[ 5] = A[ 5] ^ t1;
-			A[ 8] = A[ 8] ^ t1;
-			A[12] = A[12] ^ t2;
-			A[10] = A[10] ^ t2;
-			A[13] = A[13] ^ t2;
-			A[11] = A[11] ^ t2;
-			A[14] = A[14] ^ t2;
-			A[18] = A[18] ^ t3;
-			A[16] = A[16] ^ t3;
-			A[19] = A[19] ^ t3;
-			A[17] = A[17] ^ t3;
-			A[15] = A[15] ^ t3;
-			A[24] = A[24] ^ t4;
-			A[22] = A[22] ^ t4;
-			A[20] = A[20] ^ t4;
-			A[23] = A[23] ^ t4;
-			A[21] = A[21] ^ t4;
-			A[ 3] = (A[ 3] << 36) | (A[ 3] >>> (64 - 36));
-			A[ 1] = (A[ 1] << 3) | (A[ 1] >>> (64 - 3));
-			A[ 4] = (A[ 4] << 41) | (A[ 4] >>> (64 - 41));
-			A[ 2] = (A[ 2] << 18) | (A[ 2] >>> (64 - 18));
-			A[ 6] = (A[ 6] << 1) | (A[ 6] >>> (64 - 1));
-			A[ 9] = (A[ 9] << 44) | (A[ 9] >>> (64 - 44));
-			A[ 7] = (A[ 7] << 10) | (A[ 7] >>> (64 - 10));
-			A[ 5] = (A[ 5] << 45) | (A[ 5] >>> (64 - 45));
-			A[ 8] = (A[ 8] << 2) | (A[ 8] >>> (64 - 2));
-			A[12] = (A[12] << 62) | (A[12] >>> (64 - 62));
-			A[10] = (A[10] << 6) | (A[10] >>> (64 - 6));
-			A[13] = (A[13] << 43) | (A[13] >>> (64 - 43));
-			A[11] = (A[11] << 15) | (A[11] >>> (64 - 15));
-			A[14] = (A[14] << 61) | (A[14] >>> (64 - 61));
-			A[18] = (A[18] << 28) | (A[18] >>> (64 - 28));
-			A[16] = (A[16] << 55) | (A[16] >>> (64 - 55));
-			A[19] = (A[19] << 25) | (A[19] >>> (64 - 25));
-			A[17] = (A[17] << 21) | (A[17] >>> (64 - 21));
-			A[15] = (A[15] << 56) | (A[15] >>> (64 - 56));
-			A[24] = (A[24] << 27) | (A[24] >>> (64 - 27));
-			A[22] = (A[22] << 20) | (A[22] >>> (64 - 20));
-			A[20] = (A[20] << 39) | (A[20] >>> (64 - 39));
-			A[23] = (A[23] << 8) | (A[23] >>> (64 - 8));
-			A[21] = (A[21] << 14) | (A[21] >>> (64 - 14));
-			bnn = ~A[13];
-			kt = A[ 9] | A[13];
-			c0 = A[ 0] ^ kt;
-			kt = bnn | A[17];
-			c1 = A[ 9] ^ kt;
-			kt = A[17] & A[21];
-			c2 = A[13] ^ kt;
-			kt = A[21] | A[ 0];
-			c3 = A[17] ^ kt;
-			kt = A[ 0] & A[ 9];
-			c4 = A[21] ^ kt;
-			A[ 0] = c0;
-			A[ 9] = c1;
-			A[13] = c2;
-			A[17] = c3;
-			A[21] = c4;
-			bnn = ~A[14];
-			kt = A[22] | A[ 1];
-			c0 = A[18] ^ kt;
-			kt = A[ 1] & A[ 5];
-			c1 = A[22] ^ kt;
-			kt = A[ 5] | bnn;
-			c2 = A[ 1] ^ kt;
-			kt = A[14] | A[18];
-			c3 = A[ 5] ^ kt;
-			kt = A[18] & A[22];
-			c4 = A[14] ^ kt;
-			A[18] = c0;
-			A[22] = c1;
-			A[ 1] = c2;
-			A[ 5] = c3;
-			A[14] = c4;
-			bnn = ~A[23];
-			kt = A[10] | A[19];
-			c0 = A[ 6] ^ kt;
-			kt = A[19] & A[23];
-			c1 = A[10] ^ kt;
-			kt = bnn & A[ 2];
-			c2 = A[19] ^ kt;
-			kt = A[ 2] | A[ 6];
-			c3 = bnn ^ kt;
-			kt = A[ 6] & A[10];
-			c4 = A[ 2] ^ kt;
-			A[ 6] = c0;
-			A[10] = c1;
-			A[19] = c2;
-			A[23] = c3;
-			A[ 2] = c4;
-			bnn = ~A[11];
-			kt = A[ 3] & A[ 7];
-			c0 = A[24] ^ kt;
-			kt = A[ 7] | A[11];
-			c1 = A[ 3] ^ kt;
-			kt = bnn | A[15];
-			c2 = A[ 7] ^ kt;
-			kt = A[15] & A[24];
-			c3 = bnn ^ kt;
-			kt = A[24] | A[ 3];
-			c4 = A[15] ^ kt;
-			A[24] = c0;
-			A[ 3] = c1;
-			A[ 7] = c2;
-			A[11] = c3;
-			A[15] = c4;
-			bnn = ~A[16];
-			kt = bnn & A[20];
-			c0 = A[12] ^ kt;
-			kt = A[20] | A[ 4];
-			c1 = bnn ^ kt;
-			kt = A[ 4] & A[ 8];
-			c2 = A[20] ^ kt;
-			kt = A[ 8] | A[12];
-			c3 = A[ 4] ^ kt;
-			kt = A[12] & A[16];
-			c4 = A[ 8] ^ kt;
-			A[12] = c0;
-			A[16] = c1;
-			A[20] = c2;
-			A[ 4] = c3;
-			A[ 8] = c4;
-			A[ 0] = A[ 0] ^ RC[j + 1];
-			t = A[ 5];
-			A[ 5] = A[18];
-			A[18] = A[11];
-			A[11] = A[10];
-			A[10] = A[ 6];
-			A[ 6] = A[22];
-			A[22] = A[20];
-			A[20] = A[12];
-			A[12] = A[19];
-			A[19] = A[15];
-			A[15] = A[24];
-			A[24] = A[ 8];
-			A[ 8] = t;
-			t = A[ 1];
-			A[ 1] = A[ 9];
-			A[ 9] = A[14];
-			A[14] = A[ 2];
-			A[ 2] = A[13];
-			A[13] = A[23];
-			A[23] = A[ 4];
-			A[ 4] = A[21];
-			A[21] = A[16];
-			A[16] = A[ 3];
-			A[ 3] = A[17];
-			A[17] = A[ 7];
-			A[ 7] = t;
+			/* chi and iota */
+			a0 = b0 ^ (~b1 & b2) ^ RC[r];
+			a1 = b1 ^ (~b2 & b3);
+			a2 = b2 ^ (~b3 & b4);
+			a3 = b3 ^ (~b4 & b0);
+			a4 = b4 ^ (~b0 & b1);
+			a5 = b5 ^ (~b6 & b7);
+			a6 = b6 ^ (~b7 & b8);
+			a7 = b7 ^ (~b8 & b9);
+			a8 = b8 ^ (~b9 & b5);
+			a9 = b9 ^ (~b5 & b6);
+			a10 = b10 ^ (~b11 & b12);
+			a11 = b11 ^ (~b12 & b13);
+			a12 = b12 ^ (~b13 & b14);
+			a13 = b13 ^ (~b14 & b10);
+			a14 = b14 ^ (~b10 & b11);
+			a15 = b15 ^ (~b16 & b17);
+			a16 = b16 ^ (~b17 & b18);
+			a17 = b17 ^ (~b18 & b19);
+			a18 = b18 ^ (~b19 & b15);
+			a19 = b19 ^ (~b15 & b16);
+			a20 = b20 ^ (~b21 & b22);
+			a21 = b21 ^ (~b22 & b23);
+			a22 = b22 ^ (~b23 & b24);
+			a23 = b23 ^ (~b24 & b20);
+			a24 = b24 ^ (~b20 & b21);
 		}
+
+		A[0] = a0;
+		A[1] = a1;
+		A[2] = a2;
+		A[3] = a3;
+		A[4] = a4;
+		A[5] = a5;
+		A[6] = a6;
+		A[7] = a7;
+		A[8] = a8;
+		A[9] = a9;
+		A[10] = a10;
+		A[11] = a11;
+		A[12] = a12;
+		A[13] = a13;
+		A[14] = a14;
+		A[15] = a15;
+		A[16] = a16;
+		A[17] = a17;
+		A[18] = a18;
+		A[19] = a19;
+		A[20] = a20;
+		A[21] = a21;
+		A[22] = a22;
+		A[23] = a23;
+		A[24] = a24;
 	}
 
 	/** @see org.ethereum.crypto.cryptohash.DigestEngine */
@@ -532,12 +265,6 @@ abstract class KeccakCore extends DigestEngine {
 			buf[buf.length - 1] = (byte)0x80;
 		}
 		processBlock(buf);
-		A[ 1] = ~A[ 1];
-		A[ 2] = ~A[ 2];
-		A[ 8] = ~A[ 8];
-		A[12] = ~A[12];
-		A[17] = ~A[17];
-		A[20] = ~A[20];
 		int dlen = getDigestLength();
 		for (int i = 0; i < dlen; i += 8)
 			encodeLELong(A[i >>> 3], tmpOut, i);
@@ -562,12 +289,6 @@ abstract class KeccakCore extends DigestEngine {
 	{
 		for (int i = 0; i < 25; i ++)
 			A[i] = 0;
-		A[ 1] = 0xFFFFFFFFFFFFFFFFL;
-		A[ 2] = 0xFFFFFFFFFFFFFFFFL;
-		A[ 8] = 0xFFFFFFFFFFFFFFFFL;
-		A[12] = 0xFFFFFFFFFFFFFFFFL;
-		A[17] = 0xFFFFFFFFFFFFFFFFL;
-		A[20] = 0xFFFFFFFFFFFFFFFFL;
 	}
 
 	/** @see org.ethereum.crypto.cryptohash.DigestEngine */
@@ -52,6 +52,9 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         });
     }
 
+    // incremented on each update to detect the updates concurrent with a source read
+    private long modifications = 0;
+
     // the guard against incorrect Map implementation for byte[] keys
     private boolean checked = false;
     private void checkByteArrKey(Key key) {
@@ -71,21 +74,34 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
         if (val == null) {
             delete(key);
         } else {
+            modifications++;
             cache.put(key, val);
             cacheAdded(key, val);
             getSource().put(key, val);
         }
     }
 
+    /**
+     * The lock is not held while the value is read from the backing Source
+     * so concurrent readers (e.g. prefetching threads) don't block on each other's misses.
+     * The value read is not cached if the entry was modified meanwhile
+     */
     @Override
-    public synchronized Value get(Key key) {
-        checkByteArrKey(key);
-        Value ret = cache.get(key);
-        if (ret == null) {
-            if (cache.containsKey(key)) {
-                ret = null;
-            } else {
-                ret = getSource().get(key);
+    public Value get(Key key) {
+        long version;
+        synchronized (this) {
+            checkByteArrKey(key);
+            Value ret = cache.get(key);
+            if (ret != null || cache.containsKey(key)) {
+                return ret;
+            }
+            version = modifications;
+        }
+
+        Value ret = getSource().get(key);
+
+        synchronized (this) {
+            if (version == modifications && !cache.containsKey(key)) {
                 cache.put(key, ret);
                 cacheAdded(key, ret);
             }
@@ -96,6 +112,7 @@ public class ReadCache<Key, Value> extends AbstractCachedSource<Key, Value> {
     @Override
     public synchronized void delete(Key key) {
         checkByteArrKey(key);
+        modifications++;
         Value value = cache.remove(key);
         cacheRemoved(key, value);
         getSource().delete(key);
@@ -1,6 +1,6 @@
 package org.ethereum.db;
 
-import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
 
 /**
  * Created by Anton Nashatyrev on 29.10.2015.
@@ -9,13 +9,15 @@ public abstract class AbstractBlockstore implements BlockStore {
 
     @Override
     public byte[] getBlockHashByNumber(long blockNumber, byte[] branchBlockHash) {
-        Block branchBlock = getBlockByHash(branchBlockHash);
-        if (branchBlock.getNumber() < blockNumber) {
-            throw new IllegalArgumentException("Requested block number > branch hash number: " + blockNumber + " < " + branchBlock.getNumber());
+        BlockHeader branchHeader = getHeaderByHash(branchBlockHash);
+        if (branchHeader.getNumber() < blockNumber) {
+            throw new IllegalArgumentException("Requested block number > branch hash number: " + blockNumber + " < " + branchHeader.getNumber());
         }
-        while(branchBlock.getNumber() > blockNumber) {
-            branchBlock = getBlockByHash(branchBlock.getParentHash());
+        byte[] hash = branchBlockHash;
+        while(branchHeader.getNumber() > blockNumber) {
+            hash = branchHeader.getParentHash();
+            branchHeader = getHeaderByHash(hash);
         }
-        return branchBlock.getHash();
+        return hash;
     }
 }
@@ -0,0 +1,228 @@
+package org.ethereum.db;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.datasource.MemSizeEstimator;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of decoded blocks and headers in front of the {@link IndexedBlockStore}
+ *
+ * Blocks and headers are kept in separate LRU maps keyed by hash which are limited
+ * by the estimated memory size of the cached objects rather than by the number of entries
+ * (block sizes vary from hundreds of bytes to hundreds of kilobytes).
+ * The canonical number => hash mapping is cached as well so the chain lookups by number
+ * are resolved without touching the index.
+ *
+ * The instance is thread safe
+ */
+public class BlockCache {
+
+    /**
+     * Decoded block holds its encoding along with the parsed fields which
+     * are roughly twice the size of the encoding due to object overheads
+     */
+    public static final MemSizeEstimator<Block> BlockEstimator = new MemSizeEstimator<Block>() {
+        @Override
+        public long estimateSize(Block block) {
+            return block.getEncoded().length * 3L + 64;
+        }
+    };
+
+    /**
+     * Decoded header doesn't hold the encoding, ~500 bytes header takes about 1.5 Kb
+     */
+    public static final MemSizeEstimator<BlockHeader> HeaderEstimator = new MemSizeEstimator<BlockHeader>() {
+        @Override
+        public long estimateSize(BlockHeader header) {
+            return 1536;
+        }
+    };
+
+    private static final int CANONICAL_ENTRIES = 4096;
+
+    private final SizeLimitedLRU<ByteArrayWrapper, Block> blocks;
+    private final SizeLimitedLRU<ByteArrayWrapper, BlockHeader> headers;
+    private final Map<Long, byte[]> canonical = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > CANONICAL_ENTRIES;
+        }
+    };
+
+    private long canonicalHits;
+    private long canonicalMisses;
+
+    /**
+     * @param maxBlocksSize max estimated size in bytes of the cached blocks
+     * @param maxHeadersSize max estimated size in bytes of the cached headers
+     */
+    public BlockCache(long maxBlocksSize, long maxHeadersSize) {
+        blocks = new SizeLimitedLRU<>(maxBlocksSize, BlockEstimator);
+        headers = new SizeLimitedLRU<>(maxHeadersSize, HeaderEstimator);
+    }
+
+    public synchronized void setMaxSize(long maxBlocksSize, long maxHeadersSize) {
+        blocks.setMaxSize(maxBlocksSize);
+        headers.setMaxSize(maxHeadersSize);
+    }
+
+    public synchronized Block getBlock(byte[] hash) {
+        return blocks.get(new ByteArrayWrapper(hash));
+    }
+
+    public synchronized void putBlock(Block block) {
+        ByteArrayWrapper key = new ByteArrayWrapper(block.getHash());
+        blocks.put(key, block);
+        headers.put(key, block.getHeader());
+    }
+
+    public synchronized BlockHeader getHeader(byte[] hash) {
+        ByteArrayWrapper key = new ByteArrayWrapper(hash);
+        BlockHeader header = headers.get(key);
+        if (header == null) {
+            Block block = blocks.peek(key);
+            if (block != null) {
+                header = block.getHeader();
+                headers.put(key, header);
+            }
+        }
+        return header;
+    }
+
+    public synchronized void putHeader(byte[] hash, BlockHeader header) {
+        headers.put(new ByteArrayWrapper(hash), header);
+    }
+
+    /**
+     * @return cached hash of the main chain block with the specified number or null if not cached
+     */
+    public synchronized byte[] getCanonicalHash(long number) {
+        byte[] ret = canonical.get(number);
+        if (ret != null) {
+            canonicalHits++;
+        } else {
+            canonicalMisses++;
+        }
+        return ret;
+    }
+
+    public synchronized void putCanonicalHash(long number, byte[] hash) {
+        canonical.put(number, hash);
+    }
+
+    public synchronized void removeCanonicalHash(long number) {
+        canonical.remove(number);
+    }
+
+    public synchronized long getBlocksSize() {
+        return blocks.size;
+    }
+
+    public synchronized long getBlockHits() {
+        return blocks.hits;
+    }
+
+    public synchronized long getBlockMisses() {
+        return blocks.misses;
+    }
+
+    public synchronized long getHeaderHits() {
+        return headers.hits;
+    }
+
+    public synchronized long getHeaderMisses() {
+        return headers.misses;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "BlockCache[blocks: " + blocks + ", headers: " + headers +
+                ", canonical: " + canonical.size() + " entries, " +
+                "hits/misses " + canonicalHits + "/" + canonicalMisses + "]";
+    }
+
+    /**
+     * Access ordered map evicting the least recently used entries when the
+     * estimated size of the values exceeds the limit. The size is estimated once on insertion
+     * since the cached objects may change (e.g. a block being mined)
+     */
+    private static class SizeLimitedLRU<K, V> {
+        private final LinkedHashMap<K, Sized<V>> map = new LinkedHashMap<>(16, 0.75f, true);
+        private final MemSizeEstimator<V> estimator;
+        private long maxSize;
+        private long size;
+
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        SizeLimitedLRU(long maxSize, MemSizeEstimator<V> estimator) {
+            this.maxSize = maxSize;
+            this.estimator = estimator;
+        }
+
+        V get(K key) {
+            Sized<V> ret = map.get(key);
+            if (ret != null) {
+                hits++;
+                return ret.value;
+            } else {
+                misses++;
+                return null;
+            }
+        }
+
+        V peek(K key) {
+            Sized<V> ret = map.get(key);
+            return ret == null ? null : ret.value;
+        }
+
+        void put(K key, V val) {
+            long valSize = estimator.estimateSize(val);
+            if (valSize > maxSize) {
+                Sized<V> old = map.remove(key);
+                if (old != null) size -= old.size;
+                return;
+            }
+
+            Sized<V> old = map.put(key, new Sized<>(val, valSize));
+            if (old != null) size -= old.size;
+            size += valSize;
+            evict();
+        }
+
+        void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+            evict();
+        }
+
+        private void evict() {
+            Iterator<Sized<V>> it = map.values().iterator();
+            while (size > maxSize && it.hasNext()) {
+                size -= it.next().size;
+                it.remove();
+                evictions++;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return map.size() + " entries, " + (size >> 10) + "/" + (maxSize >> 10) + " Kb, " +
+                    "hits/misses " + hits + "/" + misses + ", evictions " + evictions;
+        }
+    }
+
+    private static class Sized<V> {
+        final V value;
+        final long size;
+
+        Sized(V value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.ethereum.db;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.db.freezer.Freezer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves main chain blocks and their receipts which are deeper than the specified depth
+ * from the key-value storage to the {@link Freezer}. The {@link IndexedBlockStore} and
+ * {@link TransactionStore} read the frozen data from the freezer transparently
+ *
+ * A few blocks are frozen on each block commit, so the freezer catches up gradually
+ * without stalling the block import when it is enabled on an existing database
+ * or lags behind after a batch import
+ */
+public class BlockFreezer {
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    // blocks moved to the freezer per commit, more than one to catch up the lag
+    private static final int FREEZE_STEP = 16;
+
+    private final Freezer freezer;
+    private final IndexedBlockStore blockStore;
+    private final TransactionStore transactionStore;
+    private final int freezeDepth;
+
+    /**
+     * Creates the disabled freezer which ignores the committed blocks
+     */
+    public BlockFreezer() {
+        this.freezer = null;
+        this.blockStore = null;
+        this.transactionStore = null;
+        this.freezeDepth = -1;
+    }
+
+    public BlockFreezer(Freezer freezer, IndexedBlockStore blockStore, TransactionStore transactionStore, int freezeDepth) {
+        if (freezer == null || blockStore == null || transactionStore == null || freezeDepth < 0) {
+            throw new IllegalArgumentException("Freezer, block and transaction stores and non-negative depth are required");
+        }
+        this.freezer = freezer;
+        this.blockStore = blockStore;
+        this.transactionStore = transactionStore;
+        this.freezeDepth = freezeDepth;
+    }
+
+    public void blockCommitted(BlockHeader block) {
+        if (freezer == null) return; // freezer disabled
+
+        long freezeTo = block.getNumber() - freezeDepth;
+        long from = freezer.frozen();
+        if (freezeTo < from) return;
+
+        long to = Math.min(freezeTo, from + FREEZE_STEP - 1);
+        List<Block> frozen = new ArrayList<>();
+        for (long number = from; number <= to; number++) {
+            Block chainBlock = blockStore.getChainBlockByNumber(number);
+            if (chainBlock == null) {
+                logger.warn("Main chain block #{} not found, stop freezing", number);
+                break;
+            }
+            freezer.append(number, chainBlock.getHash(), chainBlock.getHeader().getEncoded(),
+                    chainBlock.getEncodedBody(), transactionStore.getBlockReceiptsEncoded(chainBlock));
+            frozen.add(chainBlock);
+        }
+        if (frozen.isEmpty()) return;
+
+        freezer.sync();
+        for (Block chainBlock : frozen) {
+            blockStore.removeFrozenBlock(chainBlock.getHash(), chainBlock.getNumber());
+            transactionStore.removeFrozenReceipts(chainBlock);
+        }
+        logger.debug("Blocks #{}..#{} moved to the freezer", from, from + frozen.size() - 1);
+    }
+
+    public void close() {
+        if (freezer != null) {
+            freezer.close();
+        }
+    }
+}
@@ -26,6 +26,18 @@ public interface BlockStore {
     Block getBlockByHash(byte[] hash);
     boolean isBlockExist(byte[] hash);
 
+    /**
+     * Header lookups which don't decode the block transactions and uncles
+     */
+    BlockHeader getHeaderByHash(byte[] hash);
+
+    BlockHeader getChainHeaderByNumber(long blockNumber);
+
+    /**
+     * @return RLP encoded [transactions, uncles] list of the block or null if the block is unknown
+     */
+    byte[] getBlockBodyEncoded(byte[] hash);
+
     List<byte[]> getListHashesEndWith(byte[] hash, long qty);
 
     List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty);
@@ -36,6 +36,21 @@ public class BlockStoreDummy implements BlockStore {
         return null;
     }
 
+    @Override
+    public BlockHeader getHeaderByHash(byte[] hash) {
+        return null;
+    }
+
+    @Override
+    public BlockHeader getChainHeaderByNumber(long blockNumber) {
+        return null;
+    }
+
+    @Override
+    public byte[] getBlockBodyEncoded(byte[] hash) {
+        return null;
+    }
+
     @Override
     public boolean isBlockExist(byte[] hash) {
         return false;
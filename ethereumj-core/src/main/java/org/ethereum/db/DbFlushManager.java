@@ -61,6 +61,13 @@ public class DbFlushManager {
     }
 
     public void commit() {
+        commit(1);
+    }
+
+    /**
+     * @param blocks number of blocks committed at once
+     */
+    public void commit(int blocks) {
         long cacheSize = getCacheSize();
         if (sizeThreshold >= 0 && cacheSize >= sizeThreshold) {
             logger.info("DbFlushManager: flushing db due to write cache size (" + cacheSize + ") reached threshold (" + sizeThreshold + ")");
@@ -73,7 +80,7 @@ public class DbFlushManager {
             logger.debug("DbFlushManager: flushing db due to short sync");
             flush();
         }
-        commitCount++;
+        commitCount += blocks;
     }
 
     public void flush() {
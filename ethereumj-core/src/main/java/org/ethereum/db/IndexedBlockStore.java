@@ -5,15 +5,24 @@ import org.ethereum.core.BlockHeader;
 import org.ethereum.datasource.DataSourceArray;
 import org.ethereum.datasource.ObjectDataSource;
 import org.ethereum.datasource.Serializer;
+import org.ethereum.datasource.Serializers;
 import org.ethereum.datasource.Source;
+import org.ethereum.datasource.XorDataSource;
+import org.ethereum.db.freezer.Freezer;
+import org.ethereum.util.ByteUtil;
 import org.ethereum.util.FastByteComparisons;
+import org.ethereum.util.RLPView;
+import org.ethereum.util.RLPWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
 
 import java.io.*;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.math.BigInteger.ZERO;
 import static org.ethereum.crypto.HashUtil.shortHash;
@@ -23,70 +32,203 @@ public class IndexedBlockStore extends AbstractBlockstore{
 
     private static final Logger logger = LoggerFactory.getLogger("general");
 
+    // current index format version, see BLOCK_INFO_SERIALIZER
+    private static final int INDEX_VERSION = 1;
+    private static final byte[] INDEX_VERSION_KEY = "indexVersion".getBytes();
+    // keys of the number => canonical hash index are XORed with this value to not clash with the levels index
+    private static final byte[] CANONICAL_INDEX_SALT = Hex.decode("63616e6f6e6963616c68617368657300");
+    // block bodies are stored under the "bodies" + hash keys while headers are stored under the hash
+    private static final byte[] BODIES_SALT = ByteUtil.merge("bodies".getBytes(), new byte[32]);
+    // blocks moved to the freezer are referenced by the "frozen" + hash => number entries
+    private static final byte[] FROZEN_SALT = ByteUtil.merge("frozen".getBytes(), new byte[32]);
+    private static final long DEFAULT_BLOCK_CACHE_SIZE = 32 * 1024 * 1024;
+    private static final long DEFAULT_HEADER_CACHE_SIZE = 8 * 1024 * 1024;
+
     Source<byte[], byte[]> indexDS;
     DataSourceArray<List<BlockInfo>> index;
+    Source<byte[], byte[]> canonicalIndex;
     Source<byte[], byte[]> blocksDS;
-    ObjectDataSource<Block> blocks;
+    ObjectDataSource<BlockHeader> headers;
+    Source<byte[], byte[]> bodies;
+    Source<byte[], Block> blocks;
+    Source<byte[], byte[]> frozenIndex;
+    // ancient main chain blocks storage, null if disabled
+    Freezer freezer;
+    // decoded blocks, headers and canonical hashes
+    BlockCache cache = new BlockCache(DEFAULT_BLOCK_CACHE_SIZE, DEFAULT_HEADER_CACHE_SIZE);
+
+    // lookups (e.g. serving peers headers requests) are running concurrently,
+    // only the methods modifying the index require the exclusive access
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     public IndexedBlockStore(){
     }
 
+    /**
+     * Sets the limits of the decoded blocks and headers cache
+     * @param blockCacheSize max estimated size in bytes of the cached blocks
+     * @param headerCacheSize max estimated size in bytes of the cached headers
+     */
+    public void setCacheSize(long blockCacheSize, long headerCacheSize) {
+        cache.setMaxSize(blockCacheSize, headerCacheSize);
+    }
+
+    public BlockCache getCache() {
+        return cache;
+    }
+
+    public void setFreezer(Freezer freezer) {
+        this.freezer = freezer;
+    }
+
+    public Freezer getFreezer() {
+        return freezer;
+    }
+
     public void init(Source<byte[], byte[]> index, Source<byte[], byte[]> blocks) {
         indexDS = index;
         this.index = new DataSourceArray<>(
                 new ObjectDataSource<>(index, BLOCK_INFO_SERIALIZER, 256));
+        this.canonicalIndex = new ObjectDataSource<>(new XorDataSource<>(index, CANONICAL_INDEX_SALT),
+                new Serializers.Identity<byte[]>(), 0);
         this.blocksDS = blocks;
-        this.blocks = new ObjectDataSource<>(blocks, new Serializer<Block, byte[]>() {
+        this.headers = new ObjectDataSource<>(blocks, new Serializer<BlockHeader, byte[]>() {
             @Override
-            public byte[] serialize(Block block) {
-                return block.getEncoded();
+            public byte[] serialize(BlockHeader header) {
+                return header.getEncoded();
             }
 
             @Override
-            public Block deserialize(byte[] bytes) {
-                return bytes == null ? null : new Block(bytes);
+            public BlockHeader deserialize(byte[] bytes) {
+                if (bytes == null) return null;
+                RLPView rlp = RLPView.wrap(bytes);
+                // previous versions stored the whole [header, txs, uncles] block under the hash
+                return new BlockHeader(isWholeBlock(rlp) ? rlp.get(0) : rlp);
             }
-        }, 256);
+        }, 0);
+        this.bodies = new XorDataSource<>(blocks, BODIES_SALT);
+        this.blocks = new BlockSource();
+        this.frozenIndex = new XorDataSource<>(blocks, FROZEN_SALT);
+
+        byte[] version = index.get(INDEX_VERSION_KEY);
+        if (version == null || ByteUtil.byteArrayToInt(version) < INDEX_VERSION) {
+            migrateIndex();
+        }
     }
 
-    public synchronized Block getBestBlock(){
+    /**
+     * Converts the index stored by previous versions (Java serialized block infos) to the current
+     * format and builds the number => canonical hash index. The index is flushed in portions,
+     * and the migration is restarted from scratch if interrupted
+     */
+    private void migrateIndex() {
+        int size = index.size();
+        if (size > 0) {
+            logger.info("Migrating blocks index of {} levels to the version {}...", size, INDEX_VERSION);
+        }
+        for (int level = 0; level < size; level++) {
+            List<BlockInfo> blockInfos = index.get(level);
+            if (blockInfos == null) continue;
 
-        Long maxLevel = getMaxNumber();
-        if (maxLevel < 0) return null;
+            index.set(level, blockInfos);
+            for (BlockInfo blockInfo : blockInfos) {
+                if (blockInfo.isMainChain()) {
+                    canonicalIndex.put(canonicalKey(level), blockInfo.getHash());
+                    break;
+                }
+            }
+            if (level > 0 && level % 100_000 == 0) {
+                flush();
+                logger.info("Blocks index migration: {} of {} levels done", level, size);
+            }
+        }
+        indexDS.put(INDEX_VERSION_KEY, ByteUtil.intToBytes(INDEX_VERSION));
+        flush();
+        if (size > 0) {
+            logger.info("Blocks index migration complete");
+        }
+    }
+
+    public Block getBestBlock() {
+        lock.readLock().lock();
+        try {
+            Long maxLevel = getMaxNumber();
+            if (maxLevel < 0) return null;
+
+            Block bestBlock = getChainBlockByNumber(maxLevel);
+            if (bestBlock != null) return  bestBlock;
+
+            // That scenario can happen
+            // if there is a fork branch that is
+            // higher than main branch but has
+            // less TD than the main branch TD
+            while (bestBlock == null){
+                --maxLevel;
+                bestBlock = getChainBlockByNumber(maxLevel);
+            }
 
-        Block bestBlock = getChainBlockByNumber(maxLevel);
-        if (bestBlock != null) return  bestBlock;
+            return bestBlock;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        // That scenario can happen
-        // if there is a fork branch that is
-        // higher than main branch but has
-        // less TD than the main branch TD
-        while (bestBlock == null){
-            --maxLevel;
-            bestBlock = getChainBlockByNumber(maxLevel);
+    public byte[] getBlockHashByNumber(long blockNumber) {
+        lock.readLock().lock();
+        try {
+            if (blockNumber < 0) return null;
+            byte[] hash = cache.getCanonicalHash(blockNumber);
+            if (hash == null) {
+                hash = canonicalIndex.get(canonicalKey(blockNumber));
+                if (hash != null) cache.putCanonicalHash(blockNumber, hash);
+            }
+            return hash;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        return bestBlock;
+    private static byte[] canonicalKey(long number) {
+        return ByteUtil.longToBytes(number);
     }
 
-    public synchronized byte[] getBlockHashByNumber(long blockNumber){
-        Block chainBlock = getChainBlockByNumber(blockNumber);
-        return chainBlock == null ? null : chainBlock.getHash(); // FIXME: can be improved by accessing the hash directly in the index
+    private void setMainChain(long number, BlockInfo blockInfo, boolean mainChain) {
+        blockInfo.setMainChain(mainChain);
+        if (mainChain) {
+            canonicalIndex.put(canonicalKey(number), blockInfo.getHash());
+            cache.putCanonicalHash(number, blockInfo.getHash());
+        } else if (areEqual(blockInfo.getHash(), getBlockHashByNumber(number))) {
+            canonicalIndex.delete(canonicalKey(number));
+            cache.removeCanonicalHash(number);
+        }
     }
 
 
     @Override
-    public synchronized void flush(){
-        blocks.flush();
-        index.flush();
-        blocksDS.flush();
-        indexDS.flush();
+    public void flush() {
+        lock.writeLock().lock();
+        try {
+            headers.flush();
+            bodies.flush();
+            index.flush();
+            canonicalIndex.flush();
+            blocksDS.flush();
+            indexDS.flush();
+            logger.debug("Blocks store flushed, {}", cache);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 
     @Override
-    public synchronized void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain){
-        addInternalBlock(block, cummDifficulty, mainChain);
+    public void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain) {
+        lock.writeLock().lock();
+        try {
+            addInternalBlock(block, cummDifficulty, mainChain);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     private void addInternalBlock(Block block, BigInteger cummDifficulty, boolean mainChain){
@@ -97,12 +239,13 @@ public class IndexedBlockStore extends AbstractBlockstore{
         BlockInfo blockInfo = new BlockInfo();
         blockInfo.setCummDifficulty(cummDifficulty);
         blockInfo.setHash(block.getHash());
-        blockInfo.setMainChain(mainChain); // FIXME:maybe here I should force reset main chain for all uncles on that level
+        setMainChain(block.getNumber(), blockInfo, mainChain); // FIXME:maybe here I should force reset main chain for all uncles on that level
 
         putBlockInfo(blockInfos, blockInfo);
         index.set((int) block.getNumber(), blockInfos);
 
         blocks.put(block.getHash(), block);
+        cache.putBlock(block);
     }
 
     private void putBlockInfo(List<BlockInfo> blockInfos, BlockInfo blockInfo) {
@@ -117,161 +260,331 @@ public class IndexedBlockStore extends AbstractBlockstore{
     }
 
 
-    public synchronized List<Block> getBlocksByNumber(long number){
+    public List<Block> getBlocksByNumber(long number) {
+        lock.readLock().lock();
+        try {
+            List<Block> result = new ArrayList<>();
 
-        List<Block> result = new ArrayList<>();
+            if (number >= index.size()) {
+                return result;
+            }
 
-        if (number >= index.size()) {
-            return result;
-        }
+            List<BlockInfo> blockInfos = index.get((int) number);
 
-        List<BlockInfo> blockInfos = index.get((int) number);
+            if (blockInfos == null) {
+                return result;
+            }
 
-        if (blockInfos == null) {
+            for (BlockInfo blockInfo : blockInfos){
+
+                byte[] hash = blockInfo.getHash();
+                Block block = getBlock(hash);
+
+                result.add(block);
+            }
             return result;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        for (BlockInfo blockInfo : blockInfos){
-
-            byte[] hash = blockInfo.getHash();
-            Block block = blocks.get(hash);
+    @Override
+    public Block getChainBlockByNumber(long number) {
+        lock.readLock().lock();
+        try {
+            byte[] hash = getBlockHashByNumber(number);
+            return hash == null ? null : getBlock(hash);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            result.add(block);
+    @Override
+    public BlockHeader getChainHeaderByNumber(long number) {
+        lock.readLock().lock();
+        try {
+            byte[] hash = getBlockHashByNumber(number);
+            return hash == null ? null : getHeader(hash);
+        } finally {
+            lock.readLock().unlock();
         }
-        return result;
     }
 
     @Override
-    public synchronized Block getChainBlockByNumber(long number){
-        if (number >= index.size()){
-            return null;
+    public Block getBlockByHash(byte[] hash) {
+        lock.readLock().lock();
+        try {
+            return getBlock(hash);
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        List<BlockInfo> blockInfos = index.get((int) number);
+    @Override
+    public BlockHeader getHeaderByHash(byte[] hash) {
+        lock.readLock().lock();
+        try {
+            return getHeader(hash);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-        if (blockInfos == null) {
-            return null;
+    @Override
+    public byte[] getBlockBodyEncoded(byte[] hash) {
+        lock.readLock().lock();
+        try {
+            byte[] body = bodies.get(hash);
+            if (body == null) {
+                BlockHeader header = getHeader(hash);
+                if (header == null) return null;
+                body = getFrozenBody(hash, header.getNumber());
+            }
+            if (body == null) {
+                Block block = getBlock(hash);
+                return block == null ? null : block.getEncodedBody();
+            }
+            return body;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        for (BlockInfo blockInfo : blockInfos){
+    @Override
+    public boolean isBlockExist(byte[] hash) {
+        lock.readLock().lock();
+        try {
+            return getHeader(hash) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
 
-            if (blockInfo.isMainChain()){
+    private Block getBlock(byte[] hash) {
+        Block block = cache.getBlock(hash);
+        if (block == null) {
+            block = blocks.get(hash);
+            if (block != null) cache.putBlock(block);
+        }
+        return block;
+    }
 
-                byte[] hash = blockInfo.getHash();
-                return blocks.get(hash);
-            }
+    private BlockHeader getHeader(byte[] hash) {
+        BlockHeader header = cache.getHeader(hash);
+        if (header == null) {
+            header = headers.get(hash);
+            if (header == null) header = getFrozenHeader(hash);
+            if (header != null) cache.putHeader(hash, header);
         }
+        return header;
+    }
 
-        return null;
+    private BlockHeader getFrozenHeader(byte[] hash) {
+        if (freezer == null) return null;
+        byte[] number = frozenIndex.get(hash);
+        if (number == null) return null;
+        byte[] encoded = freezer.getHeader(ByteUtil.byteArrayToLong(number));
+        return encoded == null ? null : new BlockHeader(encoded);
     }
 
-    @Override
-    public synchronized Block getBlockByHash(byte[] hash) {
-        return blocks.get(hash);
+    private byte[] getFrozenBody(byte[] hash, long number) {
+        if (freezer == null || !areEqual(hash, freezer.getHash(number))) return null;
+        return freezer.getBody(number);
     }
 
-    @Override
-    public synchronized boolean isBlockExist(byte[] hash) {
-        return blocks.get(hash) != null;
+    /**
+     * Removes the block moved to the freezer from the key-value storage leaving just
+     * the reference to its number. The freezer should be synced prior to this call
+     */
+    public void removeFrozenBlock(byte[] hash, long number) {
+        lock.writeLock().lock();
+        try {
+            frozenIndex.put(hash, ByteUtil.longToBytes(number));
+            blocks.delete(hash);
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
+    /**
+     * Composes blocks from the separately stored headers and bodies
+     */
+    private class BlockSource implements Source<byte[], Block> {
 
-    @Override
-    public synchronized BigInteger getTotalDifficultyForHash(byte[] hash){
-        Block block = this.getBlockByHash(hash);
-        if (block == null) return ZERO;
+        @Override
+        public void put(byte[] hash, Block block) {
+            headers.put(hash, block.getHeader());
+            bodies.put(hash, block.getEncodedBody());
+        }
+
+        @Override
+        public Block get(byte[] hash) {
+            BlockHeader header = getHeader(hash);
+            if (header == null) return null;
+
+            byte[] body = bodies.get(hash);
+            if (body == null) body = getFrozenBody(hash, header.getNumber());
+            if (body == null) {
+                // the whole block stored by previous versions
+                byte[] encoded = blocksDS.get(hash);
+                return encoded != null && isWholeBlock(RLPView.wrap(encoded)) ? new Block(encoded) : null;
+            }
+
+            // the header is already decoded (and likely cached), so it is not encoded and parsed once more
+            return new Block.Builder()
+                    .withHeader(header)
+                    .withBody(body)
+                    .create();
+        }
+
+        @Override
+        public void delete(byte[] hash) {
+            headers.delete(hash);
+            bodies.delete(hash);
+        }
 
-        Long level  =  block.getNumber();
-        List<BlockInfo> blockInfos =  index.get(level.intValue());
-        for (BlockInfo blockInfo : blockInfos)
-                 if (areEqual(blockInfo.getHash(), hash)) {
-                     return blockInfo.cummDifficulty;
-                 }
+        @Override
+        public boolean flush() {
+            return headers.flush() | bodies.flush();
+        }
+    }
 
-        return ZERO;
+    private static boolean isWholeBlock(RLPView rlp) {
+        // the first header item is the parent hash while the block starts with the header list
+        return rlp.get(0).isList();
     }
 
 
     @Override
-    public synchronized BigInteger getTotalDifficulty(){
-        long maxNumber = getMaxNumber();
+    public BigInteger getTotalDifficultyForHash(byte[] hash) {
+        lock.readLock().lock();
+        try {
+            BlockHeader header = getHeader(hash);
+            if (header == null) return ZERO;
+
+            Long level  =  header.getNumber();
+            List<BlockInfo> blockInfos =  index.get(level.intValue());
+            for (BlockInfo blockInfo : blockInfos)
+                     if (areEqual(blockInfo.getHash(), hash)) {
+                         return blockInfo.cummDifficulty;
+                     }
 
-        List<BlockInfo> blockInfos = index.get((int) maxNumber);
-        for (BlockInfo blockInfo : blockInfos){
-            if (blockInfo.isMainChain()){
-                return blockInfo.getCummDifficulty();
-            }
+            return ZERO;
+        } finally {
+            lock.readLock().unlock();
         }
+    }
 
-        while (true){
-            --maxNumber;
-            List<BlockInfo> infos = getBlockInfoForLevel(maxNumber);
 
-            for (BlockInfo blockInfo : infos) {
-                if (blockInfo.isMainChain()) {
+    @Override
+    public BigInteger getTotalDifficulty() {
+        lock.readLock().lock();
+        try {
+            long maxNumber = getMaxNumber();
+
+            List<BlockInfo> blockInfos = index.get((int) maxNumber);
+            for (BlockInfo blockInfo : blockInfos){
+                if (blockInfo.isMainChain()){
                     return blockInfo.getCummDifficulty();
                 }
             }
+
+            while (true){
+                --maxNumber;
+                List<BlockInfo> infos = getBlockInfoForLevel(maxNumber);
+
+                for (BlockInfo blockInfo : infos) {
+                    if (blockInfo.isMainChain()) {
+                        return blockInfo.getCummDifficulty();
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
         }
     }
 
-    public synchronized void updateTotDifficulties(long index) {
-        List<BlockInfo> level = getBlockInfoForLevel(index);
-        for (BlockInfo blockInfo : level) {
-            Block block = getBlockByHash(blockInfo.getHash());
-            List<BlockInfo> parentInfos = getBlockInfoForLevel(index - 1);
-            BlockInfo parentInfo = getBlockInfoForHash(parentInfos, block.getParentHash());
-            blockInfo.setCummDifficulty(parentInfo.getCummDifficulty().add(block.getDifficultyBI()));
+    public void updateTotDifficulties(long index) {
+        lock.writeLock().lock();
+        try {
+            List<BlockInfo> level = getBlockInfoForLevel(index);
+            for (BlockInfo blockInfo : level) {
+                BlockHeader header = getHeader(blockInfo.getHash());
+                List<BlockInfo> parentInfos = getBlockInfoForLevel(index - 1);
+                BlockInfo parentInfo = getBlockInfoForHash(parentInfos, header.getParentHash());
+                blockInfo.setCummDifficulty(parentInfo.getCummDifficulty().add(header.getDifficultyBI()));
+            }
+            this.index.set((int) index, level);
+        } finally {
+            lock.writeLock().unlock();
         }
-        this.index.set((int) index, level);
     }
 
     @Override
-    public synchronized long getMaxNumber(){
+    public long getMaxNumber() {
+        lock.readLock().lock();
+        try {
+            Long bestIndex = 0L;
 
-        Long bestIndex = 0L;
+            if (index.size() > 0){
+                bestIndex = (long) index.size();
+            }
 
-        if (index.size() > 0){
-            bestIndex = (long) index.size();
+            return bestIndex - 1L;
+        } finally {
+            lock.readLock().unlock();
         }
-
-        return bestIndex - 1L;
     }
 
     @Override
-    public synchronized List<byte[]> getListHashesEndWith(byte[] hash, long number){
-
-        List<Block> blocks = getListBlocksEndWith(hash, number);
-        List<byte[]> hashes = new ArrayList<>(blocks.size());
+    public List<byte[]> getListHashesEndWith(byte[] hash, long number) {
+        lock.readLock().lock();
+        try {
+            List<byte[]> hashes = new ArrayList<>();
+
+            // hashes are taken from the child headers so no hash calculation is needed
+            for (BlockHeader header = getHeader(hash); header != null && hashes.size() < number; ) {
+                hashes.add(hash);
+                hash = header.getParentHash();
+                header = getHeader(hash);
+            }
 
-        for (Block b : blocks) {
-            hashes.add(b.getHash());
+            return hashes;
+        } finally {
+            lock.readLock().unlock();
         }
-
-        return hashes;
     }
 
     @Override
-    public synchronized List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
-
-        List<Block> blocks = getListBlocksEndWith(hash, qty);
-        List<BlockHeader> headers = new ArrayList<>(blocks.size());
+    public List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
+        lock.readLock().lock();
+        try {
+            List<BlockHeader> ret = new ArrayList<>();
+
+            for (BlockHeader header = getHeader(hash); header != null && ret.size() < qty; ) {
+                ret.add(header);
+                header = getHeader(header.getParentHash());
+            }
 
-        for (Block b : blocks) {
-            headers.add(b.getHeader());
+            return ret;
+        } finally {
+            lock.readLock().unlock();
         }
-
-        return headers;
     }
 
     @Override
-    public synchronized List<Block> getListBlocksEndWith(byte[] hash, long qty) {
-        return getListBlocksEndWithInner(hash, qty);
+    public List<Block> getListBlocksEndWith(byte[] hash, long qty) {
+        lock.readLock().lock();
+        try {
+            return getListBlocksEndWithInner(hash, qty);
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     private List<Block> getListBlocksEndWithInner(byte[] hash, long qty) {
 
-        Block block = this.blocks.get(hash);
+        Block block = getBlock(hash);
 
         if (block == null) return new ArrayList<>();
 
@@ -279,7 +592,7 @@ public class IndexedBlockStore extends AbstractBlockstore{
 
         for (int i = 0; i < qty; ++i) {
             blocks.add(block);
-            block = this.blocks.get(block.getParentHash());
+            block = getBlock(block.getParentHash());
             if (block == null) break;
         }
 
@@ -287,93 +600,96 @@ public class IndexedBlockStore extends AbstractBlockstore{
     }
 
     @Override
-    public synchronized void reBranch(Block forkBlock){
-
-        Block bestBlock = getBestBlock();
-
-        long maxLevel = Math.max(bestBlock.getNumber(), forkBlock.getNumber());
-
-        // 1. First ensure that you are one the save level
-        long currentLevel = maxLevel;
-        Block forkLine = forkBlock;
-        if (forkBlock.getNumber() > bestBlock.getNumber()){
-
-            while(currentLevel > bestBlock.getNumber()){
-                List<BlockInfo> blocks =  getBlockInfoForLevel(currentLevel);
-                BlockInfo blockInfo = getBlockInfoForHash(blocks, forkLine.getHash());
-                if (blockInfo != null)  {
-                    blockInfo.setMainChain(true);
-                    setBlockInfoForLevel(currentLevel, blocks);
+    public void reBranch(Block forkBlock) {
+        lock.writeLock().lock();
+        try {
+            Block bestBlock = getBestBlock();
+
+            long maxLevel = Math.max(bestBlock.getNumber(), forkBlock.getNumber());
+
+            // the branches are walked by hashes taken from the child headers
+            // 1. First ensure that you are one the save level
+            long currentLevel = maxLevel;
+            byte[] forkLine = forkBlock.getHash();
+            if (forkBlock.getNumber() > bestBlock.getNumber()){
+
+                while(currentLevel > bestBlock.getNumber()){
+                    List<BlockInfo> blocks =  getBlockInfoForLevel(currentLevel);
+                    BlockInfo blockInfo = getBlockInfoForHash(blocks, forkLine);
+                    if (blockInfo != null)  {
+                        setMainChain(currentLevel, blockInfo, true);
+                        setBlockInfoForLevel(currentLevel, blocks);
+                    }
+                    forkLine = getHeader(forkLine).getParentHash();
+                    --currentLevel;
                 }
-                forkLine = getBlockByHash(forkLine.getParentHash());
-                --currentLevel;
             }
-        }
 
-        Block bestLine = bestBlock;
-        if (bestBlock.getNumber() > forkBlock.getNumber()){
+            byte[] bestLine = bestBlock.getHash();
+            if (bestBlock.getNumber() > forkBlock.getNumber()){
 
-            while(currentLevel > forkBlock.getNumber()){
+                while(currentLevel > forkBlock.getNumber()){
 
-                List<BlockInfo> blocks =  getBlockInfoForLevel(currentLevel);
-                BlockInfo blockInfo = getBlockInfoForHash(blocks, bestLine.getHash());
-                if (blockInfo != null)  {
-                    blockInfo.setMainChain(false);
-                    setBlockInfoForLevel(currentLevel, blocks);
+                    List<BlockInfo> blocks =  getBlockInfoForLevel(currentLevel);
+                    BlockInfo blockInfo = getBlockInfoForHash(blocks, bestLine);
+                    if (blockInfo != null)  {
+                        setMainChain(currentLevel, blockInfo, false);
+                        setBlockInfoForLevel(currentLevel, blocks);
+                    }
+                    bestLine = getHeader(bestLine).getParentHash();
+                    --currentLevel;
                 }
-                bestLine = getBlockByHash(bestLine.getParentHash());
-                --currentLevel;
             }
-        }
 
 
-        // 2. Loop back on each level until common block
-        while( !bestLine.isEqual(forkLine) ) {
+            // 2. Loop back on each level until common block
+            while( !areEqual(bestLine, forkLine) ) {
 
-            List<BlockInfo> levelBlocks = getBlockInfoForLevel(currentLevel);
-            BlockInfo bestInfo = getBlockInfoForHash(levelBlocks, bestLine.getHash());
-            if (bestInfo != null) {
-                bestInfo.setMainChain(false);
-                setBlockInfoForLevel(currentLevel, levelBlocks);
-            }
+                List<BlockInfo> levelBlocks = getBlockInfoForLevel(currentLevel);
+                BlockInfo bestInfo = getBlockInfoForHash(levelBlocks, bestLine);
+                if (bestInfo != null) {
+                    setMainChain(currentLevel, bestInfo, false);
+                    setBlockInfoForLevel(currentLevel, levelBlocks);
+                }
 
-            BlockInfo forkInfo = getBlockInfoForHash(levelBlocks, forkLine.getHash());
-            if (forkInfo != null) {
-                forkInfo.setMainChain(true);
-                setBlockInfoForLevel(currentLevel, levelBlocks);
-            }
+                BlockInfo forkInfo = getBlockInfoForHash(levelBlocks, forkLine);
+                if (forkInfo != null) {
+                    setMainChain(currentLevel, forkInfo, true);
+                    setBlockInfoForLevel(currentLevel, levelBlocks);
+                }
 
 
-            bestLine = getBlockByHash(bestLine.getParentHash());
-            forkLine = getBlockByHash(forkLine.getParentHash());
+                bestLine = getHeader(bestLine).getParentHash();
+                forkLine = getHeader(forkLine).getParentHash();
 
-            --currentLevel;
+                --currentLevel;
+            }
+        } finally {
+            lock.writeLock().unlock();
         }
-
-
     }
 
 
-    public synchronized List<byte[]> getListHashesStartWith(long number, long maxBlocks){
+    public List<byte[]> getListHashesStartWith(long number, long maxBlocks) {
+        lock.readLock().lock();
+        try {
+            List<byte[]> result = new ArrayList<>();
 
-        List<byte[]> result = new ArrayList<>();
+            int i;
+            for ( i = 0; i < maxBlocks; ++i){
+                byte[] hash = getBlockHashByNumber(number);
+                if (hash == null) break;
 
-        int i;
-        for ( i = 0; i < maxBlocks; ++i){
-            List<BlockInfo> blockInfos =  index.get((int) number);
-            if (blockInfos == null) break;
+                result.add(hash);
 
-            for (BlockInfo blockInfo : blockInfos)
-               if (blockInfo.isMainChain()){
-                   result.add(blockInfo.getHash());
-                   break;
-               }
+                ++number;
+            }
+            maxBlocks -= i;
 
-            ++number;
+            return result;
+        } finally {
+            lock.readLock().unlock();
         }
-        maxBlocks -= i;
-
-        return result;
     }
 
     public static class BlockInfo implements Serializable {
@@ -407,26 +723,52 @@ public class IndexedBlockStore extends AbstractBlockstore{
     }
 
 
+    /**
+     * Encodes the level block infos as RLP list of [hash, cummDifficulty, mainChain] items.
+     * The legacy Java serialized format is still recognized on decoding to read
+     * not yet migrated indexes
+     */
     public static final Serializer<List<BlockInfo>, byte[]> BLOCK_INFO_SERIALIZER = new Serializer<List<BlockInfo>, byte[]>(){
 
         @Override
         public byte[] serialize(List<BlockInfo> value) {
-            try {
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                ObjectOutputStream oos = new ObjectOutputStream(bos);
-                oos.writeObject(value);
-
-                byte[] data = bos.toByteArray();
-                return data;
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+            RLPWriter writer = new RLPWriter(value.size() * 48);
+            writer.startList();
+            for (BlockInfo blockInfo : value) {
+                writer.startList()
+                        .writeElement(blockInfo.getHash())
+                        .writeBigInteger(blockInfo.getCummDifficulty())
+                        .writeByte((byte) (blockInfo.isMainChain() ? 1 : 0))
+                        .endList();
             }
+            return writer.endList().toByteArray();
         }
 
         @Override
         public List<BlockInfo> deserialize(byte[] bytes) {
+            if (bytes == null) return null;
+            if (isJavaSerialized(bytes)) return deserializeLegacy(bytes);
+
+            RLPView list = RLPView.wrap(bytes);
+            List<BlockInfo> ret = new ArrayList<>(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                RLPView item = list.get(i);
+                BlockInfo blockInfo = new BlockInfo();
+                blockInfo.setHash(item.get(0).copyBytes());
+                blockInfo.setCummDifficulty(item.get(1).getBigInteger());
+                blockInfo.setMainChain(item.get(2).getInt() != 0);
+                ret.add(blockInfo);
+            }
+            return ret;
+        }
+
+        private boolean isJavaSerialized(byte[] bytes) {
+            // ObjectOutputStream STREAM_MAGIC, can't be the first bytes of an RLP list
+            return bytes.length > 1 && bytes[0] == (byte) 0xAC && bytes[1] == (byte) 0xED;
+        }
+
+        private List<BlockInfo> deserializeLegacy(byte[] bytes) {
             try {
-                if (bytes == null) return null;
                 ByteArrayInputStream bis = new ByteArrayInputStream(bytes, 0, bytes.length);
                 ObjectInputStream ois = new ObjectInputStream(bis);
                 return (List<BlockInfo>)ois.readObject();
@@ -437,33 +779,36 @@ public class IndexedBlockStore extends AbstractBlockstore{
     };
 
 
-    public synchronized void printChain(){
+    public void printChain() {
+        lock.readLock().lock();
+        try {
+            Long number = getMaxNumber();
 
-        Long number = getMaxNumber();
+            for (int i = 0; i < number; ++i){
+                List<BlockInfo> levelInfos = index.get(i);
 
-        for (int i = 0; i < number; ++i){
-            List<BlockInfo> levelInfos = index.get(i);
-
-            if (levelInfos != null) {
-                System.out.print(i);
-                for (BlockInfo blockInfo : levelInfos){
-                    if (blockInfo.isMainChain())
-                        System.out.print(" [" + shortHash(blockInfo.getHash()) + "] ");
-                    else
-                        System.out.print(" " + shortHash(blockInfo.getHash()) + " ");
+                if (levelInfos != null) {
+                    System.out.print(i);
+                    for (BlockInfo blockInfo : levelInfos){
+                        if (blockInfo.isMainChain())
+                            System.out.print(" [" + shortHash(blockInfo.getHash()) + "] ");
+                        else
+                            System.out.print(" " + shortHash(blockInfo.getHash()) + " ");
+                    }
+                    System.out.println();
                 }
-                System.out.println();
-            }
 
+            }
+        } finally {
+            lock.readLock().unlock();
         }
-
     }
 
-    private synchronized List<BlockInfo> getBlockInfoForLevel(long level){
+    private List<BlockInfo> getBlockInfoForLevel(long level){
         return index.get((int) level);
     }
 
-    private synchronized void setBlockInfoForLevel(long level, List<BlockInfo> infos){
+    private void setBlockInfoForLevel(long level, List<BlockInfo> infos){
         index.set((int) level, infos);
     }
 
@@ -476,11 +821,11 @@ public class IndexedBlockStore extends AbstractBlockstore{
     }
 
     @Override
-    public synchronized void load() {
+    public void load() {
     }
 
     @Override
-    public synchronized void close() {
+    public void close() {
 //        logger.info("Closing IndexedBlockStore...");
 //        try {
 //            indexDS.close();
@@ -411,4 +411,14 @@ public class RepositoryImpl implements Repository, org.ethereum.facade.Repositor
     public void addRawNode(byte[] key, byte[] value) {
         throw new RuntimeException("Not supported");
     }
+
+    @Override
+    public List<byte[]> getAccountProof(byte[] addr) {
+        throw new RuntimeException("Not supported");
+    }
+
+    @Override
+    public List<byte[]> getStorageProof(byte[] addr, DataWord key) {
+        throw new RuntimeException("Not supported");
+    }
 }
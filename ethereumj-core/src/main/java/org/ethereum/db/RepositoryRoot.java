@@ -6,16 +6,24 @@ import org.ethereum.datasource.*;
 import org.ethereum.trie.SecureTrie;
 import org.ethereum.trie.Trie;
 import org.ethereum.trie.TrieImpl;
+import org.ethereum.trie.TrieIterator;
 import org.ethereum.util.Value;
 import org.ethereum.vm.DataWord;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Created by Anton Nashatyrev on 07.10.2016.
  */
 public class RepositoryRoot extends RepositoryImpl {
 
 //    private static class StorageCache extends ReadWriteCache<DataWord, DataWord> {
-    private static class StorageCache extends ReadWriteCache<DataWord, DataWord> {
+    private class StorageCache extends ReadWriteCache<DataWord, DataWord> {
         byte[] accountAddress;
         Trie<byte[]> trie;
 
@@ -26,6 +34,32 @@ public class RepositoryRoot extends RepositoryImpl {
             this.accountAddress = accountAddress;
             this.trie = trie;
         }
+
+        @Override
+        public DataWord get(DataWord key) {
+            recordAccess(accountAddress, key);
+            return super.get(key);
+        }
+    }
+
+    private class AccountStateCache extends ReadWriteCache.BytesKey<AccountState> {
+        public AccountStateCache(Source<byte[], AccountState> src) {
+            super(src, WriteCache.CacheType.SIMPLE);
+        }
+
+        @Override
+        public AccountState get(byte[] key) {
+            recordAccess(key, null);
+            return super.get(key);
+        }
+
+        /**
+         * Reads the account skipping the access recording, for the repository internal reads
+         * which may run concurrently with a recording (e.g. root calculation)
+         */
+        AccountState getUnrecorded(byte[] key) {
+            return super.get(key);
+        }
     }
 
     private class MultiStorageCache extends MultiCache<StorageCache> {
@@ -42,7 +76,7 @@ public class RepositoryRoot extends RepositoryImpl {
         @Override
         protected boolean flushChild(StorageCache childCache) {
             if (super.flushChild(childCache)) {
-                AccountState storageOwnerAcct = accountStateCache.get(childCache.accountAddress);
+                AccountState storageOwnerAcct = accountStates.getUnrecorded(childCache.accountAddress);
                 if (storageOwnerAcct != null) {
                     // need to update account storage root
                     byte[] rootHash = childCache.trie.getRootHash();
@@ -62,6 +96,10 @@ public class RepositoryRoot extends RepositoryImpl {
     private Source<byte[], byte[]> stateDS;
     private CachedSource.BytesKey<Value> trieCache;
     private TrieImpl stateTrie;
+    private AccountStateCache accountStates;
+
+    // volatile to skip locking on every read while no recording is active
+    private volatile Map<ByteArrayWrapper, Set<DataWord>> accessRecord;
 
     public RepositoryRoot(Source<byte[], byte[]> stateDS) {
         this(stateDS, null);
@@ -88,14 +126,14 @@ public class RepositoryRoot extends RepositoryImpl {
 
         SourceCodec.BytesKey<AccountState, byte[]> accountStateCodec = new SourceCodec.BytesKey<>(stateTrie, Serializers.AccountStateSerializer);
 //        final CachedSource.BytesKey<AccountState> accountStateCache = new CachedSourceImpl.BytesKey<>(accountStateCodec);
-        final ReadWriteCache.BytesKey<AccountState> accountStateCache = new ReadWriteCache.BytesKey<>(accountStateCodec, WriteCache.CacheType.SIMPLE);
+        accountStates = new AccountStateCache(accountStateCodec);
 
         final MultiCache<StorageCache> storageCache = new MultiStorageCache();
 
         // counting as there can be 2 contracts with the same code, 1 can suicide
         Source<byte[], byte[]> codeCache = new WriteCache.BytesKey<>(stateDS, WriteCache.CacheType.COUNTING);
 
-        init(accountStateCache, codeCache, storageCache);
+        init(accountStates, codeCache, storageCache);
     }
 
     @Override
@@ -146,4 +184,67 @@ public class RepositoryRoot extends RepositoryImpl {
     public void addRawNode(byte[] key, byte[] value) {
         trieCache.put(key, Value.fromRlpEncoded(value));
     }
+
+    @Override
+    public List<byte[]> getAccountProof(byte[] addr) {
+        getRoot(); // pending changes should be reflected in the trie
+        return stateTrie.getProof(addr);
+    }
+
+    @Override
+    public List<byte[]> getStorageProof(byte[] addr, DataWord key) {
+        getRoot();
+        AccountState accountState = getAccountState(addr);
+        if (accountState == null) return Collections.emptyList();
+        return createTrie(trieCache, accountState.getStateRoot()).getProof(key.getData());
+    }
+
+    /**
+     * Starts recording of the accounts and storage slots read from this repository
+     * (directly or via the child tracks). Any previous recording is discarded
+     */
+    public synchronized void startAccessRecording() {
+        accessRecord = new HashMap<>();
+    }
+
+    /**
+     * Stops the recording started by {@link #startAccessRecording()}
+     * @return account address => storage keys read since the recording start
+     */
+    public synchronized Map<ByteArrayWrapper, Set<DataWord>> stopAccessRecording() {
+        Map<ByteArrayWrapper, Set<DataWord>> ret = accessRecord;
+        accessRecord = null;
+        return ret == null ? Collections.<ByteArrayWrapper, Set<DataWord>>emptyMap() : ret;
+    }
+
+    private void recordAccess(byte[] address, DataWord key) {
+        if (accessRecord == null) return;
+        synchronized (this) {
+            if (accessRecord == null) return;
+            ByteArrayWrapper addr = new ByteArrayWrapper(address);
+            Set<DataWord> keys = accessRecord.get(addr);
+            if (keys == null) {
+                keys = new HashSet<>();
+                accessRecord.put(addr, keys);
+            }
+            if (key != null) keys.add(key);
+        }
+    }
+
+    /**
+     * @return lazy iterator over the state trie entries: sha3(address) => RLP encoded account state
+     */
+    public TrieIterator getAccountsIterator() {
+        getRoot();
+        return stateTrie.getIterator();
+    }
+
+    /**
+     * @return lazy iterator over the account storage trie entries: sha3(key) => RLP encoded value
+     */
+    public TrieIterator getStorageIterator(byte[] addr) {
+        getRoot();
+        AccountState accountState = getAccountState(addr);
+        return createTrie(trieCache, accountState == null ? null : accountState.getStateRoot()).getIterator();
+    }
 }
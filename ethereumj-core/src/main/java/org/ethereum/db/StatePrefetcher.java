@@ -0,0 +1,170 @@
+package org.ethereum.db;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.ethereum.config.SystemProperties;
+import org.ethereum.core.AccountState;
+import org.ethereum.core.Block;
+import org.ethereum.core.Transaction;
+import org.ethereum.datasource.Serializers;
+import org.ethereum.datasource.Source;
+import org.ethereum.datasource.SourceCodec;
+import org.ethereum.trie.SecureTrie;
+import org.ethereum.util.Value;
+import org.ethereum.vm.DataWord;
+import org.apache.commons.collections4.map.LRUMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.ethereum.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
+
+/**
+ * Warms up the {@link StateSource} read cache ahead of the block execution.
+ *
+ * For each block transaction the accounts which are going to be touched are predicted
+ * (the block coinbase, tx sender and receiver, plus the accounts and storage slots
+ * which were accessed by the previous transactions to the same receiver) and the trie paths
+ * to them are read from the block parent state on background threads. Thus the DB reads
+ * are mostly done before the VM requests the data.
+ *
+ * Prefetching only reads content addressed trie nodes and contract code, so it can't affect
+ * the execution result. Tasks for a block are dropped when the next block is submitted
+ */
+@Component
+public class StatePrefetcher {
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    private static final int ACCESS_LISTS_CACHE_SIZE = 4096;
+    // not to prefetch too much for the contracts touching lots of slots
+    private static final int MAX_SLOTS_PER_ACCOUNT = 256;
+
+    private final Source<byte[], Value> trieNodes;
+    private final Source<byte[], byte[]> stateSource;
+    private final ExecutorService executor;
+
+    private final Map<ByteArrayWrapper, Map<ByteArrayWrapper, Set<DataWord>>> accessLists =
+            Collections.synchronizedMap(new LRUMap<ByteArrayWrapper, Map<ByteArrayWrapper, Set<DataWord>>>(ACCESS_LISTS_CACHE_SIZE));
+
+    private final AtomicLong generation = new AtomicLong();
+
+    @Autowired
+    public StatePrefetcher(StateSource stateSource, SystemProperties config) {
+        this(stateSource, config.statePrefetchThreads());
+    }
+
+    public StatePrefetcher(Source<byte[], byte[]> stateSource, int threads) {
+        this.stateSource = stateSource;
+        this.trieNodes = new SourceCodec.BytesKey<>(stateSource, Serializers.TrieNodeSerializer);
+        this.executor = threads <= 0 ? null : Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("state-prefetch-%d").build());
+    }
+
+    /**
+     * Submits prefetching of the state which is likely to be touched by the block transactions.
+     * The call doesn't block
+     * @param block block about to be executed
+     * @param stateRoot state root the block is executed on top of
+     */
+    public void prefetch(Block block, final byte[] stateRoot) {
+        if (executor == null || block.getTransactionsList().isEmpty()) return;
+
+        final long gen = generation.incrementAndGet();
+        final byte[] coinbase = block.getCoinbase();
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (gen != generation.get()) return;
+                try {
+                    prefetchAccount(stateRoot, coinbase, null);
+                } catch (Exception e) {
+                    logger.debug("Error prefetching coinbase state", e);
+                }
+            }
+        });
+        for (final Transaction tx : block.getTransactionsList()) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    if (gen != generation.get()) return;
+                    try {
+                        prefetchTx(stateRoot, tx);
+                    } catch (Exception e) {
+                        logger.debug("Error prefetching state for tx " + tx, e);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Remembers the state accessed by the transaction to the specified receiver so it is prefetched
+     * next time the receiver is called
+     * @param receiveAddress the transaction receiver
+     * @param accessed account address => storage keys read by the transaction
+     */
+    public void learn(byte[] receiveAddress, Map<ByteArrayWrapper, Set<DataWord>> accessed) {
+        if (executor == null || receiveAddress == null || receiveAddress.length == 0) return;
+
+        Map<ByteArrayWrapper, Set<DataWord>> accessList = new HashMap<>(accessed.size());
+        for (Map.Entry<ByteArrayWrapper, Set<DataWord>> entry : accessed.entrySet()) {
+            Set<DataWord> keys = entry.getValue();
+            if (keys.size() > MAX_SLOTS_PER_ACCOUNT) {
+                keys = Collections.newSetFromMap(new LinkedHashMap<DataWord, Boolean>());
+                for (DataWord key : entry.getValue()) {
+                    if (keys.size() >= MAX_SLOTS_PER_ACCOUNT) break;
+                    keys.add(key);
+                }
+            }
+            accessList.put(entry.getKey(), keys);
+        }
+        accessLists.put(new ByteArrayWrapper(receiveAddress), accessList);
+    }
+
+    private void prefetchTx(byte[] stateRoot, Transaction tx) {
+        prefetchAccount(stateRoot, tx.getSender(), null);
+
+        byte[] receiveAddress = tx.getReceiveAddress();
+        if (receiveAddress == null || receiveAddress.length == 0) return;
+
+        Map<ByteArrayWrapper, Set<DataWord>> accessList = accessLists.get(new ByteArrayWrapper(receiveAddress));
+        if (accessList == null) {
+            prefetchAccount(stateRoot, receiveAddress, null);
+        } else {
+            if (!accessList.containsKey(new ByteArrayWrapper(receiveAddress))) {
+                prefetchAccount(stateRoot, receiveAddress, null);
+            }
+            for (Map.Entry<ByteArrayWrapper, Set<DataWord>> entry : accessList.entrySet()) {
+                prefetchAccount(stateRoot, entry.getKey().getData(), entry.getValue());
+            }
+        }
+    }
+
+    private void prefetchAccount(byte[] stateRoot, byte[] address, Set<DataWord> storageKeys) {
+        byte[] accountRlp = new SecureTrie(trieNodes, stateRoot).get(address);
+        if (accountRlp == null || accountRlp.length == 0) return;
+
+        AccountState accountState = new AccountState(accountRlp);
+        if (!Arrays.equals(accountState.getCodeHash(), EMPTY_DATA_HASH)) {
+            stateSource.get(accountState.getCodeHash());
+        }
+        if (storageKeys != null && !storageKeys.isEmpty() &&
+                !Arrays.equals(accountState.getStateRoot(), EMPTY_TRIE_HASH)) {
+            SecureTrie storageTrie = new SecureTrie(trieNodes, accountState.getStateRoot());
+            for (DataWord key : storageKeys) {
+                storageTrie.get(key.getData());
+            }
+        }
+    }
+}
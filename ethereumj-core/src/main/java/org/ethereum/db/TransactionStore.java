@@ -2,10 +2,16 @@ package org.ethereum.db;
 
 import org.apache.commons.collections4.map.LRUMap;
 import org.ethereum.datasource.*;
+import org.ethereum.core.Block;
+import org.ethereum.core.Transaction;
 import org.ethereum.core.TransactionInfo;
+import org.ethereum.core.TransactionReceipt;
+import org.ethereum.db.freezer.Freezer;
 import org.ethereum.util.FastByteComparisons;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPView;
+import org.ethereum.util.RLPWriter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
@@ -34,6 +40,9 @@ public class TransactionStore extends ObjectDataSource<List<TransactionInfo>> {
     private final LRUMap<ByteArrayWrapper, Object> lastSavedTxHash = new LRUMap<>(5000);
     private final Object object = new Object();
 
+    // ancient receipts storage, null if disabled
+    private Freezer freezer;
+
     private final static Serializer<List<TransactionInfo>, byte[]> serializer =
             new Serializer<List<TransactionInfo>, byte[]>() {
         @Override
@@ -53,7 +62,9 @@ public class TransactionStore extends ObjectDataSource<List<TransactionInfo>> {
                 RLPList infoList = (RLPList) params.get(0);
                 List<TransactionInfo> ret = new ArrayList<>();
                 for (int i = 0; i < infoList.size(); i++) {
-                    ret.add(new TransactionInfo(infoList.get(i).getRLPData()));
+                    byte[] infoRlp = infoList.get(i).getRLPData();
+                    ret.add(FrozenTransactionInfo.isFrozen(infoRlp) ?
+                            FrozenTransactionInfo.decode(infoRlp) : new TransactionInfo(infoRlp));
                 }
                 return ret;
             } catch (Exception e) {
@@ -75,7 +86,7 @@ public class TransactionStore extends ObjectDataSource<List<TransactionInfo>> {
         List<TransactionInfo> existingInfos = null;
         synchronized (lastSavedTxHash) {
             if (lastSavedTxHash.put(new ByteArrayWrapper(txHash), object) != null || !lastSavedTxHash.isFull()) {
-                existingInfos = get(txHash);
+                existingInfos = super.get(txHash);
             }
         }
         // else it is highly unlikely that the transaction was included into another block
@@ -96,6 +107,21 @@ public class TransactionStore extends ObjectDataSource<List<TransactionInfo>> {
         return true;
     }
 
+    /**
+     * Adds the infos of the transactions which are known to be not stored yet
+     * (e.g. receipts of the blocks downloaded by the fast sync which were never imported)
+     * skipping the lookup of the existing entries done by {@link #put(TransactionInfo)}.
+     * Existing entries of these transactions if any are replaced
+     */
+    public void putNew(List<TransactionInfo> infos) {
+        for (TransactionInfo info : infos) {
+            // not a singleton list since put(TransactionInfo) may append to the cached instance
+            List<TransactionInfo> list = new ArrayList<>(1);
+            list.add(info);
+            put(info.getReceipt().getTransaction().getHash(), list);
+        }
+    }
+
     public TransactionInfo get(byte[] txHash, byte[] blockHash) {
         List<TransactionInfo> existingInfos = get(txHash);
         for (TransactionInfo info : existingInfos) {
@@ -110,6 +136,120 @@ public class TransactionStore extends ObjectDataSource<List<TransactionInfo>> {
         super(src, serializer, 256);
     }
 
+    public void setFreezer(Freezer freezer) {
+        this.freezer = freezer;
+    }
+
+    /**
+     * Returns all the infos of the transaction. Receipts of the frozen blocks
+     * are loaded from the freezer
+     */
+    @Override
+    public List<TransactionInfo> get(byte[] txHash) {
+        List<TransactionInfo> infos = super.get(txHash);
+        if (infos == null) return null;
+
+        List<TransactionInfo> ret = infos;
+        for (int i = 0; i < infos.size(); i++) {
+            if (infos.get(i) instanceof FrozenTransactionInfo) {
+                if (ret == infos) ret = new ArrayList<>(infos); // cached instance is not modified
+                ret.set(i, ((FrozenTransactionInfo) infos.get(i)).load(freezer));
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * @return RLP list of the block receipts encodings (empty items for the missing ones)
+     * to be appended to the freezer
+     */
+    public byte[] getBlockReceiptsEncoded(Block block) {
+        List<Transaction> txs = block.getTransactionsList();
+        RLPWriter writer = new RLPWriter().startList();
+        for (Transaction tx : txs) {
+            TransactionInfo info = null;
+            List<TransactionInfo> infos = get(tx.getHash());
+            if (infos != null) {
+                for (TransactionInfo txInfo : infos) {
+                    if (FastByteComparisons.equal(txInfo.getBlockHash(), block.getHash())) {
+                        info = txInfo;
+                    }
+                }
+            }
+            if (info == null) {
+                // receipts may be absent, e.g. when skipped by the fast sync
+                writer.writeElement(null);
+            } else {
+                writer.writeEncoded(info.getReceipt().getEncoded());
+            }
+        }
+        return writer.endList().toByteArray();
+    }
+
+    /**
+     * Replaces infos of the block moved to the freezer with the references to the freezer receipts.
+     * The freezer should be synced prior to this call
+     */
+    public void removeFrozenReceipts(Block block) {
+        List<Transaction> txs = block.getTransactionsList();
+        for (int i = 0; i < txs.size(); i++) {
+            byte[] txHash = txs.get(i).getHash();
+            List<TransactionInfo> infos = super.get(txHash);
+            if (infos == null) continue;
+
+            List<TransactionInfo> updated = new ArrayList<>(infos);
+            for (int j = 0; j < updated.size(); j++) {
+                if (FastByteComparisons.equal(updated.get(j).getBlockHash(), block.getHash())) {
+                    updated.set(j, new FrozenTransactionInfo(block.getHash(), i, block.getNumber()));
+                }
+            }
+            put(txHash, updated);
+        }
+    }
+
+    /**
+     * The reference to the receipt in the freezer: [blockHash, index, blockNumber]
+     */
+    private static class FrozenTransactionInfo extends TransactionInfo {
+        private final long blockNumber;
+
+        FrozenTransactionInfo(byte[] blockHash, int index, long blockNumber) {
+            super(null, blockHash, index);
+            this.blockNumber = blockNumber;
+        }
+
+        static FrozenTransactionInfo decode(byte[] rlp) {
+            RLPView view = RLPView.wrap(rlp);
+            return new FrozenTransactionInfo(view.get(0).copyBytes(), view.get(1).getInt(), view.get(2).getLong());
+        }
+
+        static boolean isFrozen(byte[] rlp) {
+            RLPView view = RLPView.wrap(rlp);
+            // regular info starts with the receipt list
+            return view.size() == 3 && !view.get(0).isList();
+        }
+
+        TransactionInfo load(Freezer freezer) {
+            byte[] receipts = freezer == null ? null : freezer.getReceipts(blockNumber);
+            if (receipts == null) {
+                throw new RuntimeException("Receipts of the block #" + blockNumber + " are not found in the freezer");
+            }
+            TransactionReceipt receipt = new TransactionReceipt(RLPView.wrap(receipts).get(getIndex()).getEncoded());
+            return new TransactionInfo(receipt, getBlockHash(), getIndex());
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return new RLPWriter(64)
+                    .startList()
+                    .writeElement(getBlockHash())
+                    .writeLong(getIndex())
+                    .writeLong(blockNumber)
+                    .endList()
+                    .toByteArray();
+        }
+    }
+
     @PreDestroy
     public void close() {
 //        try {
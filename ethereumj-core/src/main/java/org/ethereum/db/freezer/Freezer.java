@@ -0,0 +1,100 @@
+package org.ethereum.db.freezer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+
+/**
+ * Storage of the ancient (immutable) main chain data: block hashes, encoded headers, bodies and receipts
+ * in the append-only {@link FreezerTable}s indexed by the block number.
+ *
+ * Blocks are appended strictly sequentially starting from the genesis. The hashes table is
+ * appended last, so its size is the number of completely frozen blocks
+ */
+public class Freezer {
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    private final File dir;
+    private final FreezerTable hashes;
+    private final FreezerTable headers;
+    private final FreezerTable bodies;
+    private final FreezerTable receipts;
+
+    /**
+     * @param dir directory of the table files
+     * @param segmentSize max size in bytes of a table data file
+     */
+    public Freezer(File dir, long segmentSize) {
+        this.dir = dir;
+        headers = new FreezerTable(dir, "headers", segmentSize);
+        bodies = new FreezerTable(dir, "bodies", segmentSize);
+        receipts = new FreezerTable(dir, "receipts", segmentSize);
+        hashes = new FreezerTable(dir, "hashes", segmentSize);
+
+        // discarding the block which was partially appended when interrupted
+        long frozen = Math.min(Math.min(headers.size(), bodies.size()), Math.min(receipts.size(), hashes.size()));
+        for (FreezerTable table : new FreezerTable[] {headers, bodies, receipts, hashes}) {
+            if (table.size() > frozen) {
+                table.truncate(frozen);
+            }
+        }
+        logger.info("Freezer opened at {}, {} blocks frozen", dir, frozen);
+    }
+
+    /**
+     * @return the number of frozen blocks which is the number of the next block to freeze
+     */
+    public long frozen() {
+        return hashes.size();
+    }
+
+    public synchronized void append(long number, byte[] hash, byte[] header, byte[] body, byte[] blockReceipts) {
+        if (number != frozen()) {
+            throw new RuntimeException("Freezer expected block #" + frozen() + " but got #" + number);
+        }
+        headers.append(header);
+        bodies.append(body);
+        receipts.append(blockReceipts);
+        hashes.append(hash);
+    }
+
+    public byte[] getHash(long number) {
+        return hashes.get(number);
+    }
+
+    public byte[] getHeader(long number) {
+        return number < frozen() ? headers.get(number) : null;
+    }
+
+    public byte[] getBody(long number) {
+        return number < frozen() ? bodies.get(number) : null;
+    }
+
+    /**
+     * @return RLP list of the block receipts encodings
+     */
+    public byte[] getReceipts(long number) {
+        return number < frozen() ? receipts.get(number) : null;
+    }
+
+    /**
+     * Flushes appended data to the disk. Should be called prior to removing
+     * the frozen data from the key-value storage
+     */
+    public synchronized void sync() {
+        headers.sync();
+        bodies.sync();
+        receipts.sync();
+        hashes.sync();
+    }
+
+    public synchronized void close() {
+        logger.info("Closing freezer at {}", dir);
+        sync();
+        headers.close();
+        bodies.close();
+        receipts.close();
+        hashes.close();
+    }
+}
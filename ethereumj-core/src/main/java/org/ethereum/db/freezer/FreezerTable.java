@@ -0,0 +1,227 @@
+package org.ethereum.db.freezer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only table of binary items indexed by their sequential number (starting from 0)
+ *
+ * Items are written to the data segment files [name].NNNN.dat each limited by the segment size,
+ * the index file [name].idx contains a fixed size entry (segment number, item end offset) per item.
+ * Segments which are not appended anymore are memory-mapped for reading.
+ *
+ * The items appended before the last {@link #sync()} survive a crash: the data segments are forced
+ * prior to the index. Later items may be lost, the index entries pointing past the end of the data
+ * written are discarded on open along with the following ones. Appends should be made from a single thread while reads are thread safe
+ */
+public class FreezerTable {
+
+    private static final int INDEX_ENTRY_SIZE = 8;
+
+    private final File dir;
+    private final String name;
+    private final long maxSegmentSize;
+
+    private final FileChannel index;
+    private FileChannel head;
+    private volatile int headSegment;
+    private long headSize;
+    private volatile long items;
+
+    private final Map<Integer, MappedByteBuffer> mappedSegments = new HashMap<>();
+
+    public FreezerTable(File dir, String name, long maxSegmentSize) {
+        if (maxSegmentSize <= 0 || maxSegmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid segment size: " + maxSegmentSize);
+        }
+        this.dir = dir;
+        this.name = name;
+        this.maxSegmentSize = maxSegmentSize;
+        try {
+            dir.mkdirs();
+            index = new RandomAccessFile(new File(dir, name + ".idx"), "rw").getChannel();
+            truncate(validItems());
+        } catch (IOException e) {
+            throw new RuntimeException("Error opening freezer table " + name + " in " + dir, e);
+        }
+    }
+
+    /**
+     * The OS may write the index ahead of the data, thus after a crash the index tail
+     * may refer to the data which is not in the segment files
+     * @return the number of the leading index entries pointing to the written data
+     */
+    private long validItems() throws IOException {
+        long ret = index.size() / INDEX_ENTRY_SIZE;
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+        for (; ret > 0; ret--) {
+            entry.clear();
+            readFully(index, entry, (ret - 1) * INDEX_ENTRY_SIZE);
+            entry.flip();
+            int segment = entry.getInt();
+            int end = entry.getInt();
+            // the earlier segments are complete, they are forced when the head moves to the next one
+            if (segmentFile(segment).length() >= end) break;
+        }
+        return ret;
+    }
+
+    /**
+     * @return the number of items in the table
+     */
+    public long size() {
+        return items;
+    }
+
+    public synchronized void append(byte[] data) {
+        try {
+            if (headSize > 0 && headSize + data.length > maxSegmentSize) {
+                head.force(false);
+                openHead(headSegment + 1, 0);
+            }
+            head.write(ByteBuffer.wrap(data), headSize);
+            headSize += data.length;
+
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            entry.putInt(headSegment).putInt((int) headSize).flip();
+            index.write(entry, items * INDEX_ENTRY_SIZE);
+            items++;
+        } catch (IOException e) {
+            throw new RuntimeException("Error appending to freezer table " + name, e);
+        }
+    }
+
+    /**
+     * @return the item or null if there is no item with such number
+     */
+    public byte[] get(long item) {
+        if (item < 0 || item >= items) return null;
+
+        try {
+            long entryPos = item == 0 ? 0 : (item - 1) * INDEX_ENTRY_SIZE;
+            ByteBuffer entries = ByteBuffer.allocate(item == 0 ? INDEX_ENTRY_SIZE : 2 * INDEX_ENTRY_SIZE);
+            readFully(index, entries, entryPos);
+            entries.flip();
+
+            int start = 0;
+            if (item > 0) {
+                int prevSegment = entries.getInt();
+                int prevEnd = entries.getInt();
+                start = prevEnd;
+                if (prevSegment != entries.getInt(INDEX_ENTRY_SIZE)) start = 0;
+            }
+            int segment = entries.getInt();
+            int end = entries.getInt();
+
+            byte[] ret = new byte[end - start];
+            if (!readHead(segment, ret, start)) {
+                ByteBuffer buf = getMappedSegment(segment).duplicate();
+                buf.position(start);
+                buf.get(ret);
+            }
+            return ret;
+        } catch (IOException e) {
+            throw new RuntimeException("Error reading freezer table " + name + ", item " + item, e);
+        }
+    }
+
+    /**
+     * Discards all items starting from the specified one
+     */
+    public synchronized void truncate(long newItems) {
+        try {
+            if (newItems > index.size() / INDEX_ENTRY_SIZE) {
+                throw new IllegalArgumentException("Can't truncate table " + name + " of " + items + " items to " + newItems);
+            }
+            index.truncate(newItems * INDEX_ENTRY_SIZE);
+            items = newItems;
+
+            int segment = 0;
+            long end = 0;
+            if (newItems > 0) {
+                ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+                readFully(index, entry, (newItems - 1) * INDEX_ENTRY_SIZE);
+                entry.flip();
+                segment = entry.getInt();
+                end = entry.getInt();
+            }
+            openHead(segment, end);
+
+            for (int i = segment + 1; segmentFile(i).exists(); i++) {
+                segmentFile(i).delete();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error truncating freezer table " + name, e);
+        }
+    }
+
+    public synchronized void sync() {
+        try {
+            head.force(false);
+            index.force(false);
+        } catch (IOException e) {
+            throw new RuntimeException("Error syncing freezer table " + name, e);
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            head.close();
+            index.close();
+            synchronized (mappedSegments) {
+                mappedSegments.clear();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Error closing freezer table " + name, e);
+        }
+    }
+
+    private void openHead(int segment, long size) throws IOException {
+        if (head != null) head.close();
+        synchronized (mappedSegments) {
+            // the head is read via the channel, drop the mapping left if truncated back to this segment
+            mappedSegments.remove(segment);
+        }
+        head = new RandomAccessFile(segmentFile(segment), "rw").getChannel();
+        head.truncate(size);
+        headSegment = segment;
+        headSize = size;
+    }
+
+    private synchronized boolean readHead(int segment, byte[] ret, int start) throws IOException {
+        if (segment != headSegment) return false;
+        readFully(head, ByteBuffer.wrap(ret), start);
+        return true;
+    }
+
+    private MappedByteBuffer getMappedSegment(int segment) throws IOException {
+        synchronized (mappedSegments) {
+            MappedByteBuffer ret = mappedSegments.get(segment);
+            if (ret == null) {
+                try (FileChannel channel = new RandomAccessFile(segmentFile(segment), "r").getChannel()) {
+                    ret = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                mappedSegments.put(segment, ret);
+            }
+            return ret;
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(dir, String.format("%s.%04d.dat", name, segment));
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = channel.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of file");
+            pos += n;
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.ethereum.crypto.ECKey;
 import org.ethereum.listener.EthereumListener;
 import org.ethereum.manager.AdminInfo;
 import org.ethereum.manager.BlockLoader;
+import org.ethereum.manager.StateSnapshot;
 import org.ethereum.mine.BlockMiner;
 import org.ethereum.net.client.PeerClient;
 import org.ethereum.net.rlpx.Node;
@@ -145,6 +146,8 @@ public interface Ethereum {
 
     BlockLoader getBlockLoader();
 
+    StateSnapshot getStateSnapshot();
+
     /**
      * @return Whisper implementation if the protocol is available
      */
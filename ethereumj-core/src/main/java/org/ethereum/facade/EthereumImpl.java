@@ -14,6 +14,7 @@ import org.ethereum.listener.EthereumListenerAdapter;
 import org.ethereum.listener.GasPriceTracker;
 import org.ethereum.manager.AdminInfo;
 import org.ethereum.manager.BlockLoader;
+import org.ethereum.manager.StateSnapshot;
 import org.ethereum.manager.WorldManager;
 import org.ethereum.mine.BlockMiner;
 import org.ethereum.net.client.PeerClient;
@@ -66,6 +67,9 @@ public class EthereumImpl implements Ethereum, SmartLifecycle {
     @Autowired
     BlockLoader blockLoader;
 
+    @Autowired
+    StateSnapshot stateSnapshot;
+
     @Autowired
     ProgramInvokeFactory programInvokeFactory;
 
@@ -321,6 +325,11 @@ public class EthereumImpl implements Ethereum, SmartLifecycle {
         return blockLoader;
     }
 
+    @Override
+    public StateSnapshot getStateSnapshot() {
+        return stateSnapshot;
+    }
+
     @Override
     public Whisper getWhisper() {
         return whisper;
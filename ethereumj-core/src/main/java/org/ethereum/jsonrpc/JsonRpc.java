@@ -191,6 +191,44 @@ public interface JsonRpc {
         }
     }
 
+    class StorageProof {
+        public String key; // QUANTITY - the requested storage key
+        public String value; // QUANTITY - the storage value
+        public String[] proof; // Array - RLP encoded storage trie nodes from the storage root to the value
+
+        @Override
+        public String toString() {
+            return "StorageProof{" +
+                    "key='" + key + '\'' +
+                    ", value='" + value + '\'' +
+                    ", proof=" + Arrays.toString(proof) +
+                    '}';
+        }
+    }
+
+    class ProofResult {
+        public String address; // DATA, 20 Bytes - the account address
+        public String balance; // QUANTITY - the account balance
+        public String nonce; // QUANTITY - the account nonce
+        public String codeHash; // DATA, 32 Bytes - hash of the account code
+        public String storageHash; // DATA, 32 Bytes - the account storage root
+        public String[] accountProof; // Array - RLP encoded state trie nodes from the state root to the account
+        public StorageProof[] storageProof; // Array - proofs for the requested storage keys
+
+        @Override
+        public String toString() {
+            return "ProofResult{" +
+                    "address='" + address + '\'' +
+                    ", balance='" + balance + '\'' +
+                    ", nonce='" + nonce + '\'' +
+                    ", codeHash='" + codeHash + '\'' +
+                    ", storageHash='" + storageHash + '\'' +
+                    ", accountProof=" + Arrays.toString(accountProof) +
+                    ", storageProof=" + Arrays.toString(storageProof) +
+                    '}';
+        }
+    }
+
     String web3_clientVersion();
     String web3_sha3(String data) throws Exception;
     String net_version();
@@ -209,6 +247,8 @@ public interface JsonRpc {
 
     String eth_getStorageAt(String address, String storageIdx, String blockId) throws Exception;
 
+    ProofResult eth_getProof(String address, String[] storageKeys, String blockId) throws Exception;
+
     String eth_getTransactionCount(String address, String blockId) throws Exception;
 
     String eth_getBlockTransactionCountByHash(String blockHash)throws Exception;
@@ -423,6 +423,51 @@ public class JsonRpcImpl implements JsonRpc {
         }
     }
 
+    @Override
+    public ProofResult eth_getProof(String address, String[] storageKeys, String blockId) throws Exception {
+        ProofResult s = null;
+        try {
+            if ("pending".equalsIgnoreCase(blockId)) {
+                // the pending state is a track over the best block state, it has no trie root to prove against
+                throw new JsonRpcInvalidParamsException("eth_getProof is not supported for the 'pending' block");
+            }
+            byte[] addressAsByteArray = StringHexToByteArray(address);
+            Repository repo = getRepoByJsonBlockId(blockId);
+
+            ProofResult result = new ProofResult();
+            result.address = toJsonHex(addressAsByteArray);
+            AccountState accountState = repo.getAccountState(addressAsByteArray);
+            result.balance = toJsonHex(accountState == null ? BigInteger.ZERO : accountState.getBalance());
+            result.nonce = toJsonHex(accountState == null ? BigInteger.ZERO : accountState.getNonce());
+            result.codeHash = toJsonHex(accountState == null ? HashUtil.EMPTY_DATA_HASH : accountState.getCodeHash());
+            result.storageHash = toJsonHex(accountState == null ? HashUtil.EMPTY_TRIE_HASH : accountState.getStateRoot());
+            result.accountProof = toJsonHexArray(repo.getAccountProof(addressAsByteArray));
+
+            result.storageProof = new StorageProof[storageKeys == null ? 0 : storageKeys.length];
+            for (int i = 0; i < result.storageProof.length; i++) {
+                DataWord key = new DataWord(StringHexToByteArray(storageKeys[i]));
+                DataWord value = repo.getStorageValue(addressAsByteArray, key);
+
+                StorageProof storageProof = new StorageProof();
+                storageProof.key = toJsonHex(key.value());
+                storageProof.value = toJsonHex(value == null ? BigInteger.ZERO : value.value());
+                storageProof.proof = toJsonHexArray(repo.getStorageProof(addressAsByteArray, key));
+                result.storageProof[i] = storageProof;
+            }
+            return s = result;
+        } finally {
+            if (logger.isDebugEnabled()) logger.debug("eth_getProof(" + address + ", " + Arrays.toString(storageKeys) + ", " + blockId + "): " + s);
+        }
+    }
+
+    private static String[] toJsonHexArray(List<byte[]> data) {
+        String[] ret = new String[data.size()];
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = toJsonHex(data.get(i));
+        }
+        return ret;
+    }
+
     @Override
     public String eth_getTransactionCount(String address, String blockId) throws Exception {
         String s = null;
@@ -0,0 +1,15 @@
+package org.ethereum.jsonrpc;
+
+/**
+ * Thrown by the JSON-RPC methods when the request parameters are valid syntactically
+ * but the request can't be served with them. The JSON-RPC server embedding {@link JsonRpc}
+ * is expected to report it as the 'Invalid params' (-32602) error
+ */
+public class JsonRpcInvalidParamsException extends RuntimeException {
+
+    private static final long serialVersionUID = 3349472526624385372L;
+
+    public JsonRpcInvalidParamsException(String message) {
+        super(message);
+    }
+}
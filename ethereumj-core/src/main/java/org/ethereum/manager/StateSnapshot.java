@@ -0,0 +1,460 @@
+package org.ethereum.manager;
+
+import org.ethereum.core.AccountState;
+import org.ethereum.core.Block;
+import org.ethereum.core.Blockchain;
+import org.ethereum.datasource.CachedSource;
+import org.ethereum.datasource.Serializers;
+import org.ethereum.datasource.Source;
+import org.ethereum.datasource.SourceCodec;
+import org.ethereum.db.BlockStore;
+import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.DbFlushManager;
+import org.ethereum.db.RepositoryRoot;
+import org.ethereum.db.StateSource;
+import org.ethereum.trie.TrieImpl;
+import org.ethereum.trie.TrieIterator;
+import org.ethereum.util.ByteUtil;
+import org.ethereum.util.ExecutorPipeline;
+import org.ethereum.util.FastByteComparisons;
+import org.ethereum.util.Functional;
+import org.ethereum.util.RLP;
+import org.ethereum.util.RLPElement;
+import org.ethereum.util.RLPList;
+import org.ethereum.util.Value;
+import org.ethereum.vm.DataWord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.ethereum.crypto.HashUtil.EMPTY_DATA_HASH;
+import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
+
+/**
+ * Exports the world state at some block into a compact snapshot file and imports
+ * it back into the state DB, so a new node can be bootstrapped without the full sync.
+ *
+ * The state trie is walked in parallel: each of 16 partitions covers the accounts with the same
+ * first nibble of the (hashed) account key. The file consists of the header
+ * (magic, version, length and RLP of the block, length and bytes of its total difficulty)
+ * followed by independent chunks:
+ * [compressed length, raw length, CRC32 of raw data, deflated RLP list of records]
+ * terminated by a zero length chunk. Records are [ACCOUNT, accKey, accountRLP],
+ * [CODE, accKey, code] and [STORAGE, accKey, storageKey, valueRLP], where keys are the trie (hashed) keys.
+ * Records of a single account always follow its ACCOUNT record.
+ *
+ * The importer decodes chunks in parallel, rebuilds the state and storage tries in the
+ * state DB with batched commits and verifies the resulting state root against the block.
+ * Then the block is stored as the main chain block with its total difficulty and becomes the best one,
+ * so the node continues syncing from it like after the fast sync. As with the fast sync the blocks
+ * prior to the snapshot block are not imported.
+ */
+@Component
+public class StateSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger("db");
+
+    private static final int MAGIC = 0x454A534E; // 'EJSN'
+    private static final int VERSION = 2;
+
+    private static final int RECORD_ACCOUNT = 1;
+    private static final int RECORD_CODE = 2;
+    private static final int RECORD_STORAGE = 3;
+
+    private static final int PARTITIONS = 16;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    private static final int IMPORT_COMMIT_RECORDS = 100_000;
+
+    @Autowired
+    StateSource stateSource;
+
+    @Autowired
+    BlockStore blockStore;
+
+    @Autowired
+    Blockchain blockchain;
+
+    @Autowired
+    DbFlushManager dbFlushManager;
+
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    public StateSnapshot() {
+    }
+
+    public StateSnapshot(StateSource stateSource, BlockStore blockStore, Blockchain blockchain,
+                         DbFlushManager dbFlushManager) {
+        this.stateSource = stateSource;
+        this.blockStore = blockStore;
+        this.blockchain = blockchain;
+        this.dbFlushManager = dbFlushManager;
+    }
+
+    public StateSnapshot withThreads(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
+    /**
+     * Writes the state at the main chain block with the specified number into the file
+     * @param blockNumber block number or -1 for the best block
+     * @return number of written records
+     */
+    public long exportState(long blockNumber, File file) throws IOException {
+        Block block = blockNumber < 0 ? blockStore.getBestBlock() : blockStore.getChainBlockByNumber(blockNumber);
+        if (block == null) {
+            throw new RuntimeException("No main chain block #" + blockNumber);
+        }
+        return exportState(block, blockStore.getTotalDifficultyForHash(block.getHash()), file);
+    }
+
+    /**
+     * Writes the state at the block into the file along with the block itself
+     * @return number of written records
+     */
+    public long exportState(Block block, BigInteger totalDifficulty, File file) throws IOException {
+        final byte[] stateRoot = block.getStateRoot();
+        logger.info("Exporting state " + Hex.toHexString(stateRoot) + " at block " + block.getShortDescr() + " to " + file);
+        long s = System.currentTimeMillis();
+
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeBytes(out, block.getEncoded());
+            writeBytes(out, totalDifficulty.toByteArray());
+
+            final AtomicLong records = new AtomicLong();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < PARTITIONS; i++) {
+                    final int partition = i;
+                    futures.add(executor.submit(new Callable<Object>() {
+                        @Override
+                        public Object call() throws Exception {
+                            records.addAndGet(exportPartition(stateRoot, partition, out));
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new IOException("Error exporting state", e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+
+            out.writeInt(0);
+
+            logger.info("State exported: " + records.get() + " records in " + (System.currentTimeMillis() - s) + " ms");
+            return records.get();
+        }
+    }
+
+    private long exportPartition(byte[] stateRoot, int partition, DataOutputStream out) throws IOException {
+        Source<byte[], Value> nodes = new SourceCodec.BytesKey<>(stateSource, Serializers.TrieNodeSerializer);
+        TrieIterator accounts = new TrieImpl(nodes, stateRoot).getIterator().seek(new byte[]{(byte) (partition << 4)});
+        Set<ByteArrayWrapper> writtenCode = new HashSet<>();
+        ChunkWriter writer = new ChunkWriter(out);
+
+        while (accounts.hasNext()) {
+            Map.Entry<byte[], byte[]> account = accounts.next();
+            byte[] accKey = account.getKey();
+            if ((accKey[0] & 0xFF) >>> 4 != partition) break;
+
+            writer.add(RLP.encodeInt(RECORD_ACCOUNT), RLP.encodeElement(accKey), RLP.encodeElement(account.getValue()));
+
+            AccountState accountState = new AccountState(account.getValue());
+            byte[] codeHash = accountState.getCodeHash();
+            if (!FastByteComparisons.equal(codeHash, EMPTY_DATA_HASH) && writtenCode.add(new ByteArrayWrapper(codeHash))) {
+                byte[] code = stateSource.get(codeHash);
+                if (code == null) throw new RuntimeException("No code found: " + Hex.toHexString(codeHash));
+                writer.add(RLP.encodeInt(RECORD_CODE), RLP.encodeElement(accKey), RLP.encodeElement(code));
+            }
+
+            if (!FastByteComparisons.equal(accountState.getStateRoot(), EMPTY_TRIE_HASH)) {
+                TrieIterator storage = new TrieImpl(nodes, accountState.getStateRoot()).getIterator();
+                while (storage.hasNext()) {
+                    Map.Entry<byte[], byte[]> entry = storage.next();
+                    writer.add(RLP.encodeInt(RECORD_STORAGE), RLP.encodeElement(accKey),
+                            RLP.encodeElement(entry.getKey()), RLP.encodeElement(entry.getValue()));
+                }
+            }
+        }
+        writer.flush();
+        return writer.records;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Rebuilds the state from the snapshot file in the state DB, then stores the snapshot block
+     * and makes it the best block with the snapshot total difficulty
+     * @return the imported state root
+     * @throws RuntimeException if the resulting state root doesn't match the snapshot block
+     *          or the blockchain is already ahead of the snapshot block
+     */
+    public byte[] importState(File file) throws IOException {
+        long s = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a state snapshot file: " + file);
+            int version = in.readInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version: " + version);
+            Block block = new Block(readBytes(in));
+            BigInteger totalDifficulty = new BigInteger(readBytes(in));
+            byte[] stateRoot = block.getStateRoot();
+
+            logger.info("Importing state " + Hex.toHexString(stateRoot) + " at block " + block.getShortDescr() + " from " + file);
+            if (blockStore != null) {
+                Block best = blockStore.getBestBlock();
+                if (best != null && best.getNumber() > block.getNumber()) {
+                    throw new RuntimeException("The blockchain is already at " + best.getShortDescr() +
+                            ", ahead of the snapshot block " + block.getShortDescr());
+                }
+            }
+
+            final AtomicReference<Throwable> error = new AtomicReference<>();
+            final RecordsImporter importer = new RecordsImporter();
+            ExecutorPipeline<RawChunk, RLPList> decoder = new ExecutorPipeline<>(threads, threads * 4, true,
+                    new Functional.Function<RawChunk, RLPList>() {
+                        @Override
+                        public RLPList apply(RawChunk chunk) {
+                            return chunk.decode();
+                        }
+                    }, new Functional.Consumer<Throwable>() {
+                        @Override
+                        public void accept(Throwable throwable) {
+                            logger.error("Error importing state snapshot", throwable);
+                            error.compareAndSet(null, throwable);
+                        }
+                    });
+            decoder.add(1, threads * 4, new Functional.Consumer<RLPList>() {
+                @Override
+                public void accept(RLPList records) {
+                    importer.importRecords(records);
+                }
+            });
+
+            while (error.get() == null) {
+                int compressedLen = in.readInt();
+                if (compressedLen == 0) break;
+                RawChunk chunk = new RawChunk(new byte[compressedLen], in.readInt(), in.readLong());
+                in.readFully(chunk.compressed);
+                decoder.push(chunk);
+            }
+
+            try {
+                decoder.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (error.get() != null) {
+                throw new IOException("Error importing state snapshot", error.get());
+            }
+
+            byte[] importedRoot = importer.commit();
+            dbFlushManager.flush();
+            if (!FastByteComparisons.equal(importedRoot, stateRoot)) {
+                throw new RuntimeException("Imported state root " + Hex.toHexString(importedRoot) +
+                        " doesn't match the snapshot root " + Hex.toHexString(stateRoot));
+            }
+            logger.info("State imported: " + importer.records + " records in " + (System.currentTimeMillis() - s) + " ms");
+
+            restoreBlock(block, totalDifficulty);
+            return importedRoot;
+        }
+    }
+
+    /**
+     * Makes the snapshot block the head of the chain, the state at the block must be imported already
+     */
+    private void restoreBlock(Block block, BigInteger totalDifficulty) {
+        if (blockStore != null) {
+            blockStore.saveBlock(block, totalDifficulty, true);
+        }
+        if (blockchain != null) {
+            blockchain.setBestBlock(block);
+            blockchain.setTotalDifficulty(totalDifficulty);
+        }
+        dbFlushManager.flush();
+        logger.info("Best block set to the snapshot block " + block.getShortDescr() + ", total difficulty " + totalDifficulty);
+    }
+
+    private static class RawChunk {
+        final byte[] compressed;
+        final int rawLength;
+        final long crc;
+
+        RawChunk(byte[] compressed, int rawLength, long crc) {
+            this.compressed = compressed;
+            this.rawLength = rawLength;
+            this.crc = crc;
+        }
+
+        RLPList decode() {
+            byte[] raw = new byte[rawLength];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                if (inflater.inflate(raw) != rawLength || !inflater.finished()) {
+                    throw new RuntimeException("Corrupted snapshot chunk: wrong length");
+                }
+            } catch (DataFormatException e) {
+                throw new RuntimeException("Corrupted snapshot chunk", e);
+            } finally {
+                inflater.end();
+            }
+            CRC32 crc32 = new CRC32();
+            crc32.update(raw);
+            if (crc32.getValue() != crc) {
+                throw new RuntimeException("Corrupted snapshot chunk: checksum mismatch");
+            }
+            return (RLPList) RLP.decode2(raw).get(0);
+        }
+    }
+
+    /**
+     * Accumulates records of a single partition and writes them as compressed chunks
+     */
+    private static class ChunkWriter {
+        final DataOutputStream out;
+        List<byte[]> pending = new ArrayList<>();
+        int pendingSize = 0;
+        long records = 0;
+
+        ChunkWriter(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void add(byte[]... elements) throws IOException {
+            byte[] record = RLP.encodeList(elements);
+            pending.add(record);
+            pendingSize += record.length;
+            records++;
+            if (pendingSize >= CHUNK_SIZE) flush();
+        }
+
+        void flush() throws IOException {
+            if (pending.isEmpty()) return;
+            byte[] raw = RLP.encodeList(pending.toArray(new byte[pending.size()][]));
+            pending.clear();
+            pendingSize = 0;
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(raw);
+            Deflater deflater = new Deflater();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2);
+            try {
+                deflater.setInput(raw);
+                deflater.finish();
+                byte[] buf = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    int len = deflater.deflate(buf);
+                    compressed.write(buf, 0, len);
+                }
+            } finally {
+                deflater.end();
+            }
+
+            synchronized (out) {
+                out.writeInt(compressed.size());
+                out.writeInt(raw.length);
+                out.writeLong(crc32.getValue());
+                compressed.writeTo(out);
+            }
+        }
+    }
+
+    /**
+     * Applies records to the state DB, called from a single thread
+     */
+    private class RecordsImporter {
+        ImportRepository repo = new ImportRepository(stateSource, null);
+        long records = 0;
+        long uncommitted = 0;
+
+        void importRecords(RLPList chunk) {
+            for (RLPElement element : chunk) {
+                RLPList record = (RLPList) element;
+                int type = ByteUtil.byteArrayToInt(record.get(0).getRLPData());
+                byte[] accKey = record.get(1).getRLPData();
+                switch (type) {
+                    case RECORD_ACCOUNT:
+                        // storage root is rebuilt from the storage records
+                        AccountState state = new AccountState(record.get(2).getRLPData());
+                        repo.putAccount(accKey, state.withStateRoot(EMPTY_TRIE_HASH));
+                        break;
+                    case RECORD_CODE:
+                        repo.saveCode(accKey, record.get(2).getRLPData());
+                        break;
+                    case RECORD_STORAGE:
+                        DataWord value = Serializers.StorageValueSerializer.deserialize(record.get(3).getRLPData());
+                        repo.addStorageRow(accKey, new DataWord(record.get(2).getRLPData()), value);
+                        break;
+                    default:
+                        throw new RuntimeException("Unknown snapshot record type: " + type);
+                }
+                records++;
+                if (++uncommitted >= IMPORT_COMMIT_RECORDS) {
+                    byte[] root = commit();
+                    dbFlushManager.commit();
+                    // recreating repository to drop its read caches
+                    repo = new ImportRepository(stateSource, root);
+                }
+            }
+        }
+
+        byte[] commit() {
+            repo.commit();
+            uncommitted = 0;
+            return repo.getRoot();
+        }
+    }
+
+    private static class ImportRepository extends RepositoryRoot {
+        ImportRepository(Source<byte[], byte[]> stateDS, byte[] root) {
+            super(stateDS, root);
+        }
+
+        @Override
+        protected TrieImpl createTrie(CachedSource.BytesKey<Value> trieCache, byte[] root) {
+            // snapshot keys are already hashed
+            return new TrieImpl(trieCache, root);
+        }
+
+        void putAccount(byte[] accKey, AccountState state) {
+            accountStateCache.put(accKey, state);
+        }
+    }
+}
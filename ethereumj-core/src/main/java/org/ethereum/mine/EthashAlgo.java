@@ -175,7 +175,8 @@ public class EthashAlgo {
             cmix[i >> 2] = fnv3;
         }
 
-        return Pair.of(intsToBytes(cmix, false), sha3(merge(intsToBytes(s, false), intsToBytes(cmix, false))));
+        byte[] cmixBytes = intsToBytes(cmix, false);
+        return Pair.of(cmixBytes, sha3(intsToBytes(s, false), cmixBytes));
     }
 
     public Pair<byte[], byte[]> hashimotoLight(long fullSize, final int[] cache, byte[] blockHeaderTruncHash,
@@ -134,7 +134,7 @@ public class EthashAlgoSlow {
             setWord(cmix, i / 4, fnv3);
         }
 
-        return Pair.of(cmix, sha3(merge(s, cmix)));
+        return Pair.of(cmix, sha3(s, cmix));
     }
 
     public Pair<byte[], byte[]> hashimotoLight(long fullSize, final byte[][] cache, byte[] blockHeaderTruncHash,
@@ -262,6 +262,7 @@ public class Eth62 extends EthHandler {
         GetBlockBodiesMessage msg = new GetBlockBodiesMessage(hashes);
 
         sendMessage(msg);
+        syncStats.bodiesRequested();
 
         futureBlocks = SettableFuture.create();
         return futureBlocks;
@@ -497,6 +498,7 @@ public class Eth62 extends EthHandler {
 
         wrapper.send();
         sendMessage(wrapper.getMessage());
+        syncStats.headersRequested();
     }
 
     protected synchronized void processInitHeaders(List<BlockHeader> received) {
@@ -821,13 +823,15 @@ public class Eth62 extends EthHandler {
     public String getSyncStats() {
 
         return String.format(
-                "Peer %s: [ %s, %18s, ping %6s ms, difficulty %s, best block %s ]: %s",
+                "Peer %s: [ %s, %18s, ping %6s ms, difficulty %s, best block %s, headers %s, bodies %s ]: %s",
                 getVersion(),
                 channel.getPeerIdShort(),
                 syncState,
                 (int)channel.getPeerStats().getAvgLatency(),
                 getTotalDifficulty(),
                 getBestKnownBlock().getNumber(),
+                syncStats.getHeadersThroughput(),
+                syncStats.getBodiesThroughput(),
                 channel.getNodeStatistics().getClientId());
     }
 
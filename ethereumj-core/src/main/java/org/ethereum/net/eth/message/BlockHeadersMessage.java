@@ -3,6 +3,7 @@ package org.ethereum.net.eth.message;
 import org.ethereum.core.BlockHeader;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPWriter;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
@@ -45,11 +46,11 @@ public class BlockHeadersMessage extends EthMessage {
     }
 
     private void encode() {
-        List<byte[]> encodedElements = new ArrayList<>();
+        RLPWriter writer = new RLPWriter(blockHeaders.size() * 540);
+        writer.startList();
         for (BlockHeader blockHeader : blockHeaders)
-            encodedElements.add(blockHeader.getEncoded());
-        byte[][] encodedElementArray = encodedElements.toArray(new byte[encodedElements.size()][]);
-        this.encoded = RLP.encodeList(encodedElementArray);
+            blockHeader.writeEncoded(writer, true);
+        this.encoded = writer.endList().toByteArray();
     }
 
 
@@ -7,6 +7,7 @@ import org.ethereum.util.RLP;
 import org.ethereum.util.RLPElement;
 import org.ethereum.util.RLPItem;
 import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPWriter;
 import org.ethereum.vm.LogInfo;
 
 import java.util.ArrayList;
@@ -54,22 +55,16 @@ public class ReceiptsMessage extends EthMessage {
     }
 
     private void encode() {
-        List<byte[]> blocks = new ArrayList<>();
-
+        RLPWriter writer = new RLPWriter();
+        writer.startList();
         for (List<TransactionReceipt> blockReceipts : receipts) {
-
-            List<byte[]> encodedBlockReceipts = new ArrayList<>();
+            writer.startList();
             for (TransactionReceipt txReceipt : blockReceipts) {
-                encodedBlockReceipts.add(txReceipt.getEncoded(true));
+                txReceipt.writeEncoded(writer, true);
             }
-            byte[][] encodedElementArray = encodedBlockReceipts.toArray(new byte[encodedBlockReceipts.size()][]);
-            byte[] blockReceiptsEncoded = RLP.encodeList(encodedElementArray);
-
-            blocks.add(blockReceiptsEncoded);
+            writer.endList();
         }
-
-        byte[][] encodedElementArray = blocks.toArray(new byte[blocks.size()][]);
-        this.encoded = RLP.encodeList(encodedElementArray);
+        this.encoded = writer.endList().toByteArray();
     }
 
     @Override
@@ -3,6 +3,7 @@ package org.ethereum.net.eth.message;
 import org.ethereum.core.Transaction;
 import org.ethereum.util.RLP;
 import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPWriter;
 
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -48,11 +49,11 @@ public class TransactionsMessage extends EthMessage {
     }
 
     private void encode() {
-        List<byte[]> encodedElements = new ArrayList<>();
+        RLPWriter writer = new RLPWriter(transactions.size() * 128);
+        writer.startList();
         for (Transaction tx : transactions)
-            encodedElements.add(tx.getEncoded());
-        byte[][] encodedElementArray = encodedElements.toArray(new byte[encodedElements.size()][]);
-        this.encoded = RLP.encodeList(encodedElementArray);
+            writer.writeEncoded(tx.getEncoded());
+        this.encoded = writer.endList().toByteArray();
     }
 
     @Override
@@ -4,6 +4,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import org.ethereum.core.*;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.net.server.Channel;
 import org.ethereum.validator.BlockHeaderValidator;
 import org.slf4j.Logger;
@@ -11,8 +12,9 @@ import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.*;
 
 import static java.lang.Math.max;
@@ -33,6 +35,14 @@ public abstract class BlockDownloader {
     private static int MAX_IN_REQUEST = 192;
     private static int REQUESTS = 32;
 
+    // requests are sized to be served by a peer within this time according to its measured rate
+    private static final long TARGET_REQUEST_MILLIS = 1000;
+    // size of the request to a peer which rate is not measured yet
+    private static final int UNMEASURED_REQUEST = 64;
+    private static final int MIN_IN_REQUEST = 8;
+    // block bodies not delivered within this time are requested from another peer
+    private static final long BODIES_REASSIGN_MILLIS = 5 * TARGET_REQUEST_MILLIS;
+
     private BlockHeaderValidator headerValidator;
 
     private SyncPool pool;
@@ -53,6 +63,9 @@ public abstract class BlockDownloader {
 
     private CountDownLatch stopLatch = new CountDownLatch(1);
 
+    // hashes of the requested bodies => request time
+    private final Map<ByteArrayWrapper, Long> bodiesInFlight = new HashMap<>();
+
     public BlockDownloader(BlockHeaderValidator headerValidator) {
         this.headerValidator = headerValidator;
     }
@@ -143,8 +156,8 @@ public abstract class BlockDownloader {
                         return;
                     }
                     int reqHeadersCounter = 0;
-                    for (Iterator<SyncQueueIfc.HeadersRequest> it = hReq.iterator(); it.hasNext();) {
-                        SyncQueueIfc.HeadersRequest headersRequest = it.next();
+                    for (int i = 0; i < hReq.size();) {
+                        SyncQueueIfc.HeadersRequest headersRequest = hReq.get(i);
 
                         final Channel any = pool.getAnyIdle();
 
@@ -152,6 +165,15 @@ public abstract class BlockDownloader {
                             logger.debug("headerRetrieveLoop: No IDLE peers found");
                             break;
                         } else {
+                            int capacity = any.getSyncStats().getHeadersThroughput().getCapacity(
+                                    TARGET_REQUEST_MILLIS, UNMEASURED_REQUEST, MIN_IN_REQUEST, MAX_IN_REQUEST);
+                            if (headersRequest.getCount() > capacity && headersRequest.getHash() == null) {
+                                // the rest is left for the next peers
+                                List<SyncQueueIfc.HeadersRequest> parts = headersRequest.split(capacity);
+                                hReq.remove(i);
+                                hReq.addAll(i, parts);
+                                headersRequest = parts.get(0);
+                            }
                             logger.debug("headerRetrieveLoop: request headers (" + headersRequest.getStart() + ") from " + any.getNode());
                             ListenableFuture<List<BlockHeader>> futureHeaders = headersRequest.getHash() == null ?
                                     any.getEthHandler().sendGetBlockHeaders(headersRequest.getStart(), headersRequest.getCount(), headersRequest.isReverse()) :
@@ -171,8 +193,10 @@ public abstract class BlockDownloader {
                                         any.getEthHandler().dropConnection();
                                     }
                                 });
-                                it.remove();
+                                hReq.remove(i);
                                 reqHeadersCounter++;
+                            } else {
+                                i++;
                             }
                         }
                     }
@@ -211,6 +235,32 @@ public abstract class BlockDownloader {
             }
         }
 
+        class TrackedBlocksCallback extends BlocksCallback {
+            private List<BlockHeaderWrapper> requested;
+
+            public TrackedBlocksCallback(Channel peer, List<BlockHeaderWrapper> requested) {
+                super(peer);
+                this.requested = requested;
+            }
+
+            @Override
+            public void onSuccess(List<Block> result) {
+                try {
+                    super.onSuccess(result);
+                } finally {
+                    // cleared once the received blocks are queued,
+                    // the bodies missing in the response are requested again
+                    bodiesReceived(requested);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                bodiesReceived(requested);
+                super.onFailure(t);
+            }
+        }
+
         while(!Thread.currentThread().isInterrupted()) {
             try {
 
@@ -239,20 +289,27 @@ public abstract class BlockDownloader {
                         }
                     }
 
+                    List<BlockHeaderWrapper> toRequest = notInFlight(bReq.getBlockHeaders());
                     int reqBlocksCounter = 0;
-                    for (SyncQueueIfc.BlocksRequest blocksRequest : bReq.split(MAX_IN_REQUEST)) {
+                    for (int start = 0; start < toRequest.size();) {
                         Channel any = getGoodPeer();
                         if (any == null) {
                             logger.debug("blockRetrieveLoop: No IDLE peers found");
                             break;
                         } else {
-                            logger.debug("blockRetrieveLoop: Requesting " + blocksRequest.getBlockHeaders().size() + " blocks from " + any.getNode());
+                            int capacity = any.getSyncStats().getBodiesThroughput().getCapacity(
+                                    TARGET_REQUEST_MILLIS, UNMEASURED_REQUEST, MIN_IN_REQUEST, MAX_IN_REQUEST);
+                            List<BlockHeaderWrapper> request = new ArrayList<>(
+                                    toRequest.subList(start, Math.min(toRequest.size(), start + capacity)));
+                            logger.debug("blockRetrieveLoop: Requesting " + request.size() + " blocks from " + any.getNode());
                             ListenableFuture<List<Block>> futureBlocks =
-                                    any.getEthHandler().sendGetBlockBodies(blocksRequest.getBlockHeaders());
-                            if (futureBlocks != null) {
-                                Futures.addCallback(futureBlocks, new BlocksCallback(any));
-                                reqBlocksCounter++;
-                            }
+                                    any.getEthHandler().sendGetBlockBodies(request);
+                            if (futureBlocks == null) break;
+
+                            bodiesRequested(request);
+                            Futures.addCallback(futureBlocks, new TrackedBlocksCallback(any, request));
+                            reqBlocksCounter++;
+                            start += request.size();
                         }
                     }
                     receivedBlocksLatch = new CountDownLatch(max(reqBlocksCounter, 1));
@@ -269,6 +326,41 @@ public abstract class BlockDownloader {
         }
     }
 
+    /**
+     * @return headers which bodies are not requested or were requested too long ago
+     */
+    private synchronized List<BlockHeaderWrapper> notInFlight(List<BlockHeaderWrapper> headers) {
+        long now = System.currentTimeMillis();
+        List<BlockHeaderWrapper> ret = new ArrayList<>();
+        int reassigned = 0;
+        for (BlockHeaderWrapper header : headers) {
+            Long requestedAt = bodiesInFlight.get(new ByteArrayWrapper(header.getHash()));
+            if (requestedAt == null) {
+                ret.add(header);
+            } else if (now - requestedAt > BODIES_REASSIGN_MILLIS) {
+                ret.add(header);
+                reassigned++;
+            }
+        }
+        if (reassigned > 0) {
+            logger.debug("blockRetrieveLoop: {} block bodies are not delivered in time, requesting from other peers", reassigned);
+        }
+        return ret;
+    }
+
+    private synchronized void bodiesRequested(List<BlockHeaderWrapper> headers) {
+        Long now = System.currentTimeMillis();
+        for (BlockHeaderWrapper header : headers) {
+            bodiesInFlight.put(new ByteArrayWrapper(header.getHash()), now);
+        }
+    }
+
+    private synchronized void bodiesReceived(List<BlockHeaderWrapper> headers) {
+        for (BlockHeaderWrapper header : headers) {
+            bodiesInFlight.remove(new ByteArrayWrapper(header.getHash()));
+        }
+    }
+
     /**
      * Adds a list of blocks to the queue
      *
@@ -287,6 +379,10 @@ public abstract class BlockDownloader {
 
             List<Block> newBlocks = syncQueue.addBlocks(blocks);
 
+            for (Block block : blocks) {
+                bodiesInFlight.remove(new ByteArrayWrapper(block.getHash()));
+            }
+
             List<BlockWrapper> wrappers = new ArrayList<>();
             for (Block b : newBlocks) {
                 wrappers.add(new BlockWrapper(b, nodeId));
@@ -323,19 +419,10 @@ public abstract class BlockDownloader {
 
         if (headers.isEmpty()) return true;
 
-        List<BlockHeaderWrapper> wrappers = new ArrayList<>(headers.size());
+        if (!isValid(headers)) return false;
 
+        List<BlockHeaderWrapper> wrappers = new ArrayList<>(headers.size());
         for (BlockHeader header : headers) {
-
-            if (!isValid(header)) {
-
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Invalid header RLP: {}", Hex.toHexString(header.getEncoded()));
-                }
-
-                return false;
-            }
-
             wrappers.add(new BlockHeaderWrapper(header, nodeId));
         }
 
@@ -351,6 +438,24 @@ public abstract class BlockDownloader {
         return true;
     }
 
+    /**
+     * @return true if all the headers are valid
+     */
+    private boolean isValid(final List<BlockHeader> headers) {
+        return ChunkedValidator.allValid(headers.size(), new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                BlockHeader header = headers.get(index);
+                if (BlockDownloader.this.isValid(header)) return true;
+
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Invalid header RLP: {}", Hex.toHexString(header.getEncoded()));
+                }
+                return false;
+            }
+        });
+    }
+
     /**
      * Runs checks against block's header. <br>
      * All these checks make sense before block is added to queue
@@ -384,7 +489,8 @@ public abstract class BlockDownloader {
     }
 
     public void close() {
-        pool.close();
+        // the pool is not set if the sync was not started
+        if (pool != null) pool.close();
         try {
             stop();
         } catch (Exception e) {
@@ -0,0 +1,103 @@
+package org.ethereum.sync;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.lang.Math.min;
+
+/**
+ * Runs the CPU bound validation of the downloaded data (headers, receipts roots)
+ * in parallel by chunks on the pool shared by all the downloaders.
+ * Small lists are validated on the calling thread
+ */
+class ChunkedValidator {
+
+    interface Validator {
+        /**
+         * @return true if the item with the index is valid
+         */
+        boolean isValid(int index);
+    }
+
+    static final int CHUNK_SIZE = 16;
+
+    // the idle threads are released, so the pool needs no shutdown
+    private static final ThreadPoolExecutor executor;
+    static {
+        int threads = Runtime.getRuntime().availableProcessors();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sync-validation-%d").build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return validation result for each of the items, all false if the calling thread is interrupted
+     */
+    static boolean[] validate(int count, Validator validator) {
+        boolean[] ret = new boolean[count];
+        run(count, validator, ret, null);
+        return ret;
+    }
+
+    /**
+     * Stops at the first invalid item: the chunks being validated skip the rest of their items
+     * and the chunks not yet started are skipped entirely
+     * @return true if all the items are valid, false if any is invalid or the calling thread is interrupted
+     */
+    static boolean allValid(int count, Validator validator) {
+        AtomicBoolean invalid = new AtomicBoolean();
+        return run(count, validator, new boolean[count], invalid) && !invalid.get();
+    }
+
+    /**
+     * @param invalid when not null is set on the first invalid item and stops the validation
+     * @return false if the calling thread is interrupted
+     */
+    private static boolean run(int count, final Validator validator, final boolean[] ret, final AtomicBoolean invalid) {
+        if (count <= CHUNK_SIZE) {
+            validateChunk(validator, ret, 0, count, invalid);
+            return true;
+        }
+
+        List<Callable<Object>> tasks = new ArrayList<>();
+        for (int from = 0; from < count; from += CHUNK_SIZE) {
+            final int chunkFrom = from;
+            final int chunkTo = min(from + CHUNK_SIZE, count);
+            tasks.add(Executors.callable(new Runnable() {
+                @Override
+                public void run() {
+                    validateChunk(validator, ret, chunkFrom, chunkTo, invalid);
+                }
+            }));
+        }
+
+        try {
+            for (Future<Object> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Arrays.fill(ret, false);
+            return false;
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Validation failed", e.getCause());
+        }
+    }
+
+    private static void validateChunk(Validator validator, boolean[] ret, int from, int to, AtomicBoolean invalid) {
+        for (int i = from; i < to; i++) {
+            if (invalid != null && invalid.get()) return;
+            ret[i] = validator.isValid(i);
+            if (!ret[i] && invalid != null) {
+                invalid.set(true);
+                return;
+            }
+        }
+    }
+}
@@ -85,5 +85,7 @@ public class FastSyncDownloader extends BlockDownloader {
     @Override
     protected void finishDownload() {
         blockStore.flush();
+        // the chain below the pivot may be shorter than the requested count
+        stop();
     }
 }
@@ -10,8 +10,10 @@ import org.ethereum.core.*;
 import org.ethereum.crypto.HashUtil;
 import org.ethereum.datasource.DbSource;
 import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.db.DbFlushManager;
 import org.ethereum.db.IndexedBlockStore;
+import org.ethereum.db.StateSource;
 import org.ethereum.listener.CompositeEthereumListener;
 import org.ethereum.listener.EthereumListener;
 import org.ethereum.listener.EthereumListenerAdapter;
@@ -32,6 +34,10 @@ import org.springframework.stereotype.Component;
 import java.math.BigInteger;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.ethereum.util.CompactEncoder.hasTerminator;
 
@@ -48,6 +54,17 @@ public class FastSyncManager {
     private final static int MIN_PEERS_FOR_PIVOT_SELECTION = 5;
     private final static int FORCE_SYNC_TIMEOUT = 60 * 1000;
     private final static int PIVOT_DISTANCE_FROM_HEAD = 1024;
+    // how often the outstanding state node requests are saved to resume the download after restart
+    private final static long FRONTIER_SAVE_INTERVAL = 60 * 1000;
+    // the saved download is restarted from a new pivot if the saved one is further behind,
+    // peers may not keep the state that old
+    private final static int MAX_RESUMED_PIVOT_LAG = PIVOT_DISTANCE_FROM_HEAD;
+    // the longest the retrieve loop sleeps when no peer has completed its request
+    private final static long DISPATCH_IDLE_WAIT = 100;
+    // filter of the stored nodes: 2^28 bits (32 MB) with 4 bits per node
+    // gives ~2% false positives at 30M nodes
+    private final static int STORED_NODES_FILTER_LOG2_BITS = 28;
+    private final static int STORED_NODES_FILTER_HASHES = 4;
 
     private static final Capability ETH63_CAPABILITY = new Capability(Capability.ETH, (byte) 63);
 
@@ -70,9 +87,16 @@ public class FastSyncManager {
     @Qualifier("stateDS")
     DbSource<byte[]> stateDS = new HashMapDB<>();
 
+    @Autowired
+    @Qualifier("fastSyncDS")
+    DbSource<byte[]> fastSyncDS = new HashMapDB<>();
+
     @Autowired
     private Repository repository;
 
+    @Autowired
+    private StateSource stateSource;
+
     @Autowired
     DbFlushManager dbFlushManager;
 
@@ -86,10 +110,20 @@ public class FastSyncManager {
     ApplicationContext applicationContext;
 
     int nodesInserted = 0;
+    AtomicInteger nodesSkipped = new AtomicInteger();
     int lastNodeCommit = 0;
+    long lastFrontierSave = 0;
     private ScheduledExecutorService logExecutor = Executors.newSingleThreadScheduledExecutor();
 
-    private BlockingQueue<TrieNodeRequest> dbWriteQueue = new LinkedBlockingQueue<>();
+    // received nodes (TrieNodeRequest) and state checkpoints (StateCheckpoint) in the order to be handled
+    BlockingQueue<Object> dbWriteQueue = new LinkedBlockingQueue<>();
+    private CountDownLatch stateWritten = new CountDownLatch(1);
+
+    // hashes of the nodes committed to the state source, allows to skip
+    // requesting the nodes (and their subtrees) which occur in the trie more than once
+    private volatile HashBloomFilter storedNodes;
+    // written nodes which are added to the storedNodes on the next commit
+    private List<byte[]> uncommittedNodes = new ArrayList<>();
 
     void init() {
         new Thread("FastSyncDBWriter") {
@@ -97,12 +131,7 @@ public class FastSyncManager {
             public void run() {
                 try {
                     while (true) {
-                        TrieNodeRequest request = dbWriteQueue.take();
-                        nodesInserted++;
-                        repository.addRawNode(request.nodeHash, request.response);
-                        if (nodesInserted - lastNodeCommit >= 100) {
-                            commitNodes();
-                        }
+                        dbWrite(dbWriteQueue.take());
                     }
                 } catch (Exception e) {
                     logger.error("Fatal FastSync error while writing data", e);
@@ -122,10 +151,53 @@ public class FastSyncManager {
         }.start();
     }
 
+    /**
+     * Stores the received node or handles the state checkpoint.
+     * Called from the DB writer thread only
+     */
+    void dbWrite(Object entry) {
+        if (entry instanceof StateCheckpoint) {
+            // the nodes received before the checkpoint are all written by now
+            commitNodes();
+            dbFlushManager.flush();
+            if (entry != STATE_COMPLETE) {
+                fastSyncDS.put(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY, ((StateCheckpoint) entry).frontier);
+            } else {
+                // nothing to resume
+                fastSyncDS.delete(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY);
+                fastSyncDS.delete(CommonConfig.FASTSYNC_PIVOT_KEY);
+                stateWritten.countDown();
+            }
+            return;
+        }
+        TrieNodeRequest request = (TrieNodeRequest) entry;
+        repository.addRawNode(request.nodeHash, request.response);
+        uncommittedNodes.add(request.nodeHash);
+        nodesInserted++;
+        if (nodesInserted - lastNodeCommit >= 100) {
+            commitNodes();
+        }
+    }
+
     private synchronized void commitNodes() {
         repository.commit();
         dbFlushManager.commit();
         lastNodeCommit = nodesInserted;
+        if (storedNodes != null) {
+            for (byte[] hash : uncommittedNodes) {
+                storedNodes.add(hash);
+            }
+        }
+        uncommittedNodes.clear();
+    }
+
+    /**
+     * Checks the filter first to avoid the DB lookup for the most of the nodes which are not stored
+     * @return true if the node is stored already, then its subtree is either stored
+     *         or being downloaded since the children are queued before the node is written
+     */
+    private boolean isNodeStored(byte[] hash) {
+        return storedNodes != null && storedNodes.mightContain(hash) && stateSource.get(hash) != null;
     }
 
     enum TrieNodeType {
@@ -134,7 +206,23 @@ public class FastSyncManager {
         CODE
     }
 
-    private class TrieNodeRequest {
+    /**
+     * Passed to the DB writer after the received nodes to save the frontier of the download
+     * once the nodes are stored
+     */
+    static class StateCheckpoint {
+        // encoded node requests to resume the download with
+        final byte[] frontier;
+
+        StateCheckpoint(byte[] frontier) {
+            this.frontier = frontier;
+        }
+    }
+
+    // the last checkpoint: all the state nodes are received
+    static final StateCheckpoint STATE_COMPLETE = new StateCheckpoint(null);
+
+    class TrieNodeRequest {
         TrieNodeType type;
         byte[] nodeHash;
         byte[] response;
@@ -174,17 +262,34 @@ public class FastSyncManager {
             return ret;
         }
 
-        public void reqSent(Long requestId) {
-            synchronized (FastSyncManager.this) {
-                Long timestamp = System.currentTimeMillis();
-                requestSent.put(requestId, timestamp);
-            }
+        synchronized void reqSent(Long requestId) {
+            Long timestamp = System.currentTimeMillis();
+            requestSent.put(requestId, timestamp);
         }
 
-        public Set<Long> requestIdsSnapshot() {
-            synchronized (FastSyncManager.this) {
-                return new HashSet<Long>(requestSent.keySet());
+        /**
+         * Removes the first of the requestIds this node was requested with
+         * @return true if the node was requested with any of them
+         */
+        synchronized boolean reqCompleted(Set<Long> requestIds) {
+            for (Long id : requestIds) {
+                if (requestSent.remove(id) != null) return true;
             }
+            return false;
+        }
+
+        /**
+         * Stores the response unless another peer has already delivered the node
+         * @return true if the response is the first one
+         */
+        synchronized boolean setResponse(byte[] response) {
+            if (this.response != null) return false;
+            this.response = response;
+            return true;
+        }
+
+        synchronized boolean isResponded() {
+            return response != null;
         }
 
         @Override
@@ -213,32 +318,85 @@ public class FastSyncManager {
     }
 
     Deque<TrieNodeRequest> nodesQueue = new LinkedBlockingDeque<>();
-    ByteArrayMap<TrieNodeRequest> pendingNodes = new ByteArrayMap<>();
-    Long requestId = 0L;
+    Map<ByteArrayWrapper, TrieNodeRequest> pendingNodes = new ConcurrentHashMap<>();
+    AtomicLong requestId = new AtomicLong();
+
+    // response callbacks, timeouts and requests move the nodes between the queue, pending map
+    // and DB writer concurrently under the read lock, the write lock gives a consistent view of them
+    private final ReadWriteLock stateLock = new ReentrantReadWriteLock();
+    // wakes up the retrieve loop when some peer has completed its request
+    private final Semaphore dispatchSignal = new Semaphore(0);
+
+    /**
+     * Removes the request from pending if there are no outstanding peer requests for it.
+     * Should be called after the request or its children are queued so that the node
+     * is always either queued, pending or passed to the DB writer
+     */
+    private void purgePending(TrieNodeRequest request) {
+        synchronized (request) {
+            if (request.requestSent.isEmpty()) pendingNodes.remove(new ByteArrayWrapper(request.nodeHash), request);
+        }
+    }
 
-    private synchronized void purgePending(byte[] hash) {
-        TrieNodeRequest request = pendingNodes.get(hash);
-        if (request.requestSent.isEmpty()) pendingNodes.remove(hash);
+    /**
+     * Moves the request to pending and marks it as sent with the requestId
+     * @return the pending request instance for the node
+     */
+    private TrieNodeRequest addPending(TrieNodeRequest req, Long requestId) {
+        ByteArrayWrapper key = new ByteArrayWrapper(req.nodeHash);
+        while (true) {
+            TrieNodeRequest request = pendingNodes.get(key);
+            if (request == null) {
+                request = pendingNodes.putIfAbsent(key, req);
+                if (request == null) request = req;
+            }
+            synchronized (request) {
+                // the request might be purged concurrently, then just retry
+                if (pendingNodes.get(key) == request) {
+                    request.reqSent(requestId);
+                    return request;
+                }
+            }
+        }
     }
 
-    synchronized void processTimeouts() {
+    void processTimeouts() {
         long cur = System.currentTimeMillis();
-        for (TrieNodeRequest request : new ArrayList<>(pendingNodes.values())) {
-            Iterator<Map.Entry<Long, Long>> reqIterator = request.requestSent.entrySet().iterator();
-            while (reqIterator.hasNext()) {
-                Map.Entry<Long, Long> requestEntry = reqIterator.next();
-                if (cur - requestEntry.getValue() > REQUEST_TIMEOUT) {
-                    reqIterator.remove();
-                    purgePending(request.nodeHash);
-                    nodesQueue.addFirst(request);
+        stateLock.readLock().lock();
+        try {
+            for (TrieNodeRequest request : pendingNodes.values()) {
+                boolean timedOut = false, requeue = false;
+                synchronized (request) {
+                    Iterator<Map.Entry<Long, Long>> reqIterator = request.requestSent.entrySet().iterator();
+                    while (reqIterator.hasNext()) {
+                        Map.Entry<Long, Long> requestEntry = reqIterator.next();
+                        if (cur - requestEntry.getValue() > REQUEST_TIMEOUT) {
+                            reqIterator.remove();
+                            timedOut = true;
+                            // the node might be already delivered by another peer
+                            requeue = request.response == null;
+                        }
+                    }
                 }
+                if (requeue) nodesQueue.addFirst(request);
+                if (timedOut) purgePending(request);
             }
+        } finally {
+            stateLock.readLock().unlock();
         }
     }
 
-    synchronized void processResponse(TrieNodeRequest req) {
+    /**
+     * Passes the node to the DB writer and queues its children.
+     * Called concurrently from the peers response callbacks under the read lock
+     */
+    void processResponse(TrieNodeRequest req) {
         dbWriteQueue.add(req);
         for (TrieNodeRequest childRequest : req.createChildRequests()) {
+            if (isNodeStored(childRequest.nodeHash)) {
+                nodesSkipped.incrementAndGet();
+                continue;
+            }
             if (nodesQueue.size() > NODE_QUEUE_BEST_SIZE) {
                 // reducing queue by traversing tree depth-first
                 nodesQueue.addFirst(childRequest);
@@ -254,22 +412,20 @@ public class FastSyncManager {
 
         if (idle != null) {
             final List<byte[]> hashes = new ArrayList<>();
-            final List<TrieNodeRequest> requestsSent = new ArrayList<>();
             final Set<Long> sentRequestIds = new HashSet<>();
-            synchronized (this) {
-                for (int i = 0; i < cnt && !nodesQueue.isEmpty(); i++) {
+            stateLock.readLock().lock();
+            try {
+                for (int i = 0; i < cnt; i++) {
                     TrieNodeRequest req = nodesQueue.poll();
+                    if (req == null) break;
+                    if (req.isResponded()) continue;
+                    Long reqId = requestId.getAndIncrement();
+                    addPending(req, reqId);
                     hashes.add(req.nodeHash);
-                    TrieNodeRequest request = pendingNodes.get(req.nodeHash);
-                    if (request == null) {
-                        pendingNodes.put(req.nodeHash, req);
-                        request = req;
-                    }
-                    sentRequestIds.add(requestId);
-                    request.reqSent(requestId);
-                    requestId++;
-                    requestsSent.add(request);
+                    sentRequestIds.add(reqId);
                 }
+            } finally {
+                stateLock.readLock().unlock();
             }
             if (hashes.size() > 0) {
                 logger.trace("Requesting " + hashes.size() + " nodes from peer: " + idle);
@@ -279,32 +435,31 @@ public class FastSyncManager {
                     @Override
                     public void onSuccess(List<Pair<byte[], byte[]>> result) {
                         try {
-                            synchronized (FastSyncManager.this) {
-                                logger.trace("Received " + result.size() + " nodes (of " + hashes.size() + ") from peer: " + idle);
+                            logger.trace("Received " + result.size() + " nodes (of " + hashes.size() + ") from peer: " + idle);
+                            stateLock.readLock().lock();
+                            try {
                                 for (Pair<byte[], byte[]> pair : result) {
-                                    TrieNodeRequest request = pendingNodes.get(pair.getKey());
+                                    TrieNodeRequest request = pendingNodes.get(new ByteArrayWrapper(pair.getKey()));
                                     if (request == null) {
-                                        long t = System.currentTimeMillis();
+                                        // e.g. delivered by another peer or timed out already
                                         logger.debug("Received node which was not requested: " + Hex.toHexString(pair.getKey()) + " from " + idle);
-                                        return;
+                                        continue;
                                     }
-                                    Set<Long> intersection = request.requestIdsSnapshot();
-                                    intersection.retainAll(sentRequestIds);
-                                    if (!intersection.isEmpty()) {
-                                        Long inter = intersection.iterator().next();
-                                        request.requestSent.remove(inter);
-                                        purgePending(pair.getKey());
-                                        request.response = pair.getValue();
-                                        processResponse(request);
+                                    if (request.reqCompleted(sentRequestIds)) {
+                                        if (request.setResponse(pair.getValue())) {
+                                            processResponse(request);
+                                        }
+                                        purgePending(request);
                                     }
                                 }
-
-                                FastSyncManager.this.notifyAll();
-
-                                idle.getNodeStatistics().eth63NodesRequested.add(hashes.size());
-                                idle.getNodeStatistics().eth63NodesReceived.add(result.size());
-                                idle.getNodeStatistics().eth63NodesRetrieveTime.add(System.currentTimeMillis() - reqTime);
+                            } finally {
+                                stateLock.readLock().unlock();
+                                dispatchSignal.release();
                             }
+
+                            idle.getNodeStatistics().eth63NodesRequested.add(hashes.size());
+                            idle.getNodeStatistics().eth63NodesReceived.add(result.size());
+                            idle.getNodeStatistics().eth63NodesRetrieveTime.add(System.currentTimeMillis() - reqTime);
                         } catch (Exception e) {
                             logger.error("Unexpected error processing nodes", e);
                         }
@@ -313,20 +468,19 @@ public class FastSyncManager {
                     @Override
                     public void onFailure(Throwable t) {
                         logger.warn("Error with Trie Node request: " + t);
-                        synchronized (FastSyncManager.this) {
+                        stateLock.readLock().lock();
+                        try {
                             for (byte[] hash : hashes) {
-                                final TrieNodeRequest request = pendingNodes.get(hash);
+                                final TrieNodeRequest request = pendingNodes.get(new ByteArrayWrapper(hash));
                                 if (request == null) continue;
-                                Set<Long> intersection = request.requestIdsSnapshot();
-                                intersection.retainAll(sentRequestIds);
-                                if (!intersection.isEmpty()) {
-                                    Long inter = intersection.iterator().next();
-                                    request.requestSent.remove(inter);
-                                    nodesQueue.addFirst(request);
-                                    purgePending(hash);
+                                if (request.reqCompleted(sentRequestIds)) {
+                                    if (!request.isResponded()) nodesQueue.addFirst(request);
+                                    purgePending(request);
                                 }
                             }
-                            FastSyncManager.this.notifyAll();
+                        } finally {
+                            stateLock.readLock().unlock();
+                            dispatchSignal.release();
                         }
                     }
                 });
@@ -340,17 +494,92 @@ public class FastSyncManager {
         }
     }
 
+    /**
+     * @return true if there are no more nodes to request or wait for
+     */
+    private boolean isStateRetrieved() {
+        stateLock.writeLock().lock();
+        try {
+            return nodesQueue.isEmpty() && pendingNodes.isEmpty();
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Schedules saving of the queued and pending node requests to the fastsync DB.
+     * The save is done by the DB writer after it writes all the nodes received so far,
+     * thus any node not covered by the saved requests is already stored along with its parent
+     */
+    void saveStateFrontier() {
+        ByteArrayMap<TrieNodeRequest> frontier = new ByteArrayMap<>();
+        stateLock.writeLock().lock();
+        try {
+            for (TrieNodeRequest request : nodesQueue) {
+                frontier.put(request.nodeHash, request);
+            }
+            for (TrieNodeRequest request : pendingNodes.values()) {
+                frontier.put(request.nodeHash, request);
+            }
+
+
+            byte[] encoded = new byte[frontier.size() * 33];
+            int off = 0;
+            for (TrieNodeRequest request : frontier.values()) {
+                encoded[off] = (byte) request.type.ordinal();
+                System.arraycopy(request.nodeHash, 0, encoded, off + 1, 32);
+                off += 33;
+            }
+
+            dbWriteQueue.add(new StateCheckpoint(encoded));
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        lastFrontierSave = System.currentTimeMillis();
+    }
+
+    /**
+     * Restores the node requests saved by {@link #saveStateFrontier()}.
+     * The saved download which pivot is too far behind the current one is discarded
+     *
+     * @param currentPivot pivot block header selected for the new download
+     * @return the pivot block header of the interrupted download or null if there is nothing to resume
+     */
+    BlockHeader loadStateFrontier(BlockHeader currentPivot) {
+        byte[] pivotEncoded = fastSyncDS.get(CommonConfig.FASTSYNC_PIVOT_KEY);
+        byte[] frontier = fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY);
+        if (pivotEncoded == null || frontier == null) return null;
+
+        BlockHeader pivot = new BlockHeader(pivotEncoded);
+        if (currentPivot.getNumber() - pivot.getNumber() > MAX_RESUMED_PIVOT_LAG) {
+            logger.info("FastSync: saved pivot block " + pivot.getShortDescr() + " is too old, discarding the saved download");
+            fastSyncDS.delete(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY);
+            return null;
+        }
+
+        for (int off = 0; off < frontier.length; off += 33) {
+            nodesQueue.add(new TrieNodeRequest(TrieNodeType.values()[frontier[off]],
+                    Arrays.copyOfRange(frontier, off + 1, off + 33)));
+        }
+        return pivot;
+    }
+
     void retrieveLoop() {
         try {
-            while (!nodesQueue.isEmpty() || !pendingNodes.isEmpty()) {
+            while (!isStateRetrieved()) {
                 try {
                     processTimeouts();
 
+                    if (System.currentTimeMillis() - lastFrontierSave > FRONTIER_SAVE_INTERVAL) {
+                        saveStateFrontier();
+                    }
+
                     while (requestNextNodes(REQUEST_MAX_NODES)) ;
 
-                    synchronized (this) {
-                        wait(10);
-                    }
+                    // sleeping until some peer gets idle, waking up periodically
+                    // anyway to check the timeouts and newly connected peers
+                    dispatchSignal.tryAcquire(DISPATCH_IDLE_WAIT, TimeUnit.MILLISECONDS);
+                    dispatchSignal.drainPermits();
                     logStat();
                 } catch (InterruptedException e) {
                     throw e;
@@ -370,6 +599,7 @@ public class FastSyncManager {
         long cur = System.currentTimeMillis();
         if (cur - last > 5000) {
             logger.info("FastSync: received: " + nodesInserted + ", known: " + nodesQueue.size() + ", pending: " + pendingNodes.size()
+                    + ", skipped as stored: " + nodesSkipped.get()
                     + String.format(", nodes/sec: %1$.2f", 1000d * (nodesInserted - lastNodeCount) / (cur - last)));
             last = cur;
             lastNodeCount = nodesInserted;
@@ -380,6 +610,11 @@ public class FastSyncManager {
 
         if (blockchain.getBestBlock().getNumber() == 0) {
             BlockHeader pivot = getPivotBlock();
+            BlockHeader savedPivot = loadStateFrontier(pivot);
+            boolean resumed = savedPivot != null;
+            if (resumed) {
+                pivot = savedPivot;
+            }
             if (pivot.getNumber() > 0) {
 
                 pool.setNodesSelector(new Functional.Predicate<NodeHandler>() {
@@ -391,21 +626,35 @@ public class FastSyncManager {
                     }
                 });
 
-                byte[] pivotStateRoot = pivot.getStateRoot();
-                TrieNodeRequest request = new TrieNodeRequest(TrieNodeType.STATE, pivotStateRoot);
-                nodesQueue.add(request);
-                logger.info("FastSync: downloading state trie at pivot block: " + pivot.getShortDescr());
-
-                stateDS.put(CommonConfig.FASTSYNC_DB_KEY, new byte[]{1});
+                if (resumed) {
+                    logger.info("FastSync: resuming state trie download at pivot block: " + pivot.getShortDescr() +
+                            ", requests to resume: " + nodesQueue.size());
+                } else {
+                    byte[] pivotStateRoot = pivot.getStateRoot();
+                    TrieNodeRequest request = new TrieNodeRequest(TrieNodeType.STATE, pivotStateRoot);
+                    nodesQueue.add(request);
+                    logger.info("FastSync: downloading state trie at pivot block: " + pivot.getShortDescr());
+
+                    fastSyncDS.put(CommonConfig.FASTSYNC_PIVOT_KEY, pivot.getEncoded());
+                    stateDS.put(CommonConfig.FASTSYNC_DB_KEY, new byte[]{1});
+                }
+                lastFrontierSave = System.currentTimeMillis();
+                storedNodes = new HashBloomFilter(STORED_NODES_FILTER_LOG2_BITS, STORED_NODES_FILTER_HASHES);
 
                 retrieveLoop();
+                storedNodes = null;
 
                 logger.info("FastSync: state trie download complete!");
                 last = 0;
                 logStat();
 
-                repository.commit();
-                dbFlushManager.flush();
+                // waiting for the writer to store the rest of the nodes
+                dbWriteQueue.add(STATE_COMPLETE);
+                try {
+                    stateWritten.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
 
                 logger.info("FastSync: downloading 256 blocks prior to pivot block (" + pivot.getShortDescr() + ")");
                 downloader.startImporting(pivot.getHash(), 260);
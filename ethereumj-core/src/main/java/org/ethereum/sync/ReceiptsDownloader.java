@@ -85,27 +85,48 @@ public class ReceiptsDownloader {
         return ret;
     }
 
-    private void processDownloaded(Block block, List<TransactionReceipt> receipts) {
-        if (block.getNumber() >= fromBlock && validate(block, receipts)) {
-            for (int i = 0; i < receipts.size(); i++) {
-                TransactionReceipt receipt = receipts.get(i);
-                TransactionInfo txInfo = new TransactionInfo(receipt, block.getHash(), (int) block.getNumber());
-                txInfo.setTransaction(block.getTransactionsList().get(i));
-                txStore.put(txInfo);
+    /**
+     * Stores the valid receipts of the response at once, the blocks downloaded by the fast sync
+     * were never imported so their transactions have no infos stored yet
+     */
+    private void processDownloaded(final List<Block> blocks, final List<List<TransactionReceipt>> receipts) {
+        boolean[] valid = ChunkedValidator.validate(receipts.size(), new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                return validate(blocks.get(index), receipts.get(index));
+            }
+        });
+
+        List<TransactionInfo> txInfos = new ArrayList<>();
+        List<Long> completed = new ArrayList<>();
+        for (int i = 0; i < receipts.size(); i++) {
+            Block block = blocks.get(i);
+            if (block.getNumber() < fromBlock || !valid[i]) continue;
+
+            List<TransactionReceipt> blockReceipts = receipts.get(i);
+            for (int j = 0; j < blockReceipts.size(); j++) {
+                TransactionInfo txInfo = new TransactionInfo(blockReceipts.get(j), block.getHash(), j);
+                txInfo.setTransaction(block.getTransactionsList().get(j));
+                txInfos.add(txInfo);
             }
+            completed.add(block.getNumber());
+        }
+        if (completed.isEmpty()) return;
 
-            synchronized (this) {
-                completedBlocks.add(block.getNumber());
+        txStore.putNew(txInfos);
 
-                while (fromBlock < toBlock && completedBlocks.remove(fromBlock)) fromBlock++;
+        synchronized (this) {
+            completedBlocks.addAll(completed);
 
-                if (fromBlock >= toBlock) finishDownload();
+            while (fromBlock < toBlock && completedBlocks.remove(fromBlock)) fromBlock++;
 
-                cnt++;
-                if (cnt % 1000 == 0) logger.info("FastSync: downloaded receipts for " + cnt + " blocks.");
-            }
-            dbFlushManager.commit();
+            if (fromBlock >= toBlock) finishDownload();
+
+            int prevCnt = cnt;
+            cnt += completed.size();
+            if (cnt / 1000 > prevCnt / 1000) logger.info("FastSync: downloaded receipts for " + cnt + " blocks.");
         }
+        dbFlushManager.commit(completed.size());
     }
 
     private boolean validate(Block block, List<TransactionReceipt> receipts) {
@@ -134,9 +155,7 @@ public class ReceiptsDownloader {
                         Futures.addCallback(future, new FutureCallback<List<List<TransactionReceipt>>>() {
                             @Override
                             public void onSuccess(List<List<TransactionReceipt>> result) {
-                                for (int i = 0; i < result.size(); i++) {
-                                    processDownloaded(list.get(i), result.get(i));
-                                }
+                                processDownloaded(list, result);
                             }
                             @Override
                             public void onFailure(Throwable t) {}
@@ -35,6 +35,9 @@ public class SyncManager extends BlockDownloader {
 
     private final static Logger logger = LoggerFactory.getLogger("sync");
 
+    // max number of blocks imported at once during the long sync
+    private static final int IMPORT_BATCH = 64;
+
     // Transaction.getSender() is quite heavy operation so we are prefetching this value on several threads
     // to unload the main block importing cycle
     private ExecutorPipeline<BlockWrapper,BlockWrapper> exec1 = new ExecutorPipeline<>
@@ -153,62 +156,50 @@ public class SyncManager extends BlockDownloader {
 
         while (!Thread.currentThread().isInterrupted()) {
 
-            BlockWrapper wrapper = null;
+            List<BlockWrapper> wrappers = new ArrayList<>();
             try {
 
-                wrapper = blockQueue.take();
+                wrappers.add(blockQueue.take());
+                if (!syncDone) {
+                    // during the long sync the ready blocks are imported as a batch
+                    blockQueue.drainTo(wrappers, IMPORT_BATCH - 1);
+                }
 
                 logger.debug("BlockQueue size: {}, headers queue size: {}", blockQueue.size(), syncQueue.getHeadersCount());
 
+                List<Block> blocks = new ArrayList<>(wrappers.size());
+                for (BlockWrapper wrapper : wrappers) {
+                    blocks.add(wrapper.getBlock());
+                }
+
                 long s = System.nanoTime();
                 long sl;
-                ImportResult importResult;
+                List<ImportResult> importResults;
                 synchronized (blockchain) {
                     sl = System.nanoTime();
-                    importResult = blockchain.tryToConnect(wrapper.getBlock());
+                    importResults = blocks.size() == 1 ? singletonList(blockchain.tryToConnect(blocks.get(0))) :
+                            blockchain.tryToConnectBatch(blocks);
                 }
                 long f = System.nanoTime();
                 long t = (f - s) / 1_000_000;
                 String ts = timeFormat.format(t / 1000d) + "s";
                 t = (sl - s) / 1_000_000;
                 ts += t < 10 ? "" : " (lock: " + timeFormat.format(t / 1000d) + "s)";
+                ts += blocks.size() == 1 ? "" : " (batch of " + blocks.size() + ")";
 
-                if (importResult == IMPORTED_BEST) {
-                    logger.info("Success importing BEST: block.number: {}, block.hash: {}, tx.size: {}, time: {}",
-                            wrapper.getNumber(), wrapper.getBlock().getShortHash(),
-                            wrapper.getBlock().getTransactionsList().size(), ts);
-
-                    if (wrapper.isNewBlock() && !syncDone) {
-                        syncDone = true;
-                        channelManager.onSyncDone(true);
-                        compositeEthereumListener.onSyncDone(syncDoneType);
-                    }
-                }
-
-                if (importResult == IMPORTED_NOT_BEST)
-                    logger.info("Success importing NOT_BEST: block.number: {}, block.hash: {}, tx.size: {}, time: {}",
-                            wrapper.getNumber(), wrapper.getBlock().getShortHash(),
-                            wrapper.getBlock().getTransactionsList().size(), ts);
-
-                if (syncDone && (importResult == IMPORTED_BEST || importResult == IMPORTED_NOT_BEST)) {
-                    if (logger.isDebugEnabled()) logger.debug("Block dump: " + Hex.toHexString(wrapper.getBlock().getEncoded()));
-                    // Propagate block to the net after successful import asynchronously
-                    if (wrapper.isNewBlock()) channelManager.onNewForeignBlock(wrapper);
-                }
-
-                // In case we don't have a parent on the chain
-                // return the try and wait for more blocks to come.
-                if (importResult == NO_PARENT) {
-                    logger.error("No parent on the chain for block.number: {} block.hash: {}",
-                            wrapper.getNumber(), wrapper.getBlock().getShortHash());
+                for (int i = 0; i < wrappers.size(); i++) {
+                    onImported(wrappers.get(i), importResults.get(i), ts);
                 }
 
             } catch (InterruptedException e) {
                 break;
             } catch (Throwable e) {
-                if (wrapper != null) {
-                    logger.error("Error processing block {}: ", wrapper.getBlock().getShortDescr(), e);
-                    logger.error("Block dump: {}", Hex.toHexString(wrapper.getBlock().getEncoded()));
+                if (!wrappers.isEmpty()) {
+                    logger.error("Error processing block {}: ", wrappers.size() == 1 ? wrappers.get(0).getBlock().getShortDescr() :
+                            wrappers.get(0).getBlock().getShortDescr() + " ... " + wrappers.get(wrappers.size() - 1).getBlock().getShortDescr(), e);
+                    for (BlockWrapper wrapper : wrappers) {
+                        logger.error("Block dump: {}", Hex.toHexString(wrapper.getBlock().getEncoded()));
+                    }
                 } else {
                     logger.error("Error processing unknown block", e);
                 }
@@ -216,6 +207,38 @@ public class SyncManager extends BlockDownloader {
         }
     }
 
+    private void onImported(BlockWrapper wrapper, ImportResult importResult, String ts) {
+        if (importResult == IMPORTED_BEST) {
+            logger.info("Success importing BEST: block.number: {}, block.hash: {}, tx.size: {}, time: {}",
+                    wrapper.getNumber(), wrapper.getBlock().getShortHash(),
+                    wrapper.getBlock().getTransactionsList().size(), ts);
+
+            if (wrapper.isNewBlock() && !syncDone) {
+                syncDone = true;
+                channelManager.onSyncDone(true);
+                compositeEthereumListener.onSyncDone(syncDoneType);
+            }
+        }
+
+        if (importResult == IMPORTED_NOT_BEST)
+            logger.info("Success importing NOT_BEST: block.number: {}, block.hash: {}, tx.size: {}, time: {}",
+                    wrapper.getNumber(), wrapper.getBlock().getShortHash(),
+                    wrapper.getBlock().getTransactionsList().size(), ts);
+
+        if (syncDone && (importResult == IMPORTED_BEST || importResult == IMPORTED_NOT_BEST)) {
+            if (logger.isDebugEnabled()) logger.debug("Block dump: " + Hex.toHexString(wrapper.getBlock().getEncoded()));
+            // Propagate block to the net after successful import asynchronously
+            if (wrapper.isNewBlock()) channelManager.onNewForeignBlock(wrapper);
+        }
+
+        // In case we don't have a parent on the chain
+        // return the try and wait for more blocks to come.
+        if (importResult == NO_PARENT) {
+            logger.error("No parent on the chain for block.number: {} block.hash: {}",
+                    wrapper.getNumber(), wrapper.getBlock().getShortHash());
+        }
+    }
+
     /**
      * Adds NEW block to the queue
      *
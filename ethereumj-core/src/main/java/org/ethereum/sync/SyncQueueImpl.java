@@ -6,6 +6,8 @@ import org.ethereum.core.BlockHeaderWrapper;
 import org.ethereum.core.Blockchain;
 import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.util.Functional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.util.*;
@@ -14,8 +16,13 @@ import java.util.*;
  * Created by Anton Nashatyrev on 27.05.2016.
  */
 public class SyncQueueImpl implements SyncQueueIfc {
+    private final static Logger logger = LoggerFactory.getLogger("sync");
+
     static int MAX_CHAIN_LEN = 192;
 
+    // skeleton or its segment is requested again if not received within this time
+    static long SKELETON_REQUEST_TIMEOUT = 10_000;
+
     static class HeadersRequestImpl implements HeadersRequest {
         public HeadersRequestImpl(long start, int count, boolean reverse) {
             this.start = start;
@@ -122,32 +129,71 @@ public class SyncQueueImpl implements SyncQueueIfc {
         }
     }
 
+    /**
+     * Node of the headers tree. The parent/children links are set when a header is added
+     * and each node tracks its child leading to the deepest descendant, so the longest
+     * chain is followed from the dark zone header without rescanning the generations
+     */
     class HeaderElement {
         BlockHeaderWrapper header;
         Block block;
         boolean exported;
 
+        HeaderElement parent;
+        List<HeaderElement> children = new ArrayList<>(1);
+        // child on the way to the deepest descendant or null if no children
+        HeaderElement bestChild;
+        // number of the deepest descendant (or own number if no children)
+        long bestNumber;
+        // the deepest descendant or this element if no children
+        HeaderElement bestTip;
+
         public HeaderElement(BlockHeaderWrapper header) {
             this.header = header;
+            this.bestNumber = header.getNumber();
+            this.bestTip = this;
         }
 
         public HeaderElement getParent() {
-            Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(header.getNumber() - 1);
-            if (genHeaders == null) return null;
-            return genHeaders.get(new ByteArrayWrapper(header.getHeader().getParentHash()));
+            return parent;
         }
 
         public List<HeaderElement> getChildren() {
-            List<HeaderElement> ret = new ArrayList<>();
-            Map<ByteArrayWrapper, HeaderElement> childGenHeaders = headers.get(header.getNumber() + 1);
-            if (childGenHeaders != null) {
-                for (HeaderElement child : childGenHeaders.values()) {
-                    if (Arrays.equals(child.header.getHeader().getParentHash(), header.getHash())) {
-                        ret.add(child);
-                    }
-                }
+            return children;
+        }
+
+        void addChild(HeaderElement child) {
+            child.parent = this;
+            children.add(child);
+
+            // propagating the new depth up until an ancestor already has a deeper branch
+            HeaderElement node = child;
+            HeaderElement ancestor = this;
+            while (ancestor != null && node.bestNumber > ancestor.bestNumber) {
+                ancestor.bestChild = node;
+                ancestor.bestNumber = node.bestNumber;
+                ancestor.bestTip = node.bestTip;
+                node = ancestor;
+                ancestor = ancestor.parent;
             }
-            return ret;
+        }
+
+        void detach() {
+            if (parent != null) {
+                parent.children.remove(this);
+                parent = null;
+            }
+            detachChildren();
+        }
+
+        void detachChildren() {
+            for (HeaderElement child : children) {
+                child.parent = null;
+            }
+            children.clear();
+            bestChild = null;
+            bestNumber = header.getNumber();
+            bestTip = this;
         }
     }
 
@@ -160,6 +206,20 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
     Random rnd = new Random(); // ;)
 
+    /**
+     * Skeleton: sparse headers (anchors) ahead of the chain received from a single peer,
+     * the segments between them are requested from different peers in parallel
+     * and the received segments are checked to link to the anchors
+     */
+    TreeMap<Long, ByteArrayWrapper> skeleton = new TreeMap<>();
+    // anchor number => the time its segment was requested
+    Map<Long, Long> segmentRequests = new HashMap<>();
+    byte[] skeletonRequestHash;
+    int skeletonRequestStep;
+    long skeletonRequestTime;
+    // don't request a skeleton until this block if the last one was empty (we are close to the chain head)
+    long nextSkeletonNum = 0;
+
     public SyncQueueImpl(List<Block> initBlocks) {
         init(initBlocks);
     }
@@ -204,43 +264,36 @@ public class SyncQueueImpl implements SyncQueueIfc {
         headers.put(num, genHeaders);
     }
 
-    private List<HeaderElement> getLongestChain() {
+    private HeaderElement getDarkZoneHeader() {
         Map<ByteArrayWrapper, HeaderElement> lastValidatedGen = headers.get(darkZoneNum);
         assert lastValidatedGen.size() == 1;
-        return getLongestChain(lastValidatedGen.values().iterator().next());
-    }
-
-    private List<HeaderElement> getLongestChain(HeaderElement parent) {
-        Map<ByteArrayWrapper, HeaderElement> gen = headers.get(parent.header.getNumber() + 1);
-        List<HeaderElement> longest = new ArrayList<>();
-        if (gen != null) {
-            for (HeaderElement header : gen.values()) {
-                if (header.getParent() == parent) {
-                    List<HeaderElement> childLongest = getLongestChain(header);
-                    if (childLongest.size() > longest.size()) {
-                        longest = childLongest;
-                    }
-                }
-            }
-        }
-        List<HeaderElement> ret = new ArrayList<>();
-        ret.add(parent);
-        ret.addAll(longest);
-        return ret;
+        return lastValidatedGen.values().iterator().next();
+    }
+
+    /**
+     * @return number of the last header of the longest chain starting from the dark zone
+     */
+    private long getLongestChainEnd() {
+        return getDarkZoneHeader().bestNumber;
     }
 
     private boolean hasGaps() {
-        List<HeaderElement> longestChain = getLongestChain();
-        return longestChain.get(longestChain.size() - 1).header.getNumber() < maxNum;
+        return getLongestChainEnd() < maxNum;
     }
 
     private void trimChain() {
-        List<HeaderElement> longestChain = getLongestChain();
-        if (longestChain.size() > MAX_CHAIN_LEN) {
-            long newTrimNum = getLongestChain().get(longestChain.size() - MAX_CHAIN_LEN).header.getNumber();
-            for (int i = 0; darkZoneNum < newTrimNum; darkZoneNum++, i++) {
-                ByteArrayWrapper wHash = new ByteArrayWrapper(longestChain.get(i).header.getHash());
-                putGenHeaders(darkZoneNum, Collections.singletonMap(wHash, longestChain.get(i)));
+        HeaderElement chainElement = getDarkZoneHeader();
+        long longestChainLen = chainElement.bestNumber - darkZoneNum + 1;
+        if (longestChainLen > MAX_CHAIN_LEN) {
+            long newTrimNum = chainElement.bestNumber - MAX_CHAIN_LEN + 1;
+            for (; darkZoneNum < newTrimNum; darkZoneNum++) {
+                // dropping the forks, their descendants become unreachable
+                for (HeaderElement element : headers.get(darkZoneNum).values()) {
+                    if (element != chainElement) element.detach();
+                }
+                ByteArrayWrapper wHash = new ByteArrayWrapper(chainElement.header.getHash());
+                putGenHeaders(darkZoneNum, Collections.singletonMap(wHash, chainElement));
+                chainElement = chainElement.bestChild;
             }
             darkZoneNum--;
         }
@@ -253,6 +306,8 @@ public class SyncQueueImpl implements SyncQueueIfc {
             HeaderElement headerElement = genHeaders.values().iterator().next();
             if (headerElement.exported) {
                 headers.remove(minNum);
+                // not to retain the whole exported chain via the parent links
+                headerElement.detachChildren();
             } else {
                 break;
             }
@@ -269,11 +324,24 @@ public class SyncQueueImpl implements SyncQueueIfc {
     }
 
     private boolean addHeaderPriv(BlockHeaderWrapper header) {
+        return addHeaderPriv(header, false);
+    }
+
+    /**
+     * @param segment true for the header of the skeleton segment which may be not linked to the chain yet,
+     *                such headers are not counted in maxNum (thus not scheduled for the bodies download)
+     *                until the chain reaches them
+     */
+    private boolean addHeaderPriv(BlockHeaderWrapper header, boolean segment) {
         long num = header.getNumber();
         Map<ByteArrayWrapper, HeaderElement> genHeaders = headers.get(num);
         if (genHeaders == null) {
             genHeaders = new HashMap<>();
-            putGenHeaders(num, genHeaders);
+            if (segment) {
+                headers.put(num, genHeaders);
+            } else {
+                putGenHeaders(num, genHeaders);
+            }
         }
         ByteArrayWrapper wHash = new ByteArrayWrapper(header.getHash());
         HeaderElement headerElement = genHeaders.get(wHash);
@@ -282,12 +350,162 @@ public class SyncQueueImpl implements SyncQueueIfc {
         headerElement = new HeaderElement(header);
         genHeaders.put(wHash, headerElement);
 
+        // children could be added prior to their parent
+        Map<ByteArrayWrapper, HeaderElement> childGenHeaders = headers.get(num + 1);
+        if (childGenHeaders != null) {
+            for (HeaderElement child : childGenHeaders.values()) {
+                if (child.parent == null && Arrays.equals(child.header.getHeader().getParentHash(), header.getHash())) {
+                    headerElement.addChild(child);
+                }
+            }
+        }
+        Map<ByteArrayWrapper, HeaderElement> parentGenHeaders = headers.get(num - 1);
+        if (parentGenHeaders != null) {
+            HeaderElement parent = parentGenHeaders.get(new ByteArrayWrapper(header.getHeader().getParentHash()));
+            if (parent != null) {
+                parent.addChild(headerElement);
+            }
+        }
+
         return true;
     }
 
     @Override
     public synchronized List<HeadersRequest> requestHeaders(int maxSize, int maxRequests) {
-        return Collections.singletonList(requestHeadersImpl(maxSize));
+        List<HeadersRequest> ret = requestSkeletonSegments(maxRequests);
+        if (!ret.isEmpty()) return ret;
+
+        ret = new ArrayList<>();
+        ret.add(requestHeadersImpl(maxSize));
+        HeadersRequest skeletonRequest = requestSkeleton(maxSize, maxRequests);
+        if (skeletonRequest != null) {
+            ret.add(skeletonRequest);
+            // the first segment is covered by the regular request
+            segmentRequests.put(maxNum + maxSize, System.currentTimeMillis());
+        }
+        return ret;
+    }
+
+    /**
+     * @return request of the anchors every maxSize blocks after the chain end
+     *      or null if the skeleton is not needed at the moment
+     */
+    private HeadersRequest requestSkeleton(int maxSize, int maxRequests) {
+        if (maxRequests < 2 || maxSize < 2 || !skeleton.isEmpty() || hasGaps() || maxNum < nextSkeletonNum) return null;
+        if (skeletonRequestHash != null && System.currentTimeMillis() - skeletonRequestTime < SKELETON_REQUEST_TIMEOUT) return null;
+
+        // the chain end header goes first in the response
+        int count = maxRequests + 1;
+        if (endBlockNumber != null) {
+            count = (int) Math.min(count, (endBlockNumber - maxNum) / maxSize + 1);
+        }
+        if (count < 3) return null;
+
+        skeletonRequestHash = getDarkZoneHeader().bestTip.header.getHash();
+        skeletonRequestStep = maxSize;
+        skeletonRequestTime = System.currentTimeMillis();
+        return new HeadersRequestImpl(skeletonRequestHash, count, false, maxSize - 1);
+    }
+
+    /**
+     * @return requests of the skeleton segments which are neither received nor requested recently
+     */
+    private List<HeadersRequest> requestSkeletonSegments(int maxRequests) {
+        List<HeadersRequest> ret = new ArrayList<>();
+        if (skeleton.isEmpty()) return ret;
+
+        // dropping the anchors reached by the chain
+        long chainEnd = getLongestChainEnd();
+        for (Iterator<Map.Entry<Long, ByteArrayWrapper>> it = skeleton.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<Long, ByteArrayWrapper> anchor = it.next();
+            if (anchor.getKey() > chainEnd) break;
+            Map<ByteArrayWrapper, HeaderElement> gen = headers.get(anchor.getKey());
+            if (gen != null && getChainHeader(anchor.getKey()) != gen.get(anchor.getValue())) {
+                logger.debug("The chain diverged from the skeleton at #{}, dropping the skeleton", anchor.getKey());
+                clearSkeleton();
+                return ret;
+            }
+            it.remove();
+            segmentRequests.remove(anchor.getKey());
+        }
+
+        long now = System.currentTimeMillis();
+        long segmentStart = chainEnd;
+        for (Map.Entry<Long, ByteArrayWrapper> anchor : skeleton.entrySet()) {
+            if (ret.size() >= maxRequests) break;
+
+            Map<ByteArrayWrapper, HeaderElement> gen = headers.get(anchor.getKey());
+            Long requested = segmentRequests.get(anchor.getKey());
+            boolean received = gen != null && gen.containsKey(anchor.getValue());
+            if (!received && (requested == null || now - requested > SKELETON_REQUEST_TIMEOUT)) {
+                ret.add(new HeadersRequestImpl(segmentStart + 1, (int) (anchor.getKey() - segmentStart), false));
+                segmentRequests.put(anchor.getKey(), now);
+            }
+            segmentStart = anchor.getKey();
+        }
+        return ret;
+    }
+
+    private HeaderElement getChainHeader(long number) {
+        HeaderElement element = getDarkZoneHeader();
+        while (element != null && element.header.getNumber() < number) {
+            element = element.bestChild;
+        }
+        return element;
+    }
+
+    private void clearSkeleton() {
+        skeleton.clear();
+        segmentRequests.clear();
+    }
+
+    /**
+     * @return true if the headers are the response to the pending skeleton request
+     */
+    private boolean addSkeleton(List<BlockHeaderWrapper> headers) {
+        if (skeletonRequestHash == null || headers.isEmpty() ||
+                !Arrays.equals(skeletonRequestHash, headers.get(0).getHash())) return false;
+        for (int i = 1; i < headers.size(); i++) {
+            if (headers.get(i).getNumber() != headers.get(i - 1).getNumber() + skeletonRequestStep) return false;
+        }
+
+        skeletonRequestHash = null;
+        for (BlockHeaderWrapper header : headers.subList(1, headers.size())) {
+            skeleton.put(header.getNumber(), new ByteArrayWrapper(header.getHash()));
+        }
+        if (skeleton.isEmpty()) {
+            nextSkeletonNum = maxNum + skeletonRequestStep;
+        } else {
+            logger.debug("Skeleton received: #{} - #{}", skeleton.firstKey(), skeleton.lastKey());
+        }
+        return true;
+    }
+
+    /**
+     * Checks the headers against the skeleton anchors
+     * @return -1 if any header conflicts with an anchor,
+     *      1 if the headers are linked to an anchor or to the already linked segment part
+     *      (when the segment request was split), 0 otherwise
+     */
+    private int checkSkeleton(Collection<BlockHeaderWrapper> headers) {
+        if (skeleton.isEmpty()) return 0;
+        int ret = 0;
+        for (BlockHeaderWrapper header : headers) {
+            ByteArrayWrapper anchor = skeleton.get(header.getNumber());
+            if (anchor != null) {
+                if (!anchor.equals(new ByteArrayWrapper(header.getHash()))) return -1;
+                ret = 1;
+            }
+            ByteArrayWrapper parentHash = new ByteArrayWrapper(header.getHeader().getParentHash());
+            if (parentHash.equals(skeleton.get(header.getNumber() - 1))) {
+                ret = 1;
+            }
+            Map<ByteArrayWrapper, HeaderElement> parentGen = this.headers.get(header.getNumber() - 1);
+            if (parentGen != null && parentGen.containsKey(parentHash)) {
+                ret = 1;
+            }
+        }
+        return ret;
     }
 
     private HeadersRequest requestHeadersImpl(int count) {
@@ -303,8 +521,7 @@ public class SyncQueueImpl implements SyncQueueIfc {
                 headersCount = count;
             }
         } else {
-            List<HeaderElement> longestChain = getLongestChain();
-            startNumber = longestChain.get(longestChain.size() - 1).header.getNumber();
+            startNumber = getLongestChainEnd();
             headersCount = MAX_CHAIN_LEN;
             if (!rnd.nextBoolean()) reverse = true;
         }
@@ -314,9 +531,23 @@ public class SyncQueueImpl implements SyncQueueIfc {
 
     @Override
     public synchronized List<BlockHeaderWrapper> addHeaders(Collection<BlockHeaderWrapper> headers) {
+        if (addSkeleton(new ArrayList<>(headers))) return null;
+
+        int skeletonCheck = checkSkeleton(headers);
+        if (skeletonCheck < 0) {
+            logger.debug("Headers don't match the skeleton, dropping");
+            return null;
+        }
         for (BlockHeaderWrapper header : headers) {
-            addHeader(header);
+            if (skeletonCheck > 0 && header.getNumber() > darkZoneNum && header.getNumber() <= skeleton.lastKey()) {
+                // segment linked to the skeleton may be far ahead of the chain
+                addHeaderPriv(header, true);
+            } else {
+                addHeader(header);
+            }
         }
+        // the segments reached by the chain
+        maxNum = Math.max(maxNum, getLongestChainEnd());
         trimChain();
         return null;
     }
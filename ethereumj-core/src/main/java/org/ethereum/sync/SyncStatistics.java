@@ -12,6 +12,10 @@ public class SyncStatistics {
     private long headersCount;
     private int headerBunchesCount;
 
+    // survive reset() since these reflect the peer capacity rather than the sync progress
+    private final Throughput headersThroughput = new Throughput();
+    private final Throughput bodiesThroughput = new Throughput();
+
     public SyncStatistics() {
         reset();
     }
@@ -25,12 +29,14 @@ public class SyncStatistics {
 
     public void addBlocks(long cnt) {
         blocksCount += cnt;
+        bodiesThroughput.received(cnt);
         fixCommon(cnt);
     }
 
     public void addHeaders(long cnt) {
         headerBunchesCount++;
         headersCount += cnt;
+        headersThroughput.received(cnt);
         fixCommon(cnt);
     }
 
@@ -38,6 +44,30 @@ public class SyncStatistics {
         updatedAt = System.currentTimeMillis();
     }
 
+    /**
+     * Should be called when the headers request is sent to the peer
+     * to measure the response time on the {@link #addHeaders(long)}
+     */
+    public void headersRequested() {
+        headersThroughput.requested();
+    }
+
+    /**
+     * Should be called when the block bodies request is sent to the peer
+     * to measure the response time on the {@link #addBlocks(long)}
+     */
+    public void bodiesRequested() {
+        bodiesThroughput.requested();
+    }
+
+    public Throughput getHeadersThroughput() {
+        return headersThroughput;
+    }
+
+    public Throughput getBodiesThroughput() {
+        return bodiesThroughput;
+    }
+
     public long getBlocksCount() {
         return blocksCount;
     }
@@ -53,4 +83,73 @@ public class SyncStatistics {
     public int getHeaderBunchesCount() {
         return headerBunchesCount;
     }
+
+    /**
+     * Round trip time and items/sec rate of a peer responses of some kind,
+     * both are exponential moving averages over the recent requests
+     */
+    public static class Throughput {
+        // weight of the last measurement
+        private static final double ALPHA = 0.3;
+
+        private long requestedAt;
+        private double rtt;
+        private double itemsPerSec;
+        private int measurements;
+
+        public synchronized void requested() {
+            requestedAt = System.currentTimeMillis();
+        }
+
+        public synchronized void received(long items) {
+            if (requestedAt == 0) return;
+            received(items, System.currentTimeMillis() - requestedAt);
+        }
+
+        synchronized void received(long items, long elapsedMillis) {
+            requestedAt = 0;
+            elapsedMillis = Math.max(elapsedMillis, 1);
+            if (items == 0) {
+                // the peer has nothing to send (e.g. it is behind), that says nothing about its throughput
+                if (measurements > 0) rtt = ALPHA * elapsedMillis + (1 - ALPHA) * rtt;
+                return;
+            }
+            double rate = items * 1000d / elapsedMillis;
+            if (measurements == 0) {
+                rtt = elapsedMillis;
+                itemsPerSec = rate;
+            } else {
+                rtt = ALPHA * elapsedMillis + (1 - ALPHA) * rtt;
+                itemsPerSec = ALPHA * rate + (1 - ALPHA) * itemsPerSec;
+            }
+            measurements++;
+        }
+
+        /**
+         * @return number of items the peer is expected to deliver within the target time,
+         *         the defaultCount if the peer was not measured yet
+         */
+        public synchronized int getCapacity(long targetMillis, int defaultCount, int minCount, int maxCount) {
+            if (measurements == 0) return defaultCount;
+            int count = (int) Math.min(itemsPerSec * targetMillis / 1000, Integer.MAX_VALUE);
+            return Math.max(minCount, Math.min(maxCount, count));
+        }
+
+        public synchronized boolean isMeasured() {
+            return measurements > 0;
+        }
+
+        public synchronized double getRtt() {
+            return rtt;
+        }
+
+        public synchronized double getItemsPerSec() {
+            return itemsPerSec;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return measurements == 0 ? "n/a" : String.format("%.0f/sec, rtt %.0f ms", itemsPerSec, rtt);
+        }
+    }
 }
@@ -0,0 +1,35 @@
+package org.ethereum.trie;
+
+import org.ethereum.crypto.HashUtil;
+import org.ethereum.util.RLP;
+
+/**
+ * Builds the trie of the list items keyed by the RLP encoded item index
+ * (as the block transactions and receipts tries are) item by item.
+ *
+ * The items may be appended as soon as they become available (e.g. when a transaction
+ * is executed) so the trie is ready as soon as the last item is added and
+ * the root hash is obtained without traversing the whole list again
+ */
+public class IndexedTrieBuilder {
+
+    private final Trie<byte[]> trie = new TrieImpl();
+    private int size = 0;
+
+    /**
+     * Appends the next item to the trie
+     * @param encoded item RLP representation stored as the trie value
+     */
+    public synchronized IndexedTrieBuilder add(byte[] encoded) {
+        trie.put(RLP.encodeInt(size++), encoded);
+        return this;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized byte[] getRootHash() {
+        return size == 0 ? HashUtil.EMPTY_TRIE_HASH : trie.getRootHash();
+    }
+}
@@ -3,6 +3,8 @@ package org.ethereum.trie;
 import org.ethereum.datasource.Source;
 import org.ethereum.util.Value;
 
+import java.util.List;
+
 import static org.ethereum.crypto.HashUtil.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 
@@ -34,4 +36,17 @@ public class SecureTrie extends TrieImpl {
     public void delete(byte[] key) {
         put(key, EMPTY_BYTE_ARRAY);
     }
+
+    @Override
+    public List<byte[]> getProof(byte[] key) {
+        return super.getProof(sha3(key));
+    }
+
+    /**
+     * The same as {@link TrieImpl#verifyProof(byte[], byte[], List)} but hashes the key
+     * the way the {@link SecureTrie} does
+     */
+    public static byte[] verifyProof(byte[] rootHash, byte[] key, List<byte[]> proof) {
+        return TrieImpl.verifyProof(rootHash, sha3(key), proof);
+    }
 }
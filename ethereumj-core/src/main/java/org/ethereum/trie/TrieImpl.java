@@ -2,17 +2,22 @@ package org.ethereum.trie;
 
 import org.ethereum.datasource.inmem.HashMapDB;
 import org.ethereum.datasource.Source;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.util.FastByteComparisons;
 import org.ethereum.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static java.util.Arrays.copyOfRange;
 import static org.ethereum.crypto.HashUtil.EMPTY_TRIE_HASH;
+import static org.ethereum.crypto.HashUtil.sha3;
 import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static org.ethereum.util.ByteUtil.matchingNibbleLength;
 import static org.ethereum.util.CompactEncoder.*;
@@ -52,8 +57,12 @@ public class TrieImpl implements Trie<byte[]> {
         this.root = root;
     }
 
+    /**
+     * @return lazy iterator over the trie entries in the key order
+     * @see TrieIterator
+     */
     public TrieIterator getIterator() {
-        throw new RuntimeException("Not supported");
+        return new TrieIterator(this);
     }
 
     public Object getRoot() {
@@ -139,6 +148,75 @@ public class TrieImpl implements Trie<byte[]> {
         }
     }
 
+    /**
+     * Collects the Merkle proof for the key: RLP encoded nodes on the path
+     * from the root to the key's leaf (or to the point where the path diverges,
+     * which proves the key absence). Nodes are fetched from the cache only,
+     * nodes embedded into their parents are not listed separately.
+     *
+     * @return list of RLP encoded nodes starting from the root node
+     */
+    public List<byte[]> getProof(byte[] key) {
+        synchronized (cache) {
+            List<byte[]> proof = new ArrayList<>();
+            if (isEmptyNode(root)) return proof;
+
+            Object node = root;
+            if (!(root instanceof byte[])) {
+                // root node is shorter than 32 bytes and thus isn't stored in the cache
+                proof.add(new Value(root).encode());
+                node = new Value(root).asObj();
+            }
+            collectProof(node, binToNibbles(key), proof);
+            return proof;
+        }
+    }
+
+    /**
+     * Verifies the proof obtained by {@link #getProof(byte[])} against the trie root hash.
+     * Doesn't require any trie storage.
+     *
+     * @return the value for the key, empty array if the proof shows that the key is absent
+     *         or <code>null</code> if the proof is incomplete or doesn't match the root
+     */
+    public static byte[] verifyProof(byte[] rootHash, byte[] key, List<byte[]> proof) {
+        if (FastByteComparisons.equal(rootHash, EMPTY_TRIE_HASH)) return EMPTY_BYTE_ARRAY;
+
+        Map<ByteArrayWrapper, Value> nodes = new HashMap<>();
+        for (byte[] encoded : proof) {
+            nodes.put(new ByteArrayWrapper(sha3(encoded)), Value.fromRlpEncoded(encoded));
+        }
+
+        Object node = rootHash;
+        byte[] k = binToNibbles(key);
+        while (true) {
+            Value val = new Value(node);
+            if (k.length == 0) return val.asBytes();
+            if (val.isEmpty()) return EMPTY_BYTE_ARRAY;
+
+            Value currentNode = val;
+            if (val.isBytes()) {
+                if (val.asBytes().length != 32) return null;
+                currentNode = nodes.get(new ByteArrayWrapper(val.asBytes()));
+                if (currentNode == null) return null;
+            }
+
+            if (currentNode.length() == PAIR_SIZE) {
+                byte[] nodeKey = unpackToNibbles(currentNode.get(0).asBytes());
+                if (k.length < nodeKey.length || !Arrays.equals(nodeKey, copyOfRange(k, 0, nodeKey.length))) {
+                    return EMPTY_BYTE_ARRAY;
+                }
+                node = currentNode.get(1).asObj();
+                k = copyOfRange(k, nodeKey.length, k.length);
+            } else if (currentNode.length() == LIST_SIZE) {
+                node = currentNode.get(k[0]).asObj();
+                k = copyOfRange(k, 1, k.length);
+            } else {
+                return null;
+            }
+        }
+    }
+
     /****************************************
      *          Private functions           *
      ****************************************/
@@ -170,6 +248,27 @@ public class TrieImpl implements Trie<byte[]> {
         }
     }
 
+    private void collectProof(Object node, byte[] key, List<byte[]> proof) {
+        if (key.length == 0 || isEmptyNode(node)) return;
+
+        Value currentNode = this.getNode(node);
+        if (currentNode == null) {
+            throw new RuntimeException("Invalid Trie state, missing node " + new Value(node));
+        }
+        if (node instanceof byte[] && ((byte[]) node).length == 32) {
+            proof.add(currentNode.encode());
+        }
+
+        if (currentNode.length() == PAIR_SIZE) {
+            byte[] k = unpackToNibbles(currentNode.get(0).asBytes());
+            if (key.length >= k.length && Arrays.equals(k, copyOfRange(key, 0, k.length))) {
+                collectProof(currentNode.get(1).asObj(), copyOfRange(key, k.length, key.length), proof);
+            }
+        } else {
+            collectProof(currentNode.get(key[0]).asObj(), copyOfRange(key, 1, key.length), proof);
+        }
+    }
+
     private Object insertOrDelete(Object node, byte[] key, byte[] value) {
         if (value.length != 0) {
             return this.insert(node, key, value);
@@ -361,7 +460,7 @@ public class TrieImpl implements Trie<byte[]> {
      * Helper method to retrieve the actual node. If the node is not a list and length
      * is > 32 bytes get the actual node from the db.
      */
-    private Value getNode(Object node) {
+    Value getNode(Object node) {
 
         Value val = new Value(node);
 
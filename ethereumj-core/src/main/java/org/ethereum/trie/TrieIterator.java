@@ -2,89 +2,196 @@ package org.ethereum.trie;
 
 import org.ethereum.util.Value;
 
-import java.util.List;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
 
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+import static org.ethereum.util.ByteUtil.merge;
+import static org.ethereum.util.CompactEncoder.binToNibblesNoTerminator;
 import static org.ethereum.util.CompactEncoder.unpackToNibbles;
 
-/*
+/**
+ * Lazy iterator over trie (key, value) pairs in the ascending key order.
+ *
+ * Only the nodes on the path to the current entry are held in memory, so the
+ * whole state or a large contract storage may be walked with a bounded footprint.
+ * The iterator may be positioned with {@link #seek(byte[])}, bounded with {@link #limit(int)}
+ * and resumed later from the key returned by {@link #getCursor()}.
+ *
+ * The trie root is captured on creation, so subsequent trie updates are not visible to the iterator.
+ * Note that trie nodes are fetched lazily, thus the underlying source should keep the nodes
+ * of the captured root until the iteration is complete.
+ *
+ * For the {@link SecureTrie} the returned keys are hashes of the original keys
+ *
  * @author Nick Savers
  * @since 20.05.2014
  */
-public class TrieIterator {
+public class TrieIterator implements Iterator<Map.Entry<byte[], byte[]>> {
 
-    private TrieImpl trie;
-    private String key;
-    private String value;
+    private static final int TERMINATOR = 16;
 
-    private List<byte[]> shas;
-    private List<String> values;
+    private static class Frame {
+        final Value node;
+        final byte[] path;
+        // branch node only: -1 - the value slot isn't visited yet, 0..15 - next child to visit
+        int idx = -1;
 
-    public TrieIterator(TrieImpl t) {
-        this.trie = t;
+        Frame(Value node, byte[] path) {
+            this.node = node;
+            this.path = path;
+        }
     }
 
-    // Some time in the near future this will need refactoring :-)
-    // XXX Note to self, IsSlice == inline node. Str == keccak to node
-    private void workNode(Value currentNode) {
-        if (currentNode.length() == 2) {
-            byte[] k = unpackToNibbles(currentNode.get(0).asBytes());
-
-            if (currentNode.get(1).asString().isEmpty()) {
-                this.workNode(currentNode.get(1));
-            } else {
-                if (k[k.length - 1] == 16) {
-                    this.values.add(currentNode.get(1).asString());
-                } else {
-                    this.shas.add(currentNode.get(1).asBytes());
-                    this.getNode(currentNode.get(1).asBytes());
-                }
+    private final TrieImpl trie;
+    private final Object root;
+
+    private Deque<Frame> stack;
+    private byte[] startNibbles = EMPTY_BYTE_ARRAY;
+    private Map.Entry<byte[], byte[]> nextEntry;
+    private int limit = Integer.MAX_VALUE;
+    private int returned = 0;
+
+    public TrieIterator(TrieImpl trie) {
+        this.trie = trie;
+        this.root = trie.getRoot();
+    }
+
+    /**
+     * Positions the iterator to the first entry with the key greater or equal to the startKey
+     */
+    public TrieIterator seek(byte[] startKey) {
+        this.startNibbles = binToNibblesNoTerminator(startKey);
+        this.stack = null;
+        this.nextEntry = null;
+        return this;
+    }
+
+    /**
+     * Limits the number of entries returned by this iterator
+     */
+    public TrieIterator limit(int limit) {
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Returns the key of the next entry which is not yet returned or <code>null</code>
+     * if there are no more entries. The key may be passed to {@link #seek(byte[])} of a fresh
+     * iterator (created for the same root) to continue the iteration, e.g. after the limit is reached
+     */
+    public byte[] getCursor() {
+        Map.Entry<byte[], byte[]> next = peek();
+        return next == null ? null : next.getKey();
+    }
+
+    @Override
+    public boolean hasNext() {
+        return returned < limit && peek() != null;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Map.Entry<byte[], byte[]> ret = nextEntry;
+        nextEntry = null;
+        returned++;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    private Map.Entry<byte[], byte[]> peek() {
+        if (nextEntry == null) {
+            if (stack == null) {
+                stack = new ArrayDeque<>();
+                push(root, EMPTY_BYTE_ARRAY);
             }
-        } else {
-            for (int i = 0; i < currentNode.length(); i++) {
-                if (i == 16 && currentNode.get(i).length() != 0) {
-                    this.values.add(currentNode.get(i).asString());
-                } else {
-                    if (currentNode.get(i).asString().isEmpty()) {
-                        this.workNode(currentNode.get(i));
+            nextEntry = advance();
+        }
+        return nextEntry;
+    }
+
+    private Map.Entry<byte[], byte[]> advance() {
+        synchronized (trie.getCache()) {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.peekLast();
+                if (frame.node.length() == 2) {
+                    stack.removeLast();
+                    byte[] k = unpackToNibbles(frame.node.get(0).asBytes());
+                    Object v = frame.node.get(1).asObj();
+                    if (k[k.length - 1] == TERMINATOR) {
+                        byte[] key = merge(frame.path, Arrays.copyOf(k, k.length - 1));
+                        if (compareToStart(key) >= 0) return entry(key, new Value(v).asBytes());
                     } else {
-                        String val = currentNode.get(i).asString();
-                        if (!val.isEmpty()) {
-                            this.shas.add(currentNode.get(1).asBytes());
-                            this.getNode(val.getBytes());
+                        byte[] childPath = merge(frame.path, k);
+                        if (!isBeforeStart(childPath)) push(v, childPath);
+                    }
+                } else {
+                    if (frame.idx == -1) {
+                        frame.idx = 0;
+                        Value val = frame.node.get(TERMINATOR);
+                        if (!val.isEmpty() && compareToStart(frame.path) >= 0) {
+                            return entry(frame.path, val.asBytes());
                         }
                     }
+                    if (frame.idx >= TERMINATOR) {
+                        stack.removeLast();
+                        continue;
+                    }
+                    int i = frame.idx++;
+                    byte[] childPath = merge(frame.path, new byte[]{(byte) i});
+                    if (!isBeforeStart(childPath)) push(frame.node.get(i).asObj(), childPath);
                 }
             }
+            return null;
         }
     }
 
-    private void getNode(byte[] node) {
-        Value currentNode = this.trie.getCache().get(node);
-        this.workNode(currentNode);
-    }
-
-    private List<byte[]> collect() {
-        if (this.trie.getRoot() == "") {
-            return null;
+    private void push(Object nodeRef, byte[] path) {
+        if (nodeRef == null || new Value(nodeRef).isEmpty()) return;
+        Value node = trie.getNode(nodeRef);
+        if (node == null) {
+            throw new RuntimeException("Invalid Trie state, missing node " + new Value(nodeRef));
+        }
+        if (node.isList()) {
+            stack.addLast(new Frame(node, path));
         }
-        this.getNode(new Value(this.trie.getRoot()).asBytes());
-        return this.shas;
     }
 
-    public int purge() {
-        List<byte[]> shas = this.collect();
-
-        for (byte[] sha : shas) {
-            this.trie.getCache().delete(sha);
+    /**
+     * @return true if all the keys starting with the path are less than the start key
+     */
+    private boolean isBeforeStart(byte[] path) {
+        int len = Math.min(path.length, startNibbles.length);
+        for (int i = 0; i < len; i++) {
+            if (path[i] != startNibbles[i]) return path[i] < startNibbles[i];
         }
-        return this.values.size();
+        return false;
     }
 
-    private String getKey() {
-        return "";
+    private int compareToStart(byte[] keyNibbles) {
+        if (isBeforeStart(keyNibbles)) return -1;
+        int len = Math.min(keyNibbles.length, startNibbles.length);
+        for (int i = 0; i < len; i++) {
+            if (keyNibbles[i] != startNibbles[i]) return 1;
+        }
+        return keyNibbles.length - startNibbles.length;
     }
 
-    private String getValue() {
-        return "";
+    private static Map.Entry<byte[], byte[]> entry(byte[] keyNibbles, byte[] value) {
+        byte[] key = new byte[keyNibbles.length / 2];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) ((keyNibbles[i * 2] << 4) | keyNibbles[i * 2 + 1]);
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(key, value);
     }
 }
@@ -0,0 +1,60 @@
+package org.ethereum.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter for the keys which are hashes themselves (e.g. sha3 of the value)
+ * so the bit indexes are just taken from the key bytes without further hashing.
+ *
+ * Thread safe: adding and querying may be done concurrently without locking
+ */
+public class HashBloomFilter {
+    private final AtomicLongArray words;
+    private final long indexMask;
+    private final int hashFunctions;
+
+    /**
+     * @param log2Bits the filter contains 2^log2Bits bits (i.e. takes 2^(log2Bits - 3) bytes)
+     * @param hashFunctions number of bits set per key, each bit index is taken from
+     *                      the next 4 bytes of the key
+     */
+    public HashBloomFilter(int log2Bits, int hashFunctions) {
+        if (log2Bits < 6 || log2Bits > 32) throw new RuntimeException("Invalid filter size: 2^" + log2Bits + " bits");
+        if (hashFunctions < 1) throw new RuntimeException("Invalid number of hash functions: " + hashFunctions);
+        this.words = new AtomicLongArray(1 << (log2Bits - 6));
+        this.indexMask = (1L << log2Bits) - 1;
+        this.hashFunctions = hashFunctions;
+    }
+
+    private long bitIndex(byte[] hash, int i) {
+        int off = i * 4;
+        if (hash.length < off + 4) throw new RuntimeException("Key is too short for the filter: " + hash.length + " bytes");
+        long val = ((hash[off] & 0xFFL) << 24) | ((hash[off + 1] & 0xFFL) << 16) |
+                ((hash[off + 2] & 0xFFL) << 8) | (hash[off + 3] & 0xFFL);
+        return val & indexMask;
+    }
+
+    public void add(byte[] hash) {
+        for (int i = 0; i < hashFunctions; i++) {
+            long idx = bitIndex(hash, i);
+            int wordIdx = (int) (idx >>> 6);
+            long bit = 1L << (idx & 63);
+            while (true) {
+                long word = words.get(wordIdx);
+                if ((word & bit) != 0 || words.compareAndSet(wordIdx, word, word | bit)) break;
+            }
+        }
+    }
+
+    /**
+     * @return false if the hash was definitely never added,
+     *         true if it was added or (with a small probability) was not
+     */
+    public boolean mightContain(byte[] hash) {
+        for (int i = 0; i < hashFunctions; i++) {
+            long idx = bitIndex(hash, i);
+            if ((words.get((int) (idx >>> 6)) & (1L << (idx & 63))) == 0) return false;
+        }
+        return true;
+    }
+}
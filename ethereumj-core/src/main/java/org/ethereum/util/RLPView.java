@@ -0,0 +1,202 @@
+package org.ethereum.util;
+
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Read-only view of an RLP encoded element backed by the original encoded buffer.
+ *
+ * In contrast to {@link RLP#decode2(byte[])} which copies every item and builds the whole
+ * {@link RLPList} tree eagerly, the view just remembers the element (offset, length) within
+ * the buffer. List children are indexed on the first access and only the values
+ * which are actually requested are copied out of the buffer (or not copied at all
+ * when read via {@link #getLong()}, {@link #getBigInteger()} or {@link #sliceAsByteBuffer()})
+ *
+ * The buffer should not be modified while the view is in use
+ */
+public class RLPView {
+
+    private static final int OFFSET_SHORT_ITEM = 0x80;
+    private static final int OFFSET_LONG_ITEM = 0xb7;
+    private static final int OFFSET_SHORT_LIST = 0xc0;
+    private static final int OFFSET_LONG_LIST = 0xf7;
+
+    private final byte[] buf;
+    // encoded element bounds (including prefix)
+    private final int offset;
+    private final int length;
+    // payload bounds
+    private final int payloadOffset;
+    private final int payloadLength;
+    private final boolean list;
+
+    // children offsets, built lazily for lists
+    private int[] children;
+
+    private RLPView(byte[] buf, int offset, int limit) {
+        if (offset >= limit) throw wrongEncoding(buf, offset, limit, "no data");
+        this.buf = buf;
+        this.offset = offset;
+
+        int prefix = buf[offset] & 0xFF;
+        if (prefix < OFFSET_SHORT_ITEM) {
+            list = false;
+            payloadOffset = offset;
+            payloadLength = 1;
+        } else if (prefix <= OFFSET_LONG_ITEM) {
+            list = false;
+            payloadOffset = offset + 1;
+            payloadLength = prefix - OFFSET_SHORT_ITEM;
+        } else if (prefix < OFFSET_SHORT_LIST) {
+            list = false;
+            int lenOfLen = prefix - OFFSET_LONG_ITEM;
+            payloadOffset = offset + 1 + lenOfLen;
+            payloadLength = readLength(buf, offset + 1, lenOfLen, limit);
+        } else if (prefix <= OFFSET_LONG_LIST) {
+            list = true;
+            payloadOffset = offset + 1;
+            payloadLength = prefix - OFFSET_SHORT_LIST;
+        } else {
+            list = true;
+            int lenOfLen = prefix - OFFSET_LONG_LIST;
+            payloadOffset = offset + 1 + lenOfLen;
+            payloadLength = readLength(buf, offset + 1, lenOfLen, limit);
+        }
+
+        if (payloadLength < 0 || (long) payloadOffset + payloadLength > limit) {
+            throw wrongEncoding(buf, offset, limit, "element exceeds the enclosing data");
+        }
+        this.length = payloadOffset + payloadLength - offset;
+    }
+
+    /**
+     * Creates a view of the first element encoded in the buffer
+     */
+    public static RLPView wrap(byte[] encoded) {
+        return wrap(encoded, 0);
+    }
+
+    /**
+     * Creates a view of the element encoded in the buffer at the specified position
+     */
+    public static RLPView wrap(byte[] encoded, int offset) {
+        return new RLPView(encoded, offset, encoded.length);
+    }
+
+    public boolean isList() {
+        return list;
+    }
+
+    /**
+     * @return number of list elements
+     */
+    public int size() {
+        return getChildren().length;
+    }
+
+    /**
+     * @return the view of the list element with the specified index
+     */
+    public RLPView get(int index) {
+        int[] children = getChildren();
+        if (index >= children.length) {
+            throw new IndexOutOfBoundsException("RLP list element " + index + " of " + children.length);
+        }
+        return new RLPView(buf, children[index], payloadOffset + payloadLength);
+    }
+
+    private int[] getChildren() {
+        if (!list) throw new RuntimeException("RLP element is not a list");
+        if (children == null) {
+            int count = 0;
+            int[] offsets = new int[8];
+            int pos = payloadOffset;
+            int end = payloadOffset + payloadLength;
+            while (pos < end) {
+                if (count == offsets.length) offsets = Arrays.copyOf(offsets, count * 2);
+                offsets[count++] = pos;
+                pos += new RLPView(buf, pos, end).length;
+            }
+            children = Arrays.copyOf(offsets, count);
+        }
+        return children;
+    }
+
+    /**
+     * @return true for an empty item (0x80) and an empty list (0xc0)
+     */
+    public boolean isEmpty() {
+        return payloadLength == 0;
+    }
+
+    /**
+     * @return the item payload copy or <code>null</code> for an empty item
+     * (the same as {@link RLPItem#getRLPData()} does)
+     */
+    public byte[] copyBytes() {
+        if (list) throw new RuntimeException("RLP element is a list");
+        return payloadLength == 0 ? null : Arrays.copyOfRange(buf, payloadOffset, payloadOffset + payloadLength);
+    }
+
+    /**
+     * @return the whole encoded element (including the prefix) copy
+     */
+    public byte[] getEncoded() {
+        return Arrays.copyOfRange(buf, offset, offset + length);
+    }
+
+    /**
+     * @return read-only buffer over the element payload without copying
+     */
+    public ByteBuffer sliceAsByteBuffer() {
+        return ByteBuffer.wrap(buf, payloadOffset, payloadLength).slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * @return the item payload interpreted as an unsigned big-endian integer
+     */
+    public long getLong() {
+        if (list) throw new RuntimeException("RLP element is a list");
+        if (payloadLength > 8) throw new RuntimeException("RLP item is too long for long value: " + payloadLength);
+        long ret = 0;
+        for (int i = 0; i < payloadLength; i++) {
+            ret = (ret << 8) | (buf[payloadOffset + i] & 0xFF);
+        }
+        return ret;
+    }
+
+    public int getInt() {
+        long ret = getLong();
+        if (ret > Integer.MAX_VALUE) throw new RuntimeException("RLP item is too long for int value: " + ret);
+        return (int) ret;
+    }
+
+    /**
+     * @return the item payload interpreted as an unsigned big-endian integer
+     */
+    public BigInteger getBigInteger() {
+        if (list) throw new RuntimeException("RLP element is a list");
+        if (payloadLength < 8) return BigInteger.valueOf(getLong());
+        return new BigInteger(1, Arrays.copyOfRange(buf, payloadOffset, payloadOffset + payloadLength));
+    }
+
+    private static int readLength(byte[] buf, int pos, int lenOfLen, int limit) {
+        if (pos + lenOfLen > limit) throw wrongEncoding(buf, pos, limit, "truncated length");
+        if (lenOfLen > 4) throw wrongEncoding(buf, pos, limit, "length is too big");
+        long len = 0;
+        for (int i = 0; i < lenOfLen; i++) {
+            len = (len << 8) | (buf[pos + i] & 0xFF);
+        }
+        if (len > Integer.MAX_VALUE) throw wrongEncoding(buf, pos, limit, "length is too big");
+        return (int) len;
+    }
+
+    private static RuntimeException wrongEncoding(byte[] buf, int pos, int limit, String msg) {
+        int from = Math.min(pos, buf.length);
+        int len = Math.min(Math.max(limit - from, 0), 64);
+        return new RuntimeException("RLP wrong encoding: " + msg + " (" + Hex.toHexString(buf, from, len) + ")");
+    }
+}
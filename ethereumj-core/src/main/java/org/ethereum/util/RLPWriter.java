@@ -0,0 +1,243 @@
+package org.ethereum.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import static org.spongycastle.util.BigIntegers.asUnsignedByteArray;
+
+/**
+ * Single pass RLP encoder.
+ *
+ * Items are written directly into the growable buffer without prefixes of enclosing lists
+ * (which are unknown until the list is complete). The list prefixes are computed in {@link #endList()}
+ * and are interleaved with the payload when the final encoding is produced, so every written byte
+ * is copied just once regardless of the nesting depth (in contrast to {@link RLP#encodeList(byte[]...)}
+ * which requires all children to be encoded into their own arrays first)
+ *
+ * Element encoding rules are the same as of {@link RLP#encodeElement(byte[])} and other RLP encode methods.
+ * The writer may be reused after {@link #reset()}
+ */
+public class RLPWriter {
+
+    private static final int OFFSET_SHORT_ITEM = 0x80;
+    private static final int OFFSET_LONG_ITEM = 0xb7;
+    private static final int OFFSET_SHORT_LIST = 0xc0;
+    private static final int OFFSET_LONG_LIST = 0xf7;
+    private static final int SIZE_THRESHOLD = 56;
+
+    private byte[] buf;
+    private int pos = 0;
+
+    // list prefixes in the order of the lists start: position in the buf and prefix bytes
+    private int[] listPos = new int[16];
+    private byte[][] listPrefix = new byte[16][];
+    private int listCount = 0;
+    private int prefixesSize = 0;
+
+    // stack of the open lists: index in the listPos and prefixesSize on the list start
+    private int[] openLists = new int[8];
+    private int[] openPrefixesSize = new int[8];
+    private int depth = 0;
+
+    public RLPWriter() {
+        this(256);
+    }
+
+    public RLPWriter(int initialCapacity) {
+        buf = new byte[Math.max(initialCapacity, 16)];
+    }
+
+    public RLPWriter startList() {
+        if (listCount == listPos.length) {
+            listPos = Arrays.copyOf(listPos, listCount * 2);
+            listPrefix = Arrays.copyOf(listPrefix, listCount * 2);
+        }
+        if (depth == openLists.length) {
+            openLists = Arrays.copyOf(openLists, depth * 2);
+            openPrefixesSize = Arrays.copyOf(openPrefixesSize, depth * 2);
+        }
+        listPos[listCount] = pos;
+        openLists[depth] = listCount;
+        openPrefixesSize[depth] = prefixesSize;
+        listCount++;
+        depth++;
+        return this;
+    }
+
+    public RLPWriter endList() {
+        if (depth == 0) throw new IllegalStateException("No open list");
+        depth--;
+        int idx = openLists[depth];
+        int payloadLength = pos - listPos[idx] + prefixesSize - openPrefixesSize[depth];
+        byte[] prefix = prefix(payloadLength, OFFSET_SHORT_LIST, OFFSET_LONG_LIST);
+        listPrefix[idx] = prefix;
+        prefixesSize += prefix.length;
+        return this;
+    }
+
+    /**
+     * Writes the list of already encoded elements
+     */
+    public RLPWriter writeList(byte[]... encodedElements) {
+        startList();
+        for (byte[] element : encodedElements) {
+            writeEncoded(element);
+        }
+        return endList();
+    }
+
+    /**
+     * Writes the RLP encoded data as is
+     */
+    public RLPWriter writeEncoded(byte[] encoded) {
+        write(encoded, 0, encoded.length);
+        return this;
+    }
+
+    /**
+     * Encodes the element the same way as {@link RLP#encodeElement(byte[])}
+     */
+    public RLPWriter writeElement(byte[] data) {
+        if (data == null || data.length == 0) {
+            write((byte) OFFSET_SHORT_ITEM);
+        } else if (data.length == 1 && (data[0] & 0xFF) < OFFSET_SHORT_ITEM) {
+            write(data[0]);
+        } else {
+            byte[] prefix = prefix(data.length, OFFSET_SHORT_ITEM, OFFSET_LONG_ITEM);
+            write(prefix, 0, prefix.length);
+            write(data, 0, data.length);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes the byte the same way as {@link RLP#encodeByte(byte)}
+     */
+    public RLPWriter writeByte(byte b) {
+        if (b == 0) {
+            write((byte) OFFSET_SHORT_ITEM);
+        } else if ((b & 0xFF) < OFFSET_SHORT_ITEM) {
+            write(b);
+        } else {
+            write((byte) (OFFSET_SHORT_ITEM + 1));
+            write(b);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes the non-negative value as an unsigned big-endian integer without leading zeroes
+     */
+    public RLPWriter writeLong(long value) {
+        if (value < 0) throw new IllegalArgumentException("Negative value: " + value);
+        if (value == 0) {
+            write((byte) OFFSET_SHORT_ITEM);
+        } else if (value < OFFSET_SHORT_ITEM) {
+            write((byte) value);
+        } else {
+            int len = (64 - Long.numberOfLeadingZeros(value) + 7) / 8;
+            write((byte) (OFFSET_SHORT_ITEM + len));
+            for (int i = len - 1; i >= 0; i--) {
+                write((byte) (value >>> (8 * i)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Encodes the value the same way as {@link RLP#encodeBigInteger(BigInteger)}
+     */
+    public RLPWriter writeBigInteger(BigInteger value) {
+        if (value.signum() == 0) {
+            write((byte) OFFSET_SHORT_ITEM);
+        } else if (value.bitLength() < 63) {
+            writeLong(value.longValue());
+        } else {
+            writeElement(asUnsignedByteArray(value));
+        }
+        return this;
+    }
+
+    /**
+     * @return the size of the resulting encoding
+     */
+    public int size() {
+        return pos + prefixesSize;
+    }
+
+    public byte[] toByteArray() {
+        checkComplete();
+        byte[] ret = new byte[size()];
+        int src = 0;
+        int dst = 0;
+        for (int i = 0; i < listCount; i++) {
+            int len = listPos[i] - src;
+            System.arraycopy(buf, src, ret, dst, len);
+            dst += len;
+            src = listPos[i];
+            System.arraycopy(listPrefix[i], 0, ret, dst, listPrefix[i].length);
+            dst += listPrefix[i].length;
+        }
+        System.arraycopy(buf, src, ret, dst, pos - src);
+        return ret;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        checkComplete();
+        int src = 0;
+        for (int i = 0; i < listCount; i++) {
+            out.write(buf, src, listPos[i] - src);
+            src = listPos[i];
+            out.write(listPrefix[i]);
+        }
+        out.write(buf, src, pos - src);
+    }
+
+    /**
+     * Clears the writer content keeping the allocated buffers
+     */
+    public RLPWriter reset() {
+        pos = 0;
+        Arrays.fill(listPrefix, 0, listCount, null);
+        listCount = 0;
+        prefixesSize = 0;
+        depth = 0;
+        return this;
+    }
+
+    private void checkComplete() {
+        if (depth > 0) throw new IllegalStateException("Not all lists are complete: " + depth);
+    }
+
+    private void write(byte b) {
+        ensureCapacity(1);
+        buf[pos++] = b;
+    }
+
+    private void write(byte[] data, int off, int len) {
+        ensureCapacity(len);
+        System.arraycopy(data, off, buf, pos, len);
+        pos += len;
+    }
+
+    private void ensureCapacity(int len) {
+        if (pos + len > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + len));
+        }
+    }
+
+    private static byte[] prefix(int length, int shortOffset, int longOffset) {
+        if (length < SIZE_THRESHOLD) {
+            return new byte[] {(byte) (shortOffset + length)};
+        }
+        int lenOfLen = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+        byte[] ret = new byte[1 + lenOfLen];
+        ret[0] = (byte) (longOffset + lenOfLen);
+        for (int i = 0; i < lenOfLen; i++) {
+            ret[lenOfLen - i] = (byte) (length >>> (8 * i));
+        }
+        return ret;
+    }
+}
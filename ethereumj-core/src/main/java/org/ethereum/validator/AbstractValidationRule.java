@@ -2,6 +2,7 @@ package org.ethereum.validator;
 
 import org.slf4j.Logger;
 
+import java.util.AbstractList;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -13,7 +14,46 @@ import java.util.List;
  */
 public abstract class AbstractValidationRule implements ValidationRule {
 
-    protected List<String> errors = new LinkedList<>();
+    // rule instances are shared by the threads validating headers concurrently,
+    // thus every thread collects its own errors
+    private final ThreadLocal<List<String>> threadErrors = new ThreadLocal<List<String>>() {
+        @Override
+        protected List<String> initialValue() {
+            return new LinkedList<>();
+        }
+    };
+
+    protected List<String> errors = new AbstractList<String>() {
+        @Override
+        public String get(int index) {
+            return threadErrors.get().get(index);
+        }
+
+        @Override
+        public int size() {
+            return threadErrors.get().size();
+        }
+
+        @Override
+        public String set(int index, String element) {
+            return threadErrors.get().set(index, element);
+        }
+
+        @Override
+        public void add(int index, String element) {
+            threadErrors.get().add(index, element);
+        }
+
+        @Override
+        public String remove(int index) {
+            return threadErrors.get().remove(index);
+        }
+
+        @Override
+        public void clear() {
+            threadErrors.get().clear();
+        }
+    };
 
     @Override
     public List<String> getErrors() {
@@ -2,10 +2,8 @@ package org.ethereum.vm;
 
 import org.ethereum.core.Bloom;
 import org.ethereum.crypto.HashUtil;
-import org.ethereum.util.RLP;
-import org.ethereum.util.RLPElement;
-import org.ethereum.util.RLPItem;
-import org.ethereum.util.RLPList;
+import org.ethereum.util.RLPView;
+import org.ethereum.util.RLPWriter;
 
 import org.spongycastle.util.encoders.Hex;
 
@@ -26,23 +24,22 @@ public class LogInfo {
     private byte[] rlpEncoded;
 
     public LogInfo(byte[] rlp) {
+        this(RLPView.wrap(rlp));
+        rlpEncoded = rlp;
+    }
 
-        RLPList params = RLP.decode2(rlp);
-        RLPList logInfo = (RLPList) params.get(0);
+    public LogInfo(RLPView logInfo) {
 
-        RLPItem address = (RLPItem) logInfo.get(0);
-        RLPList topics = (RLPList) logInfo.get(1);
-        RLPItem data = (RLPItem) logInfo.get(2);
+        byte[] address = logInfo.get(0).copyBytes();
+        RLPView topics = logInfo.get(1);
+        byte[] data = logInfo.get(2).copyBytes();
 
-        this.address = address.getRLPData() != null ? address.getRLPData() : new byte[]{};
-        this.data = data.getRLPData() != null ? data.getRLPData() : new byte[]{};
+        this.address = address != null ? address : new byte[]{};
+        this.data = data != null ? data : new byte[]{};
 
-        for (RLPElement topic1 : topics) {
-            byte[] topic = topic1.getRLPData();
-            this.topics.add(new DataWord(topic));
+        for (int i = 0; i < topics.size(); i++) {
+            this.topics.add(new DataWord(topics.get(i).copyBytes()));
         }
-
-        rlpEncoded = rlp;
     }
 
     public LogInfo(byte[] address, List<DataWord> topics, byte[] data) {
@@ -65,22 +62,23 @@ public class LogInfo {
 
     /*  [address, [topic, topic ...] data] */
     public byte[] getEncoded() {
+        RLPWriter writer = new RLPWriter(64 + (topics == null ? 0 : topics.size() * 33) +
+                (data == null ? 0 : data.length));
+        return writeEncoded(writer).toByteArray();
+    }
 
-        byte[] addressEncoded = RLP.encodeElement(this.address);
-
-        byte[][] topicsEncoded = null;
+    public RLPWriter writeEncoded(RLPWriter writer) {
+        writer.startList()
+                .writeElement(this.address)
+                .startList();
         if (topics != null) {
-            topicsEncoded = new byte[topics.size()][];
-            int i = 0;
             for (DataWord topic : topics) {
-                byte[] topicData = topic.getData();
-                topicsEncoded[i] = RLP.encodeElement(topicData);
-                ++i;
+                writer.writeElement(topic.getData());
             }
         }
-
-        byte[] dataEncoded = RLP.encodeElement(data);
-        return RLP.encodeList(addressEncoded, RLP.encodeList(topicsEncoded), dataEncoded);
+        return writer.endList()
+                .writeElement(data)
+                .endList();
     }
 
     public Bloom getBloom() {
@@ -12,6 +12,7 @@ import org.ethereum.vm.program.listener.ProgramListenerAware;
 
 import java.math.BigInteger;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -204,4 +205,14 @@ public class Storage implements Repository, ProgramListenerAware {
     public void addRawNode(byte[] key, byte[] value) {
         throw new RuntimeException("Not supported");
     }
+
+    @Override
+    public List<byte[]> getAccountProof(byte[] addr) {
+        return repository.getAccountProof(addr);
+    }
+
+    @Override
+    public List<byte[]> getStorageProof(byte[] addr, DataWord key) {
+        return repository.getStorageProof(addr, key);
+    }
 }
@@ -47,6 +47,24 @@ public class BlockchainGetHeadersTest {
             return blockNumber < dummyBlocks.size() ? dummyBlocks.get((int) blockNumber) : null;
         }
 
+        @Override
+        public BlockHeader getHeaderByHash(byte[] hash) {
+            Block block = getBlockByHash(hash);
+            return block == null ? null : block.getHeader();
+        }
+
+        @Override
+        public BlockHeader getChainHeaderByNumber(long blockNumber) {
+            Block block = getChainBlockByNumber(blockNumber);
+            return block == null ? null : block.getHeader();
+        }
+
+        @Override
+        public byte[] getBlockHashByNumber(long blockNumber) {
+            Block block = getChainBlockByNumber(blockNumber);
+            return block == null ? null : block.getHash();
+        }
+
         @Override
         public List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
             List<BlockHeader> headers = new ArrayList<>();
@@ -205,6 +205,51 @@ public class ImportLightTest {
         Assert.assertTrue(importResult == ImportResult.IMPORTED_BEST);
     }
 
+    @Test
+    public void batchImport() throws Exception {
+        // importing blocks in a batch gives the same state as importing one by one
+        Genesis genesis = GenesisLoader.loadGenesis(getClass().getResourceAsStream("/genesis/genesis-light.json"));
+        BlockchainImpl blockchain = createBlockchain(genesis);
+        blockchain.setMinerCoinbase(Hex.decode("ee0250c19ad59305b2bdb61f34b45b72fe37154f"));
+
+        ECKey senderKey = ECKey.fromPrivate(Hex.decode("3ec771c31cac8c0dba77a69e503765701d3c2bb62435888d4ffa38fed60c445c"));
+        byte[] receiverAddr = Hex.decode("31e2e1ed11951c7091dfba62cd4b7145e947219c");
+
+        List<Block> blocks = new ArrayList<>();
+        Block parent = blockchain.getBestBlock();
+        for (int i = 0; i < 3; i++) {
+            Transaction tx = new Transaction(ByteUtil.intToBytesNoLeadZeroes(i),
+                    ByteUtil.longToBytesNoLeadZeroes(50_000_000_000L),
+                    ByteUtil.longToBytesNoLeadZeroes(0xfffff),
+                    receiverAddr, new byte[]{77}, new byte[0]);
+            tx.sign(senderKey);
+            Block block = blockchain.createNewBlock(parent, Collections.singletonList(tx), Collections.EMPTY_LIST);
+            Ethash.getForBlock(SystemProperties.getDefault(), block.getNumber()).mineLight(block).get();
+            Assert.assertEquals(ImportResult.IMPORTED_BEST, blockchain.tryToConnect(block));
+            blocks.add(block);
+            parent = block;
+        }
+
+        Block b2bad = new Block(blocks.get(1).getEncoded());
+        b2bad.getStateRoot()[0] = 0;
+        b2bad.setStateRoot(b2bad.getStateRoot());
+        Ethash.getForBlock(SystemProperties.getDefault(), b2bad.getNumber()).mineLight(b2bad).get();
+
+        BlockchainImpl batchBlockchain = createBlockchain(genesis);
+        List<ImportResult> results = batchBlockchain.tryToConnectBatch(
+                Arrays.asList(blocks.get(0), b2bad, blocks.get(1), blocks.get(2), blocks.get(0)));
+        Assert.assertEquals(Arrays.asList(ImportResult.IMPORTED_BEST, ImportResult.INVALID_BLOCK,
+                ImportResult.IMPORTED_BEST, ImportResult.IMPORTED_BEST, ImportResult.EXIST), results);
+
+        Assert.assertArrayEquals(blocks.get(2).getHash(), batchBlockchain.getBestBlock().getHash());
+        Assert.assertArrayEquals(blocks.get(2).getStateRoot(), batchBlockchain.getRepository().getRoot());
+        Assert.assertEquals(blockchain.getRepository().getBalance(receiverAddr),
+                batchBlockchain.getRepository().getBalance(receiverAddr));
+        // intermediate states of the batch are available
+        Assert.assertEquals(blockchain.getRepository().getSnapshotTo(blocks.get(1).getStateRoot()).getBalance(receiverAddr),
+                batchBlockchain.getRepository().getSnapshotTo(blocks.get(1).getStateRoot()).getBalance(receiverAddr));
+    }
+
     @Test
     public void doubleTransactionTest() throws Exception {
         // Testing that blocks containing tx with invalid nonce are rejected
@@ -30,6 +30,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.ethereum.solidity.SolidityType.*;
@@ -57,6 +58,45 @@ public class TransactionTest {
         System.out.println(signature);
     }
 
+    @Test
+    public void testRecoverSenders() {
+        List<Transaction> txs = new ArrayList<>();
+        List<ECKey> keys = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ECKey key = new ECKey();
+            Transaction tx = new Transaction(ByteUtil.intToBytes(i), ByteUtil.longToBytesNoLeadZeroes(1_000_000_000),
+                    ByteUtil.longToBytesNoLeadZeroes(21000), new byte[20], ByteUtil.longToBytesNoLeadZeroes(i), null);
+            tx.sign(key);
+            // decoded instance as received from the wire
+            txs.add(new Transaction(tx.getEncoded()));
+            keys.add(key);
+        }
+        // unsigned tx is skipped
+        txs.add(new Transaction(ByteUtil.intToBytes(0), ByteUtil.intToBytes(1), ByteUtil.intToBytes(21000), new byte[20],
+                ByteUtil.intToBytes(0), null));
+
+        Transaction.recoverSenders(txs);
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(keys.get(i).getAddress(), txs.get(i).sendAddress);
+            // the sender is taken from the cache by another instance of the same tx
+            Transaction copy = new Transaction(txs.get(i).getEncoded());
+            assertArrayEquals(keys.get(i).getAddress(), copy.getSender());
+        }
+        assertNull(txs.get(5).sendAddress);
+    }
+
+    @Test
+    public void testResignResetsSender() {
+        Transaction tx = new Transaction(ByteUtil.intToBytes(0), ByteUtil.intToBytes(1), ByteUtil.intToBytes(21000), new byte[20],
+                ByteUtil.intToBytes(0), null);
+        ECKey key1 = new ECKey();
+        ECKey key2 = new ECKey();
+        tx.sign(key1);
+        assertArrayEquals(key1.getAddress(), tx.getSender());
+        tx.sign(key2);
+        assertArrayEquals(key2.getAddress(), tx.getSender());
+    }
+
     @Ignore
     @Test  /* achieve public key of the sender */
     public void test2() throws Exception {
@@ -1,5 +1,6 @@
 package org.ethereum.crypto;
 
+import org.ethereum.crypto.cryptohash.Keccak256;
 import org.ethereum.util.Utils;
 
 import org.junit.Test;
@@ -25,10 +26,13 @@ import org.spongycastle.math.ec.ECPoint;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.ethereum.crypto.HashUtil.sha3;
-import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.*;
 
 public class CryptoTest {
 
@@ -349,4 +353,79 @@ public class CryptoTest {
         log.info("orig: " + Hex.toHexString(orig));
     }
 
+    @Test
+    public void testSha3Api() {
+        Random rnd = new Random(1);
+        for (int len : new int[] {0, 1, 32, 135, 136, 137, 500}) {
+            byte[] data = new byte[len + 10];
+            rnd.nextBytes(data);
+            byte[] expected = new Keccak256().digest(Arrays.copyOfRange(data, 5, 5 + len));
+
+            assertArrayEquals(expected, HashUtil.sha3(data, 5, len));
+
+            byte[] out = new byte[40];
+            HashUtil.sha3(data, 5, len, out, 3);
+            assertArrayEquals(expected, Arrays.copyOfRange(out, 3, 35));
+
+            ByteBuffer heap = ByteBuffer.wrap(data, 5, len).slice();
+            assertArrayEquals(expected, HashUtil.sha3(heap));
+            assertFalse(heap.hasRemaining());
+
+            ByteBuffer direct = ByteBuffer.allocateDirect(len + 10);
+            direct.put(data).position(5).limit(5 + len);
+            assertArrayEquals(expected, HashUtil.sha3(direct));
+            assertEquals(5 + len, direct.position());
+
+            // read-only heap buffer doesn't expose the array
+            assertArrayEquals(expected, HashUtil.sha3(ByteBuffer.wrap(data, 5, len).asReadOnlyBuffer()));
+        }
+
+        try {
+            HashUtil.sha3(new byte[10], 0, 10, new byte[40], 10);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test   /* performance test */
+    public void sha3Performance() {
+        boolean performanceEnabled = false;
+
+        if (performanceEnabled) {
+            byte[] data = new byte[100];
+            new Random().nextBytes(data);
+            byte[] out = new byte[32];
+            final int ITERATIONS = 10000000;
+
+            for (int k = 0; k < 3; k++) {
+                long start1 = System.currentTimeMillis();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    Keccak256 digest = new Keccak256();
+                    digest.update(data);
+                    out = digest.digest();
+                }
+                long end1 = System.currentTimeMillis();
+
+                long start2 = System.currentTimeMillis();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    out = HashUtil.sha3(data);
+                }
+                long end2 = System.currentTimeMillis();
+
+                long start3 = System.currentTimeMillis();
+                for (int i = 0; i < ITERATIONS; i++) {
+                    HashUtil.sha3(data, 0, data.length, out, 0);
+                }
+                long end3 = System.currentTimeMillis();
+
+                System.out.println("New Keccak256 instance per hash\t: " + (end1 - start1) + "ms");
+                System.out.println("HashUtil.sha3(byte[])\t\t: " + (end2 - start2) + "ms");
+                System.out.println("HashUtil.sha3(in, off, len, out, outOff)\t: " + (end3 - start3) + "ms");
+            }
+        } else {
+            System.out.println("Performance test for HashUtil.sha3() disabled");
+        }
+    }
+
 }
@@ -31,6 +31,7 @@ import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -398,4 +399,33 @@ public class ECKeyTest {
 
         assertEquals(key, ECKey.fromNodeId(key.getNodeId()));
     }
+
+    @Test
+    public void testSignaturesToAddresses() throws SignatureException {
+        int n = 10;
+        byte[][] hashes = new byte[n][];
+        ECDSASignature[] sigs = new ECDSASignature[n];
+        byte[][] expected = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            ECKey key = new ECKey();
+            hashes[i] = HashUtil.sha3(new byte[] {(byte) i});
+            sigs[i] = key.sign(hashes[i]);
+            expected[i] = key.getAddress();
+            assertArrayEquals(expected[i], ECKey.signatureToAddress(hashes[i], sigs[i]));
+        }
+        // invalid header byte and r which is not an x coordinate
+        sigs[3] = ECDSASignature.fromComponents(sigs[3].r.toByteArray(), sigs[3].s.toByteArray(), (byte) 26);
+        sigs[7] = ECDSASignature.fromComponents(new byte[] {5}, sigs[7].s.toByteArray(), sigs[7].v);
+
+        byte[][] addresses = ECKey.signaturesToAddresses(hashes, sigs);
+        assertEquals(n, addresses.length);
+        for (int i = 0; i < n; i++) {
+            if (i == 3 || i == 7) {
+                assertNull(addresses[i]);
+            } else {
+                assertArrayEquals(expected[i], addresses[i]);
+            }
+        }
+        assertEquals(0, ECKey.signaturesToAddresses(new byte[0][], new ECDSASignature[0]).length);
+    }
 }
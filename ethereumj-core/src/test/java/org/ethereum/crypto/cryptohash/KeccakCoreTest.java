@@ -0,0 +1,90 @@
+package org.ethereum.crypto.cryptohash;
+
+import org.junit.Test;
+import org.spongycastle.crypto.digests.KeccakDigest;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * Cross-checks the Keccak-f implementation against the spongycastle one
+ * on the inputs around the block boundaries which are not covered by the KAT vectors
+ */
+public class KeccakCoreTest {
+
+    private static byte[] reference(int bits, byte[] data, int off, int len) {
+        KeccakDigest digest = new KeccakDigest(bits);
+        digest.update(data, off, len);
+        byte[] ret = new byte[bits / 8];
+        digest.doFinal(ret, 0);
+        return ret;
+    }
+
+    private static void checkAgainstReference(int bits, Digest digest) {
+        Random rnd = new Random(bits);
+        byte[] data = new byte[1000];
+        rnd.nextBytes(data);
+        for (int len = 0; len < 600; len++) {
+            int off = rnd.nextInt(100);
+            byte[] expected = reference(bits, data, off, len);
+
+            digest.update(data, off, len);
+            assertArrayEquals("len " + len, expected, digest.digest());
+
+            // the same input split at a random point
+            int split = len == 0 ? 0 : rnd.nextInt(len);
+            digest.update(data, off, split);
+            digest.update(data, off + split, len - split);
+            assertArrayEquals("len " + len + ", split " + split, expected, digest.digest());
+        }
+    }
+
+    @Test
+    public void testKeccak256() {
+        checkAgainstReference(256, new Keccak256());
+    }
+
+    @Test
+    public void testKeccak512() {
+        checkAgainstReference(512, new Keccak512());
+    }
+
+    @Test   /* performance test */
+    public void keccakPerformance() {
+        boolean performanceEnabled = false;
+
+        if (performanceEnabled) {
+            final int ITERATIONS = 1000000;
+            Keccak256 keccak = new Keccak256();
+            KeccakDigest reference = new KeccakDigest(256);
+            byte[] out = new byte[32];
+
+            for (int size : new int[] {32, 135, 1024}) {
+                byte[] data = new byte[size];
+                new Random().nextBytes(data);
+
+                for (int k = 0; k < 3; k++) {
+                    long start1 = System.currentTimeMillis();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        keccak.update(data);
+                        keccak.digest(out, 0, 32);
+                    }
+                    long end1 = System.currentTimeMillis();
+
+                    long start2 = System.currentTimeMillis();
+                    for (int i = 0; i < ITERATIONS; i++) {
+                        reference.update(data, 0, data.length);
+                        reference.doFinal(out, 0);
+                    }
+                    long end2 = System.currentTimeMillis();
+
+                    System.out.println(size + " bytes input: Keccak256\t: " + (end1 - start1) + "ms");
+                    System.out.println(size + " bytes input: spongycastle\t: " + (end2 - start2) + "ms");
+                }
+            }
+        } else {
+            System.out.println("Performance test for Keccak disabled");
+        }
+    }
+}
@@ -2,8 +2,10 @@ package org.ethereum.datasource;
 
 import org.ethereum.core.AccountState;
 import org.ethereum.core.Repository;
+import org.ethereum.crypto.HashUtil;
 import org.ethereum.datasource.inmem.HashMapDB;
 import org.ethereum.db.RepositoryRoot;
+import org.ethereum.trie.SecureTrie;
 import org.ethereum.vm.DataWord;
 import org.junit.Assert;
 import org.junit.Test;
@@ -12,6 +14,8 @@ import java.math.BigInteger;
 
 import static java.math.BigInteger.ONE;
 import static java.math.BigInteger.valueOf;
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+import static org.ethereum.util.ByteUtil.intToBytes;
 import static org.spongycastle.util.encoders.Hex.decode;
 import static org.spongycastle.util.encoders.Hex.toHexString;
 
@@ -176,4 +180,30 @@ public class RepoNewTest {
 
         Assert.assertEquals(new DataWord(111), repo.getStorageValue(addr2, new DataWord(1)));
     }
+
+    @Test
+    public void testProofs() throws Exception {
+        Source<byte[], byte[]> stateDb = new NoDeleteSource<>(new HashMapDB<byte[]>());
+        RepositoryRoot repo = new RepositoryRoot(stateDb, null);
+        byte[] addr1 = decode("aaaa");
+        byte[] addr2 = decode("bbbb");
+        for (int i = 0; i < 50; i++) {
+            repo.addBalance(HashUtil.sha3(intToBytes(i)), valueOf(i + 1));
+        }
+        repo.addBalance(addr1, valueOf(100));
+        repo.addStorageRow(addr2, new DataWord(1), new DataWord(111));
+        repo.addStorageRow(addr2, new DataWord(2), new DataWord(222));
+        repo.commit();
+        byte[] root = repo.getRoot();
+
+        RepositoryRoot snapshot = new RepositoryRoot(stateDb, root);
+        Assert.assertArrayEquals(snapshot.getAccountState(addr1).getEncoded(),
+                SecureTrie.verifyProof(root, addr1, snapshot.getAccountProof(addr1)));
+        Assert.assertArrayEquals(EMPTY_BYTE_ARRAY,
+                SecureTrie.verifyProof(root, decode("cccc"), snapshot.getAccountProof(decode("cccc"))));
+
+        byte[] storageRoot = snapshot.getAccountState(addr2).getStateRoot();
+        Assert.assertArrayEquals(Serializers.StorageValueSerializer.serialize(new DataWord(222)),
+                SecureTrie.verifyProof(storageRoot, new DataWord(2).getData(), snapshot.getStorageProof(addr2, new DataWord(2))));
+    }
 }
@@ -0,0 +1,95 @@
+package org.ethereum.db;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Transaction;
+import org.ethereum.crypto.HashUtil;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockCacheTest {
+
+    private static Block createBlock(byte[] parentHash, long number) {
+        return new Block(parentHash, HashUtil.EMPTY_LIST_HASH, new byte[20], new byte[256],
+                BigInteger.valueOf(1000).toByteArray(), number, BigInteger.valueOf(3141592).toByteArray(), 0, number * 10,
+                new byte[0], new byte[32], new byte[8], HashUtil.EMPTY_TRIE_HASH, HashUtil.EMPTY_TRIE_HASH,
+                HashUtil.EMPTY_TRIE_HASH, Collections.<Transaction>emptyList(), Collections.<BlockHeader>emptyList());
+    }
+
+    private static List<Block> createChain(int size) {
+        List<Block> ret = new ArrayList<>();
+        byte[] parentHash = new byte[32];
+        for (int i = 0; i < size; i++) {
+            Block block = createBlock(parentHash, i);
+            ret.add(block);
+            parentHash = block.getHash();
+        }
+        return ret;
+    }
+
+    @Test
+    public void testSizeLimit() {
+        List<Block> chain = createChain(100);
+        long blockSize = BlockCache.BlockEstimator.estimateSize(chain.get(99));
+        BlockCache cache = new BlockCache(blockSize * 10, 1024 * 1024);
+
+        for (Block block : chain) {
+            cache.putBlock(block);
+        }
+
+        assertTrue(cache.getBlocksSize() <= blockSize * 10);
+        // the least recently used are evicted
+        assertNull(cache.getBlock(chain.get(0).getHash()));
+        assertSame(chain.get(99), cache.getBlock(chain.get(99).getHash()));
+        assertSame(chain.get(90), cache.getBlock(chain.get(90).getHash()));
+
+        // recently accessed block survives
+        cache.putBlock(createBlock(new byte[32], 50));
+        assertNotNull(cache.getBlock(chain.get(90).getHash()));
+        assertNull(cache.getBlock(chain.get(91).getHash()));
+
+        assertEquals(3, cache.getBlockHits());
+        assertEquals(2, cache.getBlockMisses());
+
+        cache.setMaxSize(blockSize * 2, 1024 * 1024);
+        assertTrue(cache.getBlocksSize() <= blockSize * 2);
+    }
+
+    @Test
+    public void testHeaders() {
+        List<Block> chain = createChain(10);
+        BlockCache cache = new BlockCache(0, 1024 * 1024);
+
+        // blocks are not cached but headers are
+        cache.putBlock(chain.get(1));
+        assertNull(cache.getBlock(chain.get(1).getHash()));
+        assertSame(chain.get(1).getHeader(), cache.getHeader(chain.get(1).getHash()));
+
+        cache.putHeader(chain.get(2).getHash(), chain.get(2).getHeader());
+        assertSame(chain.get(2).getHeader(), cache.getHeader(chain.get(2).getHash()));
+        assertNull(cache.getHeader(chain.get(3).getHash()));
+
+        // header is taken from the cached block
+        cache = new BlockCache(1024 * 1024, 0);
+        cache.putBlock(chain.get(4));
+        assertSame(chain.get(4).getHeader(), cache.getHeader(chain.get(4).getHash()));
+    }
+
+    @Test
+    public void testCanonical() {
+        List<Block> chain = createChain(3);
+        BlockCache cache = new BlockCache(1024 * 1024, 1024 * 1024);
+
+        assertNull(cache.getCanonicalHash(1));
+        cache.putCanonicalHash(1, chain.get(1).getHash());
+        assertArrayEquals(chain.get(1).getHash(), cache.getCanonicalHash(1));
+        cache.removeCanonicalHash(1);
+        assertNull(cache.getCanonicalHash(1));
+    }
+}
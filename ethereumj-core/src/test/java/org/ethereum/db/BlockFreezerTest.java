@@ -0,0 +1,128 @@
+package org.ethereum.db;
+
+import com.google.common.io.Files;
+import org.ethereum.config.SystemProperties;
+import org.ethereum.config.blockchain.FrontierConfig;
+import org.ethereum.config.net.MainNetConfig;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Transaction;
+import org.ethereum.core.TransactionInfo;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.freezer.Freezer;
+import org.ethereum.util.FileUtil;
+import org.ethereum.util.blockchain.StandaloneBlockchain;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockFreezerTest {
+
+    File dir = Files.createTempDir();
+
+    @BeforeClass
+    public static void setup() {
+        SystemProperties.getDefault().setBlockchainConfig(new FrontierConfig(new FrontierConfig.FrontierConstants() {
+            @Override
+            public BigInteger getMINIMUM_DIFFICULTY() {
+                return BigInteger.ONE;
+            }
+        }));
+    }
+
+    @AfterClass
+    public static void cleanup() {
+        SystemProperties.getDefault().setBlockchainConfig(MainNetConfig.INSTANCE);
+    }
+
+    @After
+    public void after() {
+        FileUtil.recursiveDelete(dir.getAbsolutePath());
+    }
+
+    @Test
+    public void testFreezeBlocks() {
+        HashMapDB<byte[]> txDb = new HashMapDB<>();
+        TransactionStore txStore = new TransactionStore(txDb);
+        StandaloneBlockchain bc = new StandaloneBlockchain();
+        bc.getBlockchain().withTransactionStore(txStore);
+        IndexedBlockStore blockStore = (IndexedBlockStore) bc.getBlockchain().getBlockStore();
+
+        List<Block> blocks = new ArrayList<>();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            bc.sendEther(new ECKey().getAddress(), BigInteger.valueOf(1000 + i));
+            bc.sendEther(new ECKey().getAddress(), BigInteger.valueOf(2000 + i));
+            Block block = bc.createBlock();
+            blocks.add(block);
+            txs.addAll(block.getTransactionsList());
+        }
+        Block best = blocks.get(blocks.size() - 1);
+
+        Freezer freezer = new Freezer(dir, 1024);
+        blockStore.setFreezer(freezer);
+        txStore.setFreezer(freezer);
+        new BlockFreezer(freezer, blockStore, txStore, 3).blockCommitted(best.getHeader());
+
+        // genesis and 7 blocks are frozen
+        assertEquals(8, freezer.frozen());
+        assertArrayEquals(blocks.get(6).getHash(), freezer.getHash(7));
+
+        // the data is read from the freezer bypassing the caches
+        blockStore.setCacheSize(0, 0);
+        for (Block block : blocks) {
+            assertArrayEquals(block.getEncoded(), blockStore.getBlockByHash(block.getHash()).getEncoded());
+            assertArrayEquals(block.getEncoded(), blockStore.getChainBlockByNumber(block.getNumber()).getEncoded());
+            BlockHeader header = blockStore.getHeaderByHash(block.getHash());
+            assertArrayEquals(block.getHeader().getEncoded(), header.getEncoded());
+            assertArrayEquals(block.getEncodedBody(), blockStore.getBlockBodyEncoded(block.getHash()));
+        }
+        for (Transaction tx : txs) {
+            TransactionInfo info = bc.getBlockchain().getTransactionInfo(tx.getHash());
+            assertArrayEquals(tx.getHash(), info.getReceipt().getTransaction().getHash());
+            assertTrue(info.getReceipt().isSuccessful());
+        }
+
+        // the block has been removed from the key-value storage
+        assertNull(blockStore.headers.get(blocks.get(2).getHash()));
+        assertNotNull(blockStore.headers.get(best.getHash()));
+
+        // freezing continues from the last frozen block
+        Block next = bc.createBlock();
+        new BlockFreezer(freezer, blockStore, txStore, 3).blockCommitted(next.getHeader());
+        assertEquals(9, freezer.frozen());
+        freezer.close();
+    }
+
+    @Test // a limited number of blocks is frozen per commit to not stall the import
+    public void testFreezeStep() {
+        StandaloneBlockchain bc = new StandaloneBlockchain();
+        TransactionStore txStore = bc.getBlockchain().getTransactionStore();
+        IndexedBlockStore blockStore = (IndexedBlockStore) bc.getBlockchain().getBlockStore();
+        Block best = null;
+        for (int i = 0; i < 20; i++) {
+            best = bc.createBlock();
+        }
+
+        Freezer freezer = new Freezer(dir, 1024);
+        blockStore.setFreezer(freezer);
+        txStore.setFreezer(freezer);
+        BlockFreezer blockFreezer = new BlockFreezer(freezer, blockStore, txStore, 0);
+        blockFreezer.blockCommitted(best.getHeader());
+        assertEquals(16, freezer.frozen());
+
+        blockFreezer.blockCommitted(best.getHeader());
+        assertEquals(21, freezer.frozen());
+        assertArrayEquals(best.getHash(), freezer.getHash(20));
+        blockFreezer.close();
+    }
+}
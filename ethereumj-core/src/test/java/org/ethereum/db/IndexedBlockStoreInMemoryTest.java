@@ -0,0 +1,259 @@
+package org.ethereum.db;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Transaction;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.crypto.HashUtil;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.util.ByteUtil;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.math.BigInteger.ZERO;
+import static org.junit.Assert.*;
+
+/**
+ * {@link IndexedBlockStore} tests on hand-built blocks in the in-memory sources,
+ * unlike {@link IndexedBlockStoreTest} no blocks dump nor mining is needed
+ */
+public class IndexedBlockStoreInMemoryTest {
+
+    @Test // index stored in the legacy Java serialized format is migrated on init
+    public void testIndexMigration() throws IOException {
+        HashMapDB<byte[]> indexDB = new HashMapDB<>();
+        HashMapDB<byte[]> blocksDB = new HashMapDB<>();
+
+        List<Block> blocks = createChain(createTestBlock(new byte[32], 0), 99, 0);
+
+        BigInteger cummDiff = ZERO;
+        for (int i = 0; i < 100; i++) {
+            Block block = blocks.get(i);
+            cummDiff = cummDiff.add(block.getDifficultyBI());
+
+            IndexedBlockStore.BlockInfo blockInfo = new IndexedBlockStore.BlockInfo();
+            blockInfo.setHash(block.getHash());
+            blockInfo.setCummDifficulty(cummDiff);
+            blockInfo.setMainChain(true);
+            IndexedBlockStore.BlockInfo forkInfo = new IndexedBlockStore.BlockInfo();
+            forkInfo.setHash(HashUtil.sha3(block.getHash()));
+            forkInfo.setCummDifficulty(cummDiff);
+            forkInfo.setMainChain(false);
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            oos.writeObject(new ArrayList<>(Arrays.asList(forkInfo, blockInfo)));
+            indexDB.put(ByteUtil.intToBytes(i), bos.toByteArray());
+            blocksDB.put(block.getHash(), block.getEncoded());
+        }
+        indexDB.put(Hex.decode("FFFFFFFFFFFFFFFF"), ByteUtil.intToBytes(100));
+
+        IndexedBlockStore indexedBlockStore = new IndexedBlockStore();
+        indexedBlockStore.init(indexDB, blocksDB);
+
+        byte[] level = indexDB.get(ByteUtil.intToBytes(50));
+        assertEquals("Index should be converted to RLP", 0xf8, level[0] & 0xFF);
+        assertTrue(level.length < 150);
+
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(blocks.get(i).getHash(), indexedBlockStore.getBlockHashByNumber(i));
+            assertTrue(blocks.get(i).isEqual(indexedBlockStore.getChainBlockByNumber(i)));
+            assertEquals(2, indexedBlockStore.getBlocksByNumber(i).size());
+            // blocks stored as a whole by previous versions
+            assertArrayEquals(blocks.get(i).getHash(), indexedBlockStore.getHeaderByHash(blocks.get(i).getHash()).getHash());
+            assertArrayEquals(blocks.get(i).getEncodedBody(), indexedBlockStore.getBlockBodyEncoded(blocks.get(i).getHash()));
+        }
+        assertEquals(cummDiff, indexedBlockStore.getTotalDifficulty());
+        assertNull(indexedBlockStore.getBlockHashByNumber(100));
+        assertEquals(100, indexedBlockStore.getListHashesStartWith(0, 200).size());
+
+        // reopening doesn't migrate again and sees the same state
+        IndexedBlockStore reopened = new IndexedBlockStore();
+        reopened.init(indexDB, blocksDB);
+        assertArrayEquals(blocks.get(99).getHash(), reopened.getBlockHashByNumber(99));
+        assertTrue(blocks.get(99).isEqual(reopened.getBestBlock()));
+    }
+
+    @Test
+    public void testCanonicalIndexReBranch() {
+        IndexedBlockStore ibs = new IndexedBlockStore();
+        ibs.init(new HashMapDB<byte[]>(), new HashMapDB<byte[]>());
+
+        Block genesis = createTestBlock(new byte[32], 0);
+        ibs.saveBlock(genesis, genesis.getDifficultyBI(), true);
+        // [b1, b2, b3]
+        List<Block> main = createChain(genesis, 3, 0);
+        for (Block block : main.subList(1, main.size())) {
+            ibs.saveBlock(block, ibs.getTotalDifficulty().add(block.getDifficultyBI()), true);
+        }
+        Block b1 = main.get(1), b2 = main.get(2), b3 = main.get(3);
+
+        // [b2_, b3_, b4_] forked from b1
+        List<Block> fork = createChain(b1, 3, 1);
+        saveFork(ibs, fork);
+        Block b2_ = fork.get(1), b3_ = fork.get(2), b4_ = fork.get(3);
+        assertArrayEquals(b3.getHash(), ibs.getBlockHashByNumber(3));
+        assertNull(ibs.getBlockHashByNumber(4));
+
+        ibs.reBranch(b4_);
+        assertTrue(ibs.getBestBlock().isEqual(b4_));
+        assertArrayEquals(b1.getHash(), ibs.getBlockHashByNumber(1));
+        assertArrayEquals(b2_.getHash(), ibs.getBlockHashByNumber(2));
+        assertArrayEquals(b3_.getHash(), ibs.getBlockHashByNumber(3));
+        assertArrayEquals(b4_.getHash(), ibs.getBlockHashByNumber(4));
+
+        // the original branch becomes the main one again: [b4, b5, b6] on top of b3
+        List<Block> back = createChain(b3, 3, 2);
+        saveFork(ibs, back);
+        Block b4 = back.get(1), b6 = back.get(3);
+
+        ibs.reBranch(b6);
+        assertTrue(ibs.getBestBlock().isEqual(b6));
+        assertArrayEquals(b2.getHash(), ibs.getBlockHashByNumber(2));
+        assertArrayEquals(b4.getHash(), ibs.getBlockHashByNumber(4));
+        assertArrayEquals(b6.getHash(), ibs.getBlockHashByNumber(6));
+        assertNull(ibs.getBlockHashByNumber(7));
+        assertTrue(ibs.getChainBlockByNumber(3).isEqual(b3));
+        assertEquals(7, ibs.getListHashesStartWith(0, 100).size());
+    }
+
+    @Test // headers and bodies are stored separately
+    public void testHeadersAndBodies() {
+        HashMapDB<byte[]> blocksDB = new HashMapDB<>();
+        IndexedBlockStore indexedBlockStore = new IndexedBlockStore();
+        indexedBlockStore.init(new HashMapDB<byte[]>(), blocksDB);
+
+        Block genesis = createTestBlock(new byte[32], 0);
+        indexedBlockStore.saveBlock(genesis, genesis.getDifficultyBI(), true);
+
+        ECKey sender = new ECKey();
+        ECKey receiver = new ECKey();
+        List<Transaction> txs = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            Transaction tx = new Transaction(ByteUtil.intToBytesNoLeadZeroes(i), ByteUtil.longToBytesNoLeadZeroes(50_000_000_000L),
+                    ByteUtil.longToBytesNoLeadZeroes(21000), receiver.getAddress(), ByteUtil.intToBytesNoLeadZeroes(i + 1), new byte[0]);
+            tx.sign(sender);
+            txs.add(tx);
+        }
+        Block block = createTestBlock(genesis.getHash(), 1, 0, txs);
+        Block forkBlock = createTestBlock(genesis.getHash(), 1, 1, Collections.<Transaction>emptyList());
+
+        BigInteger td = genesis.getDifficultyBI().add(block.getDifficultyBI());
+        indexedBlockStore.saveBlock(block, td, true);
+        indexedBlockStore.saveBlock(forkBlock, td, false);
+
+        assertArrayEquals(block.getHeader().getEncoded(), blocksDB.get(block.getHash()));
+        assertArrayEquals(block.getEncoded(), indexedBlockStore.getBlockByHash(block.getHash()).getEncoded());
+        assertArrayEquals(block.getEncoded(), indexedBlockStore.getChainBlockByNumber(block.getNumber()).getEncoded());
+        assertEquals(2, indexedBlockStore.getBlockByHash(block.getHash()).getTransactionsList().size());
+        assertArrayEquals(block.getEncodedBody(), indexedBlockStore.getBlockBodyEncoded(block.getHash()));
+        assertArrayEquals(block.getHeader().getEncoded(),
+                indexedBlockStore.getChainHeaderByNumber(block.getNumber()).getEncoded());
+        assertArrayEquals(forkBlock.getHeader().getEncoded(), indexedBlockStore.getHeaderByHash(forkBlock.getHash()).getEncoded());
+        assertTrue(indexedBlockStore.isBlockExist(forkBlock.getHash()));
+        assertNull(indexedBlockStore.getBlockBodyEncoded(new byte[32]));
+        assertNull(indexedBlockStore.getHeaderByHash(new byte[32]));
+    }
+
+    @Test // lookups are running concurrently with the import
+    public void testConcurrentReads() throws Exception {
+        final IndexedBlockStore indexedBlockStore = new IndexedBlockStore();
+        indexedBlockStore.init(new HashMapDB<byte[]>(), new HashMapDB<byte[]>());
+
+        Block genesis = createTestBlock(new byte[32], 0);
+        indexedBlockStore.saveBlock(genesis, genesis.getDifficultyBI(), true);
+
+        final AtomicBoolean stop = new AtomicBoolean();
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread reader = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!stop.get()) {
+                            Block best = indexedBlockStore.getBestBlock();
+                            List<BlockHeader> headers = indexedBlockStore.getListHeadersEndWith(best.getHash(), 20);
+                            for (int j = 1; j < headers.size(); j++) {
+                                assertArrayEquals(headers.get(j).getHash(), headers.get(j - 1).getParentHash());
+                            }
+                            Block chainBlock = indexedBlockStore.getChainBlockByNumber(best.getNumber());
+                            assertEquals(best.getNumber(), chainBlock.getNumber());
+                            assertTrue(indexedBlockStore.isBlockExist(best.getParentHash()) || best.getNumber() == 0);
+                        }
+                    } catch (Throwable t) {
+                        error.set(t);
+                    }
+                }
+            };
+            reader.start();
+            readers.add(reader);
+        }
+
+        Block parent = genesis;
+        BigInteger td = genesis.getDifficultyBI();
+        for (int i = 1; i <= 2000; i++) {
+            Block block = createTestBlock(parent.getHash(), i);
+            td = td.add(block.getDifficultyBI());
+            indexedBlockStore.saveBlock(block, td, true);
+            if (i % 100 == 0) indexedBlockStore.flush();
+            parent = block;
+        }
+
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        if (error.get() != null) throw new AssertionError(error.get());
+        assertEquals(2000, indexedBlockStore.getMaxNumber());
+        assertEquals(td, indexedBlockStore.getTotalDifficulty());
+    }
+
+    private static void saveFork(IndexedBlockStore ibs, List<Block> fork) {
+        BigInteger td = ibs.getTotalDifficultyForHash(fork.get(0).getHash());
+        for (Block block : fork.subList(1, fork.size())) {
+            td = td.add(block.getDifficultyBI());
+            ibs.saveBlock(block, td, false);
+        }
+    }
+
+    /**
+     * @return the parent followed by [count] blocks on top of it, the blocks
+     * built with distinct [branch] values have different hashes
+     */
+    static List<Block> createChain(Block parent, int count, int branch) {
+        List<Block> ret = new ArrayList<>();
+        ret.add(parent);
+        for (int i = 0; i < count; i++) {
+            parent = createTestBlock(parent.getHash(), parent.getNumber() + 1, branch);
+            ret.add(parent);
+        }
+        return ret;
+    }
+
+    static Block createTestBlock(byte[] parentHash, long number) {
+        return createTestBlock(parentHash, number, 0);
+    }
+
+    static Block createTestBlock(byte[] parentHash, long number, int branch) {
+        return createTestBlock(parentHash, number, branch, Collections.<Transaction>emptyList());
+    }
+
+    static Block createTestBlock(byte[] parentHash, long number, int branch, List<Transaction> txs) {
+        return new Block(parentHash, HashUtil.EMPTY_LIST_HASH, new byte[20], new byte[256],
+                BigInteger.valueOf(1000).toByteArray(), number, BigInteger.valueOf(3141592).toByteArray(), 0, number * 10,
+                new byte[] {(byte) branch}, new byte[32], new byte[8], HashUtil.EMPTY_TRIE_HASH, HashUtil.EMPTY_TRIE_HASH,
+                HashUtil.EMPTY_TRIE_HASH, txs, Collections.<BlockHeader>emptyList());
+    }
+}
@@ -0,0 +1,115 @@
+package org.ethereum.db;
+
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Repository;
+import org.ethereum.core.Transaction;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.vm.DataWord;
+import org.junit.Test;
+import org.spongycastle.util.encoders.Hex;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.ethereum.crypto.HashUtil.sha3;
+import static org.ethereum.util.ByteUtil.EMPTY_BYTE_ARRAY;
+import static org.ethereum.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class StatePrefetcherTest {
+
+    private static class CountingDB extends HashMapDB<byte[]> {
+        final AtomicInteger reads = new AtomicInteger();
+
+        @Override
+        public synchronized byte[] get(byte[] key) {
+            reads.incrementAndGet();
+            return super.get(key);
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        CountingDB db = new CountingDB();
+        StateSource stateSource = new StateSource(db, false);
+        RepositoryRoot repo = new RepositoryRoot(stateSource);
+
+        ECKey sender = ECKey.fromPrivate(sha3("sender".getBytes()));
+        byte[] contract = Arrays.copyOfRange(sha3("contract".getBytes()), 12, 32);
+
+        repo.addBalance(sender.getAddress(), BigInteger.TEN.pow(18));
+        repo.saveCode(contract, Hex.decode("600160005401600055"));
+        for (int i = 0; i < 100; i++) {
+            repo.addStorageRow(contract, new DataWord(i), new DataWord(i + 1));
+            repo.addBalance(sha3(intToBytes(i)), BigInteger.ONE);
+        }
+        repo.commit();
+        stateSource.flush();
+        byte[] root = repo.getRoot();
+
+        // fresh caches over the same DB
+        StateSource prefetchedSource = new StateSource(db, false);
+        StatePrefetcher prefetcher = new StatePrefetcher(prefetchedSource, 2);
+
+        RepositoryRoot recorder = new RepositoryRoot(new StateSource(db, false), root);
+        recorder.startAccessRecording();
+        recorder.getStorageValue(contract, new DataWord(42));
+        recorder.getBalance(sender.getAddress());
+        Map<ByteArrayWrapper, Set<DataWord>> accessed = recorder.stopAccessRecording();
+        assertEquals(Collections.singleton(new DataWord(42)), accessed.get(new ByteArrayWrapper(contract)));
+        assertTrue(accessed.get(new ByteArrayWrapper(sender.getAddress())).isEmpty());
+        prefetcher.learn(contract, accessed);
+
+        Transaction tx = new Transaction(EMPTY_BYTE_ARRAY, intToBytes(1), intToBytes(100000), contract,
+                EMPTY_BYTE_ARRAY, EMPTY_BYTE_ARRAY);
+        tx.sign(sender);
+        Block block = new Block(new byte[32], new byte[32], new byte[20], new byte[256],
+                intToBytes(1), 1, intToBytes(1000000), 0, 0, EMPTY_BYTE_ARRAY, EMPTY_BYTE_ARRAY, EMPTY_BYTE_ARRAY,
+                EMPTY_BYTE_ARRAY, new byte[32], new byte[32],
+                Collections.singletonList(tx), Collections.<BlockHeader>emptyList());
+
+        db.reads.set(0);
+        prefetcher.prefetch(block, root);
+
+        // waiting for the prefetching threads to complete
+        int lastReads = -1;
+        for (int i = 0; i < 100 && (lastReads != db.reads.get() || lastReads == 0); i++) {
+            lastReads = db.reads.get();
+            Thread.sleep(100);
+        }
+        assertTrue(lastReads > 0);
+
+        RepositoryRoot repo2 = new RepositoryRoot(prefetchedSource, root);
+        assertEquals(new DataWord(43), repo2.getStorageValue(contract, new DataWord(42)));
+        assertEquals(BigInteger.TEN.pow(18), repo2.getBalance(sender.getAddress()));
+        repo2.getCode(contract);
+        assertEquals("All the state accessed should be prefetched", lastReads, db.reads.get());
+    }
+
+    @Test
+    public void testRootCalculationNotRecorded() {
+        RepositoryRoot repo = new RepositoryRoot(new StateSource(new HashMapDB<byte[]>(), false));
+        byte[] prevContract = Arrays.copyOfRange(sha3("prev".getBytes()), 12, 32);
+        byte[] contract = Arrays.copyOfRange(sha3("contract".getBytes()), 12, 32);
+        repo.saveCode(prevContract, Hex.decode("600160005401600055"));
+        repo.getRoot();
+
+        // storage changes of the previous tx are flushed to the trie by the root calculation
+        Repository txTrack = repo.startTracking();
+        txTrack.addStorageRow(prevContract, new DataWord(1), new DataWord(2));
+        txTrack.commit();
+
+        repo.startAccessRecording();
+        repo.getRoot();
+        repo.getStorageValue(contract, new DataWord(3));
+        Map<ByteArrayWrapper, Set<DataWord>> accessed = repo.stopAccessRecording();
+
+        assertEquals(Collections.singleton(new ByteArrayWrapper(contract)), accessed.keySet());
+    }
+}
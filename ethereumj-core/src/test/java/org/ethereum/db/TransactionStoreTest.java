@@ -16,7 +16,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Created by Anton Nashatyrev on 08.04.2016.
@@ -129,4 +131,39 @@ public class TransactionStoreTest {
         TransactionInfo info1 = transactionStore1.get(tx.getHash()).get(0);
         Assert.assertArrayEquals(info1.getReceipt().getPostTxState(), info.getReceipt().getPostTxState());
     }
+
+    @Test
+    public void putNewTest() {
+        StandaloneBlockchain bc = new StandaloneBlockchain();
+        bc.sendEther(new byte[20], BigInteger.valueOf(1000));
+        bc.sendEther(new byte[20], BigInteger.valueOf(2000));
+        Block b1 = bc.createBlock();
+        Transaction tx1 = b1.getTransactionsList().get(0);
+        Transaction tx2 = b1.getTransactionsList().get(1);
+        TransactionStore srcStore = bc.getBlockchain().getTransactionStore();
+
+        HashMapDB<byte[]> txDb = new HashMapDB<>();
+        TransactionStore transactionStore = new TransactionStore(txDb);
+        List<TransactionInfo> infos = new ArrayList<>();
+        for (Transaction tx : b1.getTransactionsList()) {
+            TransactionInfo info = srcStore.get(tx.getHash(), b1.getHash());
+            info.setTransaction(tx);
+            infos.add(info);
+        }
+        transactionStore.putNew(infos);
+
+        TransactionInfo info2 = transactionStore.get(tx2.getHash(), b1.getHash());
+        Assert.assertEquals(1, info2.getIndex());
+        Assert.assertArrayEquals(srcStore.get(tx2.getHash(), b1.getHash()).getReceipt().getEncoded(),
+                info2.getReceipt().getEncoded());
+
+        // the regular put appends to the entries added in bulk
+        TransactionInfo forkInfo = new TransactionInfo(infos.get(0).getReceipt(), new byte[32], 0);
+        Assert.assertTrue(transactionStore.put(forkInfo));
+        Assert.assertFalse(transactionStore.put(infos.get(0)));
+        Assert.assertEquals(2, transactionStore.get(tx1.getHash()).size());
+
+        transactionStore.flush();
+        Assert.assertEquals(2, new TransactionStore(txDb).get(tx1.getHash()).size());
+    }
 }
@@ -0,0 +1,165 @@
+package org.ethereum.db.freezer;
+
+import com.google.common.io.Files;
+import org.ethereum.util.FileUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FreezerTableTest {
+
+    File dir;
+
+    @Before
+    public void before() {
+        dir = Files.createTempDir();
+    }
+
+    @After
+    public void after() {
+        FileUtil.recursiveDelete(dir.getAbsolutePath());
+    }
+
+    private static List<byte[]> randomItems(int count) {
+        Random rnd = new Random(0);
+        List<byte[]> ret = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            byte[] item = new byte[rnd.nextInt(50)];
+            rnd.nextBytes(item);
+            ret.add(item);
+        }
+        return ret;
+    }
+
+    @Test
+    public void testAppendAndReopen() {
+        List<byte[]> items = randomItems(200);
+        FreezerTable table = new FreezerTable(dir, "test", 256);
+        for (int i = 0; i < 100; i++) {
+            table.append(items.get(i));
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        assertEquals(100, table.size());
+        assertNull(table.get(100));
+        assertNull(table.get(-1));
+        // several segments are created
+        assertTrue(new File(dir, "test.0003.dat").exists());
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        table.sync();
+        table.close();
+
+        table = new FreezerTable(dir, "test", 256);
+        assertEquals(100, table.size());
+        for (int i = 100; i < 200; i++) {
+            table.append(items.get(i));
+        }
+        for (int i = 0; i < 200; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        table.close();
+    }
+
+    @Test
+    public void testTruncate() throws Exception {
+        List<byte[]> items = randomItems(100);
+        FreezerTable table = new FreezerTable(dir, "test", 256);
+        for (byte[] item : items) {
+            table.append(item);
+        }
+        table.truncate(30);
+        assertEquals(30, table.size());
+        assertNull(table.get(30));
+        for (int i = 30; i < 100; i++) {
+            table.append(items.get(i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        table.close();
+
+        // partially written index entry is discarded on open
+        try (RandomAccessFile idx = new RandomAccessFile(new File(dir, "test.idx"), "rw")) {
+            idx.setLength(idx.length() - 3);
+        }
+        table = new FreezerTable(dir, "test", 256);
+        assertEquals(99, table.size());
+        table.append(items.get(99));
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        table.close();
+    }
+
+    @Test
+    public void testIndexAheadOfData() throws Exception {
+        List<byte[]> items = randomItems(100);
+        FreezerTable table = new FreezerTable(dir, "test", 256);
+        for (byte[] item : items) {
+            table.append(item);
+        }
+        table.close();
+
+        // the index written to the disk prior to the data of the last items
+        File head = new File(dir, "test.0009.dat");
+        assertTrue(head.exists() && !new File(dir, "test.0010.dat").exists());
+        try (RandomAccessFile dat = new RandomAccessFile(head, "rw")) {
+            dat.setLength(dat.length() - 30);
+        }
+        table = new FreezerTable(dir, "test", 256);
+        assertTrue(table.size() < 100);
+        long size = table.size();
+        for (int i = 0; i < size; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        // no hole is left by the next appends
+        for (long i = size; i < 100; i++) {
+            table.append(items.get((int) i));
+        }
+        table.close();
+        table = new FreezerTable(dir, "test", 256);
+        assertEquals(100, table.size());
+        for (int i = 0; i < 100; i++) {
+            assertArrayEquals(items.get(i), table.get(i));
+        }
+        table.close();
+    }
+
+    @Test
+    public void testFreezer() {
+        Freezer freezer = new Freezer(dir, 1024);
+        for (int i = 0; i < 10; i++) {
+            freezer.append(i, new byte[] {(byte) i}, new byte[] {1, (byte) i}, new byte[] {2, (byte) i}, new byte[] {3, (byte) i});
+        }
+        try {
+            freezer.append(20, new byte[1], new byte[1], new byte[1], new byte[1]);
+            fail();
+        } catch (RuntimeException e) {
+            // expected: blocks are frozen sequentially
+        }
+        freezer.close();
+
+        // interrupted block append
+        FreezerTable headers = new FreezerTable(dir, "headers", 1024);
+        headers.append(new byte[] {1, 10});
+        headers.close();
+
+        freezer = new Freezer(dir, 1024);
+        assertEquals(10, freezer.frozen());
+        assertArrayEquals(new byte[] {2, 5}, freezer.getBody(5));
+        assertArrayEquals(new byte[] {3, 9}, freezer.getReceipts(9));
+        assertNull(freezer.getHeader(10));
+        freezer.append(10, new byte[] {10}, new byte[] {1, 11}, new byte[] {2, 11}, new byte[] {3, 11});
+        assertArrayEquals(new byte[] {1, 11}, freezer.getHeader(10));
+        freezer.close();
+    }
+}
@@ -3,6 +3,8 @@ package org.ethereum.jsonrpc;
 import com.typesafe.config.ConfigFactory;
 import org.ethereum.config.SystemProperties;
 import org.ethereum.config.blockchain.FrontierConfig;
+import org.ethereum.config.net.MainNetConfig;
+import org.ethereum.core.Block;
 import org.ethereum.core.CallTransaction;
 import org.ethereum.core.Transaction;
 import org.ethereum.datasource.DbSource;
@@ -10,15 +12,22 @@ import org.ethereum.datasource.inmem.HashMapDB;
 import org.ethereum.facade.Ethereum;
 import org.ethereum.facade.EthereumFactory;
 import org.ethereum.facade.EthereumImpl;
+import org.ethereum.listener.CompositeEthereumListener;
+import org.ethereum.trie.TrieImpl;
+import org.ethereum.util.blockchain.StandaloneBlockchain;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Scope;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
 
 import static java.math.BigInteger.valueOf;
 import static org.ethereum.crypto.HashUtil.sha3;
+import static org.ethereum.jsonrpc.TypeConverter.StringHexToByteArray;
+import static org.ethereum.jsonrpc.TypeConverter.toJsonHex;
 import static org.junit.Assert.*;
 
 /**
@@ -250,4 +259,46 @@ public class JsonRpcTest {
         testRunner.runTests();
         System.out.println("Test complete.");
     }
+
+    @Test
+    public void getProofTest() throws Exception {
+        SystemProperties.getDefault().setBlockchainConfig(new FrontierConfig(new FrontierConfig.FrontierConstants() {
+            @Override
+            public BigInteger getMINIMUM_DIFFICULTY() {
+                return BigInteger.ONE;
+            }
+        }));
+        try {
+            checkProof();
+        } finally {
+            SystemProperties.getDefault().setBlockchainConfig(MainNetConfig.INSTANCE);
+        }
+    }
+
+    private void checkProof() throws Exception {
+        StandaloneBlockchain sb = new StandaloneBlockchain();
+        byte[] receiver = new byte[20];
+        receiver[19] = 1;
+        sb.sendEther(receiver, valueOf(1000));
+        Block block = sb.createBlock();
+
+        JsonRpcImpl jsonRpc = new JsonRpcImpl(sb.getBlockchain(), new CompositeEthereumListener());
+        jsonRpc.repository = sb.getBlockchain().getRepository();
+        jsonRpc.pendingState = sb.getPendingState();
+
+        JsonRpc.ProofResult proof = jsonRpc.eth_getProof(toJsonHex(receiver), new String[0], "latest");
+        assertEquals("0x3e8", proof.balance);
+        List<byte[]> nodes = new ArrayList<>();
+        for (String node : proof.accountProof) {
+            nodes.add(StringHexToByteArray(node));
+        }
+        assertNotNull(TrieImpl.verifyProof(block.getStateRoot(), sha3(receiver), nodes));
+
+        try {
+            jsonRpc.eth_getProof(toJsonHex(receiver), new String[0], "pending");
+            fail("The pending block proof should be rejected");
+        } catch (JsonRpcInvalidParamsException e) {
+            // expected
+        }
+    }
 }
@@ -212,6 +212,16 @@ public class IterableTestRepository implements Repository {
         src.addRawNode(key, value);
     }
 
+    @Override
+    public List<byte[]> getAccountProof(byte[] addr) {
+        return src.getAccountProof(addr);
+    }
+
+    @Override
+    public List<byte[]> getStorageProof(byte[] addr, DataWord key) {
+        return src.getStorageProof(addr, key);
+    }
+
     @Override
     public void updateBatch(HashMap<ByteArrayWrapper, AccountState> accountStates, HashMap<ByteArrayWrapper, ContractDetails> contractDetailes) {
         src.updateBatch(accountStates, contractDetailes);
@@ -0,0 +1,140 @@
+package org.ethereum.manager;
+
+import org.ethereum.config.SystemProperties;
+import org.ethereum.core.Block;
+import org.ethereum.core.Blockchain;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.DbFlushManager;
+import org.ethereum.db.IndexedBlockStore;
+import org.ethereum.db.RepositoryRoot;
+import org.ethereum.db.StateSource;
+import org.ethereum.vm.DataWord;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+
+import static org.ethereum.crypto.HashUtil.EMPTY_LIST_HASH;
+import static org.ethereum.crypto.HashUtil.sha3;
+import static org.ethereum.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class StateSnapshotTest {
+
+    private static byte[] address(int i) {
+        return sha3(intToBytes(i));
+    }
+
+    private static Block block(long number, byte[] stateRoot) {
+        Block block = new Block(new byte[32], EMPTY_LIST_HASH, new byte[20], new byte[256],
+                BigInteger.valueOf(131072).toByteArray(), number, BigInteger.valueOf(3141592).toByteArray(),
+                0, 1000 + number, new byte[0], new byte[32], new byte[8], null, null);
+        block.setStateRoot(stateRoot);
+        return block;
+    }
+
+    private RepositoryRoot createState(StateSource stateSource) {
+        RepositoryRoot repo = new RepositoryRoot(stateSource);
+        for (int i = 0; i < 1000; i++) {
+            repo.addBalance(address(i), BigInteger.valueOf(i + 1));
+            if (i % 10 == 0) {
+                repo.saveCode(address(i), intToBytes(i % 30));
+                for (int j = 0; j < i; j++) {
+                    repo.addStorageRow(address(i), new DataWord(j), new DataWord(j * 1000 + 1));
+                }
+            }
+        }
+        repo.commit();
+        return repo;
+    }
+
+    @Test
+    public void testExportImport() throws IOException {
+        StateSource srcState = new StateSource(new HashMapDB<byte[]>(), false);
+        RepositoryRoot srcRepo = createState(srcState);
+        byte[] root = srcRepo.getRoot();
+
+        File file = File.createTempFile("state", ".snapshot");
+        file.deleteOnExit();
+        long records = new StateSnapshot(srcState, null, null, new DbFlushManager(SystemProperties.getDefault()))
+                .withThreads(4).exportState(block(1, root), BigInteger.ONE, file);
+        assertTrue(records > 1000);
+
+        StateSource dstState = new StateSource(new HashMapDB<byte[]>(), false);
+        byte[] importedRoot = new StateSnapshot(dstState, null, null, new DbFlushManager(SystemProperties.getDefault()))
+                .withThreads(4).importState(file);
+        assertArrayEquals(root, importedRoot);
+
+        RepositoryRoot dstRepo = new RepositoryRoot(dstState, importedRoot);
+        for (int i = 0; i < 1000; i += 7) {
+            assertEquals(srcRepo.getBalance(address(i)), dstRepo.getBalance(address(i)));
+            assertArrayEquals(srcRepo.getCode(address(i)), dstRepo.getCode(address(i)));
+            assertEquals(srcRepo.getStorageValue(address(i), new DataWord(i / 2)),
+                    dstRepo.getStorageValue(address(i), new DataWord(i / 2)));
+        }
+    }
+
+    @Test
+    public void testCorruptedSnapshot() throws IOException {
+        StateSource srcState = new StateSource(new HashMapDB<byte[]>(), false);
+        byte[] root = createState(srcState).getRoot();
+
+        File file = File.createTempFile("state", ".snapshot");
+        file.deleteOnExit();
+        new StateSnapshot(srcState, null, null, new DbFlushManager(SystemProperties.getDefault()))
+                .exportState(block(1, root), BigInteger.ONE, file);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() / 2);
+            int b = raf.read();
+            raf.seek(raf.length() / 2);
+            raf.write(b ^ 0xFF);
+        }
+
+        try {
+            new StateSnapshot(new StateSource(new HashMapDB<byte[]>(), false), null, null,
+                    new DbFlushManager(SystemProperties.getDefault())).importState(file);
+            fail("Corrupted snapshot imported");
+        } catch (Exception e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testBlockRestored() throws IOException {
+        StateSource srcState = new StateSource(new HashMapDB<byte[]>(), false);
+        Block block = block(1000, createState(srcState).getRoot());
+        BigInteger totalDifficulty = BigInteger.valueOf(123456789);
+
+        File file = File.createTempFile("state", ".snapshot");
+        file.deleteOnExit();
+        new StateSnapshot(srcState, null, null, new DbFlushManager(SystemProperties.getDefault()))
+                .exportState(block, totalDifficulty, file);
+
+        IndexedBlockStore blockStore = new IndexedBlockStore();
+        blockStore.init(new HashMapDB<byte[]>(), new HashMapDB<byte[]>());
+        Blockchain blockchain = mock(Blockchain.class);
+        new StateSnapshot(new StateSource(new HashMapDB<byte[]>(), false), blockStore, blockchain,
+                new DbFlushManager(SystemProperties.getDefault())).importState(file);
+
+        assertArrayEquals(block.getHash(), blockStore.getBestBlock().getHash());
+        assertArrayEquals(block.getHash(), blockStore.getChainBlockByNumber(1000).getHash());
+        assertEquals(totalDifficulty, blockStore.getTotalDifficultyForHash(block.getHash()));
+        verify(blockchain).setBestBlock(blockStore.getBestBlock());
+        verify(blockchain).setTotalDifficulty(totalDifficulty);
+
+        // the snapshot can't move the chain back
+        blockStore.saveBlock(block(1001, block.getStateRoot()), totalDifficulty.add(BigInteger.ONE), true);
+        try {
+            new StateSnapshot(new StateSource(new HashMapDB<byte[]>(), false), blockStore, blockchain,
+                    new DbFlushManager(SystemProperties.getDefault())).importState(file);
+            fail("Snapshot imported behind the best block");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("ahead of the snapshot block"));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package org.ethereum.sync;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ChunkedValidatorTest {
+
+    @Test
+    public void testValidate() {
+        boolean[] valid = ChunkedValidator.validate(100, new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                return index % 7 != 0;
+            }
+        });
+        assertEquals(100, valid.length);
+        for (int i = 0; i < valid.length; i++) {
+            assertEquals(i % 7 != 0, valid[i]);
+        }
+    }
+
+    @Test
+    public void testAllValid() {
+        final AtomicInteger checked = new AtomicInteger();
+        assertTrue(ChunkedValidator.allValid(100, new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                checked.incrementAndGet();
+                return true;
+            }
+        }));
+        assertEquals(100, checked.get());
+    }
+
+    @Test
+    public void testStopsAtFirstInvalid() {
+        final AtomicInteger checked = new AtomicInteger();
+        ChunkedValidator.Validator invalidAt3 = new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                checked.incrementAndGet();
+                return index != 3;
+            }
+        };
+
+        // single chunk is validated in order on the calling thread
+        assertFalse(ChunkedValidator.allValid(ChunkedValidator.CHUNK_SIZE, invalidAt3));
+        assertEquals(4, checked.get());
+
+        // each chunk stops at most at its first invalid item
+        checked.set(0);
+        ChunkedValidator.Validator allInvalid = new ChunkedValidator.Validator() {
+            @Override
+            public boolean isValid(int index) {
+                checked.incrementAndGet();
+                return false;
+            }
+        };
+        int chunks = 10;
+        assertFalse(ChunkedValidator.allValid(chunks * ChunkedValidator.CHUNK_SIZE, allInvalid));
+        assertTrue(checked.get() <= chunks);
+    }
+}
@@ -0,0 +1,368 @@
+package org.ethereum.sync;
+
+import com.google.common.util.concurrent.SettableFuture;
+import org.apache.commons.lang3.tuple.Pair;
+import org.ethereum.config.CommonConfig;
+import org.ethereum.core.BlockHeader;
+import org.ethereum.core.Repository;
+import org.ethereum.datasource.DbSource;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.ByteArrayWrapper;
+import org.ethereum.db.DbFlushManager;
+import org.ethereum.net.eth.handler.Eth63;
+import org.ethereum.net.rlpx.Node;
+import org.ethereum.net.rlpx.discover.NodeStatistics;
+import org.ethereum.net.server.Channel;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+
+import static org.ethereum.TestUtils.getRandomChain;
+import static org.ethereum.TestUtils.randomBytes;
+import static org.ethereum.sync.FastSyncManager.TrieNodeType.*;
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests the state frontier checkpoints which allow to resume the interrupted fast sync
+ * and the concurrent processing of the node requests
+ */
+public class FastSyncManagerTest {
+
+    @Mock
+    private Repository repository;
+
+    @Mock
+    private DbFlushManager dbFlushManager;
+
+    @Mock
+    private SyncPool pool;
+
+    @Captor
+    private ArgumentCaptor<List<byte[]>> requestedHashes;
+
+    @InjectMocks
+    private FastSyncManager fastSyncManager = new FastSyncManager();
+
+    @Before
+    public void setup() {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    @Test
+    public void testFrontierRoundTrip() throws Exception {
+        byte[] stateHash = randomBytes(32), storageHash = randomBytes(32), codeHash = randomBytes(32);
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(STATE, stateHash));
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(STORAGE, storageHash));
+        // requested from a peer but not delivered yet
+        fastSyncManager.pendingNodes.put(new ByteArrayWrapper(codeHash),
+                fastSyncManager.new TrieNodeRequest(CODE, codeHash));
+
+        fastSyncManager.saveStateFrontier();
+        assertNull(fastSyncManager.fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY));
+        writeQueued(fastSyncManager);
+        assertNotNull(fastSyncManager.fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY));
+        verify(dbFlushManager).flush();
+
+        BlockHeader pivot = getRandomChain(new byte[32], 100, 1).get(0).getHeader();
+        fastSyncManager.fastSyncDS.put(CommonConfig.FASTSYNC_PIVOT_KEY, pivot.getEncoded());
+
+        FastSyncManager resumed = new FastSyncManager();
+        resumed.fastSyncDS = fastSyncManager.fastSyncDS;
+        BlockHeader loaded = resumed.loadStateFrontier(pivot);
+        assertNotNull(loaded);
+        assertArrayEquals(pivot.getHash(), loaded.getHash());
+
+        Map<ByteArrayWrapper, FastSyncManager.TrieNodeType> requests = new HashMap<>();
+        for (FastSyncManager.TrieNodeRequest request : resumed.nodesQueue) {
+            requests.put(new ByteArrayWrapper(request.nodeHash), request.type);
+        }
+        assertEquals(3, requests.size());
+        assertEquals(STATE, requests.get(new ByteArrayWrapper(stateHash)));
+        assertEquals(STORAGE, requests.get(new ByteArrayWrapper(storageHash)));
+        assertEquals(CODE, requests.get(new ByteArrayWrapper(codeHash)));
+
+        // the completed state removes the frontier and the pivot, nothing to resume then
+        fastSyncManager.dbWriteQueue.add(FastSyncManager.STATE_COMPLETE);
+        writeQueued(fastSyncManager);
+        assertNull(fastSyncManager.fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY));
+        assertNull(fastSyncManager.fastSyncDS.get(CommonConfig.FASTSYNC_PIVOT_KEY));
+        resumed = new FastSyncManager();
+        resumed.fastSyncDS = fastSyncManager.fastSyncDS;
+        assertNull(resumed.loadStateFrontier(pivot));
+    }
+
+    @Test
+    public void testStalePivotNotResumed() {
+        BlockHeader pivot = getRandomChain(new byte[32], 100, 1).get(0).getHeader();
+        fastSyncManager.fastSyncDS.put(CommonConfig.FASTSYNC_PIVOT_KEY, pivot.getEncoded());
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(STATE, randomBytes(32)));
+        fastSyncManager.saveStateFrontier();
+        writeQueued(fastSyncManager);
+        fastSyncManager.nodesQueue.clear();
+
+        BlockHeader recentPivot = getRandomChain(new byte[32], 1000, 1).get(0).getHeader();
+        assertArrayEquals(pivot.getHash(), fastSyncManager.loadStateFrontier(recentPivot).getHash());
+        fastSyncManager.nodesQueue.clear();
+
+        BlockHeader currentPivot = getRandomChain(new byte[32], 10000, 1).get(0).getHeader();
+        assertNull(fastSyncManager.loadStateFrontier(currentPivot));
+        assertTrue(fastSyncManager.nodesQueue.isEmpty());
+        // not resumed after restart either
+        assertNull(fastSyncManager.fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY));
+    }
+
+    @Test
+    public void testCleanUpSkippedOnSavedFrontier() {
+        final DbSource<byte[]> stateDS = new HashMapDB<>();
+        final DbSource<byte[]> fastSyncDS = new HashMapDB<>();
+        CommonConfig config = new CommonConfig() {
+            @Override
+            public DbSource<byte[]> stateDS() {
+                return stateDS;
+            }
+
+            @Override
+            public DbSource<byte[]> fastSyncDS() {
+                return fastSyncDS;
+            }
+
+            @Override
+            public DbSource<byte[]> keyValueDataSource() {
+                throw new RuntimeException("Data of the interrupted fast sync should be kept");
+            }
+        };
+
+        byte[] pivot = getRandomChain(new byte[32], 100, 1).get(0).getHeader().getEncoded();
+        byte[] nodeHash = randomBytes(32);
+        byte[] frontier = new byte[33];
+        stateDS.put(CommonConfig.FASTSYNC_DB_KEY, new byte[] {1});
+        stateDS.put(nodeHash, new byte[] {1});
+        fastSyncDS.put(CommonConfig.FASTSYNC_PIVOT_KEY, pivot);
+        fastSyncDS.put(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY, frontier);
+
+        config.fastSyncCleanUp();
+
+        assertArrayEquals(pivot, fastSyncDS.get(CommonConfig.FASTSYNC_PIVOT_KEY));
+        assertArrayEquals(frontier, fastSyncDS.get(CommonConfig.FASTSYNC_STATE_FRONTIER_KEY));
+        assertNotNull(stateDS.get(CommonConfig.FASTSYNC_DB_KEY));
+        assertNotNull(stateDS.get(nodeHash));
+    }
+
+    @Test
+    public void testCheckpointNotRequested() {
+        Eth63 eth = mock(Eth63.class);
+        when(eth.requestTrieNodes(anyListOf(byte[].class))).thenReturn(SettableFuture.<List<Pair<byte[], byte[]>>>create());
+        Channel peer = mock(Channel.class);
+        when(peer.getEthHandler()).thenReturn(eth);
+        when(pool.getAnyIdle()).thenReturn(peer);
+
+        for (int i = 0; i < 10; i++) {
+            fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(STATE, randomBytes(32)));
+        }
+        fastSyncManager.saveStateFrontier();
+        fastSyncManager.dbWriteQueue.add(FastSyncManager.STATE_COMPLETE);
+
+        while (fastSyncManager.requestNextNodes(3));
+        fastSyncManager.saveStateFrontier();
+        while (fastSyncManager.requestNextNodes(3));
+
+        verify(eth, times(4)).requestTrieNodes(requestedHashes.capture());
+        int requested = 0;
+        for (List<byte[]> hashes : requestedHashes.getAllValues()) {
+            for (byte[] hash : hashes) {
+                assertNotNull(hash);
+                requested++;
+            }
+        }
+        assertEquals(10, requested);
+        assertTrue(fastSyncManager.nodesQueue.isEmpty());
+        assertEquals(10, fastSyncManager.pendingNodes.size());
+        // the checkpoints are passed to the DB writer only
+        assertEquals(3, fastSyncManager.dbWriteQueue.size());
+        for (Object entry : fastSyncManager.dbWriteQueue) {
+            assertTrue(entry instanceof FastSyncManager.StateCheckpoint);
+        }
+    }
+
+    @Test
+    public void testUnrequestedNodeSkipped() {
+        Peer peer = new Peer();
+        byte[] hash1 = randomBytes(32), hash2 = randomBytes(32);
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash1));
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash2));
+        SettableFuture<List<Pair<byte[], byte[]>>> response = peer.request(2);
+
+        response.set(Arrays.asList(node(randomBytes(32)), node(hash1), node(hash2)));
+
+        assertEquals(2, fastSyncManager.dbWriteQueue.size());
+        assertTrue(fastSyncManager.pendingNodes.isEmpty());
+        assertTrue(fastSyncManager.nodesQueue.isEmpty());
+    }
+
+    @Test
+    public void testConcurrentDelivery() throws Exception {
+        Peer peer1 = new Peer(), peer2 = new Peer();
+        for (int i = 0; i < 100; i++) {
+            byte[] hash = randomBytes(32);
+            // the same node may be queued twice as a child of different nodes
+            fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash));
+            fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash));
+            SettableFuture<List<Pair<byte[], byte[]>>> response1 = peer1.request(1);
+            SettableFuture<List<Pair<byte[], byte[]>>> response2 = peer2.request(1);
+            assertEquals(1, fastSyncManager.pendingNodes.size());
+
+            runConcurrently(respond(response1, hash), respond(response2, hash));
+
+            assertEquals(1, fastSyncManager.dbWriteQueue.size());
+            assertTrue(fastSyncManager.pendingNodes.isEmpty());
+            assertTrue(fastSyncManager.nodesQueue.isEmpty());
+            fastSyncManager.dbWriteQueue.clear();
+        }
+    }
+
+    @Test
+    public void testTimeoutRacingLateResponse() throws Exception {
+        Peer peer = new Peer();
+        for (int i = 0; i < 100; i++) {
+            byte[] hash = randomBytes(32);
+            fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash));
+            SettableFuture<List<Pair<byte[], byte[]>>> response = peer.request(1);
+            expire(fastSyncManager.pendingNodes.get(new ByteArrayWrapper(hash)));
+
+            runConcurrently(new Runnable() {
+                @Override
+                public void run() {
+                    fastSyncManager.processTimeouts();
+                }
+            }, respond(response, hash));
+
+            assertTrue(fastSyncManager.pendingNodes.isEmpty());
+            if (fastSyncManager.dbWriteQueue.isEmpty()) {
+                // timed out first, the late response is dropped and the node is requested again
+                assertEquals(1, fastSyncManager.nodesQueue.size());
+                assertFalse(fastSyncManager.nodesQueue.peek().isResponded());
+            } else {
+                assertEquals(1, fastSyncManager.dbWriteQueue.size());
+                for (FastSyncManager.TrieNodeRequest request : fastSyncManager.nodesQueue) {
+                    assertTrue(request.isResponded());
+                }
+                // the delivered node is not requested again
+                assertFalse(fastSyncManager.requestNextNodes(1));
+            }
+            fastSyncManager.nodesQueue.clear();
+            fastSyncManager.dbWriteQueue.clear();
+        }
+    }
+
+    @Test
+    public void testPendingConsistentAfterPurge() {
+        Peer peer1 = new Peer(), peer2 = new Peer();
+        byte[] hash1 = randomBytes(32), hash2 = randomBytes(32);
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash1));
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash2));
+        fastSyncManager.nodesQueue.add(fastSyncManager.new TrieNodeRequest(CODE, hash1));
+        SettableFuture<List<Pair<byte[], byte[]>>> response1 = peer1.request(2);
+        SettableFuture<List<Pair<byte[], byte[]>>> response2 = peer2.request(1);
+        assertTrue(fastSyncManager.nodesQueue.isEmpty());
+        assertEquals(2, fastSyncManager.pendingNodes.size());
+
+        response2.set(Collections.singletonList(node(hash1)));
+        // still waiting for the first peer
+        assertEquals(2, fastSyncManager.pendingNodes.size());
+        assertEquals(1, fastSyncManager.dbWriteQueue.size());
+
+        response1.setException(new RuntimeException("Peer disconnected"));
+        assertTrue(fastSyncManager.pendingNodes.isEmpty());
+        // only the node not delivered by another peer is requested again
+        assertEquals(1, fastSyncManager.nodesQueue.size());
+        assertArrayEquals(hash2, fastSyncManager.nodesQueue.peek().nodeHash);
+        assertEquals(1, fastSyncManager.dbWriteQueue.size());
+    }
+
+    /**
+     * The mocked peer serving the node requests of the tested instance
+     */
+    private class Peer {
+        final Channel channel = mock(Channel.class);
+        final Eth63 eth = mock(Eth63.class);
+
+        Peer() {
+            when(channel.getEthHandler()).thenReturn(eth);
+            when(channel.getNodeStatistics()).thenReturn(
+                    new NodeStatistics(new Node(randomBytes(64), "127.0.0.1", 30303)));
+        }
+
+        /**
+         * Sends the next queued nodes to this peer
+         * @return the response to complete
+         */
+        SettableFuture<List<Pair<byte[], byte[]>>> request(int cnt) {
+            SettableFuture<List<Pair<byte[], byte[]>>> response = SettableFuture.create();
+            when(eth.requestTrieNodes(anyListOf(byte[].class))).thenReturn(response);
+            when(pool.getAnyIdle()).thenReturn(channel);
+            assertTrue(fastSyncManager.requestNextNodes(cnt));
+            return response;
+        }
+    }
+
+    private static Pair<byte[], byte[]> node(byte[] hash) {
+        return Pair.of(hash, new byte[] {0x60, 0x00});
+    }
+
+    private static Runnable respond(final SettableFuture<List<Pair<byte[], byte[]>>> response, final byte[] hash) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                response.set(Collections.singletonList(node(hash)));
+            }
+        };
+    }
+
+    private static void expire(FastSyncManager.TrieNodeRequest request) {
+        synchronized (request) {
+            for (Map.Entry<Long, Long> entry : request.requestSent.entrySet()) {
+                entry.setValue(0L);
+            }
+        }
+    }
+
+    private static void runConcurrently(Runnable... tasks) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (final Runnable task : tasks) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    task.run();
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    private static void writeQueued(FastSyncManager fastSyncManager) {
+        Object entry;
+        while ((entry = fastSyncManager.dbWriteQueue.poll()) != null) {
+            fastSyncManager.dbWrite(entry);
+        }
+    }
+}
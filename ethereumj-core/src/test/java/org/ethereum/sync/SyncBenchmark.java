@@ -0,0 +1,384 @@
+package org.ethereum.sync;
+
+import com.typesafe.config.ConfigFactory;
+import org.ethereum.config.NoAutoscan;
+import org.ethereum.config.SystemProperties;
+import org.ethereum.config.blockchain.FrontierConfig;
+import org.ethereum.core.Block;
+import org.ethereum.core.BlockSummary;
+import org.ethereum.core.Blockchain;
+import org.ethereum.core.ImportResult;
+import org.ethereum.crypto.ECKey;
+import org.ethereum.datasource.DbSource;
+import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.BlockStore;
+import org.ethereum.facade.Ethereum;
+import org.ethereum.facade.EthereumFactory;
+import org.ethereum.listener.CompositeEthereumListener;
+import org.ethereum.listener.EthereumListenerAdapter;
+import org.ethereum.net.eth.handler.Eth63;
+import org.ethereum.net.eth.message.BlockBodiesMessage;
+import org.ethereum.net.eth.message.BlockHeadersMessage;
+import org.ethereum.net.eth.message.NodeDataMessage;
+import org.ethereum.net.eth.message.ReceiptsMessage;
+import org.ethereum.util.blockchain.StandaloneBlockchain;
+import org.spongycastle.util.encoders.Hex;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Scope;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.ethereum.crypto.HashUtil.sha3;
+import static org.ethereum.util.ByteUtil.longToBytes;
+import static org.ethereum.util.FileUtil.recursiveDelete;
+
+/**
+ * Measures the sync throughput without the public network.
+ *
+ * Generates a synthetic chain with the {@link StandaloneBlockchain} where every transaction
+ * creates a new account, imports it to several seed {@link Ethereum} instances and then syncs
+ * a fresh instance from them over the loopback. All the instances run in this JVM with in-memory
+ * data sources. Reports the headers, bodies, blocks, state nodes and receipts per second
+ * for the regular and fast sync.
+ *
+ * To run the benchmark:
+ *     gradle syncBenchmark -Pblocks=2000 -Ptxs=10 -Ppeers=3 -Pmode=all
+ *
+ * The mode is one of 'regular', 'fast' or 'all'
+ */
+public class SyncBenchmark {
+    private static final int BASE_PORT = 30360;
+    private static final int NETWORK_ID = 555;
+    // the fast sync pivot block distance from the chain head
+    private static final int PIVOT_DISTANCE = 64;
+    private static final long SYNC_TIMEOUT_MINUTES = 60;
+
+    private static final FrontierConfig EASY_MINING_CONFIG = new FrontierConfig(new FrontierConfig.FrontierConstants() {
+        @Override
+        public BigInteger getMINIMUM_DIFFICULTY() {
+            return BigInteger.ONE;
+        }
+    });
+
+    // the properties and meters of the instance being created, picked up by the NodeConfig
+    private static SystemProperties nodeProps;
+    private static Meters nodeMeters;
+
+    @Configuration
+    @NoAutoscan
+    public static class NodeConfig {
+        private final SystemProperties props = nodeProps;
+        private final Meters meters = nodeMeters;
+
+        @Bean
+        public SystemProperties systemProperties() {
+            return props;
+        }
+
+        @Bean
+        @Scope("prototype")
+        @Primary
+        public DbSource<byte[]> keyValueDataSource() {
+            return new HashMapDB<>();
+        }
+
+        @Bean(name = "Eth63")
+        @Scope("prototype")
+        public Eth63 eth63(Blockchain blockchain, BlockStore blockStore, CompositeEthereumListener listener) {
+            return meters == null ? new Eth63(props, blockchain, blockStore, listener) :
+                    new MeteredEth63(meters, props, blockchain, blockStore, listener);
+        }
+    }
+
+    /**
+     * Counts the items received by the syncing instance, the counting is done
+     * on the handler thread after the message is processed (and parsed)
+     */
+    static class MeteredEth63 extends Eth63 {
+        private final Meters meters;
+
+        MeteredEth63(Meters meters, SystemProperties config, Blockchain blockchain, BlockStore blockStore,
+                     CompositeEthereumListener listener) {
+            super(config, blockchain, blockStore, listener);
+            this.meters = meters;
+        }
+
+        @Override
+        protected synchronized void processBlockHeaders(BlockHeadersMessage msg) {
+            super.processBlockHeaders(msg);
+            meters.headers.add(msg.getBlockHeaders().size());
+        }
+
+        @Override
+        protected synchronized void processBlockBodies(BlockBodiesMessage msg) {
+            super.processBlockBodies(msg);
+            meters.bodies.add(msg.getBlockBodies().size());
+        }
+
+        @Override
+        protected synchronized void processNodeData(NodeDataMessage msg) {
+            super.processNodeData(msg);
+            meters.nodes.add(msg.getDataList().size());
+        }
+
+        @Override
+        protected synchronized void processReceipts(ReceiptsMessage msg) {
+            super.processReceipts(msg);
+            meters.receipts.add(msg.getReceipts().size());
+        }
+    }
+
+    static class Meter {
+        private final String name;
+        private long count;
+        private long first;
+        private long last;
+
+        Meter(String name) {
+            this.name = name;
+        }
+
+        synchronized void add(int items) {
+            long cur = System.currentTimeMillis();
+            if (count == 0) first = cur;
+            last = cur;
+            count += items;
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (count == 0) return name + ": none";
+            long time = last - first;
+            return name + ": " + count + " in " + time + " ms" +
+                    (time > 0 ? String.format(", %.1f/sec", count * 1000d / time) : "");
+        }
+    }
+
+    static class Meters {
+        final Meter headers = new Meter("headers");
+        final Meter bodies = new Meter("bodies");
+        final Meter blocks = new Meter("blocks imported");
+        final Meter nodes = new Meter("state nodes");
+        final Meter receipts = new Meter("receipts");
+        long totalTime;
+
+        @Override
+        public String toString() {
+            return "total: " + totalTime + " ms\n" +
+                    "    " + headers + "\n" +
+                    "    " + bodies + "\n" +
+                    "    " + blocks + "\n" +
+                    "    " + nodes + "\n" +
+                    "    " + receipts;
+        }
+    }
+
+    private final int blocksCount;
+    private final int txsPerBlock;
+    private final int peersCount;
+    private final File dbDir;
+
+    private List<Block> chain;
+    private final List<Ethereum> seeds = new ArrayList<>();
+    private final List<String> seedUrls = new ArrayList<>();
+
+    public SyncBenchmark(int blocksCount, int txsPerBlock, int peersCount) throws Exception {
+        this.blocksCount = blocksCount;
+        this.txsPerBlock = txsPerBlock;
+        this.peersCount = peersCount;
+        this.dbDir = Files.createTempDirectory("sync-benchmark").toFile();
+    }
+
+    /**
+     * Generates the chain plus one extra block which is announced by seeds when the
+     * fast sync reaches the chain head, the fast sync doesn't complete until a new block is received
+     */
+    private void generateChain() {
+        long start = System.currentTimeMillis();
+        StandaloneBlockchain sb = new StandaloneBlockchain().withGasLimit(21000);
+        chain = new ArrayList<>();
+        long account = 0;
+        for (int i = 0; i < blocksCount + 1; i++) {
+            for (int j = 0; j < txsPerBlock; j++) {
+                byte[] address = Arrays.copyOfRange(sha3(longToBytes(account++)), 12, 32);
+                sb.sendEther(address, BigInteger.ONE);
+            }
+            chain.add(sb.createBlock());
+        }
+        System.out.println("Generated " + chain.size() + " blocks with " + account + " accounts in " +
+                (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static SystemProperties createProps(String config) {
+        SystemProperties props = new SystemProperties();
+        props.overrideParams(ConfigFactory.parseString(config.replaceAll("'", "\"")));
+        props.setBlockchainConfig(EASY_MINING_CONFIG);
+        return props;
+    }
+
+    private static synchronized Ethereum createNode(SystemProperties props, Meters meters) {
+        nodeProps = props;
+        nodeMeters = meters;
+        try {
+            return EthereumFactory.createEthereum(NodeConfig.class);
+        } finally {
+            nodeProps = null;
+            nodeMeters = null;
+        }
+    }
+
+    private void startSeeds() {
+        for (int i = 0; i < peersCount; i++) {
+            ECKey key = new ECKey();
+            int port = BASE_PORT + i;
+            SystemProperties props = createProps(
+                    "peer.discovery.enabled = false \n" +
+                    "peer.listen.port = " + port + " \n" +
+                    "peer.privateKey = " + Hex.toHexString(key.getPrivKeyBytes()) + " \n" +
+                    "peer.networkId = " + NETWORK_ID + " \n" +
+                    "peer.capabilities = [eth] \n" +
+                    "sync.enabled = false \n" +
+                    "genesis = genesis-light-sb.json \n" +
+                    // the pruning keeps the states of the last [maxDepth] blocks,
+                    // the state at the fast sync pivot block should be available
+                    "database.prune.maxDepth = " + (PIVOT_DISTANCE * 2) + " \n" +
+                    "database.dir = '" + new File(dbDir, "seed-" + i).getAbsolutePath() + "' \n");
+
+            Ethereum seed = createNode(props, null);
+            long start = System.currentTimeMillis();
+            List<ImportResult> results = ((Blockchain) seed.getBlockchain()).tryToConnectBatch(chain.subList(0, blocksCount));
+            for (int j = 0; j < results.size(); j++) {
+                if (results.get(j) != ImportResult.IMPORTED_BEST) {
+                    throw new RuntimeException("Seed failed to import block " + chain.get(j).getShortDescr() + ": " + results.get(j));
+                }
+            }
+            System.out.println("Seed #" + i + " imported the chain in " + (System.currentTimeMillis() - start) + " ms");
+
+            seeds.add(seed);
+            seedUrls.add("enode://" + Hex.toHexString(key.getNodeId()) + "@localhost:" + port);
+        }
+    }
+
+    private void announceNewBlock(Block block) {
+        for (Ethereum seed : seeds) {
+            ((Blockchain) seed.getBlockchain()).tryToConnect(block);
+            seed.getChannelManager().sendNewBlock(block);
+        }
+    }
+
+    /**
+     * Syncs a fresh instance from the seeds
+     * @param fast whether to do the fast sync, the regular one otherwise
+     */
+    public Meters sync(final boolean fast) throws InterruptedException {
+        final Block head = chain.get(blocksCount - 1);
+        final Block newBlock = chain.get(blocksCount);
+
+        StringBuilder peers = new StringBuilder();
+        for (String url : seedUrls) {
+            if (peers.length() > 0) peers.append(", \n");
+            peers.append("    { url = '").append(url).append("' }");
+        }
+        String mode = fast ? "fast" : "regular";
+        SystemProperties props = createProps(
+                "peer.discovery.enabled = false \n" +
+                "peer.listen.port = " + (BASE_PORT + peersCount) + " \n" +
+                "peer.privateKey = " + Hex.toHexString(new ECKey().getPrivKeyBytes()) + " \n" +
+                "peer.networkId = " + NETWORK_ID + " \n" +
+                "peer.capabilities = [eth] \n" +
+                "peer.active = [\n" + peers + "\n] \n" +
+                "sync.enabled = true \n" +
+                "sync.fast.enabled = " + fast + " \n" +
+                (fast ? "sync.fast.pivotBlockHash = " +
+                        Hex.toHexString(chain.get(Math.max(blocksCount - 1 - PIVOT_DISTANCE, 0)).getHash()) + " \n" : "") +
+                "genesis = genesis-light-sb.json \n" +
+                "database.dir = '" + new File(dbDir, mode).getAbsolutePath() + "' \n");
+
+        final Meters meters = new Meters();
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicBoolean announced = new AtomicBoolean();
+
+        System.out.println("Starting " + mode + " sync of " + blocksCount + " blocks from " + peersCount + " peers");
+        long start = System.currentTimeMillis();
+        Ethereum node = createNode(props, meters);
+        node.addListener(new EthereumListenerAdapter() {
+            @Override
+            public void onBlock(BlockSummary blockSummary) {
+                meters.blocks.add(1);
+                if (blockSummary.getBlock().isEqual(head)) {
+                    if (!fast) {
+                        done.countDown();
+                    } else if (announced.compareAndSet(false, true)) {
+                        announceNewBlock(newBlock);
+                    }
+                }
+            }
+
+            @Override
+            public void onSyncDone(SyncState state) {
+                if (state == SyncState.COMPLETE) done.countDown();
+            }
+        });
+
+        try {
+            if (!done.await(SYNC_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new RuntimeException("The " + mode + " sync is not complete in " + SYNC_TIMEOUT_MINUTES + " minutes");
+            }
+            meters.totalTime = System.currentTimeMillis() - start;
+        } finally {
+            node.close();
+        }
+        return meters;
+    }
+
+    public void close() {
+        for (Ethereum seed : seeds) {
+            seed.close();
+        }
+        recursiveDelete(dbDir.getAbsolutePath());
+    }
+
+    /**
+     * Args: [blocks] [transactions per block] [peers] [regular|fast|all]
+     */
+    public static void main(String[] args) throws Exception {
+        int blocks = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int txs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int peers = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        String mode = args.length > 3 ? args[3] : "all";
+        if (blocks <= PIVOT_DISTANCE) throw new RuntimeException("At least " + (PIVOT_DISTANCE + 1) + " blocks are required");
+
+        SystemProperties.getDefault().setBlockchainConfig(EASY_MINING_CONFIG);
+
+        SyncBenchmark benchmark = new SyncBenchmark(blocks, txs, peers);
+        StringBuilder report = new StringBuilder("Sync benchmark: " + blocks + " blocks, " + txs +
+                " txs per block, " + peers + " peers\n");
+        try {
+            benchmark.generateChain();
+            benchmark.startSeeds();
+
+            // the fast sync goes last since it makes the seeds to import a new block
+            if ("regular".equals(mode) || "all".equals(mode)) {
+                report.append("Regular sync ").append(benchmark.sync(false)).append("\n");
+            }
+            if ("fast".equals(mode) || "all".equals(mode)) {
+                report.append("Fast sync ").append(benchmark.sync(true)).append("\n");
+            }
+        } finally {
+            benchmark.close();
+        }
+
+        System.out.println(report.toString());
+        System.exit(0);
+    }
+}
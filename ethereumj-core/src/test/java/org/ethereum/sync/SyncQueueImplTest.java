@@ -30,6 +30,99 @@ public class SyncQueueImplTest {
         syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(32, 1024), peer0));
     }
 
+    @Test
+    public void testLongestChain() {
+        List<Block> randomChain = TestUtils.getRandomChain(new byte[32], 0, 400);
+        SyncQueueImpl syncQueue = new SyncQueueImpl(randomChain.subList(0, 32));
+        assert longestChainEnd(syncQueue) == 31;
+
+        // longer fork
+        syncQueue.addHeaders(createHeadersFromBlocks(TestUtils.getRandomChain(randomChain.get(16).getHash(), 17, 64), peer0));
+        assert longestChainEnd(syncQueue) == 80;
+
+        // detached headers: the longest chain ends at the fork tip
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(100, 150), peer0));
+        assert longestChainEnd(syncQueue) == 80;
+        assert syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 1).iterator().next().getStart() == 80;
+
+        // filling the gap from the end links the detached headers
+        List<Block> gap = new ArrayList<>(randomChain.subList(32, 100));
+        Collections.reverse(gap);
+        syncQueue.addHeaders(createHeadersFromBlocks(gap, peer0));
+        assert longestChainEnd(syncQueue) == 149;
+        assert syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 1).iterator().next().getStart() == 150;
+
+        // the dark zone follows the main chain
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(150, 400), peer0));
+        assert longestChainEnd(syncQueue) == 399;
+        assert syncQueue.darkZoneNum == 399 - SyncQueueImpl.MAX_CHAIN_LEN;
+        SyncQueueImpl.HeaderElement darkZoneHeader = syncQueue.headers.get(syncQueue.darkZoneNum).values().iterator().next();
+        assert Arrays.equals(randomChain.get((int) syncQueue.darkZoneNum).getHash(), darkZoneHeader.header.getHash());
+    }
+
+    @Test
+    public void testSkeleton() {
+        List<Block> randomChain = TestUtils.getRandomChain(new byte[32], 0, 1024);
+        SyncQueueImpl syncQueue = new SyncQueueImpl(randomChain.subList(0, 32));
+
+        List<SyncQueueIfc.HeadersRequest> requests = syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 4);
+        assert requests.size() == 2;
+        assert requests.get(0).getStart() == 32;
+        SyncQueueIfc.HeadersRequest skeletonRequest = requests.get(1);
+        assert Arrays.equals(randomChain.get(31).getHash(), skeletonRequest.getHash());
+        assert skeletonRequest.getCount() == 5;
+        assert skeletonRequest.getStep() == DEFAULT_REQUEST_LEN - 1;
+
+        List<Block> skeleton = new ArrayList<>();
+        for (int i = 31; i < 1024 && skeleton.size() < skeletonRequest.getCount(); i += DEFAULT_REQUEST_LEN) {
+            skeleton.add(randomChain.get(i));
+        }
+        syncQueue.addHeaders(createHeadersFromBlocks(skeleton, peer0));
+
+        // the first segment is covered by the regular forward request
+        requests = syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 4);
+        assert requests.size() == 3;
+        assert requests.get(0).getStart() == 224 && requests.get(0).getCount() == DEFAULT_REQUEST_LEN;
+        assert requests.get(1).getStart() == 416;
+        assert requests.get(2).getStart() == 608;
+        // segments are not requested twice, falling back to the regular request
+        requests = syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 4);
+        assert requests.size() == 1 && requests.get(0).getStart() == 32;
+
+        // segment linked to the anchors is accepted far ahead of the chain
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(608, 800), peer0));
+        assert syncQueue.headers.containsKey(799L);
+        // but neither its bodies are requested nor it is treated as a gap until linked to the chain
+        assert syncQueue.maxNum == 31;
+        assert syncQueue.requestBlocks(1000).getBlockHeaders().isEmpty();
+        requests = syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 4);
+        assert requests.size() == 1 && requests.get(0).getStart() == 32 && !requests.get(0).isReverse();
+
+        // segment not matching the anchor is dropped
+        syncQueue.addHeaders(createHeadersFromBlocks(
+                TestUtils.getRandomChain(randomChain.get(415).getHash(), 416, DEFAULT_REQUEST_LEN), peer0));
+        assert !syncQueue.headers.containsKey(500L);
+
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(32, 224), peer0));
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(224, 416), peer0));
+        syncQueue.addHeaders(createHeadersFromBlocks(randomChain.subList(416, 608), peer0));
+        assert longestChainEnd(syncQueue) == 799;
+        assert syncQueue.maxNum == 799;
+        assert syncQueue.requestBlocks(1000).getBlockHeaders().size() == 768;
+
+        // the skeleton is complete, the next one starts at the chain end
+        requests = syncQueue.requestHeaders(DEFAULT_REQUEST_LEN, 4);
+        assert requests.size() == 2;
+        assert requests.get(0).getStart() == 800;
+        assert Arrays.equals(randomChain.get(799).getHash(), requests.get(1).getHash());
+    }
+
+    private static long longestChainEnd(SyncQueueImpl syncQueue) {
+        Map<ByteArrayWrapper, SyncQueueImpl.HeaderElement> darkZoneGen = syncQueue.headers.get(syncQueue.darkZoneNum);
+        assert darkZoneGen.size() == 1;
+        return darkZoneGen.values().iterator().next().bestNumber;
+    }
+
     @Test
     public void test2() {
         List<Block> randomChain = TestUtils.getRandomChain(new byte[32], 0, 1024);
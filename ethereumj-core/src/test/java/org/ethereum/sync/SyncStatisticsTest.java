@@ -0,0 +1,62 @@
+package org.ethereum.sync;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SyncStatisticsTest {
+
+    @Test
+    public void testCapacity() {
+        SyncStatistics.Throughput throughput = new SyncStatistics.Throughput();
+        assertFalse(throughput.isMeasured());
+        assertEquals(64, throughput.getCapacity(1000, 64, 8, 192));
+
+        // 100 items in 500 ms
+        throughput.received(100, 500);
+        assertEquals(200, throughput.getItemsPerSec(), 0.001);
+        assertEquals(500, throughput.getRtt(), 0.001);
+        assertEquals(192, throughput.getCapacity(1000, 64, 8, 192));
+        assertEquals(100, throughput.getCapacity(500, 64, 8, 192));
+
+        // the peer slows down
+        for (int i = 0; i < 20; i++) {
+            throughput.received(10, 1000);
+        }
+        assertEquals(10, throughput.getCapacity(1000, 64, 8, 192));
+
+        // empty responses don't affect the capacity
+        for (int i = 0; i < 20; i++) {
+            throughput.received(0, 100);
+        }
+        assertEquals(10, throughput.getCapacity(1000, 64, 8, 192));
+        assertEquals(100, throughput.getRtt(), 1);
+
+        // nor measure an unmeasured peer
+        SyncStatistics.Throughput empty = new SyncStatistics.Throughput();
+        empty.received(0, 100);
+        assertFalse(empty.isMeasured());
+        assertEquals(64, empty.getCapacity(1000, 64, 8, 192));
+
+        // the slow peer delivers very little
+        for (int i = 0; i < 20; i++) {
+            throughput.received(1, 1000);
+        }
+        assertEquals(8, throughput.getCapacity(1000, 64, 8, 192));
+    }
+
+    @Test
+    public void testResetKeepsThroughput() {
+        SyncStatistics stats = new SyncStatistics();
+        stats.bodiesRequested();
+        stats.addBlocks(10);
+        assertTrue(stats.getBodiesThroughput().isMeasured());
+        // response without request is not measured
+        stats.addHeaders(10);
+        assertFalse(stats.getHeadersThroughput().isMeasured());
+
+        stats.reset();
+        assertEquals(0, stats.getBlocksCount());
+        assertTrue(stats.getBodiesThroughput().isMeasured());
+    }
+}
@@ -4,7 +4,9 @@ import org.ethereum.core.AccountState;
 import org.ethereum.crypto.HashUtil;
 import org.ethereum.datasource.*;
 import org.ethereum.datasource.inmem.HashMapDB;
+import org.ethereum.db.ByteArrayWrapper;
 import org.ethereum.util.ByteUtil;
+import org.ethereum.util.RLP;
 import org.ethereum.util.Value;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -949,4 +951,148 @@ public class TrieTest {
         assertArrayEquals(trie.get(Hex.decode("6e92718d00dae27b2a96f6853a0bf11ded08bc658b2e75904ca0344df5aff9ae")),
                 Hex.decode("00000000000000000000000000000000000000000000002f0000000000000000"));
     }
+
+    @Test
+    public void testProof() {
+        TrieImpl trie = new TrieImpl();
+        Random rnd = new Random(0);
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            byte[] key = new byte[rnd.nextInt(3) + 1 + i % 32];
+            rnd.nextBytes(key);
+            byte[] value = new byte[rnd.nextInt(40) + 1];
+            rnd.nextBytes(value);
+            trie.put(key, value);
+            keys.add(key);
+        }
+        byte[] root = trie.getRootHash();
+
+        for (byte[] key : keys) {
+            List<byte[]> proof = trie.getProof(key);
+            assertArrayEquals(trie.get(key), TrieImpl.verifyProof(root, key, proof));
+
+            // incomplete proof
+            assertNull(TrieImpl.verifyProof(root, key, proof.subList(1, proof.size())));
+        }
+
+        // absent key
+        byte[] absentKey = Hex.decode("ffeeddccbbaa998877");
+        assertArrayEquals(ByteUtil.EMPTY_BYTE_ARRAY, TrieImpl.verifyProof(root, absentKey, trie.getProof(absentKey)));
+        // wrong root
+        assertNull(TrieImpl.verifyProof(HashUtil.sha3(root), keys.get(0), trie.getProof(keys.get(0))));
+    }
+
+    @Test
+    public void testProofSmallTrie() {
+        // the root node is shorter than 32 bytes and isn't stored by hash
+        TrieImpl trie = new TrieImpl();
+        trie.put(cat.getBytes(), dog.getBytes());
+        byte[] root = trie.getRootHash();
+        List<byte[]> proof = trie.getProof(cat.getBytes());
+        assertEquals(1, proof.size());
+        assertArrayEquals(dog.getBytes(), TrieImpl.verifyProof(root, cat.getBytes(), proof));
+        assertArrayEquals(ByteUtil.EMPTY_BYTE_ARRAY, TrieImpl.verifyProof(root, doge.getBytes(), proof));
+
+        assertEquals(0, new TrieImpl().getProof(cat.getBytes()).size());
+        assertArrayEquals(ByteUtil.EMPTY_BYTE_ARRAY, TrieImpl.verifyProof(EMPTY_TRIE_HASH, cat.getBytes(), Collections.<byte[]>emptyList()));
+    }
+
+    @Test
+    public void testSecureTrieProof() {
+        SecureTrie trie = new SecureTrie(new HashMapDB<Value>());
+        for (int i = 0; i < 100; i++) {
+            trie.put(("key" + i).getBytes(), ("value" + i).getBytes());
+        }
+        byte[] root = trie.getRootHash();
+        for (int i = 0; i < 100; i++) {
+            byte[] key = ("key" + i).getBytes();
+            assertArrayEquals(("value" + i).getBytes(), SecureTrie.verifyProof(root, key, trie.getProof(key)));
+        }
+    }
+
+    @Test
+    public void testIterator() {
+        TrieImpl trie = new TrieImpl();
+        TreeMap<ByteArrayWrapper, byte[]> expected = new TreeMap<>();
+        Random rnd = new Random(1);
+        for (int i = 0; i < 500; i++) {
+            byte[] key = new byte[rnd.nextInt(4) + 1 + (i % 3 == 0 ? 32 : 0)];
+            rnd.nextBytes(key);
+            byte[] value = new byte[rnd.nextInt(40) + 1];
+            rnd.nextBytes(value);
+            trie.put(key, value);
+            expected.put(new ByteArrayWrapper(key), value);
+        }
+        // key which is a prefix of another key
+        trie.put(new byte[] {1}, new byte[] {1});
+        trie.put(new byte[] {1, 2}, new byte[] {2});
+        expected.put(new ByteArrayWrapper(new byte[] {1}), new byte[] {1});
+        expected.put(new ByteArrayWrapper(new byte[] {1, 2}), new byte[] {2});
+
+        assertIterated(expected.entrySet().iterator(), trie.getIterator());
+
+        byte[] startKey = new ArrayList<>(expected.keySet()).get(123).getData();
+        assertIterated(expected.tailMap(new ByteArrayWrapper(startKey)).entrySet().iterator(), trie.getIterator().seek(startKey));
+        byte[] absentStart = Arrays.copyOf(startKey, startKey.length + 1);
+        assertIterated(expected.tailMap(new ByteArrayWrapper(absentStart)).entrySet().iterator(), trie.getIterator().seek(absentStart));
+        assertFalse(trie.getIterator().seek(new byte[] {(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff}).hasNext());
+        assertFalse(new TrieImpl().getIterator().hasNext());
+    }
+
+    @Test
+    public void testIndexedTrieBuilder() {
+        IndexedTrieBuilder builder = new IndexedTrieBuilder();
+        assertArrayEquals(EMPTY_TRIE_HASH, builder.getRootHash());
+
+        TrieImpl trie = new TrieImpl();
+        for (int i = 0; i < 300; i++) {
+            byte[] val = HashUtil.sha3(ByteUtil.intToBytes(i));
+            trie.put(RLP.encodeInt(i), val);
+            builder.add(val);
+            assertArrayEquals(trie.getRootHash(), builder.getRootHash());
+        }
+        assertEquals(300, builder.size());
+    }
+
+    @Test
+    public void testIteratorPaging() {
+        TrieImpl trie = new TrieImpl();
+        TreeMap<ByteArrayWrapper, byte[]> expected = new TreeMap<>();
+        for (int i = 0; i < 1000; i++) {
+            byte[] key = HashUtil.sha3(ByteUtil.intToBytes(i));
+            trie.put(key, ByteUtil.intToBytes(i + 1));
+            expected.put(new ByteArrayWrapper(key), ByteUtil.intToBytes(i + 1));
+        }
+
+        Iterator<Map.Entry<ByteArrayWrapper, byte[]>> expectedIt = expected.entrySet().iterator();
+        byte[] cursor = new byte[0];
+        int pages = 0;
+        while (cursor != null) {
+            TrieIterator it = trie.getIterator().seek(cursor).limit(64);
+            int cnt = 0;
+            while (it.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = it.next();
+                Map.Entry<ByteArrayWrapper, byte[]> expectedEntry = expectedIt.next();
+                assertArrayEquals(expectedEntry.getKey().getData(), entry.getKey());
+                assertArrayEquals(expectedEntry.getValue(), entry.getValue());
+                cnt++;
+            }
+            assertTrue(cnt <= 64);
+            cursor = it.getCursor();
+            pages++;
+        }
+        assertFalse(expectedIt.hasNext());
+        assertEquals(16, pages);
+    }
+
+    private static void assertIterated(Iterator<Map.Entry<ByteArrayWrapper, byte[]>> expected, Iterator<Map.Entry<byte[], byte[]>> actual) {
+        while (expected.hasNext()) {
+            assertTrue(actual.hasNext());
+            Map.Entry<ByteArrayWrapper, byte[]> expectedEntry = expected.next();
+            Map.Entry<byte[], byte[]> entry = actual.next();
+            assertArrayEquals(expectedEntry.getKey().getData(), entry.getKey());
+            assertArrayEquals(expectedEntry.getValue(), entry.getValue());
+        }
+        assertFalse(actual.hasNext());
+    }
 }
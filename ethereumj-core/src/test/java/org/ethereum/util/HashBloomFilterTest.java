@@ -0,0 +1,66 @@
+package org.ethereum.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.ethereum.crypto.HashUtil.sha3;
+import static org.ethereum.util.ByteUtil.intToBytes;
+import static org.junit.Assert.*;
+
+public class HashBloomFilterTest {
+
+    @Test
+    public void testFalsePositives() {
+        HashBloomFilter filter = new HashBloomFilter(16, 4);
+        for (int i = 0; i < 5000; i++) {
+            filter.add(sha3(intToBytes(i)));
+        }
+        for (int i = 0; i < 5000; i++) {
+            assertTrue(filter.mightContain(sha3(intToBytes(i))));
+        }
+
+        int falsePositives = 0;
+        for (int i = 5000; i < 15000; i++) {
+            if (filter.mightContain(sha3(intToBytes(i)))) falsePositives++;
+        }
+        // expected rate is ~0.24%
+        assertTrue("False positives: " + falsePositives, falsePositives < 100);
+    }
+
+    @Test
+    public void testConcurrentAdd() throws InterruptedException {
+        final HashBloomFilter filter = new HashBloomFilter(12, 3);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        final List<byte[]> hashes = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            hashes.add(sha3(intToBytes(i)));
+        }
+        for (int t = 0; t < 4; t++) {
+            final int offset = t;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = offset; i < hashes.size(); i += 4) {
+                        filter.add(hashes.get(i));
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        for (byte[] hash : hashes) {
+            assertTrue(filter.mightContain(hash));
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testShortKey() {
+        new HashBloomFilter(16, 4).add(new byte[8]);
+    }
+}
@@ -1125,4 +1125,134 @@ public class RLPTest {
         assertEquals(1, el.size());
         assertEquals(0, Util.rlpDecodeInt(el.get(0)));
     }
+
+    @Test
+    public void testRLPView() {
+        Random rnd = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            byte[] encoded = randomRLP(rnd, 0);
+            RLPElement expected = decode2(encoded).get(0);
+            assertViewEquals(expected, RLPView.wrap(encoded));
+        }
+    }
+
+    @Test
+    public void testRLPViewValues() {
+        byte[] encoded = encodeList(encodeElement(new byte[0]), encodeInt(1), encodeBigInteger(BigInteger.valueOf(1024)),
+                encodeBigInteger(BigInteger.ONE.shiftLeft(200)), encodeElement(new byte[56]), encodeList());
+        RLPView view = RLPView.wrap(encoded);
+
+        assertEquals(6, view.size());
+        assertTrue(view.get(0).isEmpty());
+        assertNull(view.get(0).copyBytes());
+        assertEquals(0, view.get(0).getLong());
+        assertEquals(1, view.get(1).getInt());
+        assertEquals(1024, view.get(2).getLong());
+        assertEquals(BigInteger.ONE.shiftLeft(200), view.get(3).getBigInteger());
+        assertEquals(56, view.get(4).sliceAsByteBuffer().remaining());
+        assertArrayEquals(new byte[56], view.get(4).copyBytes());
+        assertTrue(view.get(5).isList());
+        assertEquals(0, view.get(5).size());
+        assertArrayEquals(encoded, view.getEncoded());
+        assertArrayEquals(encodeElement(new byte[56]), view.get(4).getEncoded());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void testRLPViewTruncated() {
+        byte[] encoded = encodeList(encodeElement(new byte[20]), encodeElement(new byte[20]));
+        RLPView.wrap(Arrays.copyOf(encoded, encoded.length - 1)).get(1);
+    }
+
+    @Test
+    public void testRLPWriter() throws IOException {
+        Random rnd = new Random(42);
+        RLPWriter writer = new RLPWriter(16);
+        for (int n = 0; n < 200; n++) {
+            writer.reset();
+            byte[] expected = randomRLP(rnd, 0, writer);
+            assertEquals(expected.length, writer.size());
+            assertArrayEquals(expected, writer.toByteArray());
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.writeTo(out);
+            assertArrayEquals(expected, out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testRLPWriterValues() {
+        long[] longs = {0, 1, 0x7f, 0x80, 0xff, 0x100, 0xffff, 1L << 40, Long.MAX_VALUE};
+        for (long l : longs) {
+            assertArrayEquals(encodeBigInteger(BigInteger.valueOf(l)), new RLPWriter().writeLong(l).toByteArray());
+        }
+        BigInteger[] bigs = {BigInteger.ZERO, BigInteger.valueOf(1000), BigInteger.ONE.shiftLeft(63), BigInteger.ONE.shiftLeft(255)};
+        for (BigInteger b : bigs) {
+            assertArrayEquals(encodeBigInteger(b), new RLPWriter().writeBigInteger(b).toByteArray());
+        }
+        byte[] bytes = {0, 1, 0x7f, (byte) 0x80, (byte) 0xff};
+        for (byte b : bytes) {
+            assertArrayEquals(encodeByte(b), new RLPWriter().writeByte(b).toByteArray());
+            assertArrayEquals(encodeElement(new byte[] {b}), new RLPWriter().writeElement(new byte[] {b}).toByteArray());
+        }
+        assertArrayEquals(encodeElement(null), new RLPWriter().writeElement(null).toByteArray());
+        assertArrayEquals(encodeList(), new RLPWriter().startList().endList().toByteArray());
+        assertArrayEquals(encodeList(encodeInt(1), encodeElement(new byte[100])),
+                new RLPWriter().writeList(encodeInt(1), encodeElement(new byte[100])).toByteArray());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRLPWriterIncomplete() {
+        new RLPWriter().startList().startList().endList().toByteArray();
+    }
+
+    /**
+     * Generates random RLP structure writing it to the writer at the same time
+     */
+    private static byte[] randomRLP(Random rnd, int depth, RLPWriter writer) {
+        if (depth < 4 && rnd.nextInt(3) == 0) {
+            byte[][] items = new byte[rnd.nextInt(depth == 0 ? 20 : 6)][];
+            writer.startList();
+            for (int i = 0; i < items.length; i++) {
+                items[i] = randomRLP(rnd, depth + 1, writer);
+            }
+            writer.endList();
+            return encodeList(items);
+        } else {
+            byte[] item = new byte[rnd.nextInt(4) == 0 ? rnd.nextInt(70000) : rnd.nextInt(80)];
+            rnd.nextBytes(item);
+            writer.writeElement(item);
+            return encodeElement(item);
+        }
+    }
+
+    private static byte[] randomRLP(Random rnd, int depth) {
+        if (depth < 3 && rnd.nextInt(3) == 0) {
+            byte[][] items = new byte[rnd.nextInt(depth == 0 ? 20 : 6)][];
+            for (int i = 0; i < items.length; i++) {
+                items[i] = randomRLP(rnd, depth + 1);
+            }
+            return encodeList(items);
+        } else {
+            // 55 bytes items are skipped as decode2 doesn't handle them correctly
+            int len = rnd.nextInt(4) == 0 ? 56 + rnd.nextInt(300) : rnd.nextInt(55);
+            byte[] item = new byte[len];
+            rnd.nextBytes(item);
+            return encodeElement(item);
+        }
+    }
+
+    private static void assertViewEquals(RLPElement expected, RLPView view) {
+        if (expected instanceof RLPList) {
+            RLPList list = (RLPList) expected;
+            assertTrue(view.isList());
+            assertArrayEquals(list.getRLPData(), view.getEncoded());
+            assertEquals(list.size(), view.size());
+            for (int i = 0; i < list.size(); i++) {
+                assertViewEquals(list.get(i), view.get(i));
+            }
+        } else {
+            assertFalse(view.isList());
+            assertArrayEquals(expected.getRLPData(), view.copyBytes());
+        }
+    }
 }
\ No newline at end of file
@@ -5,7 +5,11 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.spongycastle.util.encoders.Hex;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -43,6 +47,28 @@ public class ProofOfWorkRuleTest {
         assertFalse(rule.validate(b.getHeader()));
     }
 
+    @Test // errors are collected per thread
+    public void testErrorsPerThread() throws InterruptedException {
+        final Block b = new Block(Hex.decode("f90219f90214a0809870664d9a43cf1827aa515de6374e2fad1bf64290a9f261dd49c525d6a0efa01dcc4de8dec75d7aab85b567b6ccd41ad312451b948a7413f0a142fd40d4934794f927a40c8b7f6e07c5af7fa2155b4864a4112b13a010c8ec4f62ecea600c616443bcf527d97e5b1c5bb4a9769c496d1bf32636c95da056e81f171bcc55a6ff8345e692c0f86e5b48e01b996cadc001622fb5e363b421a056e81f171bcc55a6ff8345e692c0f86e5b48e01b996cadc001622fb5e363b421b9010000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000000857147839e5e82bf958302472c808455c4e47b99476574682f76312e302e312f6c696e75782f676f312e342e32a0788ac534cb2f6a226a01535e29b11a96602d447aed972463b5cbcc7dd5d633f288e2ff1b6435006517c0c0"));
+        assertFalse(rule.validate(b.getHeader()));
+        assertEquals(1, rule.getErrors().size());
+
+        final List<String> otherThreadErrors = new ArrayList<>();
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                otherThreadErrors.addAll(rule.getErrors());
+                rule.validate(b.getHeader());
+                otherThreadErrors.addAll(rule.getErrors());
+            }
+        };
+        t.start();
+        t.join();
+
+        assertEquals(1, otherThreadErrors.size());
+        assertEquals(1, rule.getErrors().size());
+    }
+
     @Ignore
     @Test // stress test
     public void test_3() {